@@ -0,0 +1,138 @@
+package it.unina.bugboard26.config;
+
+import it.unina.bugboard26.storage.AttachmentStore;
+import it.unina.bugboard26.storage.BlobStorage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prima della deduplicazione ogni allegato aveva il suo file, con il nome UUID di {@code stored_filename}.
+ * All'avvio sposta quei file sotto il loro SHA-256 nell'{@link AttachmentStore} e ricalcola il conteggio
+ * dei riferimenti in {@code attachment_blobs}, a blocchi di {@code batch-size} allegati, una transazione
+ * per blocco. I vecchi file si cancellano solo dopo il commit del blocco, cosi' un'interruzione non
+ * lascia righe senza file.
+ * <p>
+ * Considera solo gli allegati senza hash o il cui hash non ha ancora un blob: a migrazione finita la
+ * query non trova nulla. Gli allegati senza file su disco restano come sono e vengono segnalati nel log.
+ */
+@Component
+@Order(2)
+public class LegacyAttachmentFileMigration implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(LegacyAttachmentFileMigration.class);
+
+    private static final String SELECT = "SELECT a.id, a.stored_filename, a.sha256 FROM attachments a "
+            + "WHERE a.id > ? AND (a.sha256 IS NULL OR NOT EXISTS "
+            + "(SELECT 1 FROM attachment_blobs b WHERE b.sha256 = a.sha256)) ORDER BY a.id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AttachmentStore attachmentStore;
+    private final int batchSize;
+
+    public LegacyAttachmentFileMigration(JdbcTemplate jdbcTemplate,
+                                         TransactionTemplate transactionTemplate,
+                                         AttachmentStore attachmentStore,
+                                         @Value("${bugboard.attachments.migration.batch-size:100}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.attachmentStore = attachmentStore;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(String... args) {
+        int migrated = 0;
+        int missing = 0;
+        String lastId = "";
+        while (true) {
+            List<String[]> rows = jdbcTemplate.query(SELECT,
+                    (rs, i) -> new String[]{rs.getString("id"), rs.getString("stored_filename"), rs.getString("sha256")},
+                    lastId, batchSize);
+            if (rows.isEmpty()) break;
+
+            List<Path> legacyFiles = new ArrayList<>();
+            int notFound = transactionTemplate.execute(status -> migrateBatch(rows, legacyFiles));
+            for (Path legacy : legacyFiles) {
+                try {
+                    Files.deleteIfExists(legacy);
+                } catch (IOException e) {
+                    log.warn("Impossibile eliminare il vecchio file {}: {}", legacy, e.getMessage());
+                }
+            }
+            migrated += legacyFiles.size();
+            missing += notFound;
+            lastId = rows.getLast()[0];
+        }
+
+        if (migrated > 0 || missing > 0) {
+            log.info("Deduplicati {} file di allegati, {} allegati senza file su disco", migrated, missing);
+        }
+    }
+
+    private int migrateBatch(List<String[]> rows, List<Path> legacyFiles) {
+        // hash -> dimensione dei blob toccati dal blocco, per ricalcolarne il conteggio alla fine
+        Map<String, Long> touched = new HashMap<>();
+        int notFound = 0;
+        try {
+            for (String[] row : rows) {
+                Path legacy = attachmentStore.legacyPath(row[1]);
+                if (Files.isRegularFile(legacy)) {
+                    AttachmentStore.StagedBlob blob;
+                    try (InputStream in = Files.newInputStream(legacy)) {
+                        blob = attachmentStore.stage(in);
+                    }
+                    try {
+                        attachmentStore.commit(blob);
+                    } finally {
+                        attachmentStore.discard(blob);
+                    }
+                    jdbcTemplate.update("UPDATE attachments SET sha256 = ? WHERE id = ?", blob.sha256(), row[0]);
+                    touched.put(blob.sha256(), blob.size());
+                    legacyFiles.add(legacy);
+                    continue;
+                }
+                BlobStorage.Entry existing = row[2] != null ? attachmentStore.stat(row[2]) : null;
+                if (existing != null) {
+                    touched.put(row[2], existing.size());
+                } else {
+                    log.warn("File dell'allegato {} non trovato: {}", row[0], legacy);
+                    notFound++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        for (Map.Entry<String, Long> blob : touched.entrySet()) {
+            Long references = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM attachments WHERE sha256 = ?", Long.class, blob.getKey());
+            int updated = jdbcTemplate.update("UPDATE attachment_blobs SET ref_count = ? WHERE sha256 = ?",
+                    references, blob.getKey());
+            if (updated == 0) {
+                jdbcTemplate.update("INSERT INTO attachment_blobs (sha256, size, ref_count, created_at) VALUES (?, ?, ?, ?)",
+                        blob.getKey(), blob.getValue(), references, Timestamp.from(Instant.now()));
+            }
+        }
+        return notFound;
+    }
+}
@@ -0,0 +1,71 @@
+package it.unina.bugboard26.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Gli allegati erano una {@code @ElementCollection} nella tabella {@code issue_attachments}, senza id.
+ * Ora sono entita' in {@code attachments}: all'avvio copia le righe rimaste nella vecchia tabella
+ * assegnando un id e poi la elimina. Senza la vecchia tabella non fa nulla.
+ */
+@Component
+@Order(0)
+public class LegacyAttachmentMigration implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(LegacyAttachmentMigration.class);
+
+    static final String LEGACY_TABLE = "issue_attachments";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public LegacyAttachmentMigration(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (!legacyTableExists()) return;
+
+        int migrated = transactionTemplate.execute(status -> {
+            List<Object[]> rows = jdbcTemplate.query(
+                    "SELECT issue_id, stored_filename, original_filename, content_type, file_size, uploaded_at FROM "
+                            + LEGACY_TABLE,
+                    (rs, i) -> new Object[]{
+                            UUID.randomUUID().toString(),
+                            rs.getString("issue_id"),
+                            rs.getString("stored_filename"),
+                            rs.getString("original_filename"),
+                            rs.getString("content_type"),
+                            rs.getLong("file_size"),
+                            rs.getObject("uploaded_at")
+                    });
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO attachments (id, issue_id, stored_filename, original_filename, content_type, file_size, uploaded_at) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    rows);
+            jdbcTemplate.execute("DROP TABLE " + LEGACY_TABLE);
+            return rows.size();
+        });
+        log.info("Migrati {} allegati da {} alla tabella attachments", migrated, LEGACY_TABLE);
+    }
+
+    private boolean legacyTableExists() {
+        try {
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + LEGACY_TABLE, Long.class);
+            return true;
+        } catch (DataAccessException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package it.unina.bugboard26.config;
+
+import it.unina.bugboard26.storage.ImageStore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Le immagini di issue e commenti erano data URL base64 nella colonna TEXT {@code image}.
+ * All'avvio le sposta nell'{@link ImageStore} a blocchi di {@code batch-size} righe, una transazione
+ * per blocco, scrivendo la chiave in {@code image_key}. Quando la colonna e' vuota la elimina;
+ * le righe con un data URL non valido restano dove sono e vengono segnalate nel log.
+ */
+@Component
+@Order(1)
+public class LegacyImageMigration implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(LegacyImageMigration.class);
+
+    static final List<String> TABLES = List.of("issues", "comments");
+    static final String LEGACY_COLUMN = "image";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ImageStore imageStore;
+    private final int batchSize;
+
+    public LegacyImageMigration(JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                ImageStore imageStore,
+                                @Value("${bugboard.images.migration.batch-size:100}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.imageStore = imageStore;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(String... args) {
+        for (String table : TABLES) {
+            if (legacyColumnExists(table)) {
+                migrate(table);
+            }
+        }
+    }
+
+    private void migrate(String table) {
+        String select = "SELECT id, " + LEGACY_COLUMN + " FROM " + table
+                + " WHERE " + LEGACY_COLUMN + " IS NOT NULL AND id > ? ORDER BY id LIMIT ?";
+        String update = "UPDATE " + table + " SET image_key = ?, " + LEGACY_COLUMN + " = NULL WHERE id = ?";
+
+        int migrated = 0;
+        int skipped = 0;
+        String lastId = "";
+        while (true) {
+            List<String[]> rows = jdbcTemplate.query(select,
+                    (rs, i) -> new String[]{rs.getString("id"), rs.getString(LEGACY_COLUMN)},
+                    lastId, batchSize);
+            if (rows.isEmpty()) break;
+
+            int[] counts = transactionTemplate.execute(status -> {
+                int done = 0;
+                int invalid = 0;
+                for (String[] row : rows) {
+                    String key;
+                    try {
+                        ImageStore.DecodedImage image = imageStore.decode(row[1]);
+                        key = imageStore.store(image.bytes(), image.contentType());
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Immagine non migrata in {} (id {}): {}", table, row[0], e.getMessage());
+                        invalid++;
+                        continue;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    jdbcTemplate.update(update, key, row[0]);
+                    done++;
+                }
+                return new int[]{done, invalid};
+            });
+            migrated += counts[0];
+            skipped += counts[1];
+            lastId = rows.getLast()[0];
+        }
+
+        if (migrated > 0 || skipped > 0) {
+            log.info("Migrate {} immagini di {} nell'image store, {} non valide", migrated, table, skipped);
+        }
+        if (skipped == 0) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " DROP COLUMN " + LEGACY_COLUMN);
+        }
+    }
+
+    private boolean legacyColumnExists(String table) {
+        try {
+            jdbcTemplate.queryForList("SELECT " + LEGACY_COLUMN + " FROM " + table + " WHERE 1 = 0");
+            return true;
+        } catch (DataAccessException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package it.unina.bugboard26.config;
+
+import it.unina.bugboard26.storage.AttachmentStore;
+import it.unina.bugboard26.storage.ImageStore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Le versioni precedenti salvavano allegati, anteprime e immagini tutti nella stessa directory.
+ * All'avvio sposta quei file nelle sottodirectory ricavate dall'hash, con un rename per file.
+ * Gira per prima perche' le altre migrazioni cercano i file gia' nella nuova posizione; se si
+ * interrompe, l'avvio successivo riprende dai file rimasti. A migrazione finita la directory
+ * principale contiene solo le sottodirectory e la scansione e' immediata.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ShardedStorageMigration implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedStorageMigration.class);
+
+    private final AttachmentStore attachmentStore;
+    private final ImageStore imageStore;
+
+    public ShardedStorageMigration(AttachmentStore attachmentStore, ImageStore imageStore) {
+        this.attachmentStore = attachmentStore;
+        this.imageStore = imageStore;
+    }
+
+    @Override
+    public void run(String... args) {
+        try {
+            int attachments = attachmentStore.shardFlatFiles();
+            int images = imageStore.shardFlatFiles();
+            if (attachments > 0 || images > 0) {
+                log.info("Spostati nelle sottodirectory {} file di allegati e {} immagini", attachments, images);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -2,8 +2,12 @@ package it.unina.bugboard26.controller;
 
 import it.unina.bugboard26.dto.response.AttachmentResponse;
 import it.unina.bugboard26.service.AttachmentService;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
+import it.unina.bugboard26.storage.PresignedUrl;
+import it.unina.bugboard26.storage.StoredFile;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -12,11 +16,16 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 
 @RestController
 @RequestMapping("/api/issues/{issueId}/attachments")
 public class AttachmentController {
 
+    // I file hanno nome UUID e non vengono mai riscritti: una copia in cache resta valida per sempre
+    private static final CacheControl CACHE = CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable();
+
     private final AttachmentService attachmentService;
 
     public AttachmentController(AttachmentService attachmentService) {
@@ -32,12 +41,30 @@ public class AttachmentController {
     }
 
     @GetMapping("/{storedFilename}")
-    public ResponseEntity<Resource> download(@PathVariable String issueId,
-                                             @PathVariable String storedFilename) throws IOException {
-        Resource resource = attachmentService.download(issueId, storedFilename);
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
-                .body(resource);
+    public void download(@PathVariable String issueId,
+                         @PathVariable String storedFilename,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        switch (attachmentService.download(issueId, storedFilename)) {
+            case StoredFile file -> {
+                ContentDisposition disposition = ContentDisposition.attachment()
+                        .filename(file.filename(), StandardCharsets.UTF_8)
+                        .build();
+                FileResponses.write(request, response, file, CACHE, disposition);
+            }
+            case PresignedUrl presigned -> FileResponses.redirect(response, presigned);
+        }
+    }
+
+    @GetMapping("/{storedFilename}/thumbnail")
+    public void thumbnail(@PathVariable String issueId,
+                          @PathVariable String storedFilename,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        switch (attachmentService.thumbnail(issueId, storedFilename)) {
+            case StoredFile file -> FileResponses.write(request, response, file, CACHE, null);
+            case PresignedUrl presigned -> FileResponses.redirect(response, presigned);
+        }
     }
 
     @DeleteMapping("/{storedFilename}")
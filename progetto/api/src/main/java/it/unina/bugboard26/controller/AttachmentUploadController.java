@@ -0,0 +1,69 @@
+package it.unina.bugboard26.controller;
+
+import it.unina.bugboard26.dto.request.CompleteUploadRequest;
+import it.unina.bugboard26.dto.request.CreateUploadRequest;
+import it.unina.bugboard26.dto.response.AttachmentResponse;
+import it.unina.bugboard26.dto.response.UploadSessionResponse;
+import it.unina.bugboard26.service.AttachmentUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/issues/{issueId}/attachments/uploads")
+public class AttachmentUploadController {
+
+    private final AttachmentUploadService uploadService;
+
+    public AttachmentUploadController(AttachmentUploadService uploadService) {
+        this.uploadService = uploadService;
+    }
+
+    @PostMapping
+    public ResponseEntity<UploadSessionResponse> create(@PathVariable String issueId,
+                                                        @Valid @RequestBody CreateUploadRequest request,
+                                                        Authentication auth) throws IOException {
+        UploadSessionResponse response = uploadService.create(issueId, request, auth.getName());
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<UploadSessionResponse> status(@PathVariable String issueId,
+                                                        @PathVariable String uploadId,
+                                                        Authentication auth) throws IOException {
+        return ResponseEntity.ok(uploadService.status(issueId, uploadId, auth.getName()));
+    }
+
+    // Il corpo e' letto direttamente dalla richiesta: nessun converter lo carica in memoria
+    @PutMapping(value = "/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadSessionResponse> writeChunk(@PathVariable String issueId,
+                                                            @PathVariable String uploadId,
+                                                            @RequestParam long offset,
+                                                            HttpServletRequest request,
+                                                            Authentication auth) throws IOException {
+        return ResponseEntity.ok(uploadService.writeChunk(issueId, uploadId, offset, request.getInputStream(), auth.getName()));
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<AttachmentResponse> complete(@PathVariable String issueId,
+                                                       @PathVariable String uploadId,
+                                                       @Valid @RequestBody CompleteUploadRequest request,
+                                                       Authentication auth) throws IOException {
+        AttachmentResponse response = uploadService.complete(issueId, uploadId, request.sha256(), auth.getName());
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<Void> abort(@PathVariable String issueId,
+                                      @PathVariable String uploadId,
+                                      Authentication auth) throws IOException {
+        uploadService.abort(issueId, uploadId, auth.getName());
+        return ResponseEntity.noContent().build();
+    }
+}
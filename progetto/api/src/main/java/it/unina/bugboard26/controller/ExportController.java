@@ -1,49 +1,61 @@
 package it.unina.bugboard26.controller;
 
+import it.unina.bugboard26.dto.request.ExportRequest;
+import it.unina.bugboard26.dto.response.ExportJobResponse;
+import it.unina.bugboard26.enums.ExportFormat;
 import it.unina.bugboard26.enums.IssuePriority;
 import it.unina.bugboard26.enums.IssueStatus;
 import it.unina.bugboard26.enums.IssueType;
+import it.unina.bugboard26.repository.IssueFilter;
 
-import it.unina.bugboard26.service.ExportService;
+import it.unina.bugboard26.service.ExportCache;
+import it.unina.bugboard26.service.ExportJobService;
 
+import it.unina.bugboard26.storage.StoredFile;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.net.URI;
+import java.time.Instant;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/issues/export")
 public class ExportController {
 
-    private final ExportService exportService;
+    private static final int GZIP_BUFFER = 8192;
 
-    public enum ExportFormat {
-        CSV, PDF, EXCEL;
+    private final ExportCache exportCache;
+    private final ExportJobService exportJobService;
 
-        public static ExportFormat from(String value) {
-            try {
-                return ExportFormat.valueOf(value.toUpperCase());
-            } catch (IllegalArgumentException e) {
-                return null;
-            }
-        }
-    }
-
-    public ExportController(ExportService exportService) {
-        this.exportService = exportService;
+    public ExportController(ExportCache exportCache, ExportJobService exportJobService) {
+        this.exportCache = exportCache;
+        this.exportJobService = exportJobService;
     }
 
     @GetMapping
-    public ResponseEntity<byte[]> export(
+    public ResponseEntity<StreamingResponseBody> export(
             @RequestParam String format,
             @RequestParam(required = false) List<IssueType> type,
             @RequestParam(required = false) List<IssueStatus> status,
             @RequestParam(required = false) List<IssuePriority> priority,
             @RequestParam(required = false) String assignedToId,
             @RequestParam(required = false) String search,
-            @RequestParam(defaultValue = "false") boolean includeArchived
+            @RequestParam(defaultValue = "false") boolean includeArchived,
+            @RequestParam(required = false) Instant updatedSince,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
     ) {
         ExportFormat exportFormat = ExportFormat.from(format);
 
@@ -52,29 +64,65 @@ public class ExportController {
         }
 
         Boolean archived = includeArchived ? null : false;
+        IssueFilter filter = IssueFilter.of(type, status, priority, assignedToId, archived, search, null)
+                .withUpdatedSince(updatedSince);
 
-        return switch (exportFormat) {
-            case CSV -> {
-                byte[] data = exportService.exportCsv(type, status, priority, assignedToId, archived, search);
-                yield ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=issues.csv")
-                        .contentType(MediaType.parseMediaType("text/csv"))
-                        .body(data);
-            }
-            case PDF -> {
-                byte[] data = exportService.exportPdf(type, status, priority, assignedToId, archived, search);
-                yield ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=issues.pdf")
-                        .contentType(MediaType.APPLICATION_PDF)
-                        .body(data);
-            }
-            case EXCEL -> {
-                byte[] data = exportService.exportExcel(type, status, priority, assignedToId, archived, search);
-                yield ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=issues.xlsx")
-                        .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                        .body(data);
-            }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + exportFormat.getFilename())
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()));
+
+        if (exportFormat.isCompressible()) {
+            response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        // Il file viene scritto sul thread asincrono della risposta man mano che le righe escono dal database
+        if (!exportFormat.isCompressible() || !acceptsGzip(acceptEncoding)) {
+            return response.body(out -> exportCache.write(exportFormat, filter, out, rows -> { }));
+        }
+        // Compresso al volo: con il sync flush ogni blocco svuotato dall'export esce subito compresso
+        StreamingResponseBody body = out -> {
+            GZIPOutputStream gzip = new GZIPOutputStream(out, GZIP_BUFFER, true);
+            exportCache.write(exportFormat, filter, gzip, rows -> { });
+            gzip.finish();
         };
+        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body);
+    }
+
+    // gzip e' accettato se compare tra le codifiche e non ha q=0
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length < 2 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    // Export grandi: il file viene generato in background e scaricato quando e' pronto
+    @PostMapping("/jobs")
+    public ResponseEntity<ExportJobResponse> createJob(@Valid @RequestBody ExportRequest request,
+                                                       Authentication auth) {
+        ExportJobResponse job = exportJobService.create(request, auth.getName());
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(URI.create("/api/issues/export/jobs/" + job.id()))
+                .body(job);
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<ExportJobResponse> jobStatus(@PathVariable String jobId, Authentication auth) {
+        return ResponseEntity.ok(exportJobService.status(jobId, auth.getName()));
+    }
+
+    @GetMapping("/jobs/{jobId}/file")
+    public void downloadJob(@PathVariable String jobId,
+                            Authentication auth,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        StoredFile file = exportJobService.file(jobId, auth.getName());
+        ContentDisposition disposition = ContentDisposition.attachment().filename(file.filename()).build();
+        FileResponses.write(request, response, file, CacheControl.noStore(), disposition);
     }
 }
@@ -0,0 +1,134 @@
+package it.unina.bugboard26.controller;
+
+import it.unina.bugboard26.storage.PresignedUrl;
+import it.unina.bugboard26.storage.StoredFile;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Scrive un file su disco nella risposta con validatori (ETag forte, Last-Modified), 304 sulle
+ * richieste condizionali e Range a intervallo singolo (206/416). Piu' intervalli nella stessa
+ * richiesta ricevono il file intero, come consentito dalla RFC 9110.
+ * <p>
+ * Il corpo non passa dall'heap: con Tomcat si usa il sendfile del connettore, altrimenti
+ * {@link FileChannel#transferTo}. I contenuti in uno storage esterno si servono con un redirect
+ * all'URL firmato ({@link #redirect}).
+ */
+final class FileResponses {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private FileResponses() {
+    }
+
+    /**
+     * 302 verso l'URL firmato. Il redirect non va in cache: l'URL scade, il contenuto no.
+     */
+    static void redirect(HttpServletResponse response, PresignedUrl presigned) {
+        response.setStatus(HttpServletResponse.SC_FOUND);
+        response.setHeader(HttpHeaders.LOCATION, presigned.url().toString());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+    }
+
+    static void write(HttpServletRequest request,
+                      HttpServletResponse response,
+                      StoredFile file,
+                      CacheControl cacheControl,
+                      ContentDisposition disposition) throws IOException {
+        long length = Files.size(file.path());
+        long lastModified = file.lastModified().toEpochMilli();
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // Imposta ETag e Last-Modified; con If-None-Match/If-Modified-Since soddisfatti risponde 304
+        if (new ServletWebRequest(request, response).checkNotModified(file.etag(), lastModified)) {
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && ifRangeMatches(request, file.etag(), lastModified)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                // Header Range malformato: si ignora e si serve il file intero
+                ranges = List.of();
+            }
+            if (ranges.size() == 1) {
+                start = ranges.getFirst().getRangeStart(length);
+                end = ranges.getFirst().getRangeEnd(length);
+                if (start >= length || start > end) {
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentType(file.contentType());
+        response.setContentLengthLong(count);
+        if (disposition != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition.toString());
+        }
+        if (request.getMethod().equals("HEAD") || count == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.path().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.path(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+        }
+    }
+
+    // If-Range: il Range vale solo se il client ha ancora la stessa versione (ETag forte o data esatta)
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals("\"" + etag + "\"");
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) == lastModified / 1000 * 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package it.unina.bugboard26.controller;
+
+import it.unina.bugboard26.storage.ImageStore;
+import it.unina.bugboard26.storage.StoredFile;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+@RestController
+@RequestMapping("/api/images")
+public class ImageController {
+
+    // Il contenuto di una chiave non cambia mai: il client puo' tenerla in cache senza rivalidarla
+    private static final CacheControl CACHE = CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable();
+
+    private final ImageStore imageStore;
+
+    public ImageController(ImageStore imageStore) {
+        this.imageStore = imageStore;
+    }
+
+    @GetMapping("/{key}")
+    public void get(@PathVariable String key,
+                    HttpServletRequest request,
+                    HttpServletResponse response) throws IOException {
+        StoredFile image;
+        try {
+            image = imageStore.open(key);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(NOT_FOUND, "Immagine non trovata");
+        }
+        FileResponses.write(request, response, image, CACHE, null);
+    }
+}
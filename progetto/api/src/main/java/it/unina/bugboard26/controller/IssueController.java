@@ -2,13 +2,18 @@ package it.unina.bugboard26.controller;
 
 import it.unina.bugboard26.dto.request.CreateIssueRequest;
 import it.unina.bugboard26.dto.request.UpdateIssueRequest;
+import it.unina.bugboard26.dto.response.HistoryEntryResponse;
+import it.unina.bugboard26.dto.response.IssueFacetsResponse;
 import it.unina.bugboard26.dto.response.IssueResponse;
+import it.unina.bugboard26.dto.response.IssueSummaryResponse;
 import it.unina.bugboard26.dto.response.PagedResponse;
 
 import it.unina.bugboard26.enums.IssuePriority;
 import it.unina.bugboard26.enums.IssueStatus;
 import it.unina.bugboard26.enums.IssueType;
 
+import it.unina.bugboard26.repository.IssueCursor;
+import it.unina.bugboard26.repository.IssueFilter;
 import it.unina.bugboard26.service.IssueService;
 
 import jakarta.validation.Valid;
@@ -28,7 +33,7 @@ import java.util.Set;
 public class IssueController {
 
     private static final Set<String> ALLOWED_SORT_FIELDS = Set.of(
-            "createdAt", "updatedAt", "title", "status", "priority", "type"
+            "createdAt", "updatedAt", "title", "status", "priority", "type", IssueService.SORT_RELEVANCE
     );
 
     private final IssueService issueService;
@@ -38,7 +43,7 @@ public class IssueController {
     }
 
     @GetMapping
-    public ResponseEntity<PagedResponse<IssueResponse>> getAll(
+    public ResponseEntity<PagedResponse<IssueSummaryResponse>> getAll(
             @RequestParam(required = false) List<IssueType> type,
             @RequestParam(required = false) List<IssueStatus> status,
             @RequestParam(required = false) List<IssuePriority> priority,
@@ -46,37 +51,89 @@ public class IssueController {
             @RequestParam(required = false) Boolean archived,
             @RequestParam(required = false) Boolean deleted,
             @RequestParam(required = false) String search,
+            @RequestParam(defaultValue = "false") boolean fuzzy,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int pageSize,
             @RequestParam(defaultValue = "createdAt") String sortBy,
             @RequestParam(defaultValue = "desc") String order,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "true") boolean withTotal,
             Authentication authentication
     ) {
         if (!ALLOWED_SORT_FIELDS.contains(sortBy)) {
             sortBy = "createdAt";
         }
+        // La rilevanza ha senso solo con una ricerca testuale
+        if (sortBy.equals(IssueService.SORT_RELEVANCE) && (search == null || search.isBlank())) {
+            sortBy = "createdAt";
+        }
         pageSize = Math.max(1, Math.min(pageSize, 100));
-        Sort sort = order.equalsIgnoreCase("asc")
-                ? Sort.by(sortBy).ascending()
-                : Sort.by(sortBy).descending();
-        Pageable pageable = PageRequest.of(page, pageSize, sort);
+        boolean ascending = order.equalsIgnoreCase("asc");
 
         if (archived == null) {
             archived = false;
         }
+        IssueFilter filter = IssueFilter.of(type, status, priority, assignedToId, archived, search, deleted)
+                .withFuzzy(fuzzy);
+
+        // Paginazione a cursore: attiva quando il parametro cursor e' presente (vuoto = prima pagina)
+        if (cursor != null) {
+            IssueCursor.SortKey sortKey = IssueCursor.SortKey.fromField(sortBy);
+            if (sortKey == null) {
+                sortKey = IssueCursor.SortKey.CREATED_AT;
+            }
+            return ResponseEntity.ok(issueService.getAllByCursor(
+                    filter, authentication.getName(), cursor, sortKey, ascending, pageSize, withTotal
+            ));
+        }
 
-        PagedResponse<IssueResponse> response = issueService.getAll(
-                type, status, priority, assignedToId, archived, search, deleted,
-                authentication.getName(), pageable
+        Sort sort = ascending
+                ? Sort.by(sortBy).ascending()
+                : Sort.by(sortBy).descending();
+        Pageable pageable = PageRequest.of(page, pageSize, sort);
+
+        PagedResponse<IssueSummaryResponse> response = issueService.getAll(
+                filter, authentication.getName(), pageable, withTotal
         );
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/facets")
+    public ResponseEntity<IssueFacetsResponse> getFacets(
+            @RequestParam(required = false) List<IssueType> type,
+            @RequestParam(required = false) List<IssueStatus> status,
+            @RequestParam(required = false) List<IssuePriority> priority,
+            @RequestParam(required = false) String assignedToId,
+            @RequestParam(required = false) Boolean archived,
+            @RequestParam(required = false) Boolean deleted,
+            @RequestParam(required = false) String search,
+            @RequestParam(defaultValue = "false") boolean fuzzy,
+            Authentication authentication
+    ) {
+        if (archived == null) {
+            archived = false;
+        }
+        IssueFilter filter = IssueFilter.of(type, status, priority, assignedToId, archived, search, deleted)
+                .withFuzzy(fuzzy);
+        return ResponseEntity.ok(issueService.getFacets(filter, authentication.getName()));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<IssueResponse> getById(@PathVariable String id, Authentication authentication) {
         return ResponseEntity.ok(issueService.getById(id, authentication.getName()));
     }
 
+    @GetMapping("/{id}/history")
+    public ResponseEntity<PagedResponse<HistoryEntryResponse>> getHistory(
+            @PathVariable String id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int pageSize,
+            Authentication authentication
+    ) {
+        pageSize = Math.max(1, Math.min(pageSize, 100));
+        return ResponseEntity.ok(issueService.getHistory(id, cursor, pageSize, authentication.getName()));
+    }
+
     @PostMapping
     public ResponseEntity<IssueResponse> create(@Valid @RequestBody CreateIssueRequest request,
                                                  Authentication authentication) {
@@ -0,0 +1,9 @@
+package it.unina.bugboard26.dto.request;
+
+import jakarta.validation.constraints.*;
+
+public record CompleteUploadRequest(
+        @NotBlank(message = "Il checksum e' obbligatorio")
+        @Pattern(regexp = "[0-9a-fA-F]{64}", message = "Il checksum deve essere uno SHA-256 esadecimale")
+        String sha256
+) {}
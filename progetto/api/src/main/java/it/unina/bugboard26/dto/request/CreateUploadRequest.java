@@ -0,0 +1,13 @@
+package it.unina.bugboard26.dto.request;
+
+import jakarta.validation.constraints.*;
+
+public record CreateUploadRequest(
+        @NotBlank(message = "Il nome del file e' obbligatorio")
+        @Size(max = 255)
+        String filename,
+        @NotBlank(message = "Il tipo del file e' obbligatorio")
+        String contentType,
+        @Positive(message = "La dimensione deve essere positiva")
+        long size
+) {}
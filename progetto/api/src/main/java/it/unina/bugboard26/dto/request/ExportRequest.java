@@ -4,11 +4,12 @@ import it.unina.bugboard26.enums.IssuePriority;
 import it.unina.bugboard26.enums.IssueStatus;
 import it.unina.bugboard26.enums.IssueType;
 import jakarta.validation.constraints.*;
+import java.time.Instant;
 import java.util.List;
 
 public record ExportRequest(
-        @NotNull
-        @Pattern(regexp = "csv|pdf")
+        @NotNull(message = "Il formato e' obbligatorio")
+        @Pattern(regexp = "(?i)csv|pdf|excel|ndjson|zip", message = "Formato non supportato: csv, pdf, excel, ndjson o zip")
         String format,
 
         List<IssueType> types,
@@ -16,5 +17,7 @@ public record ExportRequest(
         List<IssuePriority> priorities,
         String assignedToId,
         String search,
-        boolean includeArchived
+        boolean includeArchived,
+        // Solo le issue modificate da questo istante in poi, incluso
+        Instant updatedSince
 ) {}
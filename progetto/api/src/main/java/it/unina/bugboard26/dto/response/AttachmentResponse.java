@@ -4,6 +4,7 @@ import it.unina.bugboard26.model.Attachment;
 import java.time.Instant;
 
 public record AttachmentResponse(
+        String id,
         String storedFilename,
         String originalFilename,
         String contentType,
@@ -12,7 +13,7 @@ public record AttachmentResponse(
 ) {
     public static AttachmentResponse from(Attachment a) {
         return new AttachmentResponse(
-                a.getStoredFilename(), a.getOriginalFilename(),
+                a.getId(), a.getStoredFilename(), a.getOriginalFilename(),
                 a.getContentType(), a.getFileSize(), a.getUploadedAt()
         );
     }
@@ -1,6 +1,7 @@
 package it.unina.bugboard26.dto.response;
 
 import it.unina.bugboard26.model.Comment;
+import it.unina.bugboard26.storage.ImageStore;
 import java.time.Instant;
 
 public record CommentResponse(
@@ -8,7 +9,7 @@ public record CommentResponse(
         String issueId,
         UserResponse author,
         String content,
-        String image,
+        String imageUrl,
         Instant createdAt,
         Instant updatedAt
 ) {
@@ -18,7 +19,7 @@ public record CommentResponse(
                 c.getIssue().getId(),
                 UserResponse.from(c.getUser()),
                 c.getContent(),
-                c.getImage(),
+                ImageStore.url(c.getImageKey()),
                 c.getCreatedAt(),
                 c.getUpdatedAt()
         );
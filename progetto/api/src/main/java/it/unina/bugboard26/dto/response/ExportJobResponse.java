@@ -0,0 +1,17 @@
+package it.unina.bugboard26.dto.response;
+
+import it.unina.bugboard26.enums.ExportFormat;
+import it.unina.bugboard26.enums.ExportJobStatus;
+import java.time.Instant;
+
+public record ExportJobResponse(
+        String id,
+        ExportFormat format,
+        ExportJobStatus status,
+        long rowsWritten,
+        Long totalRows,
+        Long size,
+        Instant createdAt,
+        Instant finishedAt,
+        Instant expiresAt
+) {}
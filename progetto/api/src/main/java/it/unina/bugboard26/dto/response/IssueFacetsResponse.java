@@ -0,0 +1,21 @@
+package it.unina.bugboard26.dto.response;
+
+import it.unina.bugboard26.enums.IssuePriority;
+import it.unina.bugboard26.enums.IssueStatus;
+import it.unina.bugboard26.enums.IssueType;
+
+import java.util.Map;
+
+/**
+ * Conteggi per faccetta di GET /api/issues/facets. Ogni faccetta applica tutti i filtri
+ * tranne il proprio, cosi' la UI mostra quante issue otterrebbe aggiungendo un valore.
+ * {@code total} applica tutti i filtri; le issue senza priorita' sono in {@code noPriority}.
+ */
+public record IssueFacetsResponse(
+        long total,
+        Map<IssueStatus, Long> status,
+        Map<IssuePriority, Long> priority,
+        long noPriority,
+        Map<IssueType, Long> type,
+        Map<Boolean, Long> archived
+) {}
@@ -3,11 +3,17 @@ package it.unina.bugboard26.dto.response;
 import it.unina.bugboard26.enums.IssuePriority;
 import it.unina.bugboard26.enums.IssueStatus;
 import it.unina.bugboard26.enums.IssueType;
+import it.unina.bugboard26.model.HistoryEntry;
 import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.storage.ImageStore;
 
 import java.time.Instant;
 import java.util.List;
 
+/**
+ * {@code history} contiene solo le voci piu' recenti, dalla piu' nuova; {@code historyTotal}
+ * dice quante sono in tutto. Le altre si scorrono con GET /api/issues/{id}/history.
+ */
 public record IssueResponse(
         String id,
         String title,
@@ -19,7 +25,7 @@ public record IssueResponse(
         UserResponse createdBy,
         Instant createdAt,
         Instant updatedAt,
-        String image,
+        String imageUrl,
         boolean archived,
         Instant archivedAt,
         UserResponse archivedBy,
@@ -27,9 +33,10 @@ public record IssueResponse(
         UserResponse deletedBy,
         List<String> labels,
         List<HistoryEntryResponse> history,
+        long historyTotal,
         List<AttachmentResponse> attachments
 ) {
-    public static IssueResponse from(Issue issue) {
+    public static IssueResponse from(Issue issue, List<HistoryEntry> latestHistory, long historyTotal) {
         return new IssueResponse(
                 issue.getId(),
                 issue.getTitle(),
@@ -41,14 +48,15 @@ public record IssueResponse(
                 UserResponse.from(issue.getCreatedBy()),
                 issue.getCreatedAt(),
                 issue.getUpdatedAt(),
-                issue.getImage(),
+                ImageStore.url(issue.getImageKey()),
                 issue.isArchived(),
                 issue.getArchivedAt(),
                 issue.getArchivedBy() != null ? UserResponse.from(issue.getArchivedBy()) : null,
                 issue.getDeletedAt(),
                 issue.getDeletedBy() != null ? UserResponse.from(issue.getDeletedBy()) : null,
                 issue.getLabels().stream().map(l -> l.getName()).toList(),
-                issue.getHistory().stream().map(HistoryEntryResponse::from).toList(),
+                latestHistory.stream().map(HistoryEntryResponse::from).toList(),
+                historyTotal,
                 issue.getAttachments().stream().map(AttachmentResponse::from).toList()
         );
     }
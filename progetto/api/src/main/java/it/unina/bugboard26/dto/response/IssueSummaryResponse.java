@@ -0,0 +1,62 @@
+package it.unina.bugboard26.dto.response;
+
+import it.unina.bugboard26.enums.IssuePriority;
+import it.unina.bugboard26.enums.IssueStatus;
+import it.unina.bugboard26.enums.IssueType;
+import it.unina.bugboard26.repository.projection.IssueSummaryView;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Rappresentazione leggera usata da GET /api/issues. La descrizione e' troncata
+ * e l'immagine e' segnalata solo da {@code hasImage}: il dettaglio completo resta in {@link IssueResponse}.
+ * {@code score} e {@code highlight} sono valorizzati solo quando la lista nasce da una ricerca testuale.
+ */
+public record IssueSummaryResponse(
+        String id,
+        String title,
+        IssueType type,
+        String description,
+        IssuePriority priority,
+        IssueStatus status,
+        UserResponse assignedTo,
+        UserResponse createdBy,
+        Instant createdAt,
+        Instant updatedAt,
+        boolean archived,
+        Instant deletedAt,
+        boolean hasImage,
+        List<String> labels,
+        Float score,
+        String highlight
+) {
+    public static IssueSummaryResponse from(IssueSummaryView v, List<String> labels) {
+        return from(v, labels, null, null);
+    }
+
+    public static IssueSummaryResponse from(IssueSummaryView v, List<String> labels, Float score, String highlight) {
+        return new IssueSummaryResponse(
+                v.id(),
+                v.title(),
+                v.type(),
+                v.description(),
+                v.priority(),
+                v.status(),
+                v.assignedToId() != null
+                        ? new UserResponse(v.assignedToId(), v.assignedToEmail(), v.assignedToName(),
+                                v.assignedToRole(), v.assignedToCreatedAt())
+                        : null,
+                new UserResponse(v.createdById(), v.createdByEmail(), v.createdByName(),
+                        v.createdByRole(), v.createdByCreatedAt()),
+                v.createdAt(),
+                v.updatedAt(),
+                v.archived(),
+                v.deletedAt(),
+                v.hasImage(),
+                labels,
+                score,
+                highlight
+        );
+    }
+}
@@ -1,20 +1,41 @@
 package it.unina.bugboard26.dto.response;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import java.util.List;
 
+/**
+ * {@code total} e' null quando il conteggio non e' stato richiesto ({@code withTotal=false});
+ * {@code nextCursor} e' valorizzato solo nella paginazione a cursore e manca sull'ultima pagina.
+ */
 public record PagedResponse<T>(
         List<T> data,
-        long total,
+        Long total,
         int page,
-        int pageSize
+        int pageSize,
+        String nextCursor
 ) {
     public static <T> PagedResponse<T> of(Page<T> page) {
         return new PagedResponse<>(
                 page.getContent(),
                 page.getTotalElements(),
                 page.getNumber(),
-                page.getSize()
+                page.getSize(),
+                null
         );
     }
+
+    public static <T> PagedResponse<T> of(Slice<T> slice) {
+        return new PagedResponse<>(
+                slice.getContent(),
+                null,
+                slice.getNumber(),
+                slice.getSize(),
+                null
+        );
+    }
+
+    public static <T> PagedResponse<T> ofCursor(List<T> data, Long total, int pageSize, String nextCursor) {
+        return new PagedResponse<>(data, total, 0, pageSize, nextCursor);
+    }
 }
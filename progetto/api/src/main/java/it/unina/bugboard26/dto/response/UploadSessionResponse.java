@@ -0,0 +1,19 @@
+package it.unina.bugboard26.dto.response;
+
+import it.unina.bugboard26.model.UploadSession;
+import java.time.Instant;
+
+public record UploadSessionResponse(
+        String id,
+        String filename,
+        String contentType,
+        long size,
+        long offset,
+        Instant expiresAt
+) {
+    public static UploadSessionResponse from(UploadSession s, long offset, Instant expiresAt) {
+        return new UploadSessionResponse(
+                s.getId(), s.getFilename(), s.getContentType(), s.getSize(), offset, expiresAt
+        );
+    }
+}
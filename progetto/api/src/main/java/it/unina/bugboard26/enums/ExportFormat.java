@@ -0,0 +1,49 @@
+package it.unina.bugboard26.enums;
+
+/**
+ * Formati di export. {@code compressible} distingue i formati testuali, che con gzip si riducono di
+ * molto, da PDF, xlsx e ZIP, che sono gia' compressi.
+ */
+public enum ExportFormat {
+    CSV("csv", "text/csv", true),
+    PDF("pdf", "application/pdf", false),
+    EXCEL("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", false),
+    // Un oggetto JSON per riga, con label e cronologia: per chi sincronizza le issue in un altro sistema
+    NDJSON("ndjson", "application/x-ndjson", true),
+    // Manifest CSV e file allegati in un unico archivio, per consegnare un insieme di issue completo
+    ZIP("zip", "application/zip", false);
+
+    private final String extension;
+    private final String contentType;
+    private final boolean compressible;
+
+    ExportFormat(String extension, String contentType, boolean compressible) {
+        this.extension = extension;
+        this.contentType = contentType;
+        this.compressible = compressible;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public boolean isCompressible() {
+        return compressible;
+    }
+
+    public String getFilename() {
+        return "issues." + extension;
+    }
+
+    public static ExportFormat from(String value) {
+        try {
+            return ExportFormat.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package it.unina.bugboard26.enums;
+
+public enum ExportJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
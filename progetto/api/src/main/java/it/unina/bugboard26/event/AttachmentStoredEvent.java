@@ -0,0 +1,6 @@
+package it.unina.bugboard26.event;
+
+/**
+ * Pubblicato quando un allegato viene registrato; la generazione dell'anteprima parte dopo il commit.
+ */
+public record AttachmentStoredEvent(String sha256, String contentType) {}
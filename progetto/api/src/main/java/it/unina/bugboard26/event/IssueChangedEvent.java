@@ -0,0 +1,6 @@
+package it.unina.bugboard26.event;
+
+/**
+ * Pubblicato da ogni scrittura su una issue; i listener reagiscono dopo il commit.
+ */
+public record IssueChangedEvent(String issueId) {}
@@ -1,13 +1,26 @@
 package it.unina.bugboard26.model;
 
-import jakarta.persistence.Column;
-import jakarta.persistence.Embeddable;
+import jakarta.persistence.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
 import java.time.Instant;
 
-@Embeddable
+@Entity
+@Table(name = "attachments", indexes = {
+        @Index(name = "idx_attachments_issue_id", columnList = "issue_id")
+})
 public class Attachment {
 
-    @Column(nullable = false)
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "issue_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Issue issue;
+
+    @Column(nullable = false, unique = true)
     private String storedFilename;
 
     @Column(nullable = false)
@@ -22,10 +35,16 @@ public class Attachment {
     @Column(nullable = false)
     private Instant uploadedAt;
 
+    // SHA-256 del contenuto: chiave del file in attachment_blobs e ETag. Null solo per i vecchi
+    // allegati il cui file non e' stato trovato durante la migrazione
+    @Column(length = 64)
+    private String sha256;
+
     protected Attachment() {
     }
 
-    public Attachment(String storedFilename, String originalFilename, String contentType, long fileSize) {
+    public Attachment(Issue issue, String storedFilename, String originalFilename, String contentType, long fileSize) {
+        this.issue = issue;
         this.storedFilename = storedFilename;
         this.originalFilename = originalFilename;
         this.contentType = contentType;
@@ -33,6 +52,22 @@ public class Attachment {
         this.uploadedAt = Instant.now();
     }
 
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Issue getIssue() {
+        return issue;
+    }
+
+    public void setIssue(Issue issue) {
+        this.issue = issue;
+    }
+
     public String getStoredFilename() {
         return storedFilename;
     }
@@ -72,4 +107,12 @@ public class Attachment {
     public void setUploadedAt(Instant uploadedAt) {
         this.uploadedAt = uploadedAt;
     }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
 }
@@ -0,0 +1,52 @@
+package it.unina.bugboard26.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Contenuto di un allegato salvato su disco una sola volta. {@code refCount} conta le righe di
+ * {@code attachments} con lo stesso hash: il file si rimuove quando scende a zero.
+ */
+@Entity
+@Table(name = "attachment_blobs")
+public class AttachmentBlob {
+
+    @Id
+    @Column(length = 64)
+    private String sha256;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(nullable = false)
+    private long refCount;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    protected AttachmentBlob() {
+    }
+
+    public AttachmentBlob(String sha256, long size) {
+        this.sha256 = sha256;
+        this.size = size;
+        this.refCount = 1;
+        this.createdAt = Instant.now();
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getRefCount() {
+        return refCount;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -26,8 +26,9 @@ public class Comment {
     @Column(nullable = false, length = 1000)
     private String content;
 
-    @Column(columnDefinition = "TEXT")
-    private String image;
+    // Chiave nell'ImageStore (sha256.estensione), non l'immagine
+    @Column(length = 80)
+    private String imageKey;
 
     @Column(nullable = false, updatable = false)
     private Instant createdAt;
@@ -85,12 +86,12 @@ public class Comment {
         this.content = content;
     }
 
-    public String getImage() {
-        return image;
+    public String getImageKey() {
+        return imageKey;
     }
 
-    public void setImage(String image) {
-        this.image = image;
+    public void setImageKey(String imageKey) {
+        this.imageKey = imageKey;
     }
 
     public Instant getCreatedAt() {
@@ -0,0 +1,34 @@
+package it.unina.bugboard26.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Contatore che cresce a ogni modifica di un insieme di dati, ad esempio le issue: chi tiene copie
+ * derivate da quei dati le confronta con il contatore invece di ricalcolarle.
+ */
+@Entity
+@Table(name = "data_versions")
+public class DataVersion {
+
+    @Id
+    @Column(length = 32)
+    private String name;
+
+    @Column(nullable = false)
+    private long version;
+
+    protected DataVersion() {
+    }
+
+    public DataVersion(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -6,7 +6,10 @@ import org.hibernate.annotations.OnDeleteAction;
 import java.time.Instant;
 
 @Entity
-@Table(name = "history_entries")
+// Le voci si leggono sempre per issue dalla piu' recente: l'indice copre filtro, ordinamento e cursore
+@Table(name = "history_entries", indexes = {
+        @Index(name = "idx_history_issue_timestamp_id", columnList = "issue_id, timestamp, id")
+})
 public class HistoryEntry {
 
     @Id
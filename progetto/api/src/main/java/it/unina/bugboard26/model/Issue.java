@@ -12,7 +12,20 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "issues")
+// Dettaglio issue: utenti e label in una sola query. History e allegati restano lazy
+// (due bag nello stesso fetch join non sono ammesse) e costano una query ciascuno
+@NamedEntityGraph(name = "Issue.detail", attributeNodes = {
+        @NamedAttributeNode("createdBy"),
+        @NamedAttributeNode("assignedTo"),
+        @NamedAttributeNode("archivedBy"),
+        @NamedAttributeNode("deletedBy"),
+        @NamedAttributeNode("labels")
+})
+@Table(name = "issues", indexes = {
+        // Supportano la paginazione keyset su (chiave di ordinamento, id)
+        @Index(name = "idx_issues_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_issues_updated_at_id", columnList = "updated_at, id")
+})
 public class Issue {
 
     @Id
@@ -51,8 +64,9 @@ public class Issue {
 
     private Instant updatedAt;
 
-    @Column(columnDefinition = "TEXT")
-    private String image;
+    // Chiave nell'ImageStore (sha256.estensione), non l'immagine
+    @Column(length = 80)
+    private String imageKey;
 
     @Column(nullable = false)
     private boolean archived = false;
@@ -79,12 +93,15 @@ public class Issue {
     )
     private List<Label> labels = new ArrayList<>();
 
+    // Non si aggiunge da qui nei percorsi di scrittura: inizializzerebbe tutta la history.
+    // Le nuove voci passano da HistoryEntryRepository
     @OneToMany(mappedBy = "issue", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     @OrderBy("timestamp ASC")
     private List<HistoryEntry> history = new ArrayList<>();
 
-    @ElementCollection
-    @CollectionTable(name = "issue_attachments", joinColumns = @JoinColumn(name = "issue_id"))
+    // Come la history: in lettura per il dettaglio, le scritture passano da AttachmentRepository
+    @OneToMany(mappedBy = "issue", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    @OrderBy("uploadedAt ASC")
     private List<Attachment> attachments = new ArrayList<>();
 
     public Issue() {
@@ -184,12 +201,12 @@ public class Issue {
         this.updatedAt = updatedAt;
     }
 
-    public String getImage() {
-        return image;
+    public String getImageKey() {
+        return imageKey;
     }
 
-    public void setImage(String image) {
-        this.image = image;
+    public void setImageKey(String imageKey) {
+        this.imageKey = imageKey;
     }
 
     public boolean isArchived() {
@@ -0,0 +1,100 @@
+package it.unina.bugboard26.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+import java.time.Instant;
+
+/**
+ * Upload a blocchi non ancora completato. I byte ricevuti stanno nel file parziale
+ * dell'{@code AttachmentStore}: l'offset corrente e' la sua dimensione, quindi qui non viene salvato.
+ */
+@Entity
+// La pulizia delle sessioni abbandonate filtra per ultima attivita'
+@Table(name = "upload_sessions", indexes = {
+        @Index(name = "idx_upload_sessions_updated_at", columnList = "updated_at")
+})
+public class UploadSession {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "issue_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Issue issue;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private User user;
+
+    @Column(nullable = false)
+    private String filename;
+
+    @Column(nullable = false)
+    private String contentType;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    protected UploadSession() {
+    }
+
+    public UploadSession(Issue issue, User user, String filename, String contentType, long size) {
+        this.issue = issue;
+        this.user = user;
+        this.filename = filename;
+        this.contentType = contentType;
+        this.size = size;
+        this.createdAt = Instant.now();
+        this.updatedAt = this.createdAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Issue getIssue() {
+        return issue;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
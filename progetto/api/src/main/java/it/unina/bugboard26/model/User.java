@@ -3,10 +3,13 @@ package it.unina.bugboard26.model;
 import it.unina.bugboard26.enums.GlobalRole;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
 import java.time.Instant;
 
 @Entity
 @Table(name = "users")
+// I proxy non inizializzati (autori di history e commenti) si caricano a blocchi con un IN
+@BatchSize(size = 100)
 public class User {
 
     @Id
@@ -0,0 +1,31 @@
+package it.unina.bugboard26.repository;
+
+import it.unina.bugboard26.model.AttachmentBlob;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Il conteggio dei riferimenti si aggiorna con UPDATE atomici: upload o delete concorrenti di un
+ * contenuto gia' presente si serializzano sul lock di riga invece di leggere e riscrivere lo stesso valore.
+ * Finche' la riga non esiste non c'e' nulla da bloccare: due primi upload concorrenti la creano
+ * entrambi con {@link #insertIfAbsent}, e chi perde la corsa ripete l'incremento.
+ */
+@Repository
+public interface AttachmentBlobRepository extends JpaRepository<AttachmentBlob, String>, AttachmentBlobRepositoryCustom {
+
+    @Modifying
+    @Query("UPDATE AttachmentBlob b SET b.refCount = b.refCount + 1 WHERE b.sha256 = :sha256")
+    int incrementRefCount(@Param("sha256") String sha256);
+
+    @Modifying
+    @Query("UPDATE AttachmentBlob b SET b.refCount = b.refCount - 1 WHERE b.sha256 = :sha256")
+    int decrementRefCount(@Param("sha256") String sha256);
+
+    @Modifying
+    @Query("DELETE FROM AttachmentBlob b WHERE b.sha256 = :sha256 AND b.refCount <= 0")
+    int deleteIfUnreferenced(@Param("sha256") String sha256);
+}
@@ -0,0 +1,13 @@
+package it.unina.bugboard26.repository;
+
+public interface AttachmentBlobRepositoryCustom {
+
+    /**
+     * Crea la riga del contenuto con un riferimento, se non esiste gia'. L'INSERT gira dentro un
+     * savepoint: se un upload concorrente ha appena creato la stessa riga la violazione di chiave
+     * annulla solo il savepoint, e la transazione del chiamante resta utilizzabile anche su PostgreSQL.
+     *
+     * @return false se la riga esisteva gia'
+     */
+    boolean insertIfAbsent(String sha256, long size);
+}
@@ -0,0 +1,40 @@
+package it.unina.bugboard26.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+class AttachmentBlobRepositoryCustomImpl implements AttachmentBlobRepositoryCustom {
+
+    private static final String INSERT =
+            "INSERT INTO attachment_blobs (sha256, size, ref_count, created_at) VALUES (?, ?, 1, CURRENT_TIMESTAMP)";
+    // SQLState standard della violazione di vincolo unique, uguale su PostgreSQL e H2
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public boolean insertIfAbsent(String sha256, long size) {
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            Savepoint savepoint = connection.setSavepoint();
+            try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+                insert.setString(1, sha256);
+                insert.setLong(2, size);
+                insert.executeUpdate();
+                connection.releaseSavepoint(savepoint);
+                return true;
+            } catch (SQLException e) {
+                if (!UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                    throw e;
+                }
+                connection.rollback(savepoint);
+                return false;
+            }
+        });
+    }
+}
@@ -0,0 +1,23 @@
+package it.unina.bugboard26.repository;
+
+import it.unina.bugboard26.model.Attachment;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AttachmentRepository extends JpaRepository<Attachment, String> {
+
+    long countByIssueId(String issueId);
+
+    Optional<Attachment> findByIssueIdAndStoredFilename(String issueId, String storedFilename);
+
+    // Allegati di un blocco dell'export, nell'ordine di caricamento
+    @Query("SELECT a FROM Attachment a WHERE a.issue.id IN :issueIds ORDER BY a.uploadedAt, a.id")
+    List<Attachment> findByIssueIds(@Param("issueIds") Collection<String> issueIds);
+}
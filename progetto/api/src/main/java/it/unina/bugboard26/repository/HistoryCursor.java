@@ -0,0 +1,42 @@
+package it.unina.bugboard26.repository;
+
+import it.unina.bugboard26.model.HistoryEntry;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Posizione nella history di una issue: timestamp e id dell'ultima voce restituita.
+ * Viaggia verso il client come token base64url opaco, come {@link IssueCursor}.
+ */
+public record HistoryCursor(Instant timestamp, String id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static HistoryCursor after(HistoryEntry last) {
+        return new HistoryCursor(last.getTimestamp(), last.getId());
+    }
+
+    public String encode() {
+        String raw = timestamp + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException se il token non e' un cursore valido
+     */
+    public static HistoryCursor decode(String token) {
+        String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        String[] parts = raw.split("\\|", 2);
+        if (parts.length != 2 || parts[1].isEmpty()) {
+            throw new IllegalArgumentException("Cursore malformato");
+        }
+        try {
+            return new HistoryCursor(Instant.parse(parts[0]), parts[1]);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Timestamp non valido", e);
+        }
+    }
+}
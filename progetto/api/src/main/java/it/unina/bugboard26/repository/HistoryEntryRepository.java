@@ -0,0 +1,42 @@
+package it.unina.bugboard26.repository;
+
+import it.unina.bugboard26.model.HistoryEntry;
+import it.unina.bugboard26.repository.projection.IssueHistoryView;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface HistoryEntryRepository extends JpaRepository<HistoryEntry, String> {
+
+    // Dalla piu' recente; (timestamp, id) e' un ordine totale, quindi il cursore non salta ne' ripete voci
+    @Query("SELECT h FROM HistoryEntry h LEFT JOIN FETCH h.user WHERE h.issue.id = :issueId " +
+            "ORDER BY h.timestamp DESC, h.id DESC")
+    List<HistoryEntry> findLatest(@Param("issueId") String issueId, Limit limit);
+
+    @Query("SELECT h FROM HistoryEntry h LEFT JOIN FETCH h.user WHERE h.issue.id = :issueId " +
+            "AND (h.timestamp < :timestamp OR (h.timestamp = :timestamp AND h.id < :id)) " +
+            "ORDER BY h.timestamp DESC, h.id DESC")
+    List<HistoryEntry> findBefore(@Param("issueId") String issueId,
+                                  @Param("timestamp") Instant timestamp,
+                                  @Param("id") String id,
+                                  Limit limit);
+
+    // Cronologia di un blocco di issue per l'export, dalla voce piu' vecchia
+    @Query("""
+            SELECT new it.unina.bugboard26.repository.projection.IssueHistoryView(h.issue.id, h.action, h.timestamp, u.name)
+            FROM HistoryEntry h LEFT JOIN h.user u
+            WHERE h.issue.id IN :issueIds
+            ORDER BY h.timestamp, h.id
+            """)
+    List<IssueHistoryView> findByIssueIds(@Param("issueIds") Collection<String> issueIds);
+
+    long countByIssueId(String issueId);
+}
@@ -0,0 +1,97 @@
+package it.unina.bugboard26.repository;
+
+import it.unina.bugboard26.enums.IssuePriority;
+import it.unina.bugboard26.repository.projection.IssueSummaryView;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Posizione nella paginazione keyset: chiave di ordinamento, direzione, valore della chiave
+ * e id dell'ultima riga restituita. Viaggia verso il client come token base64url opaco.
+ */
+public record IssueCursor(SortKey sortKey, boolean ascending, String value, String id) {
+
+    public enum SortKey {
+        CREATED_AT("createdAt"),
+        UPDATED_AT("updatedAt"),
+        PRIORITY("priority");
+
+        private final String field;
+
+        SortKey(String field) {
+            this.field = field;
+        }
+
+        public String field() {
+            return field;
+        }
+
+        public static SortKey fromField(String field) {
+            for (SortKey key : values()) {
+                if (key.field.equals(field)) {
+                    return key;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final String SEPARATOR = "|";
+
+    public static IssueCursor after(SortKey sortKey, boolean ascending, IssueSummaryView last) {
+        String value = switch (sortKey) {
+            case CREATED_AT -> last.createdAt().toString();
+            case UPDATED_AT -> last.updatedAt().toString();
+            case PRIORITY -> String.valueOf(priorityRank(last.priority()));
+        };
+        return new IssueCursor(sortKey, ascending, value, last.id());
+    }
+
+    // Ordine semantico BASSA < MEDIA < ALTA < CRITICA; le issue senza priorita' vengono prima
+    public static int priorityRank(IssuePriority priority) {
+        return priority == null ? 0 : priority.ordinal() + 1;
+    }
+
+    public Instant instantValue() {
+        return Instant.parse(value);
+    }
+
+    public int rankValue() {
+        return Integer.parseInt(value);
+    }
+
+    public String encode() {
+        String raw = sortKey.name() + SEPARATOR + (ascending ? "ASC" : "DESC") + SEPARATOR + value + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException se il token non e' un cursore valido
+     */
+    public static IssueCursor decode(String token) {
+        String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        String[] parts = raw.split("\\|", 4);
+        if (parts.length != 4 || parts[3].isEmpty()) {
+            throw new IllegalArgumentException("Cursore malformato");
+        }
+        SortKey sortKey = SortKey.valueOf(parts[0]);
+        if (!parts[1].equals("ASC") && !parts[1].equals("DESC")) {
+            throw new IllegalArgumentException("Direzione non valida");
+        }
+        IssueCursor cursor = new IssueCursor(sortKey, parts[1].equals("ASC"), parts[2], parts[3]);
+        // Valida subito il valore, cosi' un token manomesso non arriva alla query
+        if (sortKey == SortKey.PRIORITY) {
+            cursor.rankValue();
+        } else {
+            try {
+                cursor.instantValue();
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Timestamp non valido", e);
+            }
+        }
+        return cursor;
+    }
+}
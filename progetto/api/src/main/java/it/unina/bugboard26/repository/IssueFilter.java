@@ -0,0 +1,71 @@
+package it.unina.bugboard26.repository;
+
+import it.unina.bugboard26.enums.IssuePriority;
+import it.unina.bugboard26.enums.IssueStatus;
+import it.unina.bugboard26.enums.IssueType;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Filtri condivisi da lista, export e archiviazione automatica. Ogni campo null
+ * (o lista vuota) significa "nessun vincolo" e non produce alcun predicato SQL.
+ * {@code deleted = TRUE} seleziona solo le issue eliminate, altrimenti solo quelle attive.
+ * {@code ids} restringe ai risultati dell'indice full-text: una lista vuota non seleziona nulla.
+ * {@code updatedSince} e' inclusivo: chi sincronizza riparte dall'ultimo istante gia' visto senza perdere issue.
+ * {@code fuzzy} chiede all'indice la ricerca approssimata per trigrammi invece di quella per parole.
+ */
+public record IssueFilter(
+        List<IssueType> types,
+        List<IssueStatus> statuses,
+        List<IssuePriority> priorities,
+        String assignedToId,
+        Boolean archived,
+        String search,
+        Boolean deleted,
+        Instant updatedBefore,
+        Instant updatedSince,
+        Collection<String> ids,
+        boolean fuzzy
+) {
+    public static IssueFilter of(List<IssueType> types,
+                                 List<IssueStatus> statuses,
+                                 List<IssuePriority> priorities,
+                                 String assignedToId,
+                                 Boolean archived,
+                                 String search,
+                                 Boolean deleted) {
+        return new IssueFilter(types, statuses, priorities, assignedToId, archived, search, deleted, null, null, null, false);
+    }
+
+    public static IssueFilter none() {
+        return of(null, null, null, null, null, null, null);
+    }
+
+    public IssueFilter withDeleted(Boolean deleted) {
+        return new IssueFilter(types, statuses, priorities, assignedToId, archived, search, deleted, updatedBefore, updatedSince, ids, fuzzy);
+    }
+
+    public IssueFilter withUpdatedBefore(Instant updatedBefore) {
+        return new IssueFilter(types, statuses, priorities, assignedToId, archived, search, deleted, updatedBefore, updatedSince, ids, fuzzy);
+    }
+
+    public IssueFilter withUpdatedSince(Instant updatedSince) {
+        return new IssueFilter(types, statuses, priorities, assignedToId, archived, search, deleted, updatedBefore, updatedSince, ids, fuzzy);
+    }
+
+    public IssueFilter withFuzzy(boolean fuzzy) {
+        return new IssueFilter(types, statuses, priorities, assignedToId, archived, search, deleted, updatedBefore, updatedSince, ids, fuzzy);
+    }
+
+    // Le faccette raggruppano su questi campi: i loro filtri si applicano dopo, in memoria
+    public IssueFilter withoutFacets() {
+        return new IssueFilter(null, null, null, assignedToId, null, search, deleted, updatedBefore, updatedSince, ids, fuzzy);
+    }
+
+    // La ricerca testuale e' gia' stata risolta dall'indice: il LIKE non serve piu'
+    public IssueFilter withSearchHits(Collection<String> ids) {
+        return new IssueFilter(types, statuses, priorities, assignedToId, archived, null, deleted, updatedBefore, updatedSince, ids, fuzzy);
+    }
+}
@@ -1,69 +1,45 @@
 package it.unina.bugboard26.repository;
 
 import it.unina.bugboard26.model.Issue;
-import it.unina.bugboard26.enums.IssuePriority;
-import it.unina.bugboard26.enums.IssueStatus;
-import it.unina.bugboard26.enums.IssueType;
+import it.unina.bugboard26.repository.projection.IssueLabelView;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface IssueRepository extends JpaRepository<Issue, String> {
+public interface IssueRepository extends JpaRepository<Issue, String>, JpaSpecificationExecutor<Issue>,
+        IssueRepositoryCustom {
 
     @Query("""
-            SELECT i FROM Issue i
-            WHERE (:types IS NULL OR i.type IN :types)
-              AND (:statuses IS NULL OR i.status IN :statuses)
-              AND (:priorities IS NULL OR i.priority IN :priorities)
-              AND (:assignedToId IS NULL OR i.assignedTo.id = :assignedToId)
-              AND (:archived IS NULL OR i.archived = :archived)
-              AND (:search IS NULL
-                   OR LOWER(CAST(i.title AS STRING)) LIKE LOWER(CONCAT('%', CAST(:search AS STRING), '%'))
-                   OR LOWER(CAST(i.description AS STRING)) LIKE LOWER(CONCAT('%', CAST(:search AS STRING), '%')))
-              AND ((:deleted = TRUE AND i.deletedAt IS NOT NULL)
-                   OR ((:deleted IS NULL OR :deleted = FALSE) AND i.deletedAt IS NULL))
+            SELECT new it.unina.bugboard26.repository.projection.IssueLabelView(i.id, l.name)
+            FROM Issue i JOIN i.labels l
+            WHERE i.id IN :issueIds
+            ORDER BY l.name
             """)
-    Page<Issue> findFiltered(
-            @Param("types") List<IssueType> types,
-            @Param("statuses") List<IssueStatus> statuses,
-            @Param("priorities") List<IssuePriority> priorities,
-            @Param("assignedToId") String assignedToId,
-            @Param("archived") Boolean archived,
-            @Param("search") String search,
-            @Param("deleted") Boolean deleted,
-            Pageable pageable
-    );
+    List<IssueLabelView> findLabelNamesByIssueIds(@Param("issueIds") Collection<String> issueIds);
 
-    @Query("""
-            SELECT i FROM Issue i
-            WHERE (:types IS NULL OR i.type IN :types)
-              AND (:statuses IS NULL OR i.status IN :statuses)
-              AND (:priorities IS NULL OR i.priority IN :priorities)
-              AND (:assignedToId IS NULL OR i.assignedTo.id = :assignedToId)
-              AND (:archived IS NULL OR i.archived = :archived)
-              AND (:search IS NULL
-                   OR LOWER(CAST(i.title AS STRING)) LIKE LOWER(CONCAT('%', CAST(:search AS STRING), '%'))
-                   OR LOWER(CAST(i.description AS STRING)) LIKE LOWER(CONCAT('%', CAST(:search AS STRING), '%')))
-              AND i.deletedAt IS NULL
-            ORDER BY i.createdAt DESC
-            """)
-    List<Issue> findFilteredAll(
-            @Param("types") List<IssueType> types,
-            @Param("statuses") List<IssueStatus> statuses,
-            @Param("priorities") List<IssuePriority> priorities,
-            @Param("assignedToId") String assignedToId,
-            @Param("archived") Boolean archived,
-            @Param("search") String search
-    );
+    @EntityGraph("Issue.detail")
+    Optional<Issue> findDetailById(String id);
+
+    // Scansione a blocchi senza COUNT(*), usata dalla ricostruzione dell'indice di ricerca
+    Slice<Issue> findAllBy(Pageable pageable);
+
+    default List<Issue> findFilteredAll(IssueFilter filter) {
+        return findAll(IssueSpecifications.matching(filter), Sort.by(Sort.Direction.DESC, "createdAt"));
+    }
 
-    @Query("SELECT i FROM Issue i WHERE i.status = it.unina.bugboard26.enums.IssueStatus.RISOLTA " +
-           "AND i.archived = false AND i.deletedAt IS NULL AND i.updatedAt < :cutoff")
-    List<Issue> findResolvedBeforeCutoff(@Param("cutoff") Instant cutoff);
+    default List<Issue> findResolvedBeforeCutoff(Instant cutoff) {
+        return findAll(IssueSpecifications.resolvedBefore(cutoff));
+    }
 }
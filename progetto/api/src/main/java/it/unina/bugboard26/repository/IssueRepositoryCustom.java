@@ -0,0 +1,54 @@
+package it.unina.bugboard26.repository;
+
+import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.repository.projection.IssueFacetRow;
+import it.unina.bugboard26.repository.projection.IssueSummaryView;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface IssueRepositoryCustom {
+
+    /**
+     * Pagina a offset della proiezione leggera, con conteggio totale.
+     */
+    Page<IssueSummaryView> findSummaries(IssueFilter filter, Pageable pageable);
+
+    /**
+     * Pagina a offset senza la COUNT(*): una riga in piu' dice se esiste la pagina successiva.
+     */
+    Slice<IssueSummaryView> findSummarySlice(IssueFilter filter, Pageable pageable);
+
+    /**
+     * Pagina keyset: restituisce al massimo {@code limit} righe successive ad {@code after}
+     * (prima pagina se null), ordinate per {@code sortKey} e poi per id.
+     */
+    List<IssueSummaryView> findSummariesAfter(IssueFilter filter,
+                                              IssueCursor.SortKey sortKey,
+                                              boolean ascending,
+                                              IssueCursor after,
+                                              int limit);
+
+    /**
+     * Solo gli id che soddisfano il filtro, senza ordinamento: serve a intersecare
+     * i risultati della ricerca full-text prima di ordinarli per rilevanza.
+     */
+    List<String> findIds(IssueFilter filter);
+
+    /**
+     * Conteggi raggruppati per stato, priorita', tipo e archiviazione in una sola query:
+     * al massimo una riga per combinazione, da cui si ricavano tutte le faccette.
+     */
+    List<IssueFacetRow> countFacets(IssueFilter filter);
+
+    /**
+     * Tutte le issue del filtro, dalla piu' recente, con l'autore gia' caricato, lette dal cursore
+     * del driver {@code fetchSize} righe alla volta. Va consumato e chiuso dentro una transazione, e
+     * le entita' lette restano nel contesto di persistenza finche' chi consuma non lo svuota.
+     */
+    Stream<Issue> streamFiltered(IssueFilter filter, int fetchSize);
+}
@@ -0,0 +1,183 @@
+package it.unina.bugboard26.repository;
+
+import it.unina.bugboard26.enums.IssuePriority;
+import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.repository.projection.IssueFacetRow;
+import it.unina.bugboard26.repository.projection.IssueSummaryView;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.*;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+class IssueRepositoryCustomImpl implements IssueRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<IssueSummaryView> findSummariesAfter(IssueFilter filter,
+                                                     IssueCursor.SortKey sortKey,
+                                                     boolean ascending,
+                                                     IssueCursor after,
+                                                     int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<IssueSummaryView> query = cb.createQuery(IssueSummaryView.class);
+        Root<Issue> issue = query.from(Issue.class);
+        query.select(summaryOf(cb, issue));
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(IssueSpecifications.matching(filter).toPredicate(issue, query, cb));
+        Path<String> id = issue.get("id");
+
+        Expression<?> key;
+        if (sortKey == IssueCursor.SortKey.PRIORITY) {
+            Expression<Integer> rank = priorityRank(cb, issue);
+            key = rank;
+            if (after != null) {
+                predicates.add(afterKey(cb, rank, after.rankValue(), id, after.id(), ascending));
+            }
+        } else {
+            Path<Instant> instant = issue.get(sortKey.field());
+            key = instant;
+            if (after != null) {
+                predicates.add(afterKey(cb, instant, after.instantValue(), id, after.id(), ascending));
+            }
+        }
+
+        query.where(predicates.toArray(Predicate[]::new));
+        query.orderBy(ascending ? cb.asc(key) : cb.desc(key), ascending ? cb.asc(id) : cb.desc(id));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public Page<IssueSummaryView> findSummaries(IssueFilter filter, Pageable pageable) {
+        List<IssueSummaryView> content = summaryQuery(filter, pageable)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(filter));
+    }
+
+    @Override
+    public Slice<IssueSummaryView> findSummarySlice(IssueFilter filter, Pageable pageable) {
+        List<IssueSummaryView> rows = summaryQuery(filter, pageable)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        List<IssueSummaryView> content = hasNext ? rows.subList(0, pageable.getPageSize()) : rows;
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    @Override
+    public List<String> findIds(IssueFilter filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<String> query = cb.createQuery(String.class);
+        Root<Issue> issue = query.from(Issue.class);
+        query.select(issue.get("id"));
+        query.where(IssueSpecifications.matching(filter).toPredicate(issue, query, cb));
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    @Override
+    public Stream<Issue> streamFiltered(IssueFilter filter, int fetchSize) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Issue> query = cb.createQuery(Issue.class);
+        Root<Issue> issue = query.from(Issue.class);
+        issue.fetch("createdBy");
+        // L'export NDJSON scrive anche l'assegnatario: caricarlo a parte sarebbe una query per utente e blocco
+        issue.fetch("assignedTo", JoinType.LEFT);
+        query.where(IssueSpecifications.matching(filter).toPredicate(issue, query, cb));
+        query.orderBy(cb.desc(issue.get("createdAt")), cb.desc(issue.get("id")));
+        // Con PostgreSQL il fetch size vale solo in transazione: fuori il driver legge tutto il risultato
+        return entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    @Override
+    public List<IssueFacetRow> countFacets(IssueFilter filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<IssueFacetRow> query = cb.createQuery(IssueFacetRow.class);
+        Root<Issue> issue = query.from(Issue.class);
+        List<Expression<?>> dimensions = List.of(
+                issue.get("status"), issue.get("priority"), issue.get("type"), issue.get("archived"));
+        query.select(cb.construct(IssueFacetRow.class,
+                dimensions.get(0), dimensions.get(1), dimensions.get(2), dimensions.get(3), cb.count(issue)));
+        query.where(IssueSpecifications.matching(filter).toPredicate(issue, query, cb));
+        query.groupBy(dimensions);
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    private TypedQuery<IssueSummaryView> summaryQuery(IssueFilter filter, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<IssueSummaryView> query = cb.createQuery(IssueSummaryView.class);
+        Root<Issue> issue = query.from(Issue.class);
+        query.select(summaryOf(cb, issue));
+        query.where(IssueSpecifications.matching(filter).toPredicate(issue, query, cb));
+        query.orderBy(QueryUtils.toOrders(pageable.getSort(), issue, cb));
+        return entityManager.createQuery(query);
+    }
+
+    private long count(IssueFilter filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Issue> issue = query.from(Issue.class);
+        query.select(cb.count(issue));
+        query.where(IssueSpecifications.matching(filter).toPredicate(issue, query, cb));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private CompoundSelection<IssueSummaryView> summaryOf(CriteriaBuilder cb, Root<Issue> issue) {
+        Join<Issue, User> createdBy = issue.join("createdBy");
+        Join<Issue, User> assignedTo = issue.join("assignedTo", JoinType.LEFT);
+        Expression<Boolean> hasImage = cb.<Boolean>selectCase()
+                .when(cb.isNull(issue.get("imageKey")), cb.literal(false))
+                .otherwise(cb.literal(true));
+        return cb.construct(IssueSummaryView.class,
+                issue.get("id"), issue.get("title"), issue.get("type"),
+                cb.substring(issue.get("description"), 1, 300),
+                issue.get("priority"), issue.get("status"),
+                issue.get("createdAt"), issue.get("updatedAt"),
+                issue.get("archived"), issue.get("deletedAt"), hasImage,
+                createdBy.get("id"), createdBy.get("email"), createdBy.get("name"),
+                createdBy.get("role"), createdBy.get("createdAt"),
+                assignedTo.get("id"), assignedTo.get("email"), assignedTo.get("name"),
+                assignedTo.get("role"), assignedTo.get("createdAt"));
+    }
+
+    private Expression<Integer> priorityRank(CriteriaBuilder cb, Root<Issue> issue) {
+        return cb.<IssuePriority, Integer>selectCase(issue.get("priority"))
+                .when(IssuePriority.BASSA, IssueCursor.priorityRank(IssuePriority.BASSA))
+                .when(IssuePriority.MEDIA, IssueCursor.priorityRank(IssuePriority.MEDIA))
+                .when(IssuePriority.ALTA, IssueCursor.priorityRank(IssuePriority.ALTA))
+                .when(IssuePriority.CRITICA, IssueCursor.priorityRank(IssuePriority.CRITICA))
+                .otherwise(IssueCursor.priorityRank(null));
+    }
+
+    // (key, id) > (value, lastId) in ordine crescente, < in ordine decrescente
+    private <Y extends Comparable<? super Y>> Predicate afterKey(CriteriaBuilder cb,
+                                                                 Expression<? extends Y> key, Y value,
+                                                                 Path<String> id, String lastId,
+                                                                 boolean ascending) {
+        Predicate beyond = ascending ? cb.greaterThan(key, value) : cb.lessThan(key, value);
+        Predicate tie = cb.and(cb.equal(key, value),
+                ascending ? cb.greaterThan(id, lastId) : cb.lessThan(id, lastId));
+        return cb.or(beyond, tie);
+    }
+}
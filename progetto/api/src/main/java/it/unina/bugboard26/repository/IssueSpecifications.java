@@ -0,0 +1,86 @@
+package it.unina.bugboard26.repository;
+
+import it.unina.bugboard26.enums.IssueStatus;
+import it.unina.bugboard26.model.Issue;
+
+import jakarta.persistence.criteria.Predicate;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Costruisce la WHERE delle query sulle issue aggiungendo solo i predicati dei filtri presenti,
+ * cosi' il planner riceve una query specifica per ogni combinazione invece del pattern
+ * {@code (:x IS NULL OR ...)} che impedisce l'uso degli indici.
+ */
+public final class IssueSpecifications {
+
+    /**
+     * Id per parametro array del filtro sui risultati della ricerca: sotto il limite di 65536
+     * elementi per array di H2, mentre su PostgreSQL bastano pochi parametri anche con tutto il
+     * catalogo tra i risultati.
+     */
+    static final int IDS_PER_ARRAY = 50_000;
+
+    private IssueSpecifications() {
+    }
+
+    public static Specification<Issue> matching(IssueFilter filter) {
+        return (issue, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (filter.types() != null && !filter.types().isEmpty()) {
+                predicates.add(issue.get("type").in(filter.types()));
+            }
+            if (filter.statuses() != null && !filter.statuses().isEmpty()) {
+                predicates.add(issue.get("status").in(filter.statuses()));
+            }
+            if (filter.priorities() != null && !filter.priorities().isEmpty()) {
+                predicates.add(issue.get("priority").in(filter.priorities()));
+            }
+            if (filter.assignedToId() != null) {
+                predicates.add(cb.equal(issue.get("assignedTo").get("id"), filter.assignedToId()));
+            }
+            if (filter.archived() != null) {
+                predicates.add(cb.equal(issue.get("archived"), filter.archived()));
+            }
+            if (filter.search() != null && !filter.search().isBlank()) {
+                String pattern = "%" + filter.search().toLowerCase() + "%";
+                predicates.add(cb.or(
+                        cb.like(cb.lower(issue.get("title")), pattern),
+                        cb.like(cb.lower(issue.get("description")), pattern)));
+            }
+            if (filter.ids() != null) {
+                // Parametri array invece di un IN con un parametro per id: i risultati della ricerca
+                // full-text possono essere centinaia di migliaia
+                List<String> ids = List.copyOf(filter.ids());
+                List<Predicate> chunks = new ArrayList<>();
+                for (int from = 0; from < ids.size(); from += IDS_PER_ARRAY) {
+                    String[] chunk = ids.subList(from, Math.min(ids.size(), from + IDS_PER_ARRAY))
+                            .toArray(String[]::new);
+                    chunks.add(cb.isTrue(cb.function(SqlFunctions.IN_ARRAY, Boolean.class, issue.get("id"),
+                            ((HibernateCriteriaBuilder) cb).value(chunk))));
+                }
+                predicates.add(cb.or(chunks.toArray(Predicate[]::new)));
+            }
+            if (filter.updatedBefore() != null) {
+                predicates.add(cb.lessThan(issue.get("updatedAt"), filter.updatedBefore()));
+            }
+            if (filter.updatedSince() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(issue.get("updatedAt"), filter.updatedSince()));
+            }
+            predicates.add(Boolean.TRUE.equals(filter.deleted())
+                    ? cb.isNotNull(issue.get("deletedAt"))
+                    : cb.isNull(issue.get("deletedAt")));
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    // Issue risolte, non archiviate e non eliminate, ferme da prima di cutoff
+    public static Specification<Issue> resolvedBefore(Instant cutoff) {
+        return matching(new IssueFilter(null, List.of(IssueStatus.RISOLTA), null, null,
+                false, null, null, cutoff, null, null, false));
+    }
+}
@@ -0,0 +1,30 @@
+package it.unina.bugboard26.repository;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Funzioni SQL aggiuntive per le query Criteria, registrate in Hibernate tramite
+ * {@code META-INF/services/org.hibernate.boot.model.FunctionContributor}.
+ */
+public class SqlFunctions implements FunctionContributor {
+
+    /**
+     * {@code in_array(valore, array)}: vero se l'array contiene il valore. L'array viaggia come un
+     * solo parametro, quindi la query resta uguale e sotto il limite di parametri del driver per
+     * qualunque numero di elementi. Diventa {@code valore = any(array)}, che PostgreSQL risolve con
+     * l'indice della colonna; l'{@code array_contains} di Hibernate usa invece {@code @>}, che non lo usa.
+     */
+    public static final String IN_ARRAY = "in_array";
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        functionContributions.getFunctionRegistry()
+                .patternDescriptorBuilder(IN_ARRAY, "(?1 = any(?2))")
+                .setExactArgumentCount(2)
+                .setInvariantType(functionContributions.getTypeConfiguration()
+                        .getBasicTypeRegistry().resolve(StandardBasicTypes.BOOLEAN))
+                .register();
+    }
+}
@@ -0,0 +1,29 @@
+package it.unina.bugboard26.repository;
+
+import it.unina.bugboard26.model.UploadSession;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    Optional<UploadSession> findByIdAndIssueIdAndUserEmail(String id, String issueId, String email);
+
+    // Chiamato dopo ogni blocco, fuori da transazioni di servizio: lo stream non deve tenere una connessione
+    @Transactional
+    @Modifying
+    @Query("UPDATE UploadSession s SET s.updatedAt = :now WHERE s.id = :id")
+    void touch(@Param("id") String id, @Param("now") Instant now);
+
+    @Query("SELECT s.id FROM UploadSession s WHERE s.updatedAt < :cutoff")
+    List<String> findIdsInactiveSince(@Param("cutoff") Instant cutoff);
+}
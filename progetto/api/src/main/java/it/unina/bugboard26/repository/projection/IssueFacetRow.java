@@ -0,0 +1,16 @@
+package it.unina.bugboard26.repository.projection;
+
+import it.unina.bugboard26.enums.IssuePriority;
+import it.unina.bugboard26.enums.IssueStatus;
+import it.unina.bugboard26.enums.IssueType;
+
+/**
+ * Una riga del GROUP BY su stato, priorita', tipo e archiviazione: numero di issue con quella combinazione.
+ */
+public record IssueFacetRow(
+        IssueStatus status,
+        IssuePriority priority,
+        IssueType type,
+        boolean archived,
+        long count
+) {}
@@ -0,0 +1,9 @@
+package it.unina.bugboard26.repository.projection;
+
+import java.time.Instant;
+
+/**
+ * Voce di cronologia con l'issue a cui appartiene, usata per caricare la cronologia di un blocco di issue
+ * in una sola query. {@code userName} e' null se l'utente e' stato eliminato.
+ */
+public record IssueHistoryView(String issueId, String action, Instant timestamp, String userName) {}
@@ -0,0 +1,6 @@
+package it.unina.bugboard26.repository.projection;
+
+/**
+ * Coppia (issue, nome label) usata per caricare le label di una pagina di issue in una sola query.
+ */
+public record IssueLabelView(String issueId, String name) {}
@@ -0,0 +1,37 @@
+package it.unina.bugboard26.repository.projection;
+
+import it.unina.bugboard26.enums.GlobalRole;
+import it.unina.bugboard26.enums.IssuePriority;
+import it.unina.bugboard26.enums.IssueStatus;
+import it.unina.bugboard26.enums.IssueType;
+
+import java.time.Instant;
+
+/**
+ * Riga piatta letta da {@code IssueRepositoryCustom.findSummaries} (e dalle varianti
+ * {@code findSummarySlice} e {@code findSummariesAfter}): solo le colonne
+ * mostrate nella board, senza history, allegati, label e immagine inline.
+ */
+public record IssueSummaryView(
+        String id,
+        String title,
+        IssueType type,
+        String description,
+        IssuePriority priority,
+        IssueStatus status,
+        Instant createdAt,
+        Instant updatedAt,
+        boolean archived,
+        Instant deletedAt,
+        boolean hasImage,
+        String createdById,
+        String createdByEmail,
+        String createdByName,
+        GlobalRole createdByRole,
+        Instant createdByCreatedAt,
+        String assignedToId,
+        String assignedToEmail,
+        String assignedToName,
+        GlobalRole assignedToRole,
+        Instant assignedToCreatedAt
+) {}
@@ -0,0 +1,64 @@
+package it.unina.bugboard26.search;
+
+import it.unina.bugboard26.event.IssueChangedEvent;
+import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.repository.IssueRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Tiene l'indice full-text allineato al database: aggiorna il documento della issue
+ * dopo il commit di ogni scrittura e ricostruisce l'indice da zero quando richiesto.
+ */
+@Component
+public class IssueIndexer {
+
+    private static final Logger log = LoggerFactory.getLogger(IssueIndexer.class);
+    private static final int BATCH_SIZE = 500;
+
+    private final IssueRepository issueRepository;
+    private final IssueSearchIndex searchIndex;
+
+    public IssueIndexer(IssueRepository issueRepository, IssueSearchIndex searchIndex) {
+        this.issueRepository = issueRepository;
+        this.searchIndex = searchIndex;
+    }
+
+    // Un errore dell'indice non deve far fallire la richiesta: il dato e' gia' salvato
+    // e la prossima ricostruzione riallinea l'indice
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onIssueChanged(IssueChangedEvent event) {
+        try {
+            Optional<Issue> issue = issueRepository.findById(event.issueId());
+            if (issue.isPresent()) {
+                searchIndex.index(issue.get());
+            } else {
+                searchIndex.remove(event.issueId());
+            }
+        } catch (IOException e) {
+            log.warn("Aggiornamento dell'indice di ricerca fallito per l'issue {}: {}", event.issueId(), e.getMessage());
+        }
+    }
+
+    public long reindexAll() throws IOException {
+        // Blocchi ordinati per id letti ognuno nella propria transazione: la memoria resta costante
+        Stream<Issue> issues = IntStream.iterate(0, page -> page + 1)
+                .mapToObj(page -> issueRepository.findAllBy(PageRequest.of(page, BATCH_SIZE, Sort.by("id"))))
+                .takeWhile(Slice::hasContent)
+                .flatMap(Slice::stream);
+        long count = searchIndex.rebuild(issues);
+        log.info("Indice di ricerca ricostruito: {} issue", count);
+        return count;
+    }
+}
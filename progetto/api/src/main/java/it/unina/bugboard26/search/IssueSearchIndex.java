@@ -0,0 +1,505 @@
+package it.unina.bugboard26.search;
+
+import it.unina.bugboard26.model.Issue;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.custom.CustomAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.highlight.Highlighter;
+import org.apache.lucene.search.highlight.InvalidTokenOffsetsException;
+import org.apache.lucene.search.highlight.QueryScorer;
+import org.apache.lucene.search.highlight.SimpleFragmenter;
+import org.apache.lucene.search.highlight.SimpleHTMLEncoder;
+import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Indice invertito Lucene su titolo e descrizione delle issue, salvato in
+ * {@code bugboard.search.index-dir}. E' una copia derivata del database:
+ * puo' essere sempre ricostruito con {@link #rebuild(Stream)}.
+ * Oltre alle parole indicizza i trigrammi del testo, usati dalla ricerca approssimata.
+ */
+@Component
+public class IssueSearchIndex {
+
+    static final String FIELD_ID = "id";
+    static final String FIELD_TITLE = "title";
+    static final String FIELD_DESCRIPTION = "description";
+    static final String FIELD_TRIGRAMS = "trigrams";
+
+    // Da incrementare quando cambiano campi o analyzer: l'indice esistente va ricostruito
+    static final String SCHEMA_VERSION = "3";
+    private static final String SCHEMA_KEY = "schema";
+    private static final int MAX_QUERY_TRIGRAMS = 64;
+    // Blocchi della classifica filtrata: si parte dalla pagina e si raddoppia fino al massimo
+    private static final int MIN_PAGE_BATCH = 100;
+    private static final int MAX_PAGE_BATCH = 10_000;
+
+    private static final int MAX_QUERY_TERMS = 10;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int FRAGMENT_SIZE = 160;
+
+    private final Analyzer analyzer;
+    private final Analyzer trigramAnalyzer;
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final float fuzzyThreshold;
+
+    public IssueSearchIndex(@Value("${bugboard.search.index-dir:search-index}") String indexDir,
+                            @Value("${bugboard.search.fuzzy-threshold:0.4}") float fuzzyThreshold) throws IOException {
+        this.fuzzyThreshold = fuzzyThreshold;
+        Path path = Paths.get(indexDir);
+        Files.createDirectories(path);
+        // Minuscole e rimozione degli accenti: "Perché" e "perche" trovano gli stessi documenti
+        this.analyzer = CustomAnalyzer.builder()
+                .withTokenizer("standard")
+                .addTokenFilter("lowercase")
+                .addTokenFilter("asciiFolding")
+                .build();
+        // Stessa normalizzazione, poi trigrammi; le parole sotto i 3 caratteri restano intere
+        this.trigramAnalyzer = CustomAnalyzer.builder()
+                .withTokenizer("standard")
+                .addTokenFilter("lowercase")
+                .addTokenFilter("asciiFolding")
+                .addTokenFilter("nGram", "minGramSize", "3", "maxGramSize", "3", "preserveOriginal", "false")
+                .build();
+        this.directory = FSDirectory.open(path);
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(
+                new PerFieldAnalyzerWrapper(analyzer, Map.of(FIELD_TRIGRAMS, trigramAnalyzer)))
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        if (writer.getDocStats().maxDoc == 0) {
+            markSchemaCurrent();
+            writer.commit();
+        }
+        this.searcherManager = new SearcherManager(writer, null);
+    }
+
+    public int size() {
+        return writer.getDocStats().numDocs;
+    }
+
+    /**
+     * True se l'indice e' stato scritto con campi o analyzer diversi da quelli attuali.
+     */
+    public boolean isStale() {
+        Iterable<Map.Entry<String, String>> commitData = writer.getLiveCommitData();
+        if (commitData != null) {
+            for (Map.Entry<String, String> entry : commitData) {
+                if (entry.getKey().equals(SCHEMA_KEY)) {
+                    return !entry.getValue().equals(SCHEMA_VERSION);
+                }
+            }
+        }
+        return true;
+    }
+
+    public void index(Issue issue) throws IOException {
+        writer.updateDocument(new Term(FIELD_ID, issue.getId()), toDocument(issue));
+        commitAndRefresh();
+    }
+
+    public void remove(String issueId) throws IOException {
+        writer.deleteDocuments(new Term(FIELD_ID, issueId));
+        commitAndRefresh();
+    }
+
+    /**
+     * Sostituisce l'intero contenuto dell'indice con le issue fornite, con un solo commit finale.
+     */
+    public long rebuild(Stream<Issue> issues) throws IOException {
+        writer.deleteAll();
+        long count = 0;
+        for (Iterator<Issue> it = issues.iterator(); it.hasNext(); ) {
+            writer.addDocument(toDocument(it.next()));
+            count++;
+        }
+        markSchemaCurrent();
+        commitAndRefresh();
+        return count;
+    }
+
+    /**
+     * Ogni parola cercata deve comparire nel titolo o nella descrizione, per intero o come prefisso.
+     * Le corrispondenze esatte pesano piu' dei prefissi e il titolo piu' della descrizione.
+     *
+     * @return al massimo {@code limit} risultati in ordine di rilevanza decrescente
+     */
+    public List<SearchHit> search(String text, int limit) throws IOException {
+        return search(text, false, null, limit);
+    }
+
+    /**
+     * Ricerca tollerante agli errori di battitura: confronta i trigrammi del testo cercato con
+     * quelli delle issue. Lo score e' la similarita' in [0, 1], cioe' la frazione di trigrammi
+     * cercati presenti nella issue; sotto {@code bugboard.search.fuzzy-threshold} la issue e' scartata.
+     */
+    public List<SearchHit> searchFuzzy(String text, int limit) throws IOException {
+        return search(text, true, null, limit);
+    }
+
+    /**
+     * I primi {@code limit} risultati per rilevanza tra le sole issue {@code within} (tutte se null):
+     * i filtri strutturati restano sul database, che fornisce gli id ammessi, e la classifica
+     * si calcola solo su quelli.
+     */
+    public List<SearchHit> search(String text, boolean fuzzy, Collection<String> within, int limit) throws IOException {
+        MatchQuery match = fuzzy ? fuzzyQuery(text) : textQuery(text);
+        if (match == null || limit <= 0 || (within != null && within.isEmpty())) {
+            return List.of();
+        }
+        Query query = match.query();
+        if (within != null) {
+            query = new BooleanQuery.Builder()
+                    .add(query, BooleanClause.Occur.MUST)
+                    .add(idsQuery(within), BooleanClause.Occur.FILTER)
+                    .build();
+        }
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs top = searcher.search(query, limit);
+            return toHits(searcher, top.scoreDocs, match.scoreScale());
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Una pagina della classifica ristretta alle issue che {@code accepted} ammette: salta le prime
+     * {@code offset} ammesse e restituisce le {@code limit} successive. I risultati si scorrono per
+     * rilevanza a blocchi crescenti e {@code accepted} riceve un blocco di id alla volta,
+     * cosi' i filtri strutturati restano sul database senza elencare in anticipo tutte le issue ammesse.
+     */
+    public List<SearchHit> searchPage(String text, boolean fuzzy, int offset, int limit,
+                                      Function<List<String>, Collection<String>> accepted) throws IOException {
+        MatchQuery match = fuzzy ? fuzzyQuery(text) : textQuery(text);
+        if (match == null || limit <= 0) {
+            return List.of();
+        }
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            List<SearchHit> page = new ArrayList<>(limit);
+            int toSkip = offset;
+            int batch = Math.min(MAX_PAGE_BATCH, Math.max(MIN_PAGE_BATCH, offset + limit));
+            ScoreDoc after = null;
+            while (page.size() < limit) {
+                ScoreDoc[] docs = searcher.searchAfter(after, match.query(), batch).scoreDocs;
+                if (docs.length == 0) {
+                    break;
+                }
+                after = docs[docs.length - 1];
+                List<SearchHit> hits = toHits(searcher, docs, match.scoreScale());
+                Set<String> passing = new HashSet<>(accepted.apply(hits.stream().map(SearchHit::issueId).toList()));
+                for (SearchHit hit : hits) {
+                    if (!passing.contains(hit.issueId())) {
+                        continue;
+                    }
+                    if (toSkip > 0) {
+                        toSkip--;
+                    } else if (page.size() < limit) {
+                        page.add(hit);
+                    }
+                }
+                batch = Math.min(MAX_PAGE_BATCH, batch * 2);
+            }
+            return page;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Id di tutte le issue che corrispondono al testo, senza limite e senza calcolare lo score:
+     * conteggi, faccette ed export devono vedere ogni corrispondenza, non solo le prime in classifica.
+     */
+    public Set<String> matchingIds(String text, boolean fuzzy) throws IOException {
+        MatchQuery match = fuzzy ? fuzzyQuery(text) : textQuery(text);
+        if (match == null) {
+            return Set.of();
+        }
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            return searcher.search(match.query(), new IdCollectorManager());
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    // Query di ricerca con il divisore che riporta lo score nella scala esposta ai client
+    private record MatchQuery(Query query, float scoreScale) {}
+
+    private MatchQuery textQuery(String text) {
+        Query query = buildQuery(text);
+        return query == null ? null : new MatchQuery(query, 1f);
+    }
+
+    // Ogni trigramma vale 1: lo score del documento e' il numero di trigrammi in comune
+    private MatchQuery fuzzyQuery(String text) {
+        Set<String> trigrams = new LinkedHashSet<>(analyze(trigramAnalyzer, text));
+        if (trigrams.isEmpty()) {
+            return null;
+        }
+        List<String> queryTrigrams = List.copyOf(trigrams).subList(0, Math.min(trigrams.size(), MAX_QUERY_TRIGRAMS));
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (String trigram : queryTrigrams) {
+            builder.add(new ConstantScoreQuery(new TermQuery(new Term(FIELD_TRIGRAMS, trigram))), BooleanClause.Occur.SHOULD);
+        }
+        builder.setMinimumNumberShouldMatch(Math.max(1, (int) Math.ceil(queryTrigrams.size() * fuzzyThreshold)));
+        return new MatchQuery(builder.build(), queryTrigrams.size());
+    }
+
+    // Gli id si leggono dai doc values, senza decodificare i campi memorizzati di ogni risultato
+    private static List<SearchHit> toHits(IndexSearcher searcher, ScoreDoc[] scoreDocs, float scoreScale) throws IOException {
+        ScoreDoc[] byDoc = scoreDocs.clone();
+        Arrays.sort(byDoc, Comparator.comparingInt(scoreDoc -> scoreDoc.doc));
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        Map<Integer, String> idsByDoc = new HashMap<>();
+        LeafReaderContext leaf = null;
+        SortedDocValues ids = null;
+        for (ScoreDoc scoreDoc : byDoc) {
+            if (leaf == null || scoreDoc.doc >= leaf.docBase + leaf.reader().maxDoc()) {
+                leaf = leaves.get(ReaderUtil.subIndex(scoreDoc.doc, leaves));
+                ids = DocValues.getSorted(leaf.reader(), FIELD_ID);
+            }
+            idsByDoc.put(scoreDoc.doc, readId(ids, scoreDoc.doc - leaf.docBase));
+        }
+        List<SearchHit> hits = new ArrayList<>(scoreDocs.length);
+        for (ScoreDoc scoreDoc : scoreDocs) {
+            hits.add(new SearchHit(idsByDoc.get(scoreDoc.doc), scoreDoc.score / scoreScale));
+        }
+        return hits;
+    }
+
+    private static String readId(SortedDocValues ids, int doc) throws IOException {
+        if (!ids.advanceExact(doc)) {
+            throw new IOException("Documento senza id nell'indice di ricerca: " + doc);
+        }
+        return ids.lookupOrd(ids.ordValue()).utf8ToString();
+    }
+
+    private static Query idsQuery(Collection<String> issueIds) {
+        return new TermInSetQuery(FIELD_ID, issueIds.stream().map(BytesRef::new).toList());
+    }
+
+    // Raccoglie l'id di ogni documento trovato; ScoreMode.COMPLETE_NO_SCORES evita il calcolo dello score
+    private static final class IdCollectorManager implements CollectorManager<IdCollector, Set<String>> {
+
+        @Override
+        public IdCollector newCollector() {
+            return new IdCollector();
+        }
+
+        @Override
+        public Set<String> reduce(Collection<IdCollector> collectors) {
+            Set<String> ids = new HashSet<>();
+            for (IdCollector collector : collectors) {
+                ids.addAll(collector.ids);
+            }
+            return ids;
+        }
+    }
+
+    private static final class IdCollector extends SimpleCollector {
+
+        private final Set<String> ids = new HashSet<>();
+        private SortedDocValues docValues;
+
+        @Override
+        protected void doSetNextReader(LeafReaderContext context) throws IOException {
+            docValues = DocValues.getSorted(context.reader(), FIELD_ID);
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            ids.add(readId(docValues, doc));
+        }
+
+        @Override
+        public ScoreMode scoreMode() {
+            return ScoreMode.COMPLETE_NO_SCORES;
+        }
+    }
+
+    /**
+     * Estratti HTML-escaped con i termini trovati racchiusi in {@code <mark>}, solo per le issue
+     * indicate: evidenziare costa molto piu' che cercare, quindi si fa sulla pagina mostrata.
+     *
+     * @return issueId -> estratto, senza le issue in cui non c'e' nulla da evidenziare
+     */
+    public Map<String, String> highlight(String text, boolean fuzzy, Collection<String> issueIds) throws IOException {
+        Query highlightQuery = fuzzy ? fuzzyHighlightQuery(text) : buildQuery(text);
+        if (highlightQuery == null || issueIds.isEmpty()) {
+            return Map.of();
+        }
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            if (fuzzy) {
+                // Espande le FuzzyQuery nei termini reali dell'indice una volta sola,
+                // invece di ricostruire l'automa di Levenshtein per ogni documento
+                highlightQuery = searcher.rewrite(highlightQuery);
+            }
+            Highlighter highlighter = new Highlighter(
+                    new SimpleHTMLFormatter("<mark>", "</mark>"), new SimpleHTMLEncoder(), new QueryScorer(highlightQuery));
+            highlighter.setTextFragmenter(new SimpleFragmenter(FRAGMENT_SIZE));
+            TopDocs docs = searcher.search(idsQuery(issueIds), issueIds.size());
+            StoredFields storedFields = searcher.storedFields();
+
+            Map<String, String> highlights = new HashMap<>();
+            for (ScoreDoc scoreDoc : docs.scoreDocs) {
+                Document doc = storedFields.document(scoreDoc.doc);
+                String fragment = highlight(highlighter, doc);
+                if (fragment != null) {
+                    highlights.put(doc.get(FIELD_ID), fragment);
+                }
+            }
+            return highlights;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    // Per l'estratto si evidenziano le parole a distanza di modifica <= 2 da quelle cercate;
+    // la prima lettera deve coincidere, cosi' l'espansione sul dizionario resta economica
+    private Query fuzzyHighlightQuery(String text) {
+        List<String> terms = analyze(analyzer, text);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (String term : terms.subList(0, Math.min(terms.size(), MAX_QUERY_TERMS))) {
+            query.add(new FuzzyQuery(new Term(FIELD_TITLE, term), FuzzyQuery.defaultMaxEdits, 1), BooleanClause.Occur.SHOULD)
+                    .add(new FuzzyQuery(new Term(FIELD_DESCRIPTION, term), FuzzyQuery.defaultMaxEdits, 1), BooleanClause.Occur.SHOULD);
+        }
+        return query.build();
+    }
+
+    Query buildQuery(String text) {
+        List<String> terms = analyze(analyzer, text);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (String term : terms.subList(0, Math.min(terms.size(), MAX_QUERY_TERMS))) {
+            BooleanQuery.Builder anyField = new BooleanQuery.Builder()
+                    .add(new BoostQuery(new TermQuery(new Term(FIELD_TITLE, term)), 3f), BooleanClause.Occur.SHOULD)
+                    .add(new TermQuery(new Term(FIELD_DESCRIPTION, term)), BooleanClause.Occur.SHOULD);
+            if (term.length() >= MIN_PREFIX_LENGTH) {
+                anyField.add(new BoostQuery(new PrefixQuery(new Term(FIELD_TITLE, term)), 1.5f), BooleanClause.Occur.SHOULD)
+                        .add(new BoostQuery(new PrefixQuery(new Term(FIELD_DESCRIPTION, term)), 0.5f), BooleanClause.Occur.SHOULD);
+            }
+            query.add(anyField.build(), BooleanClause.Occur.MUST);
+        }
+        return query.build();
+    }
+
+    private List<String> analyze(Analyzer analyzer, String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        try (TokenStream stream = analyzer.tokenStream(FIELD_DESCRIPTION, text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+
+    private String highlight(Highlighter highlighter, Document doc) throws IOException {
+        try {
+            String fragment = highlighter.getBestFragment(analyzer, FIELD_DESCRIPTION, doc.get(FIELD_DESCRIPTION));
+            if (fragment == null) {
+                fragment = highlighter.getBestFragment(analyzer, FIELD_TITLE, doc.get(FIELD_TITLE));
+            }
+            return fragment;
+        } catch (InvalidTokenOffsetsException e) {
+            return null;
+        }
+    }
+
+    private Document toDocument(Issue issue) {
+        Document doc = new Document();
+        doc.add(new StringField(FIELD_ID, issue.getId(), Field.Store.YES));
+        doc.add(new SortedDocValuesField(FIELD_ID, new BytesRef(issue.getId())));
+        doc.add(new TextField(FIELD_TITLE, issue.getTitle(), Field.Store.YES));
+        doc.add(new TextField(FIELD_DESCRIPTION, issue.getDescription(), Field.Store.YES));
+        doc.add(new TextField(FIELD_TRIGRAMS, issue.getTitle() + " " + issue.getDescription(), Field.Store.NO));
+        return doc;
+    }
+
+    private void markSchemaCurrent() {
+        writer.setLiveCommitData(Map.of(SCHEMA_KEY, SCHEMA_VERSION).entrySet());
+    }
+
+    private void commitAndRefresh() throws IOException {
+        writer.commit();
+        searcherManager.maybeRefresh();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+}
@@ -0,0 +1,7 @@
+package it.unina.bugboard26.search;
+
+/**
+ * Risultato della ricerca full-text. Per la ricerca approssimata {@code score} e' la
+ * similarita' in [0, 1]; gli estratti evidenziati si chiedono a parte per la sola pagina mostrata.
+ */
+public record SearchHit(String issueId, float score) {}
@@ -0,0 +1,51 @@
+package it.unina.bugboard26.search;
+
+import it.unina.bugboard26.repository.IssueRepository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * All'avvio (dopo il seed) costruisce l'indice se e' vuoto ma il database contiene issue,
+ * oppure se e' stato scritto da una versione precedente dello schema.
+ * Con {@code bugboard.search.reindex=true} ricostruisce l'indice da zero e termina il processo:
+ * e' il comando offline da usare ad applicazione ferma, vedi {@code make search-reindex}.
+ */
+@Component
+public class SearchIndexInitializer {
+
+    private final IssueIndexer indexer;
+    private final IssueSearchIndex searchIndex;
+    private final IssueRepository issueRepository;
+    private final ApplicationContext context;
+    private final boolean reindexAndExit;
+
+    public SearchIndexInitializer(IssueIndexer indexer,
+                                  IssueSearchIndex searchIndex,
+                                  IssueRepository issueRepository,
+                                  ApplicationContext context,
+                                  @Value("${bugboard.search.reindex:false}") boolean reindexAndExit) {
+        this.indexer = indexer;
+        this.searchIndex = searchIndex;
+        this.issueRepository = issueRepository;
+        this.context = context;
+        this.reindexAndExit = reindexAndExit;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() throws IOException {
+        if (reindexAndExit) {
+            indexer.reindexAll();
+            System.exit(SpringApplication.exit(context, () -> 0));
+        }
+        if ((searchIndex.isStale() || searchIndex.size() == 0) && issueRepository.count() > 0) {
+            indexer.reindexAll();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package it.unina.bugboard26.service;
+
+import it.unina.bugboard26.storage.AttachmentStore;
+import it.unina.bugboard26.storage.BlobStorage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Confronta periodicamente i file dello storage con {@code attachment_blobs}. Le due parti si leggono
+ * in ordine di hash, lo storage come stream e la tabella a blocchi di {@code batch-size} righe, e si
+ * uniscono in un merge join: in memoria non c'e' mai piu' di un blocco.
+ * <ul>
+ *   <li>File senza riga, ad esempio di un upload annullato dopo la scrittura del file: eliminati se
+ *       piu' vecchi di {@code grace}, cosi' non si tocca un upload che non ha ancora fatto commit.</li>
+ *   <li>Righe senza file, ad esempio di una delete annullata dopo la rimozione del file: segnalate
+ *       nel log e nelle metriche, perche' il contenuto non si puo' ricostruire.</li>
+ * </ul>
+ * Prima di agire ogni caso viene riverificato sul singolo hash, perche' upload e delete concorrenti
+ * cambiano le due parti mentre vengono lette. Con {@code delete-orphans: false} gli orfani sono solo contati.
+ * <p>
+ * Metriche: {@code bugboard.attachments.reconcile} (durata), {@code bugboard.attachments.orphans.deleted}
+ * e {@code bugboard.attachments.orphans.reclaimed} (file e byte liberati), {@code bugboard.attachments.orphans}
+ * e {@code bugboard.attachments.missing} (orfani e contenuti mancanti trovati nell'ultimo giro).
+ */
+@Service
+public class AttachmentReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(AttachmentReconciler.class);
+
+    private static final String SELECT = "SELECT sha256 FROM attachment_blobs WHERE sha256 > ? ORDER BY sha256 LIMIT ?";
+    private static final int MAX_LOGGED_MISSING = 20;
+
+    /**
+     * Esito di un giro: {@code orphans} conta i file senza riga piu' vecchi di {@code grace}, {@code recent}
+     * quelli piu' recenti lasciati stare, {@code deleted} e {@code reclaimedBytes} quanto e' stato eliminato.
+     */
+    public record Report(long files, long rows, long orphans, long recent, long deleted, long reclaimedBytes,
+                         long missing) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlobStorage storage;
+    private final Duration grace;
+    private final int batchSize;
+    private final boolean deleteOrphans;
+    private final boolean enabled;
+    private final Timer duration;
+    private final Counter deletedCounter;
+    private final Counter reclaimedCounter;
+    private final AtomicReference<Report> last = new AtomicReference<>(new Report(0, 0, 0, 0, 0, 0, 0));
+
+    public AttachmentReconciler(JdbcTemplate jdbcTemplate,
+                                BlobStorage storage,
+                                MeterRegistry meterRegistry,
+                                @Value("${bugboard.attachments.reconciler.grace:PT1H}") Duration grace,
+                                @Value("${bugboard.attachments.reconciler.batch-size:1000}") int batchSize,
+                                @Value("${bugboard.attachments.reconciler.delete-orphans:true}") boolean deleteOrphans,
+                                @Value("${bugboard.attachments.reconciler.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.storage = storage;
+        this.grace = grace;
+        this.batchSize = batchSize;
+        this.deleteOrphans = deleteOrphans;
+        this.enabled = enabled;
+        this.duration = Timer.builder("bugboard.attachments.reconcile")
+                .description("Durata del confronto tra storage e allegati")
+                .register(meterRegistry);
+        this.deletedCounter = Counter.builder("bugboard.attachments.orphans.deleted")
+                .description("File orfani eliminati")
+                .register(meterRegistry);
+        this.reclaimedCounter = Counter.builder("bugboard.attachments.orphans.reclaimed")
+                .description("Spazio liberato eliminando file orfani")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("bugboard.attachments.orphans", last, r -> r.get().orphans())
+                .description("File senza allegato trovati nell'ultimo confronto")
+                .register(meterRegistry);
+        Gauge.builder("bugboard.attachments.missing", last, r -> r.get().missing())
+                .description("Contenuti referenziati ma assenti dallo storage nell'ultimo confronto")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${bugboard.attachments.reconciler.interval:PT6H}",
+            initialDelayString = "${bugboard.attachments.reconciler.initial-delay:PT10M}")
+    public void scheduledReconcile() {
+        if (!enabled) return;
+        try {
+            Report report = reconcile();
+            if (report.orphans() > 0 || report.missing() > 0) {
+                log.info("Confronto allegati: {} file orfani ({} eliminati, {} byte liberati), {} contenuti mancanti",
+                        report.orphans(), report.deleted(), report.reclaimedBytes(), report.missing());
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Confronto tra storage e allegati interrotto: {}", e.getMessage(), e);
+        }
+    }
+
+    public Report reconcile() throws IOException {
+        long startedAt = System.nanoTime();
+        Instant cutoff = Instant.now().minus(grace);
+        Tally tally = new Tally();
+
+        try (Stream<BlobStorage.Entry> listing = storage.list()) {
+            Iterator<BlobStorage.Entry> files = listing.iterator();
+            Iterator<String> rows = new BlobRows();
+            BlobStorage.Entry file = next(files);
+            String row = next(rows);
+            while (file != null || row != null) {
+                String fileHash = file != null ? AttachmentStore.contentHash(file.name()) : null;
+                if (file != null && fileHash == null) {
+                    // Nome che non segue la convenzione dello store: non e' un contenuto degli allegati
+                    file = next(files);
+                    continue;
+                }
+                int order = file == null ? 1 : row == null ? -1 : fileHash.compareTo(row);
+                if (order < 0) {
+                    tally.files++;
+                    orphan(file, fileHash, cutoff, tally);
+                    file = next(files);
+                } else if (order > 0) {
+                    tally.rows++;
+                    missing(row, tally);
+                    row = next(rows);
+                } else {
+                    // Stesso hash: il contenuto e l'eventuale anteprima, che lo segue in ordine di nome
+                    boolean contentFound = false;
+                    while (file != null && row.equals(AttachmentStore.contentHash(file.name()))) {
+                        tally.files++;
+                        contentFound |= file.name().equals(row);
+                        file = next(files);
+                    }
+                    tally.rows++;
+                    if (!contentFound) {
+                        missing(row, tally);
+                    }
+                    row = next(rows);
+                }
+            }
+        } finally {
+            duration.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+
+        Report report = new Report(tally.files, tally.rows, tally.orphans, tally.recent, tally.deleted,
+                tally.reclaimedBytes, tally.missing);
+        last.set(report);
+        return report;
+    }
+
+    private void orphan(BlobStorage.Entry file, String sha256, Instant cutoff, Tally tally) throws IOException {
+        if (file.lastModified().isAfter(cutoff)) {
+            tally.recent++;
+            return;
+        }
+        // Un upload concorrente puo' aver creato la riga o riscritto il file dopo la lettura
+        if (blobExists(sha256)) {
+            return;
+        }
+        tally.orphans++;
+        if (!deleteOrphans) {
+            return;
+        }
+        BlobStorage.Entry current = storage.stat(file.name());
+        if (current == null || current.lastModified().isAfter(cutoff)) {
+            return;
+        }
+        storage.delete(file.name());
+        tally.deleted++;
+        tally.reclaimedBytes += current.size();
+        deletedCounter.increment();
+        reclaimedCounter.increment(current.size());
+    }
+
+    private void missing(String sha256, Tally tally) throws IOException {
+        // Un upload concorrente puo' aver scritto il file dopo che l'elenco lo aveva superato
+        if (storage.exists(sha256) || !blobExists(sha256)) {
+            return;
+        }
+        tally.missing++;
+        if (tally.missing <= MAX_LOGGED_MISSING) {
+            log.warn("Contenuto {} referenziato da attachment_blobs ma assente dallo storage", sha256);
+        }
+    }
+
+    private boolean blobExists(String sha256) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM attachment_blobs WHERE sha256 = ?", Integer.class, sha256);
+        return count != null && count > 0;
+    }
+
+    private static <T> T next(Iterator<T> iterator) {
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private static final class Tally {
+        long files;
+        long rows;
+        long orphans;
+        long recent;
+        long deleted;
+        long reclaimedBytes;
+        long missing;
+    }
+
+    /**
+     * Hash di {@code attachment_blobs} in ordine, letti a blocchi con paginazione keyset.
+     */
+    private final class BlobRows implements Iterator<String> {
+
+        private Iterator<String> batch = List.<String>of().iterator();
+        private String lastKey = "";
+        private boolean exhausted;
+
+        @Override
+        public boolean hasNext() {
+            if (!batch.hasNext() && !exhausted) {
+                List<String> keys = jdbcTemplate.queryForList(SELECT, String.class, lastKey, batchSize);
+                exhausted = keys.size() < batchSize;
+                if (!keys.isEmpty()) {
+                    lastKey = keys.getLast();
+                }
+                batch = keys.iterator();
+            }
+            return batch.hasNext();
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batch.next();
+        }
+    }
+}
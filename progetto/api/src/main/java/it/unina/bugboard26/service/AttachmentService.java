@@ -1,15 +1,21 @@
 package it.unina.bugboard26.service;
 
 import it.unina.bugboard26.dto.response.AttachmentResponse;
+import it.unina.bugboard26.event.AttachmentStoredEvent;
 import it.unina.bugboard26.model.Attachment;
 import it.unina.bugboard26.model.HistoryEntry;
 import it.unina.bugboard26.model.Issue;
 import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.repository.AttachmentBlobRepository;
+import it.unina.bugboard26.repository.AttachmentRepository;
+import it.unina.bugboard26.repository.HistoryEntryRepository;
 import it.unina.bugboard26.repository.IssueRepository;
 import it.unina.bugboard26.repository.UserRepository;
+import it.unina.bugboard26.storage.AttachmentStore;
+import it.unina.bugboard26.storage.BlobLocation;
+import it.unina.bugboard26.storage.StoredFile;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -19,8 +25,7 @@ import org.springframework.web.server.ResponseStatusException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
@@ -31,22 +36,40 @@ import static org.springframework.http.HttpStatus.*;
 public class AttachmentService {
 
     private final IssueRepository issueRepository;
+    private final AttachmentRepository attachmentRepository;
+    private final AttachmentBlobRepository attachmentBlobRepository;
+    private final HistoryEntryRepository historyEntryRepository;
     private final UserRepository userRepository;
     private final PermissionService permissionService;
-    private final Path uploadDir;
+    private final AttachmentStore attachmentStore;
+    private final ThumbnailService thumbnailService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final IssueDataVersion issueDataVersion;
     private final long maxSize;
     private final List<String> allowedTypes;
 
     public AttachmentService(IssueRepository issueRepository,
+                             AttachmentRepository attachmentRepository,
+                             AttachmentBlobRepository attachmentBlobRepository,
+                             HistoryEntryRepository historyEntryRepository,
                              UserRepository userRepository,
                              PermissionService permissionService,
-                             @Value("${bugboard.attachments.dir:uploads}") String uploadDir,
+                             AttachmentStore attachmentStore,
+                             ThumbnailService thumbnailService,
+                             ApplicationEventPublisher eventPublisher,
+                             IssueDataVersion issueDataVersion,
                              @Value("${bugboard.attachments.max-size:5242880}") long maxSize,
                              @Value("${bugboard.attachments.allowed-types:image/jpeg,image/png,image/gif,image/webp,application/pdf}") List<String> allowedTypes) {
         this.issueRepository = issueRepository;
+        this.attachmentRepository = attachmentRepository;
+        this.attachmentBlobRepository = attachmentBlobRepository;
+        this.historyEntryRepository = historyEntryRepository;
         this.userRepository = userRepository;
         this.permissionService = permissionService;
-        this.uploadDir = Paths.get(uploadDir);
+        this.attachmentStore = attachmentStore;
+        this.thumbnailService = thumbnailService;
+        this.eventPublisher = eventPublisher;
+        this.issueDataVersion = issueDataVersion;
         this.maxSize = maxSize;
         this.allowedTypes = allowedTypes;
     }
@@ -65,6 +88,11 @@ public class AttachmentService {
         return issue;
     }
 
+    private Attachment resolveAttachment(String issueId, String storedFilename) {
+        return attachmentRepository.findByIssueIdAndStoredFilename(issueId, storedFilename)
+                .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Allegato non trovato"));
+    }
+
     @Transactional
     public AttachmentResponse upload(String issueId, MultipartFile file, String userEmail) throws IOException {
         User user = resolveUser(userEmail);
@@ -75,18 +103,40 @@ public class AttachmentService {
         }
 
         String contentType = file.getContentType();
+        checkNewAttachment(issueId, contentType);
+        if (file.getSize() > maxSize) {
+            throw new ResponseStatusException(BAD_REQUEST, "File troppo grande. Massimo 5MB.");
+        }
+
+        String originalFilename = file.getOriginalFilename() != null ? file.getOriginalFilename() : "file";
+        AttachmentStore.StagedBlob blob = attachmentStore.stage(file.getInputStream());
+        try {
+            return attach(issue, user, originalFilename, contentType, blob);
+        } finally {
+            attachmentStore.discard(blob);
+        }
+    }
+
+    /**
+     * Regole comuni all'upload diretto e a quello a blocchi: tipo ammesso e massimo 10 allegati per issue.
+     */
+    void checkNewAttachment(String issueId, String contentType) {
         if (contentType == null || !allowedTypes.contains(contentType)) {
             throw new ResponseStatusException(BAD_REQUEST,
                     "Tipo file non ammesso. Tipi validi: " + String.join(", ", allowedTypes));
         }
-        if (file.getSize() > maxSize) {
-            throw new ResponseStatusException(BAD_REQUEST, "File troppo grande. Massimo 5MB.");
-        }
-        if (issue.getAttachments().size() >= 10) {
+        if (attachmentRepository.countByIssueId(issueId) >= 10) {
             throw new ResponseStatusException(BAD_REQUEST, "Massimo 10 allegati per issue.");
         }
+    }
 
-        String originalFilename = file.getOriginalFilename() != null ? file.getOriginalFilename() : "file";
+    /**
+     * Registra come allegato un file gia' su disco e con hash calcolato. Va chiamato dentro la
+     * transazione del chiamante. Se il contenuto e' nuovo il file temporaneo viene spostato, non copiato;
+     * se era gia' salvato il file temporaneo resta al chiamante, che lo scarta.
+     */
+    AttachmentResponse attach(Issue issue, User user, String originalFilename, String contentType,
+                              AttachmentStore.StagedBlob blob) throws IOException {
         String extension = "";
         int dotIndex = originalFilename.lastIndexOf('.');
         if (dotIndex > 0) {
@@ -94,30 +144,71 @@ public class AttachmentService {
         }
         String storedFilename = UUID.randomUUID() + extension;
 
-        Files.createDirectories(uploadDir);
-        Files.copy(file.getInputStream(), uploadDir.resolve(storedFilename), StandardCopyOption.REPLACE_EXISTING);
+        // Il contenuto si salva una volta sola: se lo stesso file e' gia' allegato altrove cresce solo il conteggio
+        if (referenceBlob(blob)) {
+            attachmentStore.commit(blob);
+        }
 
-        Attachment attachment = new Attachment(storedFilename, originalFilename, contentType, file.getSize());
-        issue.getAttachments().add(attachment);
-        issue.getHistory().add(new HistoryEntry(issue, user, "Allegato aggiunto: " + originalFilename));
-        issueRepository.save(issue);
+        Attachment attachment = new Attachment(issue, storedFilename, originalFilename, contentType, blob.size());
+        attachment.setSha256(blob.sha256());
+        attachment = attachmentRepository.save(attachment);
+        historyEntryRepository.save(new HistoryEntry(issue, user, "Allegato aggiunto: " + originalFilename));
+        // Gli allegati non sono colonne di Issue: senza questo chi sincronizza con updatedSince non vedrebbe il cambio
+        issue.setUpdatedAt(Instant.now());
+        // Allegati e cronologia fanno parte degli export
+        issueDataVersion.bump();
+        eventPublisher.publishEvent(new AttachmentStoredEvent(blob.sha256(), contentType));
 
         return AttachmentResponse.from(attachment);
     }
 
-    public Resource download(String issueId, String storedFilename) throws IOException {
-        Issue issue = resolveIssue(issueId);
-        issue.getAttachments().stream()
-                .filter(a -> a.getStoredFilename().equals(storedFilename))
-                .findFirst()
-                .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Allegato non trovato"));
+    // True se la riga del blob e' stata appena creata, false se ne e' stato incrementato il conteggio.
+    // Se un upload concorrente crea la riga per primo (o una delete la rimuove nel frattempo) si riprova
+    private boolean referenceBlob(AttachmentStore.StagedBlob blob) {
+        while (attachmentBlobRepository.incrementRefCount(blob.sha256()) == 0) {
+            if (attachmentBlobRepository.insertIfAbsent(blob.sha256(), blob.size())) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        Path filePath = uploadDir.resolve(storedFilename);
-        Resource resource = new UrlResource(filePath.toUri());
-        if (!resource.exists()) {
+    public BlobLocation download(String issueId, String storedFilename) throws IOException {
+        resolveIssue(issueId);
+        Attachment attachment = resolveAttachment(issueId, storedFilename);
+
+        BlobLocation location;
+        if (attachment.getSha256() != null) {
+            location = attachmentStore.locate(attachment.getSha256(), attachment.getOriginalFilename(),
+                    attachment.getContentType(), attachment.getUploadedAt());
+        } else {
+            // Il nome UUID non viene mai riscritto: per i vecchi allegati senza hash identifica gia' il contenuto
+            Path legacy = attachmentStore.legacyPath(attachment.getStoredFilename());
+            location = Files.isRegularFile(legacy)
+                    ? new StoredFile(legacy, attachment.getOriginalFilename(), attachment.getContentType(),
+                            attachment.getStoredFilename(), attachment.getUploadedAt())
+                    : null;
+        }
+        if (location == null) {
             throw new ResponseStatusException(NOT_FOUND, "File non trovato su disco");
         }
-        return resource;
+        return location;
+    }
+
+    public BlobLocation thumbnail(String issueId, String storedFilename) throws IOException {
+        resolveIssue(issueId);
+        Attachment attachment = resolveAttachment(issueId, storedFilename);
+
+        String sha256 = attachment.getSha256();
+        if (sha256 != null) {
+            BlobLocation thumbnail = attachmentStore.locateThumbnail(sha256, attachment.getUploadedAt());
+            if (thumbnail != null) {
+                return thumbnail;
+            }
+            // Non ancora generata, scartata a coda piena o allegato precedente alle anteprime: la si richiede ora
+            thumbnailService.request(sha256, attachment.getContentType());
+        }
+        throw new ResponseStatusException(NOT_FOUND, "Anteprima non disponibile");
     }
 
     @Transactional
@@ -129,16 +220,22 @@ public class AttachmentService {
             throw new AccessDeniedException("Non hai i permessi per rimuovere allegati");
         }
 
-        Attachment attachment = issue.getAttachments().stream()
-                .filter(a -> a.getStoredFilename().equals(storedFilename))
-                .findFirst()
-                .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Allegato non trovato"));
+        Attachment attachment = resolveAttachment(issueId, storedFilename);
 
-        issue.getAttachments().remove(attachment);
-        issue.getHistory().add(new HistoryEntry(issue, user, "Allegato rimosso: " + attachment.getOriginalFilename()));
+        attachmentRepository.delete(attachment);
+        historyEntryRepository.save(new HistoryEntry(issue, user, "Allegato rimosso: " + attachment.getOriginalFilename()));
+        issue.setUpdatedAt(Instant.now());
+        issueDataVersion.bump();
 
-        Path filePath = uploadDir.resolve(storedFilename);
-        Files.deleteIfExists(filePath);
-        issueRepository.save(issue);
+        String sha256 = attachment.getSha256();
+        if (sha256 == null) {
+            Files.deleteIfExists(attachmentStore.legacyPath(storedFilename));
+            return;
+        }
+        // Il file resta finche' almeno un altro allegato ne usa il contenuto
+        attachmentBlobRepository.decrementRefCount(sha256);
+        if (attachmentBlobRepository.deleteIfUnreferenced(sha256) > 0) {
+            attachmentStore.delete(sha256);
+        }
     }
 }
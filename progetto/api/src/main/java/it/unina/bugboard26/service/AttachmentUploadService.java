@@ -0,0 +1,199 @@
+package it.unina.bugboard26.service;
+
+import it.unina.bugboard26.dto.request.CreateUploadRequest;
+import it.unina.bugboard26.dto.response.AttachmentResponse;
+import it.unina.bugboard26.dto.response.UploadSessionResponse;
+import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.model.UploadSession;
+import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.repository.IssueRepository;
+import it.unina.bugboard26.repository.UploadSessionRepository;
+import it.unina.bugboard26.repository.UserRepository;
+import it.unina.bugboard26.storage.AttachmentStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.springframework.http.HttpStatus.*;
+
+/**
+ * Upload a blocchi riprendibili: si apre una sessione dichiarando nome, tipo e dimensione, si inviano
+ * i blocchi in ordine indicando l'offset e si chiude con lo SHA-256 del file intero. Le sessioni senza
+ * attivita' per {@code expiry} vengono eliminate insieme al file parziale.
+ * <p>
+ * L'invio di un blocco non apre transazioni: lo stream puo' durare minuti e non deve tenere
+ * occupata una connessione al database.
+ */
+@Service
+public class AttachmentUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(AttachmentUploadService.class);
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final IssueRepository issueRepository;
+    private final UserRepository userRepository;
+    private final PermissionService permissionService;
+    private final AttachmentService attachmentService;
+    private final AttachmentStore attachmentStore;
+    private final long maxUploadSize;
+    private final Duration expiry;
+
+    public AttachmentUploadService(UploadSessionRepository uploadSessionRepository,
+                                   IssueRepository issueRepository,
+                                   UserRepository userRepository,
+                                   PermissionService permissionService,
+                                   AttachmentService attachmentService,
+                                   AttachmentStore attachmentStore,
+                                   @Value("${bugboard.attachments.uploads.max-size:104857600}") long maxUploadSize,
+                                   @Value("${bugboard.attachments.uploads.expiry:PT24H}") Duration expiry) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.issueRepository = issueRepository;
+        this.userRepository = userRepository;
+        this.permissionService = permissionService;
+        this.attachmentService = attachmentService;
+        this.attachmentStore = attachmentStore;
+        this.maxUploadSize = maxUploadSize;
+        this.expiry = expiry;
+    }
+
+    private User resolveUser(String email) {
+        return userRepository.findByEmail(email)
+                .orElseThrow(() -> new ResponseStatusException(UNAUTHORIZED, "Utente non trovato"));
+    }
+
+    private Issue resolveIssue(String issueId) {
+        Issue issue = issueRepository.findById(issueId)
+                .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Issue non trovata"));
+        if (issue.getDeletedAt() != null) {
+            throw new ResponseStatusException(NOT_FOUND, "Issue eliminata");
+        }
+        return issue;
+    }
+
+    // Solo chi ha aperto la sessione puo' continuarla: per gli altri non esiste
+    private UploadSession resolveSession(String issueId, String uploadId, String userEmail) {
+        return uploadSessionRepository.findByIdAndIssueIdAndUserEmail(uploadId, issueId, userEmail)
+                .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Upload non trovato"));
+    }
+
+    private UploadSessionResponse toResponse(UploadSession session, long offset) {
+        return UploadSessionResponse.from(session, offset, session.getUpdatedAt().plus(expiry));
+    }
+
+    private long offsetOf(UploadSession session) throws IOException {
+        try {
+            return attachmentStore.partSize(session.getId());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(GONE, "File parziale non piu' disponibile, ricominciare l'upload");
+        }
+    }
+
+    @Transactional
+    public UploadSessionResponse create(String issueId, CreateUploadRequest request, String userEmail) throws IOException {
+        User user = resolveUser(userEmail);
+        Issue issue = resolveIssue(issueId);
+
+        if (!permissionService.canModifyIssue(user, issue)) {
+            throw new AccessDeniedException("Non hai i permessi per aggiungere allegati");
+        }
+        attachmentService.checkNewAttachment(issueId, request.contentType());
+        if (request.size() > maxUploadSize) {
+            throw new ResponseStatusException(BAD_REQUEST,
+                    "File troppo grande. Massimo " + maxUploadSize / (1024 * 1024) + "MB.");
+        }
+
+        UploadSession session = uploadSessionRepository.saveAndFlush(
+                new UploadSession(issue, user, request.filename(), request.contentType(), request.size()));
+        attachmentStore.createPart(session.getId());
+        return toResponse(session, 0);
+    }
+
+    @Transactional(readOnly = true)
+    public UploadSessionResponse status(String issueId, String uploadId, String userEmail) throws IOException {
+        UploadSession session = resolveSession(issueId, uploadId, userEmail);
+        return toResponse(session, offsetOf(session));
+    }
+
+    public UploadSessionResponse writeChunk(String issueId, String uploadId, long offset,
+                                            InputStream body, String userEmail) throws IOException {
+        UploadSession session = resolveSession(issueId, uploadId, userEmail);
+
+        long newOffset;
+        try {
+            newOffset = attachmentStore.appendChunk(uploadId, offset, session.getSize(), body);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(CONFLICT, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(BAD_REQUEST, e.getMessage());
+        }
+        Instant now = Instant.now();
+        uploadSessionRepository.touch(uploadId, now);
+        session.setUpdatedAt(now);
+        return toResponse(session, newOffset);
+    }
+
+    @Transactional
+    public AttachmentResponse complete(String issueId, String uploadId, String sha256, String userEmail) throws IOException {
+        UploadSession session = resolveSession(issueId, uploadId, userEmail);
+        User user = session.getUser();
+        Issue issue = resolveIssue(issueId);
+
+        if (!permissionService.canModifyIssue(user, issue)) {
+            throw new AccessDeniedException("Non hai i permessi per aggiungere allegati");
+        }
+        long offset = offsetOf(session);
+        if (offset != session.getSize()) {
+            throw new ResponseStatusException(CONFLICT,
+                    "Upload incompleto: ricevuti " + offset + " byte su " + session.getSize());
+        }
+        attachmentService.checkNewAttachment(issueId, session.getContentType());
+
+        AttachmentStore.StagedBlob blob = attachmentStore.stagePart(uploadId);
+        if (!blob.sha256().equalsIgnoreCase(sha256)) {
+            // Il contenuto ricevuto e' corrotto e riprendere non servirebbe: la sessione resta senza
+            // file (410 da qui in poi) finche' il client non la annulla o scade
+            attachmentStore.deletePart(uploadId);
+            throw new ResponseStatusException(BAD_REQUEST, "Checksum non corrispondente, upload annullato");
+        }
+        uploadSessionRepository.delete(session);
+        try {
+            return attachmentService.attach(issue, user, session.getFilename(), session.getContentType(), blob);
+        } finally {
+            attachmentStore.discard(blob);
+        }
+    }
+
+    @Transactional
+    public void abort(String issueId, String uploadId, String userEmail) throws IOException {
+        UploadSession session = resolveSession(issueId, uploadId, userEmail);
+        uploadSessionRepository.delete(session);
+        attachmentStore.deletePart(uploadId);
+    }
+
+    @Scheduled(fixedDelayString = "${bugboard.attachments.uploads.cleanup-interval:PT1H}")
+    @Transactional
+    public void purgeExpired() throws IOException {
+        Instant cutoff = Instant.now().minus(expiry);
+        List<String> expired = uploadSessionRepository.findIdsInactiveSince(cutoff);
+        uploadSessionRepository.deleteAllByIdInBatch(expired);
+        for (String id : expired) {
+            attachmentStore.deletePart(id);
+        }
+        // Anche i parziali rimasti senza sessione, ad esempio dopo l'eliminazione della issue
+        int parts = attachmentStore.purgeParts(cutoff);
+        if (!expired.isEmpty() || parts > 0) {
+            log.info("Eliminate {} sessioni di upload scadute e {} file parziali", expired.size(), parts);
+        }
+    }
+}
@@ -12,6 +12,7 @@ import it.unina.bugboard26.enums.GlobalRole;
 import it.unina.bugboard26.repository.CommentRepository;
 import it.unina.bugboard26.repository.IssueRepository;
 import it.unina.bugboard26.repository.UserRepository;
+import it.unina.bugboard26.storage.ImageStore;
 
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
@@ -31,15 +32,18 @@ public class CommentService {
     private final IssueRepository issueRepository;
     private final UserRepository userRepository;
     private final PermissionService permissionService;
+    private final ImageStore imageStore;
 
     public CommentService(CommentRepository commentRepository,
                           IssueRepository issueRepository,
                           UserRepository userRepository,
-                          PermissionService permissionService) {
+                          PermissionService permissionService,
+                          ImageStore imageStore) {
         this.commentRepository = commentRepository;
         this.issueRepository = issueRepository;
         this.userRepository = userRepository;
         this.permissionService = permissionService;
+        this.imageStore = imageStore;
     }
 
     private User resolveUser(String email) {
@@ -64,7 +68,9 @@ public class CommentService {
                 .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Issue non trovata"));
 
         Comment comment = new Comment(issue, currentUser, request.content());
-        comment.setImage(request.image());
+        if (request.image() != null && !request.image().isEmpty()) {
+            comment.setImageKey(imageStore.storeDataUrl(request.image()));
+        }
         Comment saved = commentRepository.save(comment);
         return CommentResponse.from(saved);
     }
@@ -81,7 +87,7 @@ public class CommentService {
 
         comment.setContent(request.content());
         if (request.image() != null) {
-            comment.setImage(request.image().isEmpty() ? null : request.image());
+            comment.setImageKey(request.image().isEmpty() ? null : imageStore.storeDataUrl(request.image()));
         }
         Comment saved = commentRepository.save(comment);
         return CommentResponse.from(saved);
@@ -0,0 +1,267 @@
+package it.unina.bugboard26.service;
+
+import it.unina.bugboard26.enums.ExportFormat;
+import it.unina.bugboard26.repository.IssueFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.LongConsumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Cache su disco degli export gia' generati. La chiave unisce formato, filtri normalizzati (liste
+ * ordinate e senza duplicati, lista vuota uguale a nessun filtro) e la {@link IssueDataVersion}
+ * letta prima della query: finche' nessuna issue cambia la stessa richiesta viene servita dal file,
+ * alla prima modifica le copie vecchie non sono piu' raggiungibili e lasciano il posto alle nuove.
+ * <p>
+ * Alla prima richiesta l'export viene scritto insieme sulla risposta e su un file temporaneo, che a
+ * export riuscito entra in cache. I file occupano al massimo {@code max-size} byte: oltre si eliminano
+ * quelli usati meno di recente. Due richieste uguali contemporanee generano entrambe il file.
+ * <p>
+ * Gli export con ricerca testuale non passano dalla cache: l'indice di ricerca e' locale all'istanza
+ * e si aggiorna dopo il commit, quindi i risultati possono cambiare senza che cambi la versione.
+ * Nemmeno i bundle ZIP: la loro dimensione dipende dagli allegati e pochi basterebbero a svuotare la cache.
+ * L'indice della cache e' in memoria e la directory viene svuotata all'avvio.
+ * <p>
+ * Metriche: {@code bugboard.export.cache.requests} (per esito: hit, miss, bypass) e
+ * {@code bugboard.export.cache.size} (byte occupati).
+ */
+@Service
+public class ExportCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportCache.class);
+
+    private static final Pattern CACHE_FILE = Pattern.compile("[0-9a-f]{64}\\.[a-z]+|[0-9a-f-]{36}\\.part");
+
+    private record Entry(Path path, long size, long rows) {
+    }
+
+    private final ExportService exportService;
+    private final IssueDataVersion dataVersion;
+    private final Path dir;
+    private final long maxSize;
+    private final boolean enabled;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter bypassed;
+    private final MeterRegistry meterRegistry;
+    // In ordine di accesso: il primo elemento e' il meno usato di recente
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    public ExportCache(ExportService exportService,
+                       IssueDataVersion dataVersion,
+                       MeterRegistry meterRegistry,
+                       @Value("${bugboard.export.cache.dir:${java.io.tmpdir}/bugboard-export-cache}") String dir,
+                       @Value("${bugboard.export.cache.max-size:536870912}") long maxSize,
+                       @Value("${bugboard.export.cache.enabled:true}") boolean enabled) {
+        this.exportService = exportService;
+        this.dataVersion = dataVersion;
+        this.dir = Paths.get(dir);
+        this.maxSize = maxSize;
+        this.enabled = enabled;
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.bypassed = requests(meterRegistry, "bypass");
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Fuori dal costruttore: il gauge tiene un riferimento alla cache, che deve essere gia' costruita
+    @PostConstruct
+    void init() {
+        Gauge.builder("bugboard.export.cache.size", this, ExportCache::size)
+                .description("Spazio occupato dagli export in cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        purgeDirectory();
+    }
+
+    // Senza l'indice i file di un'esecuzione precedente non si possono ne' servire ne' contare.
+    // Si eliminano solo i nomi scritti dalla cache, nel caso la directory sia condivisa
+    private void purgeDirectory() {
+        if (!Files.isDirectory(dir)) return;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (CACHE_FILE.matcher(file.getFileName().toString()).matches()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossibile svuotare la cache degli export " + dir, e);
+        }
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("bugboard.export.cache.requests")
+                .description("Richieste di export per esito della cache")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Come {@link ExportService#write}, servendo il file in cache se c'e'. Con il file in cache
+     * {@code progress} riceve subito il numero di righe dell'export originale.
+     */
+    public void write(ExportFormat format, IssueFilter filter, OutputStream out, LongConsumer progress) throws IOException {
+        if (!enabled || format == ExportFormat.ZIP || (filter.search() != null && !filter.search().isBlank())) {
+            bypassed.increment();
+            exportService.write(format, filter, out, progress);
+            return;
+        }
+
+        String key = key(format, filter, dataVersion.current());
+        Entry entry = get(key);
+        if (entry != null) {
+            try {
+                Files.copy(entry.path(), out);
+                hits.increment();
+                progress.accept(entry.rows());
+                return;
+            } catch (NoSuchFileException e) {
+                // Eliminato dopo la lettura dell'indice: si rigenera
+                remove(key, entry);
+            }
+        }
+
+        misses.increment();
+        Files.createDirectories(dir);
+        Path temp = dir.resolve(UUID.randomUUID() + ".part");
+        long[] rows = {0};
+        try {
+            try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                exportService.write(format, filter, new TeeOutputStream(out, file), written -> {
+                            rows[0] = written;
+                            progress.accept(written);
+                        });
+            }
+            put(key, temp, format, rows[0]);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void remove(String key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            size -= entry.size();
+        }
+    }
+
+    private synchronized long size() {
+        return size;
+    }
+
+    private void put(String key, Path temp, ExportFormat format, long rows) throws IOException {
+        long fileSize = Files.size(temp);
+        if (fileSize > maxSize) {
+            return;
+        }
+        Path path = dir.resolve(key + "." + format.getExtension());
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        List<Path> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(key, new Entry(path, fileSize, rows));
+            if (previous != null) {
+                size -= previous.size();
+            }
+            size += fileSize;
+            for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); size > maxSize && it.hasNext(); ) {
+                Entry eldest = it.next().getValue();
+                it.remove();
+                size -= eldest.size();
+                evicted.add(eldest.path());
+            }
+        }
+        // Chi sta copiando un file eliminato continua a leggerlo: il contenuto sparisce alla chiusura
+        for (Path file : evicted) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.debug("Export in cache non eliminato: {}", file);
+            }
+        }
+    }
+
+    /**
+     * Hash della richiesta normalizzata: nomi dei file di lunghezza fissa e senza caratteri dell'utente.
+     */
+    static String key(ExportFormat format, IssueFilter filter, long version) {
+        String canonical = String.join("|", format.name(), normalize(filter.types()), normalize(filter.statuses()),
+                normalize(filter.priorities()), filter.assignedToId() != null ? filter.assignedToId() : "",
+                String.valueOf(filter.archived()), String.valueOf(filter.updatedSince()), String.valueOf(version));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String normalize(List<? extends Enum<?>> values) {
+        if (values == null) return "";
+        return values.stream().map(Enum::name).distinct().sorted().collect(Collectors.joining(","));
+    }
+
+    /**
+     * Scrive su due stream: la risposta e il file destinato alla cache. I flush arrivano a entrambi,
+     * cosi' la risposta continua a uscire a blocchi.
+     */
+    private static final class TeeOutputStream extends OutputStream {
+
+        private final OutputStream first;
+        private final OutputStream second;
+
+        TeeOutputStream(OutputStream first, OutputStream second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            first.write(b);
+            second.write(b);
+        }
+
+        @Override
+        public void write(byte[] buffer, int off, int len) throws IOException {
+            first.write(buffer, off, len);
+            second.write(buffer, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            first.flush();
+            second.flush();
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package it.unina.bugboard26.service;
+
+import it.unina.bugboard26.dto.request.ExportRequest;
+import it.unina.bugboard26.dto.response.ExportJobResponse;
+import it.unina.bugboard26.enums.ExportFormat;
+import it.unina.bugboard26.enums.ExportJobStatus;
+import it.unina.bugboard26.repository.IssueFilter;
+import it.unina.bugboard26.storage.StoredFile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.http.HttpStatus.*;
+
+/**
+ * Export generati in background: la richiesta crea un job e ritorna subito, un pool di {@code threads}
+ * thread scrive il file in {@code dir} e il client ne segue l'avanzamento (righe scritte su righe totali)
+ * finche' non lo scarica. I file completati o falliti restano disponibili per {@code ttl}, poi la pulizia
+ * periodica li elimina.
+ * <p>
+ * I limiti tengono gli export lontani dal traffico interattivo: al massimo {@code threads} export alla
+ * volta, e quindi altrettante connessioni al database, {@code queue-capacity} in attesa (oltre si
+ * risponde 503) e {@code max-per-user} job non ancora terminati per utente (oltre si risponde 429).
+ * <p>
+ * I job vivono nella memoria dell'istanza che li ha creati: dopo un riavvio non sono piu' visibili e i
+ * loro file vengono eliminati dalla pulizia.
+ * <p>
+ * Metriche: {@code bugboard.export.jobs.queue.depth} (job in attesa), {@code bugboard.export.jobs.running}
+ * (job in corso), {@code bugboard.export.jobs.render} (generazione, per formato ed esito) e
+ * {@code bugboard.export.jobs.rejected} (job rifiutati a coda piena).
+ */
+@Service
+public class ExportJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportJobService.class);
+
+    private final ExportCache exportCache;
+    private final IssueService issueService;
+    private final Path dir;
+    private final int maxPerUser;
+    private final Duration ttl;
+    private final ThreadPoolExecutor executor;
+    private final MeterRegistry meterRegistry;
+    private final Counter rejected;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public ExportJobService(ExportCache exportCache,
+                            IssueService issueService,
+                            MeterRegistry meterRegistry,
+                            @Value("${bugboard.export.jobs.dir:${java.io.tmpdir}/bugboard-exports}") String dir,
+                            @Value("${bugboard.export.jobs.threads:2}") int threads,
+                            @Value("${bugboard.export.jobs.queue-capacity:20}") int queueCapacity,
+                            @Value("${bugboard.export.jobs.max-per-user:2}") int maxPerUser,
+                            @Value("${bugboard.export.jobs.ttl:PT1H}") Duration ttl) {
+        this.exportCache = exportCache;
+        this.issueService = issueService;
+        this.meterRegistry = meterRegistry;
+        this.dir = Paths.get(dir);
+        this.maxPerUser = maxPerUser;
+        this.ttl = ttl;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "export-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Gauge.builder("bugboard.export.jobs.queue.depth", executor, e -> e.getQueue().size())
+                .description("Export in attesa di generazione")
+                .register(meterRegistry);
+        Gauge.builder("bugboard.export.jobs.running", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Export in generazione")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("bugboard.export.jobs.rejected")
+                .description("Export rifiutati a coda piena")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Mette in coda l'export. Il controllo del limite per utente e l'inserimento sono atomici,
+     * altrimenti due richieste contemporanee potrebbero superarlo entrambe.
+     */
+    public synchronized ExportJobResponse create(ExportRequest request, String userEmail) {
+        ExportFormat format = ExportFormat.from(request.format());
+        if (format == null) {
+            throw new ResponseStatusException(BAD_REQUEST, "Formato di export non supportato");
+        }
+        long active = jobs.values().stream()
+                .filter(job -> job.owner.equals(userEmail) && !job.isFinished())
+                .count();
+        if (active >= maxPerUser) {
+            throw new ResponseStatusException(TOO_MANY_REQUESTS,
+                    "Hai gia' " + active + " export in corso, attendi che terminino");
+        }
+
+        Job job = new Job(UUID.randomUUID().toString(), userEmail, format, request);
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> render(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            rejected.increment();
+            throw new ResponseStatusException(SERVICE_UNAVAILABLE, "Troppi export in coda, riprova piu' tardi");
+        }
+        return toResponse(job);
+    }
+
+    public ExportJobResponse status(String jobId, String userEmail) {
+        return toResponse(resolveJob(jobId, userEmail));
+    }
+
+    /**
+     * File di un export completato, da servire con {@code FileResponses}.
+     */
+    public StoredFile file(String jobId, String userEmail) {
+        Job job = resolveJob(jobId, userEmail);
+        if (!job.isFinished()) {
+            throw new ResponseStatusException(CONFLICT, "Export non ancora completato");
+        }
+        if (job.status == ExportJobStatus.FAILED) {
+            throw new ResponseStatusException(CONFLICT, "Export non riuscito");
+        }
+        Path file = fileOf(job);
+        if (!Files.exists(file)) {
+            throw new ResponseStatusException(GONE, "File dell'export non piu' disponibile");
+        }
+        return new StoredFile(file, job.format.getFilename(), job.format.getContentType(), job.id, job.finishedAt);
+    }
+
+    // Solo chi ha creato il job puo' vederlo: per gli altri non esiste
+    private Job resolveJob(String jobId, String userEmail) {
+        Job job = jobs.get(jobId);
+        if (job == null || !job.owner.equals(userEmail)) {
+            throw new ResponseStatusException(NOT_FOUND, "Export non trovato");
+        }
+        return job;
+    }
+
+    private void render(Job job) {
+        long startedAt = System.nanoTime();
+        job.status = ExportJobStatus.RUNNING;
+        String outcome = "success";
+        IssueFilter filter = filter(job.request);
+        Path part = dir.resolve(job.id + ".part");
+        try {
+            job.totalRows = issueService.countByStatusForExport(filter)
+                    .values().stream().mapToLong(Long::longValue).sum();
+            Files.createDirectories(dir);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(part))) {
+                exportCache.write(job.format, filter, out, rows -> job.rowsWritten = rows);
+            }
+            Path file = Files.move(part, fileOf(job), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            job.size = Files.size(file);
+            job.finish(ExportJobStatus.COMPLETED);
+        } catch (IOException | RuntimeException e) {
+            outcome = "error";
+            deleteQuietly(part);
+            job.finish(ExportJobStatus.FAILED);
+            log.warn("Export {} in {} non riuscito: {}", job.id, job.format, e.getMessage(), e);
+        } finally {
+            Timer.builder("bugboard.export.jobs.render")
+                    .description("Generazione di un export in background")
+                    .tag("format", job.format.name().toLowerCase())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static IssueFilter filter(ExportRequest request) {
+        return IssueFilter.of(request.types(), request.statuses(), request.priorities(), request.assignedToId(),
+                request.includeArchived() ? null : false, request.search(), null)
+                .withUpdatedSince(request.updatedSince());
+    }
+
+    /**
+     * Elimina i job terminati da piu' di {@code ttl} con i loro file, e i file rimasti senza job,
+     * ad esempio da prima di un riavvio.
+     */
+    @Scheduled(fixedDelayString = "${bugboard.export.jobs.cleanup-interval:PT5M}")
+    public void purgeExpired() throws IOException {
+        Instant cutoff = Instant.now().minus(ttl);
+        int expired = 0;
+        for (Job job : jobs.values()) {
+            if (job.isFinished() && job.finishedAt.isBefore(cutoff)) {
+                jobs.remove(job.id);
+                deleteQuietly(fileOf(job));
+                expired++;
+            }
+        }
+        int leftovers = 0;
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    String id = name.substring(0, Math.max(name.indexOf('.'), 0));
+                    if (!jobs.containsKey(id) && Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+                        deleteQuietly(file);
+                        leftovers++;
+                    }
+                }
+            }
+        }
+        if (expired > 0 || leftovers > 0) {
+            log.info("Eliminati {} export scaduti e {} file senza job", expired, leftovers);
+        }
+    }
+
+    private ExportJobResponse toResponse(Job job) {
+        Instant finishedAt = job.finishedAt;
+        return new ExportJobResponse(job.id, job.format, job.status, job.rowsWritten, job.totalRows, job.size,
+                job.createdAt, finishedAt, finishedAt != null ? finishedAt.plus(ttl) : null);
+    }
+
+    private Path fileOf(Job job) {
+        return dir.resolve(job.id + "." + job.format.getExtension());
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("File di export non eliminato: {}", file);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Stato di un job: scritto dal thread di export e letto dalle richieste di stato.
+     */
+    private static final class Job {
+        final String id;
+        final String owner;
+        final ExportFormat format;
+        final ExportRequest request;
+        final Instant createdAt = Instant.now();
+        volatile ExportJobStatus status = ExportJobStatus.QUEUED;
+        volatile long rowsWritten;
+        volatile Long totalRows;
+        volatile Long size;
+        volatile Instant finishedAt;
+
+        Job(String id, String owner, ExportFormat format, ExportRequest request) {
+            this.id = id;
+            this.owner = owner;
+            this.format = format;
+            this.request = request;
+        }
+
+        boolean isFinished() {
+            return finishedAt != null;
+        }
+
+        // finishedAt per ultimo: chi vede il job terminato vede anche stato e dimensione definitivi
+        void finish(ExportJobStatus outcome) {
+            status = outcome;
+            finishedAt = Instant.now();
+        }
+    }
+}
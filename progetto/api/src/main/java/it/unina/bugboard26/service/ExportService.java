@@ -7,6 +7,7 @@ import com.itextpdf.kernel.geom.PageSize;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfWriter;
 import com.itextpdf.layout.Document;
+import com.itextpdf.layout.Style;
 import com.itextpdf.layout.borders.Border;
 import com.itextpdf.layout.borders.SolidBorder;
 import com.itextpdf.layout.element.Cell;
@@ -16,88 +17,185 @@ import com.itextpdf.layout.properties.TextAlignment;
 import com.itextpdf.layout.properties.UnitValue;
 import com.itextpdf.layout.properties.VerticalAlignment;
 import com.opencsv.CSVWriter;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
 
+import it.unina.bugboard26.model.Attachment;
 import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.enums.ExportFormat;
 import it.unina.bugboard26.enums.IssuePriority;
 import it.unina.bugboard26.enums.IssueStatus;
 import it.unina.bugboard26.enums.IssueType;
+import it.unina.bugboard26.repository.AttachmentRepository;
+import it.unina.bugboard26.repository.IssueFilter;
+import it.unina.bugboard26.repository.projection.IssueHistoryView;
+import it.unina.bugboard26.storage.AttachmentStore;
 
+import jakarta.persistence.EntityManager;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.ByteArrayOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 
 @Service
 @Transactional(readOnly = true)
 public class ExportService {
 
-    private final IssueService issueService;
+    // Righe lette dal cursore a ogni giro, e ogni quante righe si svuotano output e sessione
+    private static final int FETCH_SIZE = 500;
+    // Righe del foglio Excel tenute in memoria, e quante se ne guardano per stimare le larghezze
+    private static final int EXCEL_WINDOW = 200;
+    private static final int EXCEL_WIDTH_SAMPLE = 1000;
+    private static final int EXCEL_MAX_COLUMN_CHARS = 60;
+    private static final LongConsumer NO_PROGRESS = rows -> { };
+    private static final String[] CSV_HEADER = {"ID", "Titolo", "Tipo", "Priorita", "Stato", "Creato da",
+            "Data creazione", "Archiviata"};
+    private static final String[] ATTACHMENT_HEADER = {"ID issue", "ID allegato", "File", "Nome originale", "Tipo",
+            "Dimensione", "SHA-256", "Caricato il", "Presente"};
+    // Formati gia' compressi: nello ZIP entrano STORED, deflate costerebbe CPU senza ridurli
+    private static final Set<String> COMPRESSED_TYPES = Set.of("image/jpeg", "image/png", "image/gif",
+            "image/webp", "application/pdf", "application/zip", "application/gzip");
+    // Il generatore non chiude lo stream della risposta, che resta di chi chiama
+    private static final JsonFactory JSON = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    // Colori del report PDF, condivisi da tutte le celle
+    private static final DeviceRgb PRIMARY = new DeviceRgb(30, 58, 138);
+    private static final DeviceRgb WHITE = new DeviceRgb(255, 255, 255);
+    private static final DeviceRgb LIGHT_GRAY = new DeviceRgb(243, 244, 246);
+    private static final DeviceRgb MEDIUM_GRAY = new DeviceRgb(107, 114, 128);
+    private static final DeviceRgb DARK_GRAY = new DeviceRgb(75, 85, 99);
+    private static final DeviceRgb BORDER_COLOR = new DeviceRgb(209, 213, 219);
+    private static final DeviceRgb STAT_BACKGROUND = new DeviceRgb(249, 250, 251);
+    private static final DeviceRgb STAT_BORDER = new DeviceRgb(229, 231, 235);
+    private static final DeviceRgb RED = new DeviceRgb(220, 38, 38);
+    private static final DeviceRgb GREEN = new DeviceRgb(22, 163, 74);
+    private static final DeviceRgb BLUE = new DeviceRgb(37, 99, 235);
+    private static final DeviceRgb PURPLE = new DeviceRgb(147, 51, 234);
+    private static final DeviceRgb YELLOW = new DeviceRgb(202, 138, 4);
+    private static final DeviceRgb ORANGE = new DeviceRgb(234, 88, 12);
 
-    public ExportService(IssueService issueService) {
+    private final IssueService issueService;
+    private final AttachmentRepository attachmentRepository;
+    private final AttachmentStore attachmentStore;
+    private final EntityManager entityManager;
+
+    public ExportService(IssueService issueService,
+                         AttachmentRepository attachmentRepository,
+                         AttachmentStore attachmentStore,
+                         EntityManager entityManager) {
         this.issueService = issueService;
+        this.attachmentRepository = attachmentRepository;
+        this.attachmentStore = attachmentStore;
+        this.entityManager = entityManager;
     }
 
-    public byte[] exportCsv(List<IssueType> types,
-                            List<IssueStatus> statuses,
-                            List<IssuePriority> priorities,
-                            String assignedToId,
-                            Boolean archived,
-                            String search) {
-        List<Issue> issues = issueService.getFilteredForExport(
-                types, statuses, priorities, assignedToId, archived, search
-        );
+    /**
+     * Scrive l'export nel formato richiesto. {@code progress} riceve il numero di righe scritte
+     * a ogni blocco del cursore e alla fine. Non chiude {@code out}.
+     */
+    public void write(ExportFormat format, IssueFilter filter, OutputStream out, LongConsumer progress) throws IOException {
+        switch (format) {
+            case CSV -> writeCsv(filter, out, progress);
+            case PDF -> writePdf(filter, out, progress);
+            case EXCEL -> writeExcel(filter, out, progress);
+            case NDJSON -> writeNdjson(filter, out, progress);
+            case ZIP -> writeZip(filter, out, progress);
+        }
+    }
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             CSVWriter writer = new CSVWriter(new OutputStreamWriter(baos, StandardCharsets.UTF_8))) {
+    public void writeCsv(IssueFilter filter, OutputStream out) throws IOException {
+        writeCsv(filter, out, NO_PROGRESS);
+    }
 
-            String[] header = {"ID", "Titolo", "Tipo", "Priorita", "Stato", "Creato da",
-                    "Data creazione", "Archiviata"};
-            writer.writeNext(header);
+    public void writePdf(IssueFilter filter, OutputStream out) throws IOException {
+        writePdf(filter, out, NO_PROGRESS);
+    }
 
-            for (Issue issue : issues) {
-                String[] row = {
-                        issue.getId(),
-                        issue.getTitle(),
-                        issue.getType().name(),
-                        issue.getPriority() != null ? issue.getPriority().name() : "",
-                        issue.getStatus().name(),
-                        issue.getCreatedBy() != null ? issue.getCreatedBy().getName() : "",
-                        issue.getCreatedAt() != null ? issue.getCreatedAt().toString() : "",
-                        String.valueOf(issue.isArchived())
-                };
-                writer.writeNext(row);
-            }
+    public void writeExcel(IssueFilter filter, OutputStream out) throws IOException {
+        writeExcel(filter, out, NO_PROGRESS);
+    }
+
+    public void writeNdjson(IssueFilter filter, OutputStream out) throws IOException {
+        writeNdjson(filter, out, NO_PROGRESS);
+    }
+
+    public void writeZip(IssueFilter filter, OutputStream out) throws IOException {
+        writeZip(filter, out, NO_PROGRESS);
+    }
 
+    /**
+     * Scrive il CSV direttamente su {@code out} mentre le righe escono dal cursore: ogni
+     * {@value #FETCH_SIZE} righe l'output viene svuotato e le issue gia' scritte staccate dalla
+     * sessione, quindi la memoria usata non dipende dal numero di issue. Non chiude {@code out}.
+     */
+    public void writeCsv(IssueFilter filter, OutputStream out, LongConsumer progress) throws IOException {
+        try (Stream<Issue> issues = issueService.streamFilteredForExport(filter, FETCH_SIZE)) {
+            CSVWriter writer = new CSVWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.writeNext(CSV_HEADER);
+            forEachIssue(issues, issue -> writer.writeNext(csvRow(issue)), writer, progress);
             writer.flush();
-            return baos.toByteArray();
-        } catch (Exception e) {
-            throw new RuntimeException("Errore durante l'export CSV", e);
         }
     }
 
-    public byte[] exportPdf(List<IssueType> types,
-                            List<IssueStatus> statuses,
-                            List<IssuePriority> priorities,
-                            String assignedToId,
-                            Boolean archived,
-                            String search) {
-
-        List<Issue> issues = issueService.getFilteredForExport(
-                types, statuses, priorities, assignedToId, archived, search
-        );
+    private static String[] csvRow(Issue issue) {
+        return new String[]{
+                issue.getId(),
+                issue.getTitle(),
+                issue.getType().name(),
+                issue.getPriority() != null ? issue.getPriority().name() : "",
+                issue.getStatus().name(),
+                issue.getCreatedBy() != null ? issue.getCreatedBy().getName() : "",
+                issue.getCreatedAt() != null ? issue.getCreatedAt().toString() : "",
+                String.valueOf(issue.isArchived())
+        };
+    }
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            PdfDocument pdfDoc = new PdfDocument(new PdfWriter(baos));
+    /**
+     * Scrive il report PDF su {@code out} con la tabella in modalita' "large table": le righe
+     * gia' aggiunte vengono impaginate e scritte a ogni blocco del cursore, e le pagine complete
+     * lasciano la memoria. I totali in testa arrivano da una GROUP BY, prima di leggere le righe.
+     * Colori e stili delle celle sono condivisi invece che creati per ogni cella. Non chiude {@code out}.
+     */
+    public void writePdf(IssueFilter filter, OutputStream out, LongConsumer progress) throws IOException {
+        Map<IssueStatus, Long> counts = issueService.countByStatusForExport(filter);
+        long total = counts.values().stream().mapToLong(Long::longValue).sum();
+
+        try (Stream<Issue> issues = issueService.streamFilteredForExport(filter, FETCH_SIZE)) {
+            PdfWriter pdfWriter = new PdfWriter(out);
+            pdfWriter.setCloseStream(false);
+            PdfDocument pdfDoc = new PdfDocument(pdfWriter);
             pdfDoc.setDefaultPageSize(PageSize.A4.rotate());
             Document document = new Document(pdfDoc, PageSize.A4.rotate());
             document.setMargins(30, 40, 40, 40);
@@ -107,19 +205,14 @@ public class ExportService {
             PdfFont bold = PdfFontFactory.createFont(
                     com.itextpdf.io.font.constants.StandardFonts.HELVETICA_BOLD);
 
-            DeviceRgb primary = new DeviceRgb(30, 58, 138);
-            DeviceRgb lightGray = new DeviceRgb(243, 244, 246);
-            DeviceRgb mediumGray = new DeviceRgb(107, 114, 128);
-            DeviceRgb borderColor = new DeviceRgb(209, 213, 219);
-
             // --- Header banner ---
             Table headerTable = new Table(UnitValue.createPercentArray(new float[]{70, 30}));
             headerTable.setWidth(UnitValue.createPercentValue(100));
             headerTable.setBorder(Border.NO_BORDER);
 
             Cell titleCell = new Cell()
-                    .add(new Paragraph("BugBoard26").setFont(bold).setFontSize(22).setFontColor(primary))
-                    .add(new Paragraph("Report Issue").setFont(regular).setFontSize(13).setFontColor(mediumGray))
+                    .add(new Paragraph("BugBoard26").setFont(bold).setFontSize(22).setFontColor(PRIMARY))
+                    .add(new Paragraph("Report Issue").setFont(regular).setFontSize(13).setFontColor(MEDIUM_GRAY))
                     .setBorder(Border.NO_BORDER)
                     .setPaddingBottom(8);
             headerTable.addCell(titleCell);
@@ -128,9 +221,9 @@ public class ExportService {
                     .withZone(ZoneId.systemDefault()).format(Instant.now());
             Cell dateCell = new Cell()
                     .add(new Paragraph("Generato il " + now).setFont(regular).setFontSize(9)
-                            .setFontColor(mediumGray).setTextAlignment(TextAlignment.RIGHT))
-                    .add(new Paragraph(issues.size() + " issue totali").setFont(bold).setFontSize(11)
-                            .setFontColor(primary).setTextAlignment(TextAlignment.RIGHT))
+                            .setFontColor(MEDIUM_GRAY).setTextAlignment(TextAlignment.RIGHT))
+                    .add(new Paragraph(total + " issue totali").setFont(bold).setFontSize(11)
+                            .setFontColor(PRIMARY).setTextAlignment(TextAlignment.RIGHT))
                     .setBorder(Border.NO_BORDER)
                     .setVerticalAlignment(VerticalAlignment.MIDDLE);
             headerTable.addCell(dateCell);
@@ -138,87 +231,88 @@ public class ExportService {
 
             // --- Separator line ---
             Table separator = new Table(1).setWidth(UnitValue.createPercentValue(100));
-            separator.addCell(new Cell().setHeight(2).setBackgroundColor(primary)
+            separator.addCell(new Cell().setHeight(2).setBackgroundColor(PRIMARY)
                     .setBorder(Border.NO_BORDER).setPadding(0));
             document.add(separator);
             document.add(new Paragraph("").setMarginBottom(10));
 
             // --- Summary stats ---
-            long todo = issues.stream().filter(i -> i.getStatus() == IssueStatus.TODO).count();
-            long inProgress = issues.stream().filter(i -> i.getStatus() == IssueStatus.IN_PROGRESS).count();
-            long risolta = issues.stream().filter(i -> i.getStatus() == IssueStatus.RISOLTA).count();
-            long chiusa = issues.stream().filter(i -> i.getStatus() == IssueStatus.CHIUSA).count();
-
             Table statsTable = new Table(UnitValue.createPercentArray(new float[]{25, 25, 25, 25}));
             statsTable.setWidth(UnitValue.createPercentValue(100));
             statsTable.setMarginBottom(15);
 
-            addStatCell(statsTable, "Todo", String.valueOf(todo), new DeviceRgb(107, 114, 128), bold, regular);
-            addStatCell(statsTable, "In Progress", String.valueOf(inProgress), new DeviceRgb(37, 99, 235), bold, regular);
-            addStatCell(statsTable, "Risolta", String.valueOf(risolta), new DeviceRgb(22, 163, 74), bold, regular);
-            addStatCell(statsTable, "Chiusa", String.valueOf(chiusa), new DeviceRgb(75, 85, 99), bold, regular);
+            addStatCell(statsTable, "Todo", count(counts, IssueStatus.TODO), statusColor(IssueStatus.TODO), bold, regular);
+            addStatCell(statsTable, "In Progress", count(counts, IssueStatus.IN_PROGRESS), statusColor(IssueStatus.IN_PROGRESS), bold, regular);
+            addStatCell(statsTable, "Risolta", count(counts, IssueStatus.RISOLTA), statusColor(IssueStatus.RISOLTA), bold, regular);
+            addStatCell(statsTable, "Chiusa", count(counts, IssueStatus.CHIUSA), statusColor(IssueStatus.CHIUSA), bold, regular);
 
             document.add(statsTable);
 
             // --- Data table ---
+            // Aggiunta al documento prima delle righe: ogni flush impagina e scrive quelle gia' aggiunte
             float[] colWidths = {35, 12, 12, 12, 14, 15};
-            Table table = new Table(UnitValue.createPercentArray(colWidths));
+            Table table = new Table(UnitValue.createPercentArray(colWidths), true);
             table.setWidth(UnitValue.createPercentValue(100));
 
             String[] headers = {"Titolo", "Tipo", "Priorita", "Stato", "Creato da", "Data creazione"};
             for (String h : headers) {
                 Cell hCell = new Cell()
-                        .add(new Paragraph(h).setFont(bold).setFontSize(9).setFontColor(new DeviceRgb(255, 255, 255)))
-                        .setBackgroundColor(primary)
+                        .add(new Paragraph(h).setFont(bold).setFontSize(9).setFontColor(WHITE))
+                        .setBackgroundColor(PRIMARY)
                         .setPadding(7)
                         .setBorder(Border.NO_BORDER);
                 table.addHeaderCell(hCell);
             }
+            document.add(table);
+
+            Style evenRow = rowStyle(WHITE);
+            Style oddRow = rowStyle(LIGHT_GRAY);
+            Style text = new Style().setFont(regular).setFontSize(9);
+            Style strong = new Style().setFont(bold).setFontSize(9);
+            Style small = new Style().setFont(regular).setFontSize(8).setFontColor(MEDIUM_GRAY);
 
             DateTimeFormatter dateFmt = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")
                     .withZone(ZoneId.systemDefault());
 
-            for (int i = 0; i < issues.size(); i++) {
-                Issue issue = issues.get(i);
-                DeviceRgb rowBg = (i % 2 == 0) ? new DeviceRgb(255, 255, 255) : lightGray;
-
-                addDataCell(table, issue.getTitle(), regular, 9, rowBg, null, borderColor);
-                addDataCell(table, formatType(issue.getType()), regular, 9, rowBg, typeColor(issue.getType()), borderColor);
-                addDataCell(table, formatPriority(issue.getPriority()), regular, 9, rowBg, priorityColor(issue.getPriority()), borderColor);
-                addDataCell(table, formatStatus(issue.getStatus()), bold, 9, rowBg, statusColor(issue.getStatus()), borderColor);
-                addDataCell(table, issue.getCreatedBy() != null ? issue.getCreatedBy().getName() : "-", regular, 9, rowBg, null, borderColor);
-                addDataCell(table, issue.getCreatedAt() != null ? dateFmt.format(issue.getCreatedAt()) : "-", regular, 8, rowBg, mediumGray, borderColor);
-            }
+            long[] index = {0};
+            forEachIssue(issues, issue -> {
+                Style row = index[0]++ % 2 == 0 ? evenRow : oddRow;
+                addDataCell(table, issue.getTitle(), text, null, row);
+                addDataCell(table, formatType(issue.getType()), text, typeColor(issue.getType()), row);
+                addDataCell(table, formatPriority(issue.getPriority()), text, priorityColor(issue.getPriority()), row);
+                addDataCell(table, formatStatus(issue.getStatus()), strong, statusColor(issue.getStatus()), row);
+                addDataCell(table, issue.getCreatedBy() != null ? issue.getCreatedBy().getName() : "-", text, null, row);
+                addDataCell(table, issue.getCreatedAt() != null ? dateFmt.format(issue.getCreatedAt()) : "-", small, null, row);
+            }, table::flush, progress);
 
-            document.add(table);
+            table.complete();
 
             // --- Footer ---
             document.add(new Paragraph("")
                     .setMarginTop(20));
             document.add(new Paragraph("BugBoard26 — Documento generato automaticamente")
-                    .setFont(regular).setFontSize(8).setFontColor(mediumGray)
+                    .setFont(regular).setFontSize(8).setFontColor(MEDIUM_GRAY)
                     .setTextAlignment(TextAlignment.CENTER));
 
             document.close();
-            return baos.toByteArray();
-        } catch (Exception e) {
-            throw new RuntimeException("Errore durante l'export PDF", e);
         }
     }
 
+    private static String count(Map<IssueStatus, Long> counts, IssueStatus status) {
+        return String.valueOf(counts.getOrDefault(status, 0L));
+    }
 
-    public byte[] exportExcel(List<IssueType> types,
-                              List<IssueStatus> statuses,
-                              List<IssuePriority> priorities,
-                              String assignedToId,
-                              Boolean archived,
-                              String search) {
-        List<Issue> issues = issueService.getFilteredForExport(
-                types, statuses, priorities, assignedToId, archived, search
-        );
-
-        try (Workbook workbook = new XSSFWorkbook();
-             ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+    /**
+     * Scrive il foglio Excel su {@code out} tenendo in memoria solo le ultime {@value #EXCEL_WINDOW}
+     * righe: le precedenti finiscono in un file temporaneo compresso, che alla fine viene copiato
+     * nell'archivio xlsx direttamente su {@code out}. Le larghezze delle colonne si stimano dalle prime
+     * {@value #EXCEL_WIDTH_SAMPLE} righe invece che con {@code autoSizeColumn}, che misura ogni cella
+     * con i font AWT e non vede le righe gia' scaricate. Non chiude {@code out}.
+     */
+    public void writeExcel(IssueFilter filter, OutputStream out, LongConsumer progress) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(EXCEL_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try (Stream<Issue> issues = issueService.streamFilteredForExport(filter, FETCH_SIZE)) {
 
             Sheet sheet = workbook.createSheet("Issue");
 
@@ -229,63 +323,333 @@ public class ExportService {
 
             String[] headers = {"ID", "Titolo", "Tipo", "Priorita", "Stato",
                     "Creato da", "Data creazione", "Archiviata"};
+            int[] widths = new int[headers.length];
             Row headerRow = sheet.createRow(0);
             for (int i = 0; i < headers.length; i++) {
                 org.apache.poi.ss.usermodel.Cell cell = headerRow.createCell(i);
                 cell.setCellValue(headers[i]);
                 cell.setCellStyle(headerStyle);
+                widths[i] = headers[i].length();
             }
 
-            int rowIndex = 1;
-            for (Issue issue : issues) {
-                Row row = sheet.createRow(rowIndex++);
-                row.createCell(0).setCellValue(issue.getId());
-                row.createCell(1).setCellValue(issue.getTitle());
-                row.createCell(2).setCellValue(issue.getType().name());
-                row.createCell(3).setCellValue(issue.getPriority() != null ? issue.getPriority().name() : "");
-                row.createCell(4).setCellValue(issue.getStatus().name());
-                row.createCell(5).setCellValue(issue.getCreatedBy() != null ? issue.getCreatedBy().getName() : "");
-                row.createCell(6).setCellValue(issue.getCreatedAt() != null ? issue.getCreatedAt().toString() : "");
-                row.createCell(7).setCellValue(issue.isArchived());
+            int[] rowIndex = {1};
+            forEachIssue(issues, issue -> {
+                String[] values = {
+                        issue.getId(),
+                        issue.getTitle(),
+                        issue.getType().name(),
+                        issue.getPriority() != null ? issue.getPriority().name() : "",
+                        issue.getStatus().name(),
+                        issue.getCreatedBy() != null ? issue.getCreatedBy().getName() : "",
+                        issue.getCreatedAt() != null ? issue.getCreatedAt().toString() : ""
+                };
+                Row row = sheet.createRow(rowIndex[0]);
+                for (int i = 0; i < values.length; i++) {
+                    row.createCell(i).setCellValue(values[i]);
+                }
+                row.createCell(values.length).setCellValue(issue.isArchived());
+                if (rowIndex[0]++ <= EXCEL_WIDTH_SAMPLE) {
+                    for (int i = 0; i < values.length; i++) {
+                        widths[i] = Math.max(widths[i], values[i].length());
+                    }
+                }
+            }, () -> { }, progress);
+
+            for (int i = 0; i < widths.length; i++) {
+                // Unita' di 1/256 di carattere, con un margine e un limite per i titoli lunghi
+                sheet.setColumnWidth(i, Math.min(widths[i] + 2, EXCEL_MAX_COLUMN_CHARS) * 256);
             }
 
-            for (int i = 0; i < headers.length; i++) {
-                sheet.autoSizeColumn(i);
+            workbook.write(out);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * Scrive un oggetto JSON per riga, con label e cronologia, man mano che le issue escono dal cursore.
+     * Le issue si raccolgono a blocchi di {@value #FETCH_SIZE}: per ogni blocco label e cronologia
+     * arrivano con una query ciascuna, poi le righe vengono scritte, l'output svuotato e la sessione
+     * ripulita. Non chiude {@code out}.
+     */
+    public void writeNdjson(IssueFilter filter, OutputStream out, LongConsumer progress) throws IOException {
+        try (Stream<Issue> issues = issueService.streamFilteredForExport(filter, FETCH_SIZE);
+             JsonGenerator json = JSON.createGenerator(out, JsonEncoding.UTF8)) {
+            // Il separatore tra le righe e' il newline scritto dopo ogni oggetto, non lo spazio di default
+            json.setRootValueSeparator(null);
+            List<Issue> block = new ArrayList<>(FETCH_SIZE);
+            long written = 0;
+            for (Iterator<Issue> it = issues.iterator(); it.hasNext(); ) {
+                block.add(it.next());
+                if (block.size() == FETCH_SIZE) {
+                    written += writeNdjsonBlock(block, json);
+                    progress.accept(written);
+                }
+            }
+            written += writeNdjsonBlock(block, json);
+            progress.accept(written);
+        }
+    }
+
+    private int writeNdjsonBlock(List<Issue> block, JsonGenerator json) throws IOException {
+        if (block.isEmpty()) {
+            return 0;
+        }
+        List<String> ids = block.stream().map(Issue::getId).toList();
+        Map<String, List<String>> labels = issueService.labelNamesForExport(ids);
+        Map<String, List<IssueHistoryView>> history = issueService.historyForExport(ids);
+
+        for (Issue issue : block) {
+            json.writeStartObject();
+            json.writeStringField("id", issue.getId());
+            json.writeStringField("title", issue.getTitle());
+            json.writeStringField("type", issue.getType().name());
+            json.writeStringField("description", issue.getDescription());
+            json.writeStringField("priority", issue.getPriority() != null ? issue.getPriority().name() : null);
+            json.writeStringField("status", issue.getStatus().name());
+            json.writeBooleanField("archived", issue.isArchived());
+            json.writeStringField("archivedAt", text(issue.getArchivedAt()));
+            json.writeStringField("createdAt", text(issue.getCreatedAt()));
+            json.writeStringField("updatedAt", text(issue.getUpdatedAt()));
+            writeUser(json, "createdBy", issue.getCreatedBy());
+            writeUser(json, "assignedTo", issue.getAssignedTo());
+            json.writeArrayFieldStart("labels");
+            for (String label : labels.getOrDefault(issue.getId(), List.of())) {
+                json.writeString(label);
             }
+            json.writeEndArray();
+            json.writeArrayFieldStart("history");
+            for (IssueHistoryView entry : history.getOrDefault(issue.getId(), List.of())) {
+                json.writeStartObject();
+                json.writeStringField("action", entry.action());
+                json.writeStringField("timestamp", text(entry.timestamp()));
+                json.writeStringField("user", entry.userName());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        int size = block.size();
+        block.clear();
+        json.flush();
+        entityManager.clear();
+        return size;
+    }
+
+    /**
+     * Bundle per chi deve consegnare un insieme di issue con i loro file: uno ZIP con ogni allegato delle
+     * issue filtrate in {@code attachments/<issue>/}, copiato dallo storage direttamente nello stream, e due
+     * manifest: {@code issues.csv}, con le colonne dell'export CSV, e {@code attachments.csv}, con il
+     * percorso di ogni file nell'archivio. Una voce dello ZIP va scritta per intero prima della successiva,
+     * quindi i manifest crescono in file temporanei e chiudono l'archivio. Le issue si leggono a blocchi di
+     * {@value #FETCH_SIZE} come negli altri formati, con una query per gli allegati di ogni blocco.
+     * Gli allegati che mancano dallo storage restano nel manifest con {@code Presente = false}. Non chiude {@code out}.
+     */
+    public void writeZip(IssueFilter filter, OutputStream out, LongConsumer progress) throws IOException {
+        Path issuesManifest = Files.createTempFile("bugboard-bundle-", ".csv");
+        Path attachmentsManifest = Files.createTempFile("bugboard-bundle-", ".csv");
+        // Con lo storage S3 ogni allegato viene scaricato qui prima di entrare nell'archivio
+        Path scratch = attachmentStore.createTemp();
+        try (Stream<Issue> issues = issueService.streamFilteredForExport(filter, FETCH_SIZE);
+             CSVWriter issueRows = new CSVWriter(Files.newBufferedWriter(issuesManifest, StandardCharsets.UTF_8));
+             CSVWriter attachmentRows = new CSVWriter(Files.newBufferedWriter(attachmentsManifest, StandardCharsets.UTF_8))) {
+            ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+            issueRows.writeNext(CSV_HEADER);
+            attachmentRows.writeNext(ATTACHMENT_HEADER);
+
+            ZipBlock block = new ZipBlock(zip, issueRows, attachmentRows, scratch);
+            long written = 0;
+            for (Iterator<Issue> it = issues.iterator(); it.hasNext(); ) {
+                block.issues.add(it.next());
+                if (block.issues.size() == FETCH_SIZE) {
+                    written += writeZipBlock(block);
+                    progress.accept(written);
+                }
+            }
+            written += writeZipBlock(block);
+
+            issueRows.flush();
+            attachmentRows.flush();
+            putFile(zip, "issues.csv", issuesManifest, false, null);
+            putFile(zip, "attachments.csv", attachmentsManifest, false, null);
+            zip.finish();
+            progress.accept(written);
+        } finally {
+            Files.deleteIfExists(issuesManifest);
+            Files.deleteIfExists(attachmentsManifest);
+            Files.deleteIfExists(scratch);
+        }
+    }
+
+    private record ZipBlock(ZipOutputStream zip, CSVWriter issueRows, CSVWriter attachmentRows, Path scratch,
+                            List<Issue> issues) {
+        ZipBlock(ZipOutputStream zip, CSVWriter issueRows, CSVWriter attachmentRows, Path scratch) {
+            this(zip, issueRows, attachmentRows, scratch, new ArrayList<>(FETCH_SIZE));
+        }
+    }
+
+    private int writeZipBlock(ZipBlock block) throws IOException {
+        if (block.issues().isEmpty()) {
+            return 0;
+        }
+        Map<String, List<Attachment>> attachments = attachmentRepository
+                .findByIssueIds(block.issues().stream().map(Issue::getId).toList()).stream()
+                .collect(Collectors.groupingBy(a -> a.getIssue().getId()));
+
+        for (Issue issue : block.issues()) {
+            block.issueRows().writeNext(csvRow(issue));
+            for (Attachment attachment : attachments.getOrDefault(issue.getId(), List.of())) {
+                String entry = "attachments/" + issue.getId() + "/" + attachment.getId() + "-"
+                        + entryName(attachment.getOriginalFilename());
+                boolean present = writeAttachment(block, entry, attachment);
+                block.attachmentRows().writeNext(new String[]{
+                        issue.getId(),
+                        attachment.getId(),
+                        present ? entry : "",
+                        attachment.getOriginalFilename(),
+                        attachment.getContentType(),
+                        String.valueOf(attachment.getFileSize()),
+                        attachment.getSha256() != null ? attachment.getSha256() : "",
+                        text(attachment.getUploadedAt()),
+                        String.valueOf(present)
+                });
+            }
+        }
+
+        int size = block.issues().size();
+        block.issues().clear();
+        block.zip().flush();
+        entityManager.clear();
+        return size;
+    }
 
-            workbook.write(baos);
-            return baos.toByteArray();
+    private boolean writeAttachment(ZipBlock block, String entry, Attachment attachment) throws IOException {
+        Path file;
+        if (attachment.getSha256() != null) {
+            try {
+                file = attachmentStore.fetch(attachment.getSha256(), block.scratch());
+            } catch (NoSuchFileException e) {
+                return false;
+            }
+        } else {
+            // Allegati precedenti alla deduplicazione, salvati con il nome UUID
+            file = attachmentStore.legacyPath(attachment.getStoredFilename());
+            if (!Files.isRegularFile(file)) {
+                return false;
+            }
+        }
+        putFile(block.zip(), entry, file, isCompressed(attachment.getContentType()), attachment.getUploadedAt());
+        return true;
+    }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Errore durante l'export Excel", e);
+    /**
+     * Copia {@code file} in una nuova voce dell'archivio. STORED vuole dimensione e CRC prima del
+     * contenuto: il file si legge due volte, senza mai tenerlo in memoria.
+     */
+    private static void putFile(ZipOutputStream zip, String name, Path file, boolean stored, Instant modified)
+            throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (modified != null) {
+            entry.setTime(modified.toEpochMilli());
+        }
+        if (stored) {
+            long size = Files.size(file);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(size);
+            entry.setCompressedSize(size);
+            entry.setCrc(crc32(file));
         }
+        zip.putNextEntry(entry);
+        Files.copy(file, zip);
+        zip.closeEntry();
+    }
+
+    private static long crc32(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = new CheckedInputStream(Files.newInputStream(file), crc)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return crc.getValue();
+    }
+
+    private static boolean isCompressed(String contentType) {
+        return contentType != null && (COMPRESSED_TYPES.contains(contentType)
+                || contentType.startsWith("video/") || contentType.startsWith("audio/"));
+    }
+
+    // Nomi scelti dagli utenti: niente separatori di percorso o caratteri di controllo nelle voci dello ZIP
+    private static String entryName(String filename) {
+        return filename.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_");
+    }
+
+    private static void writeUser(JsonGenerator json, String field, User user) throws IOException {
+        if (user == null) {
+            json.writeNullField(field);
+            return;
+        }
+        json.writeObjectFieldStart(field);
+        json.writeStringField("id", user.getId());
+        json.writeStringField("name", user.getName());
+        json.writeEndObject();
+    }
+
+    private static String text(Instant instant) {
+        return instant != null ? instant.toString() : null;
+    }
+
+    /**
+     * Passa ad {@code action} le issue dello stream: ogni {@value #FETCH_SIZE} svuota {@code output}
+     * e stacca dalla sessione le issue gia' scritte, che altrimenti resterebbero tutte in memoria.
+     */
+    private void forEachIssue(Stream<Issue> issues, IssueWriter action, Flushable output,
+                              LongConsumer progress) throws IOException {
+        long written = 0;
+        for (Iterator<Issue> it = issues.iterator(); it.hasNext(); ) {
+            action.write(it.next());
+            if (++written % FETCH_SIZE == 0) {
+                output.flush();
+                entityManager.clear();
+                progress.accept(written);
+            }
+        }
+        progress.accept(written);
+    }
+
+    @FunctionalInterface
+    private interface IssueWriter {
+        void write(Issue issue) throws IOException;
     }
 
     private void addStatCell(Table table, String label, String value, DeviceRgb accent,
                              PdfFont bold, PdfFont regular) {
         Cell cell = new Cell()
                 .add(new Paragraph(value).setFont(bold).setFontSize(20).setFontColor(accent))
-                .add(new Paragraph(label).setFont(regular).setFontSize(9).setFontColor(new DeviceRgb(107, 114, 128)))
+                .add(new Paragraph(label).setFont(regular).setFontSize(9).setFontColor(MEDIUM_GRAY))
                 .setTextAlignment(TextAlignment.CENTER)
-                .setBackgroundColor(new DeviceRgb(249, 250, 251))
-                .setBorder(new SolidBorder(new DeviceRgb(229, 231, 235), 1))
+                .setBackgroundColor(STAT_BACKGROUND)
+                .setBorder(new SolidBorder(STAT_BORDER, 1))
                 .setPadding(10);
         table.addCell(cell);
     }
 
-    private void addDataCell(Table table, String text, PdfFont font, float fontSize,
-                             DeviceRgb bg, DeviceRgb fontColor, DeviceRgb borderColor) {
-        Paragraph p = new Paragraph(text != null ? text : "-").setFont(font).setFontSize(fontSize);
-        if (fontColor != null) p.setFontColor(fontColor);
-
-        Cell cell = new Cell().add(p)
-                .setBackgroundColor(bg)
+    // Sfondo, padding e bordi di una riga della tabella: uno stile per le righe pari e uno per le dispari
+    private static Style rowStyle(DeviceRgb background) {
+        return new Style()
+                .setBackgroundColor(background)
                 .setPadding(6)
                 .setBorderLeft(Border.NO_BORDER)
                 .setBorderRight(Border.NO_BORDER)
                 .setBorderTop(Border.NO_BORDER)
-                .setBorderBottom(new SolidBorder(borderColor, 0.5f));
-        table.addCell(cell);
+                .setBorderBottom(new SolidBorder(BORDER_COLOR, 0.5f));
+    }
+
+    private void addDataCell(Table table, String text, Style textStyle, DeviceRgb fontColor, Style rowStyle) {
+        Paragraph p = new Paragraph(text != null ? text : "-").addStyle(textStyle);
+        if (fontColor != null) p.setFontColor(fontColor);
+        table.addCell(new Cell().add(p).addStyle(rowStyle));
     }
 
     private String formatType(IssueType type) {
@@ -319,32 +683,32 @@ public class ExportService {
     }
 
     private DeviceRgb typeColor(IssueType type) {
-        if (type == null) return new DeviceRgb(107, 114, 128);
+        if (type == null) return MEDIUM_GRAY;
         return switch (type) {
-            case BUG -> new DeviceRgb(220, 38, 38);
-            case FEATURE -> new DeviceRgb(22, 163, 74);
-            case QUESTION -> new DeviceRgb(147, 51, 234);
-            case DOCUMENTATION -> new DeviceRgb(37, 99, 235);
+            case BUG -> RED;
+            case FEATURE -> GREEN;
+            case QUESTION -> PURPLE;
+            case DOCUMENTATION -> BLUE;
         };
     }
 
     private DeviceRgb priorityColor(IssuePriority p) {
-        if (p == null) return new DeviceRgb(107, 114, 128);
+        if (p == null) return MEDIUM_GRAY;
         return switch (p) {
-            case BASSA -> new DeviceRgb(37, 99, 235);
-            case MEDIA -> new DeviceRgb(202, 138, 4);
-            case ALTA -> new DeviceRgb(234, 88, 12);
-            case CRITICA -> new DeviceRgb(220, 38, 38);
+            case BASSA -> BLUE;
+            case MEDIA -> YELLOW;
+            case ALTA -> ORANGE;
+            case CRITICA -> RED;
         };
     }
 
     private DeviceRgb statusColor(IssueStatus s) {
-        if (s == null) return new DeviceRgb(107, 114, 128);
+        if (s == null) return MEDIUM_GRAY;
         return switch (s) {
-            case TODO -> new DeviceRgb(107, 114, 128);
-            case IN_PROGRESS -> new DeviceRgb(37, 99, 235);
-            case RISOLTA -> new DeviceRgb(22, 163, 74);
-            case CHIUSA -> new DeviceRgb(75, 85, 99);
+            case TODO -> MEDIUM_GRAY;
+            case IN_PROGRESS -> BLUE;
+            case RISOLTA -> GREEN;
+            case CHIUSA -> DARK_GRAY;
         };
     }
 }
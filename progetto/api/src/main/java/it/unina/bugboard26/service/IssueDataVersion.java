@@ -0,0 +1,65 @@
+package it.unina.bugboard26.service;
+
+import it.unina.bugboard26.event.IssueChangedEvent;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+
+/**
+ * Versione dei dati delle issue, nella riga {@code issues} di {@code data_versions}. Cresce nella
+ * stessa transazione di ogni scrittura, subito prima del commit: chi legge la versione e poi i dati
+ * non vede mai dati piu' vecchi della versione letta. Stando nel database vale per tutte le istanze
+ * e sopravvive ai riavvii.
+ * <p>
+ * L'incremento blocca la riga solo tra la fine della transazione e il commit, quindi le scritture
+ * concorrenti si accodano per pochi istanti.
+ */
+@Component
+public class IssueDataVersion implements SmartInitializingSingleton {
+
+    static final String NAME = "issues";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IssueDataVersion(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public long current() {
+        List<Long> versions = jdbcTemplate.queryForList(
+                "SELECT version FROM data_versions WHERE name = ?", Long.class, NAME);
+        return versions.isEmpty() ? 0 : versions.getFirst();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onIssueChanged(IssueChangedEvent event) {
+        bump();
+    }
+
+    /**
+     * Va chiamato dentro la transazione che modifica i dati, per le scritture che non passano da
+     * {@link IssueChangedEvent}.
+     */
+    public void bump() {
+        jdbcTemplate.update("UPDATE data_versions SET version = version + 1 WHERE name = ?", NAME);
+    }
+
+    // Dopo la creazione dello schema e prima che arrivino richieste: l'incremento trova sempre la riga.
+    // Fuori da transazioni, perche' su PostgreSQL una chiave duplicata annullerebbe quella in corso
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM data_versions WHERE name = ?", Integer.class, NAME) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO data_versions (name, version) VALUES (?, 0)", NAME);
+        } catch (DuplicateKeyException e) {
+            // Creata nel frattempo da un'altra istanza
+        }
+    }
+}
@@ -2,7 +2,10 @@ package it.unina.bugboard26.service;
 
 import it.unina.bugboard26.dto.request.CreateIssueRequest;
 import it.unina.bugboard26.dto.request.UpdateIssueRequest;
+import it.unina.bugboard26.dto.response.HistoryEntryResponse;
+import it.unina.bugboard26.dto.response.IssueFacetsResponse;
 import it.unina.bugboard26.dto.response.IssueResponse;
+import it.unina.bugboard26.dto.response.IssueSummaryResponse;
 import it.unina.bugboard26.dto.response.PagedResponse;
 
 import it.unina.bugboard26.model.HistoryEntry;
@@ -13,20 +16,56 @@ import it.unina.bugboard26.enums.IssuePriority;
 import it.unina.bugboard26.enums.IssueStatus;
 import it.unina.bugboard26.enums.IssueType;
 
+import it.unina.bugboard26.repository.HistoryCursor;
+import it.unina.bugboard26.repository.HistoryEntryRepository;
+import it.unina.bugboard26.repository.IssueCursor;
+import it.unina.bugboard26.repository.IssueFilter;
 import it.unina.bugboard26.repository.IssueRepository;
+import it.unina.bugboard26.repository.IssueSpecifications;
 import it.unina.bugboard26.repository.LabelRepository;
 import it.unina.bugboard26.repository.UserRepository;
+import it.unina.bugboard26.repository.projection.IssueFacetRow;
+import it.unina.bugboard26.repository.projection.IssueHistoryView;
+import it.unina.bugboard26.repository.projection.IssueLabelView;
+import it.unina.bugboard26.repository.projection.IssueSummaryView;
 
+import it.unina.bugboard26.event.IssueChangedEvent;
+import it.unina.bugboard26.search.IssueSearchIndex;
+import it.unina.bugboard26.search.SearchHit;
+import it.unina.bugboard26.storage.ImageStore;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 import static org.springframework.http.HttpStatus.UNAUTHORIZED;
 
@@ -34,22 +73,50 @@ import static org.springframework.http.HttpStatus.UNAUTHORIZED;
 @Transactional(readOnly = true)
 public class IssueService {
 
+    private static final Logger log = LoggerFactory.getLogger(IssueService.class);
+
+    /** Ordinamento per punteggio della ricerca full-text, non e' una colonna. */
+    public static final String SORT_RELEVANCE = "relevance";
+
+    /** Voci di history incluse nel dettaglio; le precedenti si leggono da GET /api/issues/{id}/history. */
+    public static final int HISTORY_PREVIEW_SIZE = 10;
+
+    private static final Duration FACETS_TTL = Duration.ofSeconds(10);
+
     private final IssueRepository issueRepository;
+    private final HistoryEntryRepository historyEntryRepository;
     private final UserRepository userRepository;
     private final LabelRepository labelRepository;
     private final PermissionService permissionService;
     private final NotificationService notificationService;
+    private final IssueSearchIndex searchIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ImageStore imageStore;
+
+    // La board ripete la stessa richiesta a ogni refresh: bastano pochi secondi per assorbirle
+    private final Cache<IssueFilter, IssueFacetsResponse> facetCache = Caffeine.newBuilder()
+            .expireAfterWrite(FACETS_TTL)
+            .maximumSize(1_000)
+            .build();
 
     public IssueService(IssueRepository issueRepository,
+                        HistoryEntryRepository historyEntryRepository,
                         UserRepository userRepository,
                         LabelRepository labelRepository,
                         PermissionService permissionService,
-                        NotificationService notificationService) {
+                        NotificationService notificationService,
+                        IssueSearchIndex searchIndex,
+                        ApplicationEventPublisher eventPublisher,
+                        ImageStore imageStore) {
         this.issueRepository = issueRepository;
+        this.historyEntryRepository = historyEntryRepository;
         this.userRepository = userRepository;
         this.labelRepository = labelRepository;
         this.permissionService = permissionService;
         this.notificationService = notificationService;
+        this.searchIndex = searchIndex;
+        this.eventPublisher = eventPublisher;
+        this.imageStore = imageStore;
     }
 
     private User resolveUser(String email) {
@@ -57,36 +124,298 @@ public class IssueService {
                 .orElseThrow(() -> new ResponseStatusException(UNAUTHORIZED, "Utente non trovato"));
     }
 
-    public PagedResponse<IssueResponse> getAll(List<IssueType> types,
-                                               List<IssueStatus> statuses,
-                                               List<IssuePriority> priorities,
-                                               String assignedToId,
-                                               Boolean archived,
-                                               String search,
-                                               Boolean deleted,
-                                               String userEmail,
-                                               Pageable pageable) {
-        if (Boolean.TRUE.equals(deleted)) {
+    public PagedResponse<IssueSummaryResponse> getAll(IssueFilter filter,
+                                                      String userEmail,
+                                                      Pageable pageable,
+                                                      boolean withTotal) {
+        filter = resolveDeletedFilter(filter, userEmail);
+        SearchResults hits = searchHits(filter);
+        if (hits != null) {
+            filter = filter.withSearchHits(hits.ids());
+        }
+        if (pageable.getSort().getOrderFor(SORT_RELEVANCE) != null) {
+            PagedResponse<IssueSummaryResponse> byRelevance = hits != null
+                    ? getAllByRelevance(filter, hits, pageable)
+                    : null;
+            if (byRelevance != null) {
+                return byRelevance;
+            }
+            pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                    Sort.by(Sort.Direction.DESC, "createdAt"));
+        }
+        if (!withTotal) {
+            Slice<IssueSummaryView> slice = issueRepository.findSummarySlice(filter, pageable);
+            return PagedResponse.of(slice.map(withLabels(slice.getContent(), hits)));
+        }
+        Page<IssueSummaryView> page = issueRepository.findSummaries(filter, pageable);
+        return PagedResponse.of(page.map(withLabels(page.getContent(), hits)));
+    }
+
+    // La classifica si scorre sull'indice a blocchi, chiedendo al database quali issue di ogni
+    // blocco passano i filtri, e dal database si carica solo la proiezione della pagina richiesta.
+    // Null se l'indice non e' leggibile: si ripiega sull'ordine per data
+    private PagedResponse<IssueSummaryResponse> getAllByRelevance(IssueFilter filter,
+                                                                  SearchResults hits,
+                                                                  Pageable pageable) {
+        long total = issueRepository.count(IssueSpecifications.matching(filter));
+        List<SearchHit> pageHits;
+        try {
+            pageHits = pageable.getOffset() >= total
+                    ? List.of()
+                    : searchIndex.searchPage(hits.text(), hits.fuzzy(), (int) pageable.getOffset(),
+                            pageable.getPageSize(), batch -> issueRepository.findIds(filter.withSearchHits(batch)));
+        } catch (IOException e) {
+            log.warn("Classifica di ricerca non disponibile: {}", e.getMessage());
+            return null;
+        }
+        List<String> pageIds = pageHits.stream().map(SearchHit::issueId).toList();
+
+        List<IssueSummaryView> rows = pageIds.isEmpty()
+                ? List.of()
+                : issueRepository.findSummaries(filter.withSearchHits(pageIds),
+                        PageRequest.of(0, pageIds.size())).getContent();
+        List<IssueSummaryView> ordered = rows.stream()
+                .sorted(Comparator.comparingInt(v -> pageIds.indexOf(v.id())))
+                .toList();
+
+        Map<String, Float> scores = pageHits.stream()
+                .collect(Collectors.toMap(SearchHit::issueId, SearchHit::score));
+        List<IssueSummaryResponse> data = ordered.stream().map(withLabels(ordered, hits, scores)).toList();
+        return PagedResponse.of(new PageImpl<>(data, pageable, total));
+    }
+
+    /**
+     * Paginazione keyset: {@code cursor} vuoto indica la prima pagina, altrimenti
+     * ordinamento e direzione vengono presi dal cursore stesso.
+     */
+    public PagedResponse<IssueSummaryResponse> getAllByCursor(IssueFilter filter,
+                                                              String userEmail,
+                                                              String cursor,
+                                                              IssueCursor.SortKey sortKey,
+                                                              boolean ascending,
+                                                              int pageSize,
+                                                              boolean withTotal) {
+        filter = resolveDeletedFilter(filter, userEmail);
+        SearchResults hits = searchHits(filter);
+        if (hits != null) {
+            filter = filter.withSearchHits(hits.ids());
+        }
+        IssueCursor after = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                after = IssueCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(BAD_REQUEST, "Cursore non valido");
+            }
+            sortKey = after.sortKey();
+            ascending = after.ascending();
+        }
+
+        List<IssueSummaryView> rows = issueRepository.findSummariesAfter(
+                filter, sortKey, ascending, after, pageSize + 1
+        );
+        boolean hasNext = rows.size() > pageSize;
+        List<IssueSummaryView> content = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasNext
+                ? IssueCursor.after(sortKey, ascending, content.getLast()).encode()
+                : null;
+        Long total = withTotal
+                ? issueRepository.count(IssueSpecifications.matching(filter))
+                : null;
+
+        List<IssueSummaryResponse> data = content.stream().map(withLabels(content, hits)).toList();
+        return PagedResponse.ofCursor(data, total, pageSize, nextCursor);
+    }
+
+    public IssueFacetsResponse getFacets(IssueFilter filter, String userEmail) {
+        return facetCache.get(resolveDeletedFilter(filter, userEmail), this::computeFacets);
+    }
+
+    /**
+     * Una sola query raggruppata per (stato, priorita', tipo, archiviata) con i soli filtri che non
+     * sono faccette; ogni faccetta somma poi le righe che rispettano tutti gli altri filtri.
+     */
+    private IssueFacetsResponse computeFacets(IssueFilter filter) {
+        IssueFilter grouped = filter.withoutFacets();
+        SearchResults hits = searchHits(grouped);
+        if (hits != null) {
+            grouped = grouped.withSearchHits(hits.ids());
+        }
+
+        long total = 0;
+        long noPriority = 0;
+        Map<IssueStatus, Long> status = zeroCounts(IssueStatus.class);
+        Map<IssuePriority, Long> priority = zeroCounts(IssuePriority.class);
+        Map<IssueType, Long> type = zeroCounts(IssueType.class);
+        Map<Boolean, Long> archived = new LinkedHashMap<>();
+        archived.put(false, 0L);
+        archived.put(true, 0L);
+
+        for (IssueFacetRow row : issueRepository.countFacets(grouped)) {
+            boolean byStatus = accepts(filter.statuses(), row.status());
+            boolean byPriority = accepts(filter.priorities(), row.priority());
+            boolean byType = accepts(filter.types(), row.type());
+            boolean byArchived = filter.archived() == null || filter.archived() == row.archived();
+
+            if (byStatus && byPriority && byType && byArchived) {
+                total += row.count();
+            }
+            if (byPriority && byType && byArchived) {
+                status.merge(row.status(), row.count(), Long::sum);
+            }
+            if (byStatus && byType && byArchived) {
+                if (row.priority() == null) {
+                    noPriority += row.count();
+                } else {
+                    priority.merge(row.priority(), row.count(), Long::sum);
+                }
+            }
+            if (byStatus && byPriority && byArchived) {
+                type.merge(row.type(), row.count(), Long::sum);
+            }
+            if (byStatus && byPriority && byType) {
+                archived.merge(row.archived(), row.count(), Long::sum);
+            }
+        }
+        return new IssueFacetsResponse(total, status, priority, noPriority, type, archived);
+    }
+
+    private static <T> boolean accepts(Collection<T> allowed, T value) {
+        return allowed == null || allowed.isEmpty() || allowed.contains(value);
+    }
+
+    private static <E extends Enum<E>> Map<E, Long> zeroCounts(Class<E> type) {
+        Map<E, Long> counts = new EnumMap<>(type);
+        for (E value : type.getEnumConstants()) {
+            counts.put(value, 0L);
+        }
+        return counts;
+    }
+
+    // Il filtro sulle issue eliminate e' riservato a chi puo' eliminarle
+    private IssueFilter resolveDeletedFilter(IssueFilter filter, String userEmail) {
+        if (Boolean.TRUE.equals(filter.deleted())) {
             User currentUser = resolveUser(userEmail);
             if (!permissionService.canDeleteIssue(currentUser)) {
-                deleted = null;
+                return filter.withDeleted(null);
             }
         }
-        Page<Issue> page = issueRepository.findFiltered(
-                types, statuses, priorities, assignedToId, archived, search, deleted, pageable
-        );
-        Page<IssueResponse> responsePage = page.map(IssueResponse::from);
-        return PagedResponse.of(responsePage);
+        return filter;
+    }
+
+    // Tutte le issue trovate dall'indice, con il testo cercato per score ed estratti
+    private record SearchResults(String text, boolean fuzzy, Set<String> ids) {}
+
+    /**
+     * Risolve il testo cercato sull'indice full-text, oppure restituisce null se non c'e'
+     * ricerca o l'indice non e' leggibile (in quel caso resta il LIKE).
+     */
+    private SearchResults searchHits(IssueFilter filter) {
+        if (filter.search() == null || filter.search().isBlank()) {
+            return null;
+        }
+        try {
+            return new SearchResults(filter.search(), filter.fuzzy(),
+                    searchIndex.matchingIds(filter.search(), filter.fuzzy()));
+        } catch (IOException e) {
+            log.warn("Indice di ricerca non disponibile, uso il LIKE: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Function<IssueSummaryView, IssueSummaryResponse> withLabels(List<IssueSummaryView> views,
+                                                                        SearchResults hits) {
+        return withLabels(views, hits, hits == null ? Map.of() : loadScores(views, hits));
+    }
+
+    private Function<IssueSummaryView, IssueSummaryResponse> withLabels(List<IssueSummaryView> views,
+                                                                        SearchResults hits,
+                                                                        Map<String, Float> scores) {
+        Map<String, List<String>> labelsByIssue = loadLabelNames(views);
+        if (hits == null) {
+            return v -> IssueSummaryResponse.from(v, labelsByIssue.getOrDefault(v.id(), List.of()));
+        }
+        Map<String, String> highlights = loadHighlights(views, hits);
+        return v -> IssueSummaryResponse.from(v, labelsByIssue.getOrDefault(v.id(), List.of()),
+                scores.get(v.id()), highlights.get(v.id()));
+    }
+
+    // Come gli estratti, lo score si chiede all'indice solo per le righe della pagina
+    private Map<String, Float> loadScores(List<IssueSummaryView> views, SearchResults hits) {
+        try {
+            return searchIndex.search(hits.text(), hits.fuzzy(),
+                            views.stream().map(IssueSummaryView::id).toList(), views.size()).stream()
+                    .collect(Collectors.toMap(SearchHit::issueId, SearchHit::score));
+        } catch (IOException e) {
+            log.warn("Score di ricerca non disponibili: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+
+    // Gli estratti si calcolano solo per le righe della pagina
+    private Map<String, String> loadHighlights(List<IssueSummaryView> views, SearchResults hits) {
+        try {
+            return searchIndex.highlight(hits.text(), hits.fuzzy(),
+                    views.stream().map(IssueSummaryView::id).toList());
+        } catch (IOException e) {
+            log.warn("Estratti di ricerca non disponibili: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+
+    // Una sola query per le label dell'intera pagina, invece di una per issue
+    private Map<String, List<String>> loadLabelNames(List<IssueSummaryView> views) {
+        if (views.isEmpty()) {
+            return Map.of();
+        }
+        List<String> ids = views.stream().map(IssueSummaryView::id).toList();
+        return issueRepository.findLabelNamesByIssueIds(ids).stream()
+                .collect(Collectors.groupingBy(IssueLabelView::issueId,
+                        Collectors.mapping(IssueLabelView::name, Collectors.toList())));
     }
 
     public IssueResponse getById(String id, String userEmail) {
         User currentUser = resolveUser(userEmail);
-        Issue issue = issueRepository.findById(id)
+        Issue issue = issueRepository.findDetailById(id)
                 .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Issue non trovata"));
         if (issue.getDeletedAt() != null && !permissionService.canDeleteIssue(currentUser)) {
             throw new ResponseStatusException(NOT_FOUND, "Issue non trovata");
         }
-        return IssueResponse.from(issue);
+        return toResponse(issue);
+    }
+
+    public PagedResponse<HistoryEntryResponse> getHistory(String issueId, String cursor, int pageSize, String userEmail) {
+        User currentUser = resolveUser(userEmail);
+        Issue issue = issueRepository.findById(issueId)
+                .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Issue non trovata"));
+        if (issue.getDeletedAt() != null && !permissionService.canDeleteIssue(currentUser)) {
+            throw new ResponseStatusException(NOT_FOUND, "Issue non trovata");
+        }
+
+        List<HistoryEntry> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = historyEntryRepository.findLatest(issueId, Limit.of(pageSize + 1));
+        } else {
+            HistoryCursor after;
+            try {
+                after = HistoryCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(BAD_REQUEST, "Cursore non valido");
+            }
+            rows = historyEntryRepository.findBefore(issueId, after.timestamp(), after.id(), Limit.of(pageSize + 1));
+        }
+        boolean hasNext = rows.size() > pageSize;
+        List<HistoryEntry> content = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasNext ? HistoryCursor.after(content.getLast()).encode() : null;
+
+        List<HistoryEntryResponse> data = content.stream().map(HistoryEntryResponse::from).toList();
+        return PagedResponse.ofCursor(data, historyEntryRepository.countByIssueId(issueId), pageSize, nextCursor);
+    }
+
+    // La history non passa mai dalla collezione dell'entita': solo le ultime voci e il totale
+    private IssueResponse toResponse(Issue issue) {
+        List<HistoryEntry> latest = historyEntryRepository.findLatest(issue.getId(), Limit.of(HISTORY_PREVIEW_SIZE));
+        return IssueResponse.from(issue, latest, historyEntryRepository.countByIssueId(issue.getId()));
     }
 
     @Transactional
@@ -103,13 +432,14 @@ public class IssueService {
         issue.setPriority(request.priority());
         issue.setStatus(IssueStatus.TODO);
         issue.setCreatedBy(currentUser);
-        issue.setImage(request.image());
-
-        HistoryEntry creation = new HistoryEntry(issue, currentUser, "Issue creata");
-        issue.getHistory().add(creation);
+        if (request.image() != null && !request.image().isEmpty()) {
+            issue.setImageKey(imageStore.storeDataUrl(request.image()));
+        }
 
         Issue saved = issueRepository.save(issue);
-        return IssueResponse.from(saved);
+        historyEntryRepository.save(new HistoryEntry(saved, currentUser, "Issue creata"));
+        issueChanged(saved.getId());
+        return toResponse(saved);
     }
 
     @Transactional
@@ -130,11 +460,11 @@ public class IssueService {
             if (request.archived()) {
                 issue.setArchivedAt(Instant.now());
                 issue.setArchivedBy(currentUser);
-                issue.getHistory().add(new HistoryEntry(issue, currentUser, "Issue archiviata"));
+                historyEntryRepository.save(new HistoryEntry(issue, currentUser, "Issue archiviata"));
             } else {
                 issue.setArchivedAt(null);
                 issue.setArchivedBy(null);
-                issue.getHistory().add(new HistoryEntry(issue, currentUser, "Issue ripristinata"));
+                historyEntryRepository.save(new HistoryEntry(issue, currentUser, "Issue ripristinata"));
             }
         }
 
@@ -146,7 +476,7 @@ public class IssueService {
             IssueStatus oldStatus = issue.getStatus();
             issue.setStatus(request.status());
             String action = "Stato cambiato: " + oldStatus + " -> " + request.status();
-            issue.getHistory().add(new HistoryEntry(issue, currentUser, action));
+            historyEntryRepository.save(new HistoryEntry(issue, currentUser, action));
 
             // RF06 — Notifica il creatore solo quando la issue viene risolta
             if (request.status() == IssueStatus.RISOLTA
@@ -182,7 +512,7 @@ public class IssueService {
                 issue.setPriority(request.priority());
             }
             if (request.image() != null) {
-                issue.setImage(request.image().isEmpty() ? null : request.image());
+                issue.setImageKey(request.image().isEmpty() ? null : imageStore.storeDataUrl(request.image()));
             }
         }
 
@@ -196,10 +526,14 @@ public class IssueService {
                             .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Label non trovata: " + labelId)))
                     .toList();
             issue.setLabels(labels);
+            // La tabella di join non e' una colonna di Issue: senza questo @PreUpdate non scatta e
+            // chi sincronizza con updatedSince non vedrebbe il cambio
+            issue.setUpdatedAt(Instant.now());
         }
 
         Issue saved = issueRepository.save(issue);
-        return IssueResponse.from(saved);
+        issueChanged(saved.getId());
+        return toResponse(saved);
     }
 
     @Transactional
@@ -215,8 +549,9 @@ public class IssueService {
         }
         issue.setDeletedAt(Instant.now());
         issue.setDeletedBy(currentUser);
-        issue.getHistory().add(new HistoryEntry(issue, currentUser, "Issue eliminata"));
+        historyEntryRepository.save(new HistoryEntry(issue, currentUser, "Issue eliminata"));
         issueRepository.save(issue);
+        issueChanged(issue.getId());
     }
 
     @Transactional
@@ -232,17 +567,61 @@ public class IssueService {
         }
         issue.setDeletedAt(null);
         issue.setDeletedBy(null);
-        issue.getHistory().add(new HistoryEntry(issue, currentUser, "Issue ripristinata dall'eliminazione"));
+        historyEntryRepository.save(new HistoryEntry(issue, currentUser, "Issue ripristinata dall'eliminazione"));
         Issue saved = issueRepository.save(issue);
-        return IssueResponse.from(saved);
+        issueChanged(saved.getId());
+        return toResponse(saved);
+    }
+
+    private void issueChanged(String issueId) {
+        facetCache.invalidateAll();
+        eventPublisher.publishEvent(new IssueChangedEvent(issueId));
+    }
+
+    public List<Issue> getFilteredForExport(IssueFilter filter) {
+        return issueRepository.findFilteredAll(exportFilter(filter));
+    }
+
+    /**
+     * Come {@link #getFilteredForExport}, ma letto a blocchi di {@code fetchSize} righe:
+     * va consumato e chiuso dentro la transazione di chi chiama.
+     */
+    public Stream<Issue> streamFilteredForExport(IssueFilter filter, int fetchSize) {
+        return issueRepository.streamFiltered(exportFilter(filter), fetchSize);
+    }
+
+    /**
+     * Issue dell'export per stato, con una GROUP BY invece di contarle dalla lista:
+     * il PDF mostra i totali in testa, prima di leggere le righe.
+     */
+    public Map<IssueStatus, Long> countByStatusForExport(IssueFilter filter) {
+        Map<IssueStatus, Long> counts = new EnumMap<>(IssueStatus.class);
+        for (IssueFacetRow row : issueRepository.countFacets(exportFilter(filter))) {
+            counts.merge(row.status(), row.count(), Long::sum);
+        }
+        return counts;
+    }
+
+    // Label e cronologia di un blocco dell'export: due query per blocco invece di due per issue
+    public Map<String, List<String>> labelNamesForExport(Collection<String> issueIds) {
+        if (issueIds.isEmpty()) {
+            return Map.of();
+        }
+        return issueRepository.findLabelNamesByIssueIds(issueIds).stream()
+                .collect(Collectors.groupingBy(IssueLabelView::issueId,
+                        Collectors.mapping(IssueLabelView::name, Collectors.toList())));
+    }
+
+    public Map<String, List<IssueHistoryView>> historyForExport(Collection<String> issueIds) {
+        if (issueIds.isEmpty()) {
+            return Map.of();
+        }
+        return historyEntryRepository.findByIssueIds(issueIds).stream()
+                .collect(Collectors.groupingBy(IssueHistoryView::issueId));
     }
 
-    public List<Issue> getFilteredForExport(List<IssueType> types,
-                                            List<IssueStatus> statuses,
-                                            List<IssuePriority> priorities,
-                                            String assignedToId,
-                                            Boolean archived,
-                                            String search) {
-        return issueRepository.findFilteredAll(types, statuses, priorities, assignedToId, archived, search);
+    private IssueFilter exportFilter(IssueFilter filter) {
+        SearchResults hits = searchHits(filter);
+        return hits != null ? filter.withSearchHits(hits.ids()) : filter;
     }
 }
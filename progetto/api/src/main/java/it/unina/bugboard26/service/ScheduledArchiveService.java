@@ -2,6 +2,7 @@ package it.unina.bugboard26.service;
 
 import it.unina.bugboard26.model.HistoryEntry;
 import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.repository.HistoryEntryRepository;
 import it.unina.bugboard26.repository.IssueRepository;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -10,19 +11,26 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
 public class ScheduledArchiveService {
 
     private final IssueRepository issueRepository;
+    private final HistoryEntryRepository historyEntryRepository;
+    private final IssueDataVersion issueDataVersion;
     private final boolean enabled;
     private final int days;
 
     public ScheduledArchiveService(IssueRepository issueRepository,
+                                   HistoryEntryRepository historyEntryRepository,
+                                   IssueDataVersion issueDataVersion,
                                    @Value("${bugboard.auto-archive.enabled:true}") boolean enabled,
                                    @Value("${bugboard.auto-archive.days:30}") int days) {
         this.issueRepository = issueRepository;
+        this.historyEntryRepository = historyEntryRepository;
+        this.issueDataVersion = issueDataVersion;
         this.enabled = enabled;
         this.days = days;
     }
@@ -37,14 +45,18 @@ public class ScheduledArchiveService {
 
         if (issues.isEmpty()) return;
 
+        List<HistoryEntry> entries = new ArrayList<>(issues.size());
         for (Issue issue : issues) {
             issue.setArchived(true);
             issue.setArchivedAt(Instant.now());
             issue.setArchivedBy(null);
-            issue.getHistory().add(new HistoryEntry(issue, null,
+            entries.add(new HistoryEntry(issue, null,
                     "Archiviata automaticamente dopo " + days + " giorni"));
         }
 
         issueRepository.saveAll(issues);
+        historyEntryRepository.saveAll(entries);
+        // Un solo incremento per tutto il blocco archiviato
+        issueDataVersion.bump();
     }
 }
@@ -0,0 +1,167 @@
+package it.unina.bugboard26.service;
+
+import it.unina.bugboard26.event.AttachmentStoredEvent;
+import it.unina.bugboard26.storage.AttachmentStore;
+import it.unina.bugboard26.storage.ThumbnailRenderer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Genera in background le anteprime degli allegati, una per contenuto. Il lavoro passa da una coda
+ * limitata a {@code queue-capacity} elementi: quando e' piena la richiesta viene scartata e ritentata
+ * alla prima lettura dell'anteprima, cosi' un picco di upload non accumula memoria ne' rallenta le richieste.
+ * <p>
+ * Metriche: {@code bugboard.thumbnails.queue.depth} (elementi in attesa), {@code bugboard.thumbnails.wait}
+ * (attesa in coda), {@code bugboard.thumbnails.render} (generazione, per tipo ed esito) e
+ * {@code bugboard.thumbnails.rejected} (richieste scartate a coda piena).
+ */
+@Service
+public class ThumbnailService {
+
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailService.class);
+
+    private final AttachmentStore attachmentStore;
+    private final ThreadPoolExecutor executor;
+    private final MeterRegistry meterRegistry;
+    private final Timer waitTimer;
+    private final Counter rejected;
+    // Contenuti gia' in coda o in lavorazione: due upload dello stesso file producono un solo lavoro
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    // Contenuti che non si sono potuti leggere: non si riprova a ogni richiesta dell'anteprima
+    private final Cache<String, Boolean> failures = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+
+    public ThumbnailService(AttachmentStore attachmentStore,
+                            MeterRegistry meterRegistry,
+                            @Value("${bugboard.thumbnails.threads:2}") int threads,
+                            @Value("${bugboard.thumbnails.queue-capacity:100}") int queueCapacity) {
+        this.attachmentStore = attachmentStore;
+        this.meterRegistry = meterRegistry;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnail-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Gauge.builder("bugboard.thumbnails.queue.depth", executor, e -> e.getQueue().size())
+                .description("Anteprime in attesa di generazione")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("bugboard.thumbnails.wait")
+                .description("Attesa in coda prima della generazione")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("bugboard.thumbnails.rejected")
+                .description("Richieste scartate a coda piena")
+                .register(meterRegistry);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAttachmentStored(AttachmentStoredEvent event) {
+        request(event.sha256(), event.contentType());
+    }
+
+    /**
+     * Mette in coda l'anteprima se il tipo la prevede e non esiste ancora.
+     *
+     * @return false se il tipo non ha anteprima, il contenuto non e' leggibile o la coda e' piena
+     */
+    public boolean request(String sha256, String contentType) {
+        if (!ThumbnailRenderer.supports(contentType)) {
+            return false;
+        }
+        if (failures.getIfPresent(sha256) != null) {
+            return false;
+        }
+        try {
+            if (attachmentStore.hasThumbnail(sha256)) {
+                return true;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Impossibile verificare l'anteprima di {}: {}", sha256, e.getMessage());
+            return false;
+        }
+        if (!pending.add(sha256)) {
+            return true;
+        }
+        long queuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> generate(sha256, contentType, queuedAt));
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(sha256);
+            rejected.increment();
+            return false;
+        }
+    }
+
+    private void generate(String sha256, String contentType, long queuedAt) {
+        long startedAt = System.nanoTime();
+        waitTimer.record(startedAt - queuedAt, TimeUnit.NANOSECONDS);
+        String outcome = "success";
+        Path scratch = null;
+        Path temp = null;
+        try {
+            scratch = attachmentStore.createTemp();
+            Path source = attachmentStore.fetch(sha256, scratch);
+            temp = attachmentStore.createTemp();
+            ThumbnailRenderer.render(source, contentType, temp);
+            attachmentStore.commitThumbnail(temp, sha256);
+        } catch (NoSuchFileException e) {
+            // Allegato eliminato mentre era in coda
+            outcome = "missing";
+        } catch (IOException | RuntimeException e) {
+            outcome = "error";
+            failures.put(sha256, Boolean.TRUE);
+            log.warn("Anteprima non generata per {}: {}", sha256, e.getMessage());
+        } finally {
+            deleteQuietly(scratch);
+            deleteQuietly(temp);
+            pending.remove(sha256);
+            Timer.builder("bugboard.thumbnails.render")
+                    .description("Generazione di un'anteprima")
+                    .tag("type", ThumbnailRenderer.kind(contentType))
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static void deleteQuietly(Path temp) {
+        if (temp == null) return;
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            log.debug("File temporaneo non eliminato: {}", temp);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -29,10 +29,13 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final IssueDataVersion issueDataVersion;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder,
+                       IssueDataVersion issueDataVersion) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.issueDataVersion = issueDataVersion;
     }
 
     public List<UserResponse> getAll() {
@@ -71,6 +74,10 @@ public class UserService {
             user.setEmail(request.email());
         }
         if (request.name() != null) {
+            // Il nome dell'autore compare negli export delle sue issue
+            if (!request.name().equals(user.getName())) {
+                issueDataVersion.bump();
+            }
             user.setName(request.name());
         }
         if (request.role() != null) {
@@ -90,6 +97,8 @@ public class UserService {
             throw new ResponseStatusException(NOT_FOUND, "Utente non trovato");
         }
         userRepository.deleteById(id);
+        // Le issue create dall'utente vengono eliminate, quelle assegnate restano senza assegnatario
+        issueDataVersion.bump();
     }
 
     @Transactional
@@ -0,0 +1,284 @@
+package it.unina.bugboard26.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * File degli allegati, salvati una sola volta sotto lo SHA-256 del contenuto. Quante righe di
+ * {@code attachments} puntano a un file lo decide il database ({@code attachment_blobs}); qui ci
+ * sono solo le operazioni sui file.
+ * <p>
+ * Un upload passa prima da un file temporaneo su disco ({@link #stage}), perche' l'hash si conosce
+ * solo alla fine dello stream, e poi viene consegnato al {@link BlobStorage} con {@link #commit}.
+ * Gli upload a blocchi accumulano i byte in un file parziale in {@code partial/} che diventa il
+ * file temporaneo al completamento. Staging e file parziali restano sempre nella directory locale,
+ * anche quando i contenuti stanno in un bucket.
+ */
+@Component
+public class AttachmentStore {
+
+    private static final Pattern FLAT_FILE = Pattern.compile("[0-9a-f]{64}(\\.thumb\\.jpg)?");
+
+    public record StagedBlob(Path temp, String sha256, long size) {
+    }
+
+    private final Path dir;
+    private final Path partialDir;
+    private final BlobStorage storage;
+
+    public AttachmentStore(@Value("${bugboard.attachments.dir:uploads}") String dir, BlobStorage storage) {
+        this.dir = Paths.get(dir);
+        this.partialDir = this.dir.resolve("partial");
+        this.storage = storage;
+    }
+
+    /**
+     * Copia lo stream in un file temporaneo calcolando l'hash durante la copia.
+     */
+    public StagedBlob stage(InputStream in) throws IOException {
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, "upload-", ".tmp");
+        MessageDigest digest = sha256Digest();
+        try (InputStream digesting = new DigestInputStream(in, digest)) {
+            long size = Files.copy(digesting, temp, StandardCopyOption.REPLACE_EXISTING);
+            return new StagedBlob(temp, HexFormat.of().formatHex(digest.digest()), size);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Salva il file temporaneo sotto il suo hash, sostituendo un eventuale file con lo stesso contenuto.
+     * Per un nuovo allegato serve solo se il blob e' appena stato creato: se il contenuto era gia'
+     * salvato basta {@link #discard(StagedBlob)}.
+     */
+    public void commit(StagedBlob blob) throws IOException {
+        storage.put(blob.sha256(), blob.temp());
+    }
+
+    public void discard(StagedBlob blob) throws IOException {
+        Files.deleteIfExists(blob.temp());
+    }
+
+    public void createPart(String uploadId) throws IOException {
+        Files.createDirectories(partialDir);
+        Files.createFile(partPath(uploadId));
+    }
+
+    /**
+     * Byte gia' ricevuti per un upload a blocchi, cioe' l'offset da cui riprendere.
+     *
+     * @throws IllegalArgumentException se il file parziale non esiste
+     */
+    public long partSize(String uploadId) throws IOException {
+        Path part = partPath(uploadId);
+        if (!Files.isRegularFile(part)) {
+            throw new IllegalArgumentException("Upload non trovato");
+        }
+        return Files.size(part);
+    }
+
+    /**
+     * Scrive un blocco in coda al file parziale copiando lo stream direttamente nel canale del file,
+     * senza accumularlo in memoria. Se la connessione cade a meta' i byte arrivati restano validi e
+     * l'upload riprende dalla nuova dimensione.
+     *
+     * @return il nuovo offset
+     * @throws IllegalStateException se {@code offset} non e' la dimensione attuale o un altro blocco e' in scrittura
+     * @throws IllegalArgumentException se il blocco supera {@code totalSize}; in quel caso viene scartato
+     */
+    public long appendChunk(String uploadId, long offset, long totalSize, InputStream in) throws IOException {
+        Path part = partPath(uploadId);
+        if (!Files.isRegularFile(part)) {
+            throw new IllegalArgumentException("Upload non trovato");
+        }
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE);
+             FileLock lock = tryLock(channel)) {
+            if (lock == null) {
+                throw new IllegalStateException("Un altro blocco di questo upload e' in scrittura");
+            }
+            if (channel.size() != offset) {
+                throw new IllegalStateException("Offset non valido: atteso " + channel.size());
+            }
+            ReadableByteChannel source = Channels.newChannel(in);
+            long position = offset;
+            long written;
+            while (position < totalSize && (written = channel.transferFrom(source, position, totalSize - position)) > 0) {
+                position += written;
+            }
+            if (position == totalSize && in.read() != -1) {
+                channel.truncate(offset);
+                throw new IllegalArgumentException("Il blocco supera la dimensione dichiarata");
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Calcola l'hash del file parziale completo e lo restituisce pronto per {@link #commit}.
+     */
+    public StagedBlob stagePart(String uploadId) throws IOException {
+        Path part = partPath(uploadId);
+        MessageDigest digest = sha256Digest();
+        long size;
+        try (InputStream in = new DigestInputStream(Files.newInputStream(part), digest)) {
+            size = in.transferTo(OutputStream.nullOutputStream());
+        }
+        return new StagedBlob(part, HexFormat.of().formatHex(digest.digest()), size);
+    }
+
+    public void deletePart(String uploadId) throws IOException {
+        Files.deleteIfExists(partPath(uploadId));
+    }
+
+    /**
+     * Elimina i file parziali non scritti da {@code cutoff}, compresi quelli rimasti senza sessione.
+     *
+     * @return quanti file sono stati eliminati
+     */
+    public int purgeParts(Instant cutoff) throws IOException {
+        if (!Files.isDirectory(partialDir)) {
+            return 0;
+        }
+        int purged = 0;
+        try (DirectoryStream<Path> parts = Files.newDirectoryStream(partialDir, "*.part")) {
+            for (Path part : parts) {
+                if (Files.getLastModifiedTime(part).toInstant().isBefore(cutoff) && Files.deleteIfExists(part)) {
+                    purged++;
+                }
+            }
+        }
+        return purged;
+    }
+
+    private Path partPath(String uploadId) {
+        return partialDir.resolve(uploadId + ".part");
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Lock gia' preso da un'altra richiesta in questa JVM
+            return null;
+        }
+    }
+
+    public boolean exists(String sha256) throws IOException {
+        return storage.exists(sha256);
+    }
+
+    /**
+     * @return null se il contenuto non esiste
+     */
+    public BlobStorage.Entry stat(String sha256) throws IOException {
+        return storage.stat(sha256);
+    }
+
+    /**
+     * Hash del contenuto a cui appartiene un file dello storage, cioe' il contenuto stesso o la sua
+     * anteprima; null per i nomi che non seguono questa convenzione.
+     */
+    public static String contentHash(String name) {
+        return FLAT_FILE.matcher(name).matches() ? name.substring(0, 64) : null;
+    }
+
+    /**
+     * Da dove scaricare il contenuto; null se lo storage sa gia' che manca.
+     */
+    public BlobLocation locate(String sha256, String filename, String contentType, Instant lastModified)
+            throws IOException {
+        return storage.locate(sha256, filename, contentType, sha256, lastModified);
+    }
+
+    /**
+     * File locale con il contenuto, per chi deve leggerlo (le anteprime): {@code scratch} e' un file
+     * di {@link #createTemp} usato solo se lo storage non e' su disco.
+     */
+    public Path fetch(String sha256, Path scratch) throws IOException {
+        return storage.fetch(sha256, scratch);
+    }
+
+    /**
+     * Posizione dei file caricati prima della deduplicazione, salvati con il nome UUID dell'allegato.
+     */
+    public Path legacyPath(String storedFilename) {
+        return dir.resolve(storedFilename);
+    }
+
+    public boolean hasThumbnail(String sha256) throws IOException {
+        return storage.exists(thumbnailName(sha256));
+    }
+
+    /**
+     * Anteprima JPEG del contenuto, salvata accanto all'originale; null se non e' ancora stata generata.
+     */
+    public BlobLocation locateThumbnail(String sha256, Instant lastModified) throws IOException {
+        if (!hasThumbnail(sha256)) {
+            return null;
+        }
+        return storage.locate(thumbnailName(sha256), null, ThumbnailRenderer.CONTENT_TYPE,
+                sha256 + "-thumb", lastModified);
+    }
+
+    /**
+     * Rende visibile un'anteprima scritta in un file di {@link #createTemp}.
+     */
+    public void commitThumbnail(Path temp, String sha256) throws IOException {
+        storage.put(thumbnailName(sha256), temp);
+    }
+
+    public Path createTemp() throws IOException {
+        Files.createDirectories(dir);
+        return Files.createTempFile(dir, "blob-", ".tmp");
+    }
+
+    public void delete(String sha256) throws IOException {
+        storage.delete(thumbnailName(sha256));
+        storage.delete(sha256);
+    }
+
+    /**
+     * Sposta nelle sottodirectory i file e le anteprime salvati direttamente nella directory locale degli
+     * allegati prima dello sharding. I file con nome UUID non ancora deduplicati restano dove sono.
+     *
+     * @return quanti file sono stati spostati
+     */
+    public int shardFlatFiles() throws IOException {
+        return ShardedLayout.shardFlatFiles(dir, FLAT_FILE);
+    }
+
+    private static String thumbnailName(String sha256) {
+        return sha256 + ".thumb.jpg";
+    }
+
+    private static MessageDigest sha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponibile", e);
+        }
+    }
+}
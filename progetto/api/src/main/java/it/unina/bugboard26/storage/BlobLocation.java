@@ -0,0 +1,8 @@
+package it.unina.bugboard26.storage;
+
+/**
+ * Da dove il client scarica un contenuto: un file locale servito dall'API ({@link StoredFile})
+ * o un URL firmato dello storage a cui rimandarlo ({@link PresignedUrl}).
+ */
+public sealed interface BlobLocation permits StoredFile, PresignedUrl {
+}
@@ -0,0 +1,57 @@
+package it.unina.bugboard26.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+/**
+ * Dove finiscono i contenuti degli allegati e le loro anteprime, indirizzati per nome (hash o
+ * hash piu' suffisso). L'implementazione si sceglie con {@code bugboard.storage.type}: su disco
+ * ({@link FileSystemBlobStorage}, predefinita) o in un bucket S3 ({@link S3BlobStorage}).
+ * <p>
+ * Staging, hash e upload a blocchi restano locali in {@link AttachmentStore}: qui arrivano solo file completi.
+ */
+public interface BlobStorage {
+
+    record Entry(String name, long size, Instant lastModified) {
+    }
+
+    /**
+     * Salva {@code source} sotto {@code name}, sostituendo un eventuale contenuto con lo stesso nome.
+     * Il file puo' essere spostato invece che copiato; se resta, lo elimina chi chiama.
+     */
+    void put(String name, Path source) throws IOException;
+
+    boolean exists(String name) throws IOException;
+
+    /**
+     * @return null se il contenuto non esiste
+     */
+    Entry stat(String name) throws IOException;
+
+    /**
+     * Tutti i contenuti in ordine di nome, letti man mano: la memoria usata non dipende da quanti sono.
+     * Lo stream va chiuso.
+     */
+    Stream<Entry> list() throws IOException;
+
+    /**
+     * File locale da leggere: quello salvato se lo storage e' su disco, altrimenti una copia
+     * scaricata in {@code scratch}, che resta di chi chiama.
+     *
+     * @throws java.nio.file.NoSuchFileException se il contenuto non esiste
+     */
+    Path fetch(String name, Path scratch) throws IOException;
+
+    void delete(String name) throws IOException;
+
+    /**
+     * Come far scaricare il contenuto al client.
+     *
+     * @param filename nome da proporre per il download, null per i contenuti da mostrare inline
+     * @return null se lo storage sa gia' che il contenuto non esiste
+     */
+    BlobLocation locate(String name, String filename, String contentType, String etag, Instant lastModified)
+            throws IOException;
+}
@@ -0,0 +1,121 @@
+package it.unina.bugboard26.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.io.UncheckedIOException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Contenuti nella directory degli allegati, divisi in sottodirectory per hash ({@link ShardedLayout}).
+ * Il file salvato viene servito dall'API con Range ed ETag.
+ */
+@Component
+@ConditionalOnProperty(name = "bugboard.storage.type", havingValue = "filesystem", matchIfMissing = true)
+public class FileSystemBlobStorage implements BlobStorage {
+
+    private static final Pattern SHARD = Pattern.compile("[0-9a-f]{2}");
+
+    private final Path dir;
+
+    public FileSystemBlobStorage(@Value("${bugboard.attachments.dir:uploads}") String dir) {
+        this.dir = Paths.get(dir);
+    }
+
+    public Path path(String name) {
+        return ShardedLayout.resolve(dir, name);
+    }
+
+    @Override
+    public void put(String name, Path source) throws IOException {
+        ShardedLayout.moveInto(source, dir, name);
+    }
+
+    @Override
+    public boolean exists(String name) {
+        return Files.isRegularFile(path(name));
+    }
+
+    @Override
+    public Entry stat(String name) throws IOException {
+        Path file = path(name);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.isRegularFile()
+                    ? new Entry(name, attributes.size(), attributes.lastModifiedTime().toInstant())
+                    : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Visita le sottodirectory in ordine: ogni directory si legge e ordina da sola, e nessuna supera
+     * le 256 voci tranne le foglie, che contengono una frazione 1/65536 dei file.
+     */
+    @Override
+    public Stream<Entry> list() throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return Stream.empty();
+        }
+        return sortedChildren(dir, true).stream()
+                .flatMap(first -> sortedChildren(first, true).stream())
+                .flatMap(second -> sortedChildren(second, false).stream())
+                .map(file -> {
+                    try {
+                        return stat(file.getFileName().toString());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .filter(Objects::nonNull);
+    }
+
+    // Solo le directory di sharding (due caratteri esadecimali) o solo i file di una foglia
+    private static List<Path> sortedChildren(Path parent, boolean directories) {
+        try (Stream<Path> children = Files.list(parent)) {
+            return children
+                    .filter(child -> directories
+                            ? Files.isDirectory(child) && SHARD.matcher(child.getFileName().toString()).matches()
+                            : Files.isRegularFile(child))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Path fetch(String name, Path scratch) throws IOException {
+        Path file = path(name);
+        if (!Files.isRegularFile(file)) {
+            throw new NoSuchFileException(file.toString());
+        }
+        return file;
+    }
+
+    @Override
+    public void delete(String name) throws IOException {
+        Files.deleteIfExists(path(name));
+    }
+
+    @Override
+    public BlobLocation locate(String name, String filename, String contentType, String etag, Instant lastModified) {
+        Path file = path(name);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        return new StoredFile(file, filename, contentType, etag, lastModified);
+    }
+}
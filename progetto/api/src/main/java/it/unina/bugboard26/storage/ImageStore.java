@@ -0,0 +1,177 @@
+package it.unina.bugboard26.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+
+/**
+ * Immagini di issue e commenti, indirizzate per contenuto: la chiave e' lo SHA-256 dei byte
+ * piu' l'estensione, quindi la stessa immagine caricata due volte occupa un solo file e un file
+ * non cambia mai una volta scritto. Nel database resta solo la chiave. Su disco i file sono divisi
+ * in sottodirectory secondo l'hash ({@link ShardedLayout}).
+ */
+@Component
+public class ImageStore {
+
+    public static final String URL_PREFIX = "/api/images/";
+
+    private static final Map<String, String> EXTENSIONS = Map.of(
+            "image/png", "png",
+            "image/jpeg", "jpg",
+            "image/gif", "gif",
+            "image/webp", "webp"
+    );
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "png", "image/png",
+            "jpg", "image/jpeg",
+            "gif", "image/gif",
+            "webp", "image/webp"
+    );
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{64}\\.(png|jpg|gif|webp)");
+    private static final Pattern DATA_URL = Pattern.compile("data:([\\w/+.-]+);base64,(.*)", Pattern.DOTALL);
+
+    public record DecodedImage(byte[] bytes, String contentType) {
+    }
+
+    private final Path dir;
+    private final long maxSize;
+
+    public ImageStore(@Value("${bugboard.images.dir:uploads/images}") String dir,
+                      @Value("${bugboard.attachments.max-size:5242880}") long maxSize) {
+        this.dir = Paths.get(dir);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Per i servizi: salva un'immagine arrivata come data URL e ne restituisce la chiave.
+     * Lancia 400 se il data URL non e' un'immagine ammessa, 500 se la scrittura su disco fallisce.
+     */
+    public String storeDataUrl(String dataUrl) {
+        try {
+            DecodedImage image = decode(dataUrl);
+            return store(image.bytes(), image.contentType());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(BAD_REQUEST, e.getMessage());
+        } catch (IOException e) {
+            throw new ResponseStatusException(INTERNAL_SERVER_ERROR, "Impossibile salvare l'immagine", e);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException se non e' un data URL base64 di un'immagine ammessa
+     */
+    public DecodedImage decode(String dataUrl) {
+        Matcher matcher = DATA_URL.matcher(dataUrl);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Immagine non valida: atteso un data URL base64");
+        }
+        String contentType = matcher.group(1).toLowerCase();
+        if (!EXTENSIONS.containsKey(contentType)) {
+            throw new IllegalArgumentException("Tipo immagine non ammesso. Tipi validi: "
+                    + String.join(", ", EXTENSIONS.keySet().stream().sorted().toList()));
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getMimeDecoder().decode(matcher.group(2));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Immagine non valida: base64 malformato");
+        }
+        if (bytes.length == 0) {
+            throw new IllegalArgumentException("Immagine vuota");
+        }
+        if (bytes.length > maxSize) {
+            throw new IllegalArgumentException("Immagine troppo grande. Massimo 5MB.");
+        }
+        return new DecodedImage(bytes, contentType);
+    }
+
+    public String store(byte[] bytes, String contentType) throws IOException {
+        String extension = EXTENSIONS.get(contentType);
+        if (extension == null) {
+            throw new IllegalArgumentException("Tipo immagine non ammesso: " + contentType);
+        }
+        String key = sha256(bytes) + "." + extension;
+        Path target = ShardedLayout.resolve(dir, key);
+        if (Files.exists(target)) {
+            return key;
+        }
+
+        // Scrittura su file temporaneo e rename atomico: chi legge vede il file intero o niente
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, "upload-", ".tmp");
+        try {
+            Files.write(temp, bytes);
+            ShardedLayout.moveInto(temp, dir, key);
+        } catch (FileAlreadyExistsException e) {
+            // Stesso contenuto scritto in parallelo da un'altra richiesta
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return key;
+    }
+
+    /**
+     * @throws IllegalArgumentException se la chiave non ha il formato hash.estensione
+     */
+    public Path resolve(String key) {
+        if (key == null || !KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Chiave immagine non valida");
+        }
+        return ShardedLayout.resolve(dir, key);
+    }
+
+    /**
+     * Immagine pronta da servire; l'ETag e' l'hash contenuto nella chiave.
+     *
+     * @throws IllegalArgumentException se la chiave non e' valida o il file non esiste
+     */
+    public StoredFile open(String key) throws IOException {
+        Path path = resolve(key);
+        if (!Files.isRegularFile(path)) {
+            throw new IllegalArgumentException("Immagine non trovata");
+        }
+        return new StoredFile(path, key, contentType(key), key.substring(0, key.indexOf('.')),
+                Files.getLastModifiedTime(path).toInstant());
+    }
+
+    /**
+     * Sposta nelle sottodirectory le immagini salvate direttamente in {@code dir} prima dello sharding.
+     *
+     * @return quante immagini sono state spostate
+     */
+    public int shardFlatFiles() throws IOException {
+        return ShardedLayout.shardFlatFiles(dir, KEY);
+    }
+
+    public static String contentType(String key) {
+        return CONTENT_TYPES.get(key.substring(key.lastIndexOf('.') + 1));
+    }
+
+    public static String url(String key) {
+        return key != null ? URL_PREFIX + key : null;
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponibile", e);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package it.unina.bugboard26.storage;
+
+import java.net.URI;
+
+/**
+ * URL a scadenza da cui il client scarica il contenuto direttamente dallo storage, senza passare dall'API.
+ */
+public record PresignedUrl(URI url) implements BlobLocation {
+}
@@ -0,0 +1,285 @@
+package it.unina.bugboard26.storage;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ContentDisposition;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Contenuti in un bucket S3 o compatibile (MinIO in locale), con le stesse chiavi divise per hash
+ * del disco. I file oltre {@code part-size} si caricano in multipart leggendo una parte alla volta
+ * dal file, quindi la memoria usata non dipende dalla dimensione; ogni parte si rilegge dal file se
+ * il client ritenta. Il download e' un redirect a un URL firmato: i byte non passano dall'API.
+ * <p>
+ * Gli errori dello storage restano {@link software.amazon.awssdk.core.exception.SdkException}
+ * non controllate, cosi' la transazione di chi chiama viene annullata.
+ */
+@Component
+@ConditionalOnProperty(name = "bugboard.storage.type", havingValue = "s3")
+public class S3BlobStorage implements BlobStorage {
+
+    // Minimo ammesso da S3 per tutte le parti tranne l'ultima
+    static final long MIN_PART_SIZE = 5 * 1024 * 1024;
+    private static final Pattern SHARDED_KEY = Pattern.compile("[0-9a-f]{2}/[0-9a-f]{2}/[^/]+");
+
+    private final S3Client client;
+    private final S3Presigner presigner;
+    private final String bucket;
+    private final long partSize;
+    private final Duration presignExpiry;
+
+    @Autowired
+    public S3BlobStorage(@Value("${bugboard.storage.s3.endpoint:}") String endpoint,
+                         @Value("${bugboard.storage.s3.public-endpoint:}") String publicEndpoint,
+                         @Value("${bugboard.storage.s3.region:us-east-1}") String region,
+                         @Value("${bugboard.storage.s3.bucket}") String bucket,
+                         @Value("${bugboard.storage.s3.access-key:}") String accessKey,
+                         @Value("${bugboard.storage.s3.secret-key:}") String secretKey,
+                         @Value("${bugboard.storage.s3.path-style-access:true}") boolean pathStyleAccess,
+                         @Value("${bugboard.storage.s3.part-size:8388608}") long partSize,
+                         @Value("${bugboard.storage.s3.presign-expiry:PT5M}") Duration presignExpiry) {
+        this(client(endpoint, region, credentials(accessKey, secretKey), pathStyleAccess),
+                presigner(publicEndpoint.isBlank() ? endpoint : publicEndpoint, region,
+                        credentials(accessKey, secretKey), pathStyleAccess),
+                bucket, partSize, presignExpiry);
+    }
+
+    S3BlobStorage(S3Client client, S3Presigner presigner, String bucket, long partSize, Duration presignExpiry) {
+        if (partSize < MIN_PART_SIZE) {
+            throw new IllegalArgumentException("bugboard.storage.s3.part-size deve essere almeno 5MB");
+        }
+        this.client = client;
+        this.presigner = presigner;
+        this.bucket = bucket;
+        this.partSize = partSize;
+        this.presignExpiry = presignExpiry;
+    }
+
+    private static AwsCredentialsProvider credentials(String accessKey, String secretKey) {
+        // Senza chiavi si usa la catena standard di AWS (variabili d'ambiente, ruolo dell'istanza)
+        return accessKey.isBlank()
+                ? DefaultCredentialsProvider.create()
+                : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+    }
+
+    private static S3Client client(String endpoint, String region, AwsCredentialsProvider credentials,
+                                   boolean pathStyleAccess) {
+        var builder = S3Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .forcePathStyle(pathStyleAccess);
+        if (!endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
+    }
+
+    // L'endpoint degli URL firmati e' quello raggiungibile dal browser, non l'host interno della rete Docker
+    private static S3Presigner presigner(String endpoint, String region, AwsCredentialsProvider credentials,
+                                         boolean pathStyleAccess) {
+        var builder = S3Presigner.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(pathStyleAccess).build());
+        if (!endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
+    }
+
+    @Override
+    public void put(String name, Path source) throws IOException {
+        String key = ShardedLayout.key(name);
+        long size = Files.size(source);
+        if (size <= partSize) {
+            client.putObject(b -> b.bucket(bucket).key(key), RequestBody.fromFile(source));
+            return;
+        }
+
+        String uploadId = client.createMultipartUpload(b -> b.bucket(bucket).key(key)).uploadId();
+        try {
+            List<CompletedPart> parts = new ArrayList<>();
+            for (int partNumber = 1; (long) (partNumber - 1) * partSize < size; partNumber++) {
+                int number = partNumber;
+                long offset = (number - 1) * partSize;
+                long length = Math.min(partSize, size - offset);
+                String etag = client.uploadPart(b -> b.bucket(bucket).key(key).uploadId(uploadId).partNumber(number),
+                        RequestBody.fromContentProvider(() -> slice(source, offset, length), length,
+                                "application/octet-stream")).eTag();
+                parts.add(CompletedPart.builder().partNumber(number).eTag(etag).build());
+            }
+            client.completeMultipartUpload(b -> b.bucket(bucket).key(key).uploadId(uploadId)
+                    .multipartUpload(m -> m.parts(parts)));
+        } catch (RuntimeException e) {
+            // Le parti gia' caricate occupano spazio finche' l'upload non viene annullato
+            try {
+                client.abortMultipartUpload(b -> b.bucket(bucket).key(key).uploadId(uploadId));
+            } catch (RuntimeException abortFailure) {
+                e.addSuppressed(abortFailure);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean exists(String name) {
+        try {
+            client.headObject(b -> b.bucket(bucket).key(ShardedLayout.key(name)));
+            return true;
+        } catch (S3Exception e) {
+            if (isNotFound(e)) return false;
+            throw e;
+        }
+    }
+
+    @Override
+    public Entry stat(String name) {
+        try {
+            HeadObjectResponse head = client.headObject(b -> b.bucket(bucket).key(ShardedLayout.key(name)));
+            return new Entry(name, head.contentLength(), head.lastModified());
+        } catch (S3Exception e) {
+            if (isNotFound(e)) return null;
+            throw e;
+        }
+    }
+
+    /**
+     * S3 elenca le chiavi in ordine e a pagine di 1000: l'ordine delle chiavi divise per hash e' quello dei nomi.
+     * Le chiavi fuori dalla disposizione vengono ignorate.
+     */
+    @Override
+    public Stream<Entry> list() {
+        return client.listObjectsV2Paginator(b -> b.bucket(bucket)).contents().stream()
+                .filter(object -> SHARDED_KEY.matcher(object.key()).matches())
+                .map(object -> new Entry(object.key().substring(6), object.size(), object.lastModified()));
+    }
+
+    @Override
+    public Path fetch(String name, Path scratch) throws IOException {
+        String key = ShardedLayout.key(name);
+        try (ResponseInputStream<GetObjectResponse> in = client.getObject(b -> b.bucket(bucket).key(key))) {
+            Files.copy(in, scratch, StandardCopyOption.REPLACE_EXISTING);
+            return scratch;
+        } catch (S3Exception e) {
+            if (isNotFound(e)) throw new NoSuchFileException(key);
+            throw e;
+        }
+    }
+
+    @Override
+    public void delete(String name) {
+        client.deleteObject(b -> b.bucket(bucket).key(ShardedLayout.key(name)));
+    }
+
+    /**
+     * URL firmato valido {@code presign-expiry}, con tipo e disposition imposti nella risposta dello
+     * storage. Non verifica che l'oggetto esista: se manca risponde 404 lo storage.
+     */
+    @Override
+    public BlobLocation locate(String name, String filename, String contentType, String etag, Instant lastModified) {
+        GetObjectRequest.Builder request = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(ShardedLayout.key(name))
+                .responseContentType(contentType);
+        if (filename != null) {
+            request.responseContentDisposition(ContentDisposition.attachment()
+                    .filename(filename, StandardCharsets.UTF_8).build().toString());
+        }
+        try {
+            return new PresignedUrl(presigner.presignGetObject(b -> b.signatureDuration(presignExpiry)
+                    .getObjectRequest(request.build())).url().toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("URL firmato non valido", e);
+        }
+    }
+
+    private static boolean isNotFound(S3Exception e) {
+        return e instanceof NoSuchKeyException || e.statusCode() == 404;
+    }
+
+    /**
+     * {@code length} byte del file a partire da {@code offset}, letti dal disco man mano.
+     */
+    private static InputStream slice(Path file, long offset, long length) {
+        try {
+            FileChannel channel = FileChannel.open(file).position(offset);
+            return new FilterInputStream(Channels.newInputStream(channel)) {
+                private long remaining = length;
+
+                @Override
+                public int read() throws IOException {
+                    if (remaining <= 0) return -1;
+                    int b = super.read();
+                    if (b >= 0) remaining--;
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int off, int len) throws IOException {
+                    if (remaining <= 0) return -1;
+                    int n = super.read(buffer, off, (int) Math.min(len, remaining));
+                    if (n > 0) remaining -= n;
+                    return n;
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    long skipped = super.skip(Math.min(n, remaining));
+                    remaining -= skipped;
+                    return skipped;
+                }
+
+                @Override
+                public int available() throws IOException {
+                    return (int) Math.min(super.available(), remaining);
+                }
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        presigner.close();
+        client.close();
+    }
+}
@@ -0,0 +1,62 @@
+package it.unina.bugboard26.storage;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Pattern;
+
+/**
+ * Disposizione su disco dei file indirizzati per hash: due livelli di sottodirectory presi dai primi
+ * quattro caratteri esadecimali del nome ({@code ab/cd/abcd...}). Ogni directory contiene al piu'
+ * 256 sottodirectory e una frazione 1/65536 dei file, e il percorso si calcola dal nome senza cercarlo.
+ */
+final class ShardedLayout {
+
+    private ShardedLayout() {
+    }
+
+    static Path resolve(Path root, String name) {
+        return root.resolve(name.substring(0, 2)).resolve(name.substring(2, 4)).resolve(name);
+    }
+
+    /**
+     * Lo stesso percorso come chiave relativa con {@code /}, per gli storage a oggetti: copiando la
+     * directory in un bucket le chiavi restano quelle.
+     */
+    static String key(String name) {
+        return name.substring(0, 2) + "/" + name.substring(2, 4) + "/" + name;
+    }
+
+    /**
+     * Sposta {@code source} al suo posto nella disposizione, creando le directory che mancano.
+     * Un file gia' presente viene sostituito: a parita' di nome il contenuto e' lo stesso.
+     */
+    static void moveInto(Path source, Path root, String name) throws IOException {
+        Path target = resolve(root, name);
+        Files.createDirectories(target.getParent());
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Sposta nella disposizione i file lasciati direttamente in {@code root} dalle versioni precedenti.
+     * Considera solo i nomi che rispettano {@code names}; il resto della directory non viene toccato.
+     *
+     * @return quanti file sono stati spostati
+     */
+    static int shardFlatFiles(Path root, Pattern names) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        int moved = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(root,
+                entry -> names.matcher(entry.getFileName().toString()).matches() && Files.isRegularFile(entry))) {
+            for (Path entry : entries) {
+                moveInto(entry, root, entry.getFileName().toString());
+                moved++;
+            }
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,12 @@
+package it.unina.bugboard26.storage;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * File pronto da servire: {@code etag} identifica il contenuto (hash o nome immutabile) ed e'
+ * senza virgolette; {@code filename} e' il nome da proporre al client, null per i contenuti inline.
+ */
+public record StoredFile(Path path, String filename, String contentType, String etag, Instant lastModified)
+        implements BlobLocation {
+}
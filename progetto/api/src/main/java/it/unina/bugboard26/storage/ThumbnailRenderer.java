@@ -0,0 +1,128 @@
+package it.unina.bugboard26.storage;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Anteprime JPEG con il lato lungo di {@link #SIZE} pixel: per le immagini l'immagine stessa, per i PDF
+ * la prima pagina. I formati che ImageIO non legge (WebP) restano senza anteprima.
+ */
+public final class ThumbnailRenderer {
+
+    public static final int SIZE = 320;
+    public static final String CONTENT_TYPE = "image/jpeg";
+
+    private static final Set<String> IMAGE_TYPES = Set.of("image/jpeg", "image/png", "image/gif");
+    private static final String PDF_TYPE = "application/pdf";
+    // Oltre questa dimensione (anche dopo il sottocampionamento) l'immagine non viene decodificata
+    private static final long MAX_DECODED_PIXELS = 50_000_000L;
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private ThumbnailRenderer() {
+    }
+
+    public static boolean supports(String contentType) {
+        return IMAGE_TYPES.contains(contentType) || PDF_TYPE.equals(contentType);
+    }
+
+    public static String kind(String contentType) {
+        return PDF_TYPE.equals(contentType) ? "pdf" : "image";
+    }
+
+    /**
+     * @throws IOException se il file non e' leggibile o e' troppo grande da decodificare
+     */
+    public static void render(Path source, String contentType, Path target) throws IOException {
+        BufferedImage image = PDF_TYPE.equals(contentType) ? readFirstPage(source) : readImage(source);
+        writeJpeg(fit(image), target);
+    }
+
+    // Il reader decodifica solo una riga ogni `step`: un'immagine da 8000px non viene mai allocata intera
+    private static BufferedImage readImage(Path source) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Formato immagine non leggibile");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int step = Math.max(1, Math.max(width, height) / (SIZE * 2));
+                if ((long) (width / step) * (height / step) > MAX_DECODED_PIXELS) {
+                    throw new IOException("Immagine troppo grande: " + width + "x" + height);
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage readFirstPage(Path source) throws IOException {
+        try (PDDocument document = Loader.loadPDF(source.toFile())) {
+            if (document.getNumberOfPages() == 0) {
+                throw new IOException("PDF senza pagine");
+            }
+            PDRectangle box = document.getPage(0).getCropBox();
+            // Si rasterizza al doppio della dimensione finale, poi il ridimensionamento la ammorbidisce
+            float scale = SIZE * 2f / Math.max(box.getWidth(), box.getHeight());
+            return new PDFRenderer(document).renderImage(0, scale, ImageType.RGB);
+        }
+    }
+
+    private static BufferedImage fit(BufferedImage image) {
+        double ratio = Math.min(1.0, (double) SIZE / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = thumbnail.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // Il JPEG non ha trasparenza: i PNG trasparenti finiscono su sfondo bianco
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return thumbnail;
+    }
+
+    private static void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package it.unina.bugboard26.config;
+
+import it.unina.bugboard26.storage.AttachmentStore;
+import it.unina.bugboard26.storage.FileSystemBlobStorage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Come {@link LegacyImageMigrationTest}: le transazioni della migrazione fanno commit davvero e il
+ * batch piccolo la fa passare su piu' blocchi.
+ */
+@DataJpaTest(properties = {
+        "bugboard.attachments.dir=target/test-uploads-migration",
+        "bugboard.attachments.migration.batch-size=2"
+})
+@Import({LegacyAttachmentFileMigration.class, AttachmentStore.class, FileSystemBlobStorage.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LegacyAttachmentFileMigrationTest {
+
+    @Autowired private LegacyAttachmentFileMigration migration;
+    @Autowired private AttachmentStore attachmentStore;
+    @Autowired private FileSystemBlobStorage blobStorage;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Sposta i vecchi file sotto il loro hash e conta i riferimenti per contenuto")
+    void movesLegacyFilesAndCountsReferences() throws Exception {
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.update("INSERT INTO users (id, email, password_hash, name, role, created_at) "
+                + "VALUES ('u1', 'legacy@test.com', 'hash', 'Legacy', 'USER', ?)", now);
+        jdbcTemplate.update("INSERT INTO issues (id, title, type, description, status, archived, created_by_id, "
+                + "created_at, updated_at) VALUES ('i1', 'Issue legacy', 'BUG', 'Descrizione legacy', 'TODO', "
+                + "false, 'u1', ?, ?)", now, now);
+
+        String shared = "log condiviso " + UUID.randomUUID();
+        String single = "screenshot " + UUID.randomUUID();
+        Path a1 = legacyAttachment("a1", shared, null);
+        Path a2 = legacyAttachment("a2", shared, null);
+        // Caricato dopo l'introduzione dell'hash ma prima della deduplicazione
+        Path a3 = legacyAttachment("a3", single, HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(single.getBytes())));
+        insertAttachment("a4", "mancante-" + UUID.randomUUID() + ".pdf", null);
+
+        migration.run();
+
+        String sharedSha = jdbcTemplate.queryForObject("SELECT sha256 FROM attachments WHERE id = 'a1'", String.class);
+        String singleSha = jdbcTemplate.queryForObject("SELECT sha256 FROM attachments WHERE id = 'a3'", String.class);
+        assertEquals(sharedSha, jdbcTemplate.queryForObject("SELECT sha256 FROM attachments WHERE id = 'a2'", String.class));
+        assertEquals(shared, Files.readString(blobStorage.path(sharedSha)));
+        assertEquals(single, Files.readString(blobStorage.path(singleSha)));
+        assertEquals(2L, refCount(sharedSha));
+        assertEquals(1L, refCount(singleSha));
+        assertFalse(Files.exists(a1));
+        assertFalse(Files.exists(a2));
+        assertFalse(Files.exists(a3));
+        assertNull(jdbcTemplate.queryForObject("SELECT sha256 FROM attachments WHERE id = 'a4'", String.class));
+
+        // Seconda esecuzione: nulla da migrare, conteggi invariati
+        migration.run();
+        assertEquals(2L, refCount(sharedSha));
+        assertEquals(2L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM attachment_blobs", Long.class));
+    }
+
+    private Path legacyAttachment(String id, String content, String sha256) throws Exception {
+        String storedFilename = UUID.randomUUID() + ".pdf";
+        insertAttachment(id, storedFilename, sha256);
+        return write(storedFilename, content);
+    }
+
+    private void insertAttachment(String id, String storedFilename, String sha256) {
+        jdbcTemplate.update("INSERT INTO attachments (id, issue_id, stored_filename, original_filename, content_type, "
+                        + "file_size, uploaded_at, sha256) VALUES (?, 'i1', ?, 'log.pdf', 'application/pdf', 10, ?, ?)",
+                id, storedFilename, Timestamp.from(Instant.now()), sha256);
+    }
+
+    private Path write(String name, String content) throws Exception {
+        Path file = attachmentStore.legacyPath(name);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, content);
+    }
+
+    private long refCount(String sha256) {
+        return jdbcTemplate.queryForObject("SELECT ref_count FROM attachment_blobs WHERE sha256 = ?", Long.class, sha256);
+    }
+}
@@ -0,0 +1,62 @@
+package it.unina.bugboard26.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Il DDL fa commit implicito, quindi il test non gira nella transazione di rollback:
+ * l'import della migrazione gli da' comunque un contesto e un database H2 propri.
+ */
+@DataJpaTest
+@Import(LegacyAttachmentMigration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LegacyAttachmentMigrationTest {
+
+    @Autowired private LegacyAttachmentMigration migration;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Copia gli allegati dalla vecchia tabella con un id e la elimina")
+    void migratesLegacyRowsAndDropsTable() {
+        jdbcTemplate.update("INSERT INTO users (id, email, password_hash, name, role, created_at) "
+                + "VALUES ('u1', 'legacy@test.com', 'hash', 'Legacy', 'USER', ?)", Timestamp.from(Instant.now()));
+        jdbcTemplate.update("INSERT INTO issues (id, title, type, description, status, archived, created_by_id, created_at, updated_at) "
+                + "VALUES ('i1', 'Issue legacy', 'BUG', 'Descrizione legacy', 'TODO', false, 'u1', ?, ?)",
+                Timestamp.from(Instant.now()), Timestamp.from(Instant.now()));
+        jdbcTemplate.execute("CREATE TABLE " + LegacyAttachmentMigration.LEGACY_TABLE + " (issue_id VARCHAR(255), "
+                + "stored_filename VARCHAR(255), original_filename VARCHAR(255), content_type VARCHAR(255), "
+                + "file_size BIGINT, uploaded_at TIMESTAMP(6) WITH TIME ZONE)");
+        jdbcTemplate.update("INSERT INTO " + LegacyAttachmentMigration.LEGACY_TABLE
+                + " VALUES ('i1', 'a.png', 'schermata.png', 'image/png', 10, CURRENT_TIMESTAMP)");
+        jdbcTemplate.update("INSERT INTO " + LegacyAttachmentMigration.LEGACY_TABLE
+                + " VALUES ('i1', 'b.pdf', 'log.pdf', 'application/pdf', 20, CURRENT_TIMESTAMP)");
+
+        migration.run();
+
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT id, issue_id, original_filename, file_size FROM attachments WHERE stored_filename = 'b.pdf'");
+        assertNotNull(row.get("ID"));
+        assertEquals("i1", row.get("ISSUE_ID"));
+        assertEquals("log.pdf", row.get("ORIGINAL_FILENAME"));
+        assertEquals(20L, row.get("FILE_SIZE"));
+        assertEquals(2L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM attachments", Long.class));
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.tables "
+                + "WHERE LOWER(table_name) = ?", Long.class, LegacyAttachmentMigration.LEGACY_TABLE));
+
+        // Seconda esecuzione: la vecchia tabella non c'e' piu', nessun effetto
+        migration.run();
+        assertEquals(2L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM attachments", Long.class));
+    }
+}
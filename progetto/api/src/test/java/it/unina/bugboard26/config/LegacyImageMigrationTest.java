@@ -0,0 +1,70 @@
+package it.unina.bugboard26.config;
+
+import it.unina.bugboard26.storage.ImageStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Come {@link LegacyAttachmentMigrationTest}: il DDL fa commit implicito, quindi niente rollback
+ * e un contesto con database proprio. Il batch piccolo fa passare la migrazione su piu' blocchi.
+ */
+@DataJpaTest(properties = "bugboard.images.migration.batch-size=2")
+@Import({LegacyImageMigration.class, ImageStore.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LegacyImageMigrationTest {
+
+    @Autowired private LegacyImageMigration migration;
+    @Autowired private ImageStore imageStore;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Sposta i data URL nell'image store a blocchi e poi elimina la colonna")
+    void migratesInlineImagesAndDropsColumn() throws Exception {
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.update("INSERT INTO users (id, email, password_hash, name, role, created_at) "
+                + "VALUES ('u1', 'legacy@test.com', 'hash', 'Legacy', 'USER', ?)", now);
+        jdbcTemplate.execute("ALTER TABLE issues ADD COLUMN image TEXT");
+        jdbcTemplate.execute("ALTER TABLE comments ADD COLUMN image TEXT");
+
+        String png = "data:image/png;base64," + Base64.getEncoder().encodeToString(new byte[]{1, 2, 3});
+        String gif = "data:image/gif;base64," + Base64.getEncoder().encodeToString(new byte[]{4, 5, 6});
+        for (int i = 0; i < 5; i++) {
+            jdbcTemplate.update("INSERT INTO issues (id, title, type, description, status, archived, created_by_id, "
+                    + "created_at, updated_at, image) VALUES (?, 'Issue legacy', 'BUG', 'Descrizione legacy', 'TODO', "
+                    + "false, 'u1', ?, ?, ?)", "i" + i, now, now, i % 2 == 0 ? png : gif);
+        }
+        jdbcTemplate.update("INSERT INTO issues (id, title, type, description, status, archived, created_by_id, "
+                + "created_at, updated_at) VALUES ('i9', 'Senza immagine', 'BUG', 'Descrizione legacy', 'TODO', "
+                + "false, 'u1', ?, ?)", now, now);
+        jdbcTemplate.update("INSERT INTO comments (id, issue_id, user_id, content, created_at, image) "
+                + "VALUES ('c1', 'i0', 'u1', 'Commento legacy', ?, ?)", now, png);
+
+        migration.run();
+
+        String pngKey = jdbcTemplate.queryForObject("SELECT image_key FROM issues WHERE id = 'i0'", String.class);
+        assertTrue(pngKey.endsWith(".png"));
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(imageStore.resolve(pngKey)));
+        assertTrue(jdbcTemplate.queryForObject("SELECT image_key FROM issues WHERE id = 'i1'", String.class).endsWith(".gif"));
+        assertNull(jdbcTemplate.queryForObject("SELECT image_key FROM issues WHERE id = 'i9'", String.class));
+        assertEquals(pngKey, jdbcTemplate.queryForObject("SELECT image_key FROM comments WHERE id = 'c1'", String.class));
+        assertEquals(2L, jdbcTemplate.queryForObject(
+                "SELECT COUNT(DISTINCT image_key) FROM issues WHERE image_key IS NOT NULL", Long.class));
+        for (String table : LegacyImageMigration.TABLES) {
+            assertEquals(0L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.columns "
+                    + "WHERE LOWER(table_name) = ? AND LOWER(column_name) = 'image'", Long.class, table));
+        }
+    }
+}
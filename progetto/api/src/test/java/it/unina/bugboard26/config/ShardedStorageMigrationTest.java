@@ -0,0 +1,79 @@
+package it.unina.bugboard26.config;
+
+import it.unina.bugboard26.storage.AttachmentStore;
+import it.unina.bugboard26.storage.FileSystemBlobStorage;
+import it.unina.bugboard26.storage.ImageStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedStorageMigrationTest {
+
+    private static final String SHA = "3f9a".repeat(16);
+    private static final String IMAGE_KEY = "c0de".repeat(16) + ".png";
+
+    @TempDir Path tempDir;
+
+    private FileSystemBlobStorage blobStorage;
+    private AttachmentStore attachmentStore;
+    private ImageStore imageStore;
+    private ShardedStorageMigration migration;
+
+    @BeforeEach
+    void setUp() {
+        blobStorage = new FileSystemBlobStorage(tempDir.toString());
+        attachmentStore = new AttachmentStore(tempDir.toString(), blobStorage);
+        imageStore = new ImageStore(tempDir.resolve("images").toString(), 1024);
+        migration = new ShardedStorageMigration(attachmentStore, imageStore);
+    }
+
+    @Test
+    @DisplayName("Sposta file, anteprime e immagini nelle sottodirectory dell'hash")
+    void movesFlatFilesIntoShards() throws Exception {
+        Files.writeString(tempDir.resolve(SHA), "contenuto");
+        Files.writeString(tempDir.resolve(SHA + ".thumb.jpg"), "anteprima");
+        Files.createDirectories(tempDir.resolve("images"));
+        Files.writeString(tempDir.resolve("images").resolve(IMAGE_KEY), "immagine");
+
+        migration.run();
+
+        assertEquals(tempDir.resolve("3f").resolve("9a").resolve(SHA), blobStorage.path(SHA));
+        assertEquals("contenuto", Files.readString(blobStorage.path(SHA)));
+        assertEquals("anteprima", Files.readString(blobStorage.path(SHA + ".thumb.jpg")));
+        assertEquals("immagine", Files.readString(imageStore.resolve(IMAGE_KEY)));
+        assertFalse(Files.exists(tempDir.resolve(SHA)));
+        assertFalse(Files.exists(tempDir.resolve(SHA + ".thumb.jpg")));
+        assertFalse(Files.exists(tempDir.resolve("images").resolve(IMAGE_KEY)));
+    }
+
+    @Test
+    @DisplayName("Lascia al loro posto i file non ancora deduplicati e gli upload in corso")
+    void leavesOtherFilesAlone() throws Exception {
+        Path legacy = Files.writeString(tempDir.resolve("6f1c2e9a-0b7d-4c3e-9f2a-1d5b8e7c4a21.pdf"), "vecchio");
+        Path part = tempDir.resolve("partial").resolve("upload.part");
+        Files.createDirectories(part.getParent());
+        Files.writeString(part, "parziale");
+
+        migration.run();
+
+        assertEquals(legacy, attachmentStore.legacyPath(legacy.getFileName().toString()));
+        assertTrue(Files.exists(legacy));
+        assertTrue(Files.exists(part));
+    }
+
+    @Test
+    @DisplayName("Una seconda esecuzione non trova nulla da spostare")
+    void isIdempotent() throws Exception {
+        Files.writeString(tempDir.resolve(SHA), "contenuto");
+
+        migration.run();
+        assertEquals(0, attachmentStore.shardFlatFiles());
+        assertEquals("contenuto", Files.readString(blobStorage.path(SHA)));
+    }
+}
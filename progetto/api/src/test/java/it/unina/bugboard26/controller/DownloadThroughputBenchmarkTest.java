@@ -0,0 +1,140 @@
+package it.unina.bugboard26.controller;
+
+import it.unina.bugboard26.model.Attachment;
+import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.repository.AttachmentRepository;
+import it.unina.bugboard26.repository.IssueRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.UrlResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Confronta il throughput del download allegati con l'implementazione precedente
+ * ({@link UrlResource} restituita da {@link ResponseEntity}). Si esegue solo su richiesta:
+ * {@code mvn test -Dbugboard.benchmarks=true -Dtest=DownloadThroughputBenchmarkTest}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "bugboard.attachments.dir=target/benchmark-uploads"
+})
+@EnabledIfSystemProperty(named = "bugboard.benchmarks", matches = "true")
+class DownloadThroughputBenchmarkTest {
+
+    private static final int FILE_SIZE = 32 * 1024 * 1024;
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 30;
+
+    @LocalServerPort private int port;
+    @Autowired private IssueRepository issueRepository;
+    @Autowired private AttachmentRepository attachmentRepository;
+    @Value("${bugboard.attachments.dir}") private String uploadDir;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @TestConfiguration
+    static class LegacyDownload {
+
+        // Copia del vecchio endpoint di download, servito accanto a quello nuovo
+        @RestController
+        static class LegacyDownloadController {
+
+            @Value("${bugboard.attachments.dir}")
+            private String uploadDir;
+
+            @GetMapping("/api/benchmark/legacy/{storedFilename}")
+            public ResponseEntity<Resource> download(@PathVariable String storedFilename) throws Exception {
+                Resource resource = new UrlResource(Paths.get(uploadDir).resolve(storedFilename).toUri());
+                return ResponseEntity.ok()
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
+                        .body(resource);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Throughput download: nuovo endpoint zero-copy contro UrlResource")
+    void compareThroughput() throws Exception {
+        String token = login();
+        Issue issue = issueRepository.findAll().getFirst();
+        String storedFilename = "benchmark-" + System.nanoTime() + ".bin";
+        byte[] content = new byte[FILE_SIZE];
+        new Random(42).nextBytes(content);
+        Path dir = Paths.get(uploadDir);
+        Files.createDirectories(dir);
+        Files.write(dir.resolve(storedFilename), content);
+        Attachment attachment = attachmentRepository.save(
+                new Attachment(issue, storedFilename, "benchmark.bin", "application/octet-stream", FILE_SIZE));
+
+        try {
+            URI current = URI.create("http://localhost:" + port + "/api/issues/" + issue.getId()
+                    + "/attachments/" + storedFilename);
+            URI legacy = URI.create("http://localhost:" + port + "/api/benchmark/legacy/" + storedFilename);
+
+            double legacyMbps = measure(legacy, token);
+            double currentMbps = measure(current, token);
+            System.out.printf("Download %d MB x %d: legacy %.1f MB/s, zero-copy %.1f MB/s (x%.2f)%n",
+                    FILE_SIZE / (1024 * 1024), ITERATIONS, legacyMbps, currentMbps, currentMbps / legacyMbps);
+        } finally {
+            attachmentRepository.delete(attachment);
+            Files.deleteIfExists(dir.resolve(storedFilename));
+        }
+    }
+
+    private double measure(URI uri, String token) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            assertEquals(FILE_SIZE, download(uri, token));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertEquals(FILE_SIZE, download(uri, token));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return (double) FILE_SIZE * ITERATIONS / (1024 * 1024) / seconds;
+    }
+
+    private long download(URI uri, String token) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri).header("Authorization", "Bearer " + token).build();
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, response.statusCode());
+        try (InputStream body = response.body()) {
+            return body.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private String login() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"email\":\"admin@bugboard.com\",\"password\":\"admin123\"}"))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), response.body());
+        String body = response.body();
+        int start = body.indexOf("\"token\":\"") + 9;
+        return body.substring(start, body.indexOf('"', start));
+    }
+}
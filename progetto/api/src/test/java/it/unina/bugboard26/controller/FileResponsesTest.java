@@ -0,0 +1,164 @@
+package it.unina.bugboard26.controller;
+
+import it.unina.bugboard26.storage.StoredFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileResponsesTest {
+
+    private static final String CONTENT = "0123456789abcdefghij";
+    private static final Instant MODIFIED = Instant.parse("2026-01-15T10:00:00Z");
+    private static final CacheControl CACHE = CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable();
+
+    @TempDir
+    Path tempDir;
+
+    private StoredFile file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path path = tempDir.resolve("file.txt");
+        Files.writeString(path, CONTENT);
+        file = new StoredFile(path, "report.txt", "text/plain", "abc123", MODIFIED);
+    }
+
+    private MockHttpServletResponse write(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FileResponses.write(request, response, file, CACHE,
+                ContentDisposition.attachment().filename(file.filename(), StandardCharsets.UTF_8).build());
+        return response;
+    }
+
+    @Test
+    @DisplayName("GET senza header serve il file intero con validatori e cache immutable")
+    void whenPlainGet_thenFullBodyWithValidators() throws Exception {
+        MockHttpServletResponse response = write(new MockHttpServletRequest("GET", "/file"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString());
+        assertEquals(CONTENT.length(), response.getContentLengthLong());
+        assertEquals("\"abc123\"", response.getHeader("ETag"));
+        assertEquals(MODIFIED.toEpochMilli(), response.getDateHeader("Last-Modified"));
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertTrue(response.getHeader("Cache-Control").contains("immutable"));
+        assertTrue(response.getHeader("Content-Disposition").contains("report.txt"));
+    }
+
+    @Test
+    @DisplayName("If-None-Match con ETag corrente risponde 304 senza corpo")
+    void whenIfNoneMatchMatches_thenNotModified() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader("If-None-Match", "\"abc123\"");
+
+        MockHttpServletResponse response = write(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    @DisplayName("If-Modified-Since non precedente all'ultima modifica risponde 304")
+    void whenIfModifiedSinceNotOlder_thenNotModified() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader("If-Modified-Since", MODIFIED.toEpochMilli());
+
+        assertEquals(304, write(request).getStatus());
+    }
+
+    @Test
+    @DisplayName("Range singolo risponde 206 con il solo intervallo richiesto")
+    void whenSingleRange_thenPartialContent() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader("Range", "bytes=5-9");
+
+        MockHttpServletResponse response = write(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("56789", response.getContentAsString());
+        assertEquals(5, response.getContentLengthLong());
+        assertEquals("bytes 5-9/20", response.getHeader("Content-Range"));
+    }
+
+    @Test
+    @DisplayName("Range di suffisso restituisce gli ultimi byte")
+    void whenSuffixRange_thenTail() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader("Range", "bytes=-4");
+
+        MockHttpServletResponse response = write(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("ghij", response.getContentAsString());
+        assertEquals("bytes 16-19/20", response.getHeader("Content-Range"));
+    }
+
+    @Test
+    @DisplayName("Range oltre la fine del file risponde 416")
+    void whenRangeUnsatisfiable_thenRangeNotSatisfiable() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader("Range", "bytes=100-200");
+
+        MockHttpServletResponse response = write(request);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */20", response.getHeader("Content-Range"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    @DisplayName("If-Range con ETag diverso ignora il Range e serve il file intero")
+    void whenIfRangeStale_thenFullBody() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader("Range", "bytes=0-3");
+        request.addHeader("If-Range", "\"vecchio\"");
+
+        MockHttpServletResponse response = write(request);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString());
+        assertNull(response.getHeader("Content-Range"));
+    }
+
+    @Test
+    @DisplayName("If-Range con ETag corrente applica il Range")
+    void whenIfRangeCurrent_thenPartialContent() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader("Range", "bytes=0-3");
+        request.addHeader("If-Range", "\"abc123\"");
+
+        MockHttpServletResponse response = write(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("0123", response.getContentAsString());
+    }
+
+    @Test
+    @DisplayName("Con sendfile disponibile il corpo e' delegato al connettore")
+    void whenSendfileSupported_thenDelegatesToConnector() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader("Range", "bytes=2-5");
+
+        MockHttpServletResponse response = write(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(file.path().toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(2L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(6L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+}
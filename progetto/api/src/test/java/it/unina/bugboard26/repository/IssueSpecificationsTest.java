@@ -0,0 +1,177 @@
+package it.unina.bugboard26.repository;
+
+import it.unina.bugboard26.enums.IssuePriority;
+import it.unina.bugboard26.enums.IssueStatus;
+import it.unina.bugboard26.enums.IssueType;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifica la SQL generata da IssueSpecifications: ogni combinazione di filtri deve produrre
+ * solo i predicati dei filtri presenti, senza il pattern catch-all {@code (? IS NULL OR ...)}.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "it.unina.bugboard26.repository.IssueSpecificationsTest$SqlCapture")
+class IssueSpecificationsTest {
+
+    /**
+     * Frammento SQL atteso nella WHERE per ciascun filtro.
+     */
+    private static final Map<String, String> FRAGMENTS = Map.of(
+            "type", ".type in",
+            "status", ".status in",
+            "priority", ".priority in",
+            "assignedTo", ".assigned_to_id=",
+            "archived", ".archived=",
+            "search", "like",
+            "updatedBefore", ".updated_at<",
+            "updatedSince", ".updated_at>=",
+            "ids", ".id=any(?)"
+    );
+
+    @Autowired private IssueRepository issueRepository;
+
+    @BeforeEach
+    void clearCapturedSql() {
+        SqlCapture.STATEMENTS.clear();
+    }
+
+    static Stream<Arguments> filterCombinations() {
+        Instant cutoff = Instant.parse("2026-01-01T00:00:00Z");
+        return Stream.of(
+                Arguments.of(IssueFilter.none(), Set.of()),
+                Arguments.of(IssueFilter.of(List.of(IssueType.BUG), null, null, null, null, null, null),
+                        Set.of("type")),
+                Arguments.of(IssueFilter.of(null, List.of(IssueStatus.TODO, IssueStatus.IN_PROGRESS), null, null, null, null, null),
+                        Set.of("status")),
+                Arguments.of(IssueFilter.of(null, null, List.of(IssuePriority.CRITICA), null, false, null, null),
+                        Set.of("priority", "archived")),
+                Arguments.of(IssueFilter.of(null, null, null, "user-id", null, null, null),
+                        Set.of("assignedTo")),
+                Arguments.of(IssueFilter.of(null, null, null, null, null, "login", null),
+                        Set.of("search")),
+                Arguments.of(IssueFilter.of(List.of(IssueType.FEATURE), List.of(IssueStatus.TODO),
+                                List.of(IssuePriority.ALTA), "user-id", true, "export", true),
+                        Set.of("type", "status", "priority", "assignedTo", "archived", "search")),
+                Arguments.of(IssueFilter.of(List.of(), List.of(), List.of(), null, null, "  ", null),
+                        Set.of()),
+                Arguments.of(IssueFilter.none().withUpdatedBefore(cutoff),
+                        Set.of("updatedBefore")),
+                Arguments.of(IssueFilter.none().withUpdatedSince(cutoff),
+                        Set.of("updatedSince")),
+                Arguments.of(IssueFilter.of(null, null, null, null, null, "login", null)
+                                .withSearchHits(List.of("issue-1", "issue-2")),
+                        Set.of("ids"))
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("filterCombinations")
+    @DisplayName("La WHERE contiene solo i predicati dei filtri presenti")
+    void whereClauseContainsOnlyPresentFilters(IssueFilter filter, Set<String> expected) {
+        issueRepository.findAll(IssueSpecifications.matching(filter));
+
+        String where = capturedWhereClause();
+        for (Map.Entry<String, String> fragment : FRAGMENTS.entrySet()) {
+            if (expected.contains(fragment.getKey())) {
+                assertTrue(where.contains(fragment.getValue()),
+                        "Manca il predicato " + fragment.getKey() + " in: " + where);
+            } else {
+                assertFalse(where.contains(fragment.getValue()),
+                        "Predicato inatteso " + fragment.getKey() + " in: " + where);
+            }
+        }
+        assertFalse(where.contains("? is null"), "Pattern catch-all presente in: " + where);
+        assertFalse(where.contains("cast("), "CAST non necessario in: " + where);
+    }
+
+    @Test
+    @DisplayName("deleted=TRUE seleziona le issue eliminate, altrimenti solo quelle attive")
+    void deletedFlagSelectsDeletedOrActiveIssues() {
+        issueRepository.findAll(IssueSpecifications.matching(IssueFilter.none().withDeleted(true)));
+        assertTrue(capturedWhereClause().contains(".deleted_at is not null"));
+
+        SqlCapture.STATEMENTS.clear();
+        issueRepository.findAll(IssueSpecifications.matching(IssueFilter.none()));
+        String where = capturedWhereClause();
+        assertTrue(where.contains(".deleted_at is null"));
+        assertFalse(where.contains(".deleted_at is not null"));
+    }
+
+    @Test
+    @DisplayName("Gli id della ricerca viaggiano in pochi parametri array, non uno per id")
+    void searchHitsBindArrayParameters() {
+        List<String> ids = IntStream.range(0, 100_000).mapToObj(i -> "issue-" + i).toList();
+
+        issueRepository.findAll(IssueSpecifications.matching(IssueFilter.none().withSearchHits(ids)));
+
+        String where = capturedWhereClause();
+        assertTrue(where.contains(".id=any(?)"), where);
+        assertEquals(2, where.chars().filter(c -> c == '?').count(), where);
+    }
+
+    @Test
+    @DisplayName("Il filtro per l'archiviazione automatica usa stato, archived e updatedAt")
+    void resolvedBeforeCombinesStatusArchivedAndCutoff() {
+        issueRepository.findAll(IssueSpecifications.resolvedBefore(Instant.now()));
+
+        String where = capturedWhereClause();
+        assertTrue(where.contains(".status in"));
+        assertTrue(where.contains(".archived="));
+        assertTrue(where.contains(".updated_at<"));
+        assertTrue(where.contains(".deleted_at is null"));
+    }
+
+    @Test
+    @DisplayName("Le faccette arrivano da una sola query raggruppata, senza i filtri sulle faccette")
+    void facetsUseOneGroupedQuery() {
+        IssueFilter filter = IssueFilter.of(List.of(IssueType.BUG), List.of(IssueStatus.TODO), null,
+                "user-id", false, null, null);
+
+        issueRepository.countFacets(filter.withoutFacets());
+
+        String where = capturedWhereClause();
+        assertTrue(where.contains("group by"), where);
+        assertTrue(SqlCapture.STATEMENTS.get(0).contains("count("), SqlCapture.STATEMENTS.get(0));
+        assertTrue(where.contains(".assigned_to_id="), where);
+        assertFalse(where.contains(".type in"), where);
+        assertFalse(where.contains(".status in"), where);
+        assertFalse(where.contains(".archived="), where);
+    }
+
+    private String capturedWhereClause() {
+        assertEquals(1, SqlCapture.STATEMENTS.size(), "Attesa una sola query: " + SqlCapture.STATEMENTS);
+        String sql = SqlCapture.STATEMENTS.get(0).toLowerCase().replace(" = ", "=").replace(" < ", "<");
+        int where = sql.indexOf(" where ");
+        assertTrue(where >= 0, "Query senza WHERE: " + sql);
+        return sql.substring(where);
+    }
+
+    public static class SqlCapture implements StatementInspector {
+
+        static final List<String> STATEMENTS = new ArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package it.unina.bugboard26.search;
+
+import it.unina.bugboard26.model.Issue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Latenza della ricerca approssimata per trigrammi su 500k issue: prima pagina in classifica con
+ * la similarita' e insieme completo delle corrispondenze usato per totali e faccette. L'obiettivo
+ * e' restare ben sotto i 50 ms per ricerca. Si esegue solo su richiesta:
+ * {@code mvn test -Dbugboard.benchmarks=true -Dtest=FuzzySearchBenchmarkTest}.
+ */
+@EnabledIfSystemProperty(named = "bugboard.benchmarks", matches = "true")
+class FuzzySearchBenchmarkTest {
+
+    private static final int ISSUES = 500_000;
+    private static final int PAGE_SIZE = 20;
+    private static final int ROUNDS = 50;
+    // Il resto del testo viene da un vocabolario sintetico: ogni parola del dominio compare in poche issue
+    private static final int VOCABULARY = 20_000;
+    private static final double DOMAIN_WORD_RATE = 0.03;
+    private static final String[] SYLLABLES = {
+            "ba", "ce", "di", "fo", "gu", "la", "me", "ni", "po", "ru", "sa", "te", "vi", "zo", "ca", "re", "to", "mi"
+    };
+    private static final String[] DOMAIN_WORDS = {
+            "autenticazione", "login", "password", "dashboard", "caricamento", "esportazione", "notifica",
+            "allegato", "permessi", "sessione", "database", "timeout", "pagina", "utente", "ricerca",
+            "filtro", "commento", "etichetta", "archivio", "cronologia", "immagine", "anteprima", "server",
+            "configurazione", "connessione", "errore", "crash", "lentezza", "aggiornamento", "sincronizzazione"
+    };
+    // Errori di battitura tipici: lettera mancante, invertita, sbagliata
+    private static final String[] QUERIES = {
+            "autenticazone", "dashbord lenta", "esportazioen csv", "sincronizazione archivio", "pasword utente"
+    };
+
+    @TempDir Path indexDir;
+
+    @Test
+    @DisplayName("Ricerca fuzzy su 500k issue: prima pagina con similarita' e tutte le corrispondenze")
+    void fuzzySearchLatency() throws IOException {
+        IssueSearchIndex index = new IssueSearchIndex(indexDir.toString(), 0.4f);
+        try {
+            Random random = new Random(42);
+            String[] vocabulary = IntStream.range(0, VOCABULARY).mapToObj(i -> syntheticWord(random)).toArray(String[]::new);
+            long start = System.nanoTime();
+            index.rebuild(IntStream.range(0, ISSUES).mapToObj(i -> buildIssue(i, vocabulary, random)));
+            System.out.printf("Indicizzazione di %,d issue: %d ms%n", ISSUES, (System.nanoTime() - start) / 1_000_000);
+
+            for (String query : QUERIES) {
+                // Un giro a vuoto per il JIT e la cache delle pagine
+                List<SearchHit> page = index.searchFuzzy(query, PAGE_SIZE);
+                int matches = index.matchingIds(query, true).size();
+                assertEquals(PAGE_SIZE, page.size());
+                assertTrue(page.stream().allMatch(hit -> hit.score() > 0f && hit.score() <= 1f));
+
+                long[] ranked = new long[ROUNDS];
+                long[] all = new long[ROUNDS];
+                for (int round = 0; round < ROUNDS; round++) {
+                    long t0 = System.nanoTime();
+                    index.searchFuzzy(query, PAGE_SIZE);
+                    long t1 = System.nanoTime();
+                    index.matchingIds(query, true);
+                    long t2 = System.nanoTime();
+                    ranked[round] = t1 - t0;
+                    all[round] = t2 - t1;
+                }
+                System.out.printf("Fuzzy \"%s\" (%,d corrispondenze, miglior similarita' %.2f): pagina %s, tutte %s%n",
+                        query, matches, page.get(0).score(), percentiles(ranked), percentiles(all));
+            }
+        } finally {
+            index.close();
+        }
+    }
+
+    private static String percentiles(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return String.format("mediana %.1f ms, p95 %.1f ms",
+                sorted[sorted.length / 2] / 1e6, sorted[(int) (sorted.length * 0.95)] / 1e6);
+    }
+
+    private static Issue buildIssue(int i, String[] vocabulary, Random random) {
+        Issue issue = new Issue();
+        issue.setId("issue-" + i);
+        issue.setTitle(words(vocabulary, random, 5));
+        issue.setDescription(words(vocabulary, random, 30));
+        return issue;
+    }
+
+    private static String words(String[] vocabulary, Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            String word = random.nextDouble() < DOMAIN_WORD_RATE
+                    ? DOMAIN_WORDS[random.nextInt(DOMAIN_WORDS.length)]
+                    : vocabulary[random.nextInt(vocabulary.length)];
+            text.append(i == 0 ? "" : " ").append(word);
+        }
+        return text.toString();
+    }
+
+    private static String syntheticWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 2 + random.nextInt(3); i > 0; i--) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,205 @@
+package it.unina.bugboard26.search;
+
+import it.unina.bugboard26.model.Issue;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Indice full-text su titolo e descrizione: ranking, prefissi, accenti ed estratti evidenziati.
+ */
+class IssueSearchIndexTest {
+
+    private static final int LIMIT = 100;
+
+    @TempDir Path indexDir;
+
+    private IssueSearchIndex index;
+
+    @BeforeEach
+    void openIndex() throws IOException {
+        index = new IssueSearchIndex(indexDir.toString(), 0.4f);
+        index.rebuild(Stream.of(
+                buildIssue("title-hit", "Crash al login", "L'app si chiude dopo l'accesso"),
+                buildIssue("description-hit", "Errore generico", "Il login fallisce con password corrette"),
+                buildIssue("accent-hit", "Perché la pagina è lenta", "Caricamento della dashboard molto lungo"),
+                buildIssue("unrelated", "Nuova funzionalità export", "Esportare le issue in formato CSV"),
+                buildIssue("auth", "Errore di autenticazione", "Il token scade prima del previsto")
+        ));
+    }
+
+    @AfterEach
+    void closeIndex() throws IOException {
+        index.close();
+    }
+
+    @Test
+    @DisplayName("Una corrispondenza nel titolo pesa piu' di una nella descrizione")
+    void titleMatchRanksAboveDescriptionMatch() throws IOException {
+        List<SearchHit> hits = index.search("login", LIMIT);
+
+        assertEquals(List.of("title-hit", "description-hit"), hits.stream().map(SearchHit::issueId).toList());
+        assertTrue(hits.get(0).score() > hits.get(1).score());
+    }
+
+    @Test
+    @DisplayName("Tutte le parole cercate devono comparire, anche come prefisso")
+    void everyTermMustMatchAsWordOrPrefix() throws IOException {
+        assertEquals(List.of("description-hit"), ids(index.search("log password", LIMIT)));
+        assertEquals(List.of("unrelated"), ids(index.search("esport", LIMIT)));
+        assertTrue(index.search("login csv", LIMIT).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Maiuscole e accenti non influenzano la ricerca")
+    void searchIgnoresCaseAndAccents() throws IOException {
+        assertEquals(List.of("accent-hit"), ids(index.search("PERCHE", LIMIT)));
+        assertEquals(List.of("accent-hit"), ids(index.search("perché lenta", LIMIT)));
+    }
+
+    @Test
+    @DisplayName("L'estratto evidenzia i termini trovati ed e' HTML-escaped, solo per le issue richieste")
+    void highlightMarksMatchesAndEscapesHtml() throws IOException {
+        index.index(buildIssue("html", "Script <b>iniettato</b>", "Il campo <script> accetta codice"));
+
+        assertEquals(List.of("html"), ids(index.search("campo", LIMIT)));
+        String highlight = index.highlight("campo", false, List.of("html", "unrelated")).get("html");
+
+        assertTrue(highlight.contains("<mark>campo</mark>"), highlight);
+        assertTrue(highlight.contains("&lt;script&gt;"), highlight);
+    }
+
+    @Test
+    @DisplayName("Aggiornamento e rimozione sostituiscono il documento della issue")
+    void updateAndRemoveReplaceTheDocument() throws IOException {
+        index.index(buildIssue("unrelated", "Login con SSO", "Esportare le issue in formato CSV"));
+        assertTrue(ids(index.search("sso", LIMIT)).contains("unrelated"));
+        assertEquals(5, index.size());
+
+        index.remove("unrelated");
+        assertTrue(index.search("sso", LIMIT).isEmpty());
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    @DisplayName("La ricerca approssimata trova le parole con errori di battitura")
+    void fuzzySearchToleratesTypos() throws IOException {
+        assertTrue(index.search("autenticazone", LIMIT).isEmpty());
+
+        List<SearchHit> hits = index.searchFuzzy("autenticazone", LIMIT);
+
+        assertEquals("auth", hits.get(0).issueId());
+        assertTrue(hits.get(0).score() > 0.7f && hits.get(0).score() <= 1f, "Similarita': " + hits.get(0).score());
+        String highlight = index.highlight("autenticazone", true, List.of("auth")).get("auth");
+        assertTrue(highlight.contains("<mark>autenticazione</mark>"), highlight);
+    }
+
+    @Test
+    @DisplayName("La similarita' ordina i risultati e scarta quelli sotto la soglia")
+    void fuzzyScoresRankCloserMatchesFirst() throws IOException {
+        List<SearchHit> hits = index.searchFuzzy("dashbord lenta", LIMIT);
+
+        assertEquals("accent-hit", hits.get(0).issueId());
+        assertTrue(hits.stream().allMatch(h -> h.score() >= 0.4f));
+        for (int i = 1; i < hits.size(); i++) {
+            assertTrue(hits.get(i - 1).score() >= hits.get(i).score());
+        }
+        assertTrue(index.searchFuzzy("zzzqqq", LIMIT).isEmpty());
+    }
+
+    @Test
+    @DisplayName("matchingIds restituisce tutte le corrispondenze, oltre qualunque limite di classifica")
+    void matchingIdsReturnsEveryMatchWithoutLimit() throws IOException {
+        index.rebuild(IntStream.range(0, 250).mapToObj(i -> buildIssue("issue-" + i, "Errore login " + i, "Dettagli")));
+
+        assertEquals(250, index.matchingIds("login", false).size());
+        assertEquals(250, index.matchingIds("logn", true).size());
+        assertEquals(10, index.search("login", 10).size());
+        assertTrue(index.matchingIds("?!", false).isEmpty());
+    }
+
+    @Test
+    @DisplayName("La classifica ristretta a un insieme di id considera solo quelle issue")
+    void searchWithinRanksOnlyTheGivenIssues() throws IOException {
+        List<SearchHit> hits = index.search("login", false, List.of("description-hit", "unrelated"), LIMIT);
+
+        assertEquals(List.of("description-hit"), ids(hits));
+        assertTrue(index.search("login", false, List.of(), LIMIT).isEmpty());
+    }
+
+    @Test
+    @DisplayName("La pagina per rilevanza salta e raccoglie solo le issue ammesse, scorrendo piu' blocchi")
+    void searchPageSkipsAndCollectsOnlyAcceptedIssues() throws IOException {
+        index.rebuild(IntStream.range(0, 1_000).mapToObj(i -> buildIssue("issue-" + i, "Errore login " + i, "Dettagli")));
+        // Solo un'issue su dieci passa i filtri: la pagina richiede piu' blocchi di risultati
+        Function<List<String>, Collection<String>> everyTenth = batch -> batch.stream()
+                .filter(id -> Integer.parseInt(id.substring("issue-".length())) % 10 == 0)
+                .toList();
+
+        List<SearchHit> all = index.searchPage("login", false, 0, 1_000, everyTenth);
+        List<SearchHit> page = index.searchPage("login", false, 40, 20, everyTenth);
+
+        assertEquals(100, all.size());
+        assertEquals(ids(all.subList(40, 60)), ids(page));
+        assertTrue(index.searchPage("login", false, 100, 20, everyTenth).isEmpty());
+        assertTrue(index.searchPage("login", false, 0, 20, batch -> List.of()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Un indice scritto con uno schema precedente va ricostruito")
+    void indexWithoutCurrentSchemaIsStale(@TempDir Path otherDir) throws IOException {
+        assertFalse(index.isStale());
+        index.close();
+
+        // Un indice Lucene senza versione di schema, come quelli creati prima dei trigrammi
+        try (Directory directory = FSDirectory.open(otherDir);
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig())) {
+            writer.addDocument(new Document());
+            writer.commit();
+        }
+        index = new IssueSearchIndex(otherDir.toString(), 0.4f);
+        assertTrue(index.isStale());
+
+        index.rebuild(Stream.of(buildIssue("auth", "Errore di autenticazione", "Il token scade presto")));
+        assertFalse(index.isStale());
+    }
+
+    @Test
+    @DisplayName("Una ricerca senza parole non restituisce risultati")
+    void blankSearchReturnsNoHits() throws IOException {
+        assertTrue(index.search("  ", LIMIT).isEmpty());
+        assertTrue(index.search("?!", LIMIT).isEmpty());
+        assertTrue(index.searchFuzzy("?!", LIMIT).isEmpty());
+    }
+
+    // --- Helpers ---
+
+    private List<String> ids(List<SearchHit> hits) {
+        return hits.stream().map(SearchHit::issueId).toList();
+    }
+
+    private Issue buildIssue(String id, String title, String description) {
+        Issue issue = new Issue();
+        issue.setId(id);
+        issue.setTitle(title);
+        issue.setDescription(description);
+        return issue;
+    }
+}
@@ -0,0 +1,112 @@
+package it.unina.bugboard26.service;
+
+import it.unina.bugboard26.dto.response.AttachmentResponse;
+import it.unina.bugboard26.enums.GlobalRole;
+import it.unina.bugboard26.enums.IssueStatus;
+import it.unina.bugboard26.enums.IssueType;
+import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.repository.AttachmentBlobRepository;
+import it.unina.bugboard26.repository.AttachmentRepository;
+import it.unina.bugboard26.repository.IssueRepository;
+import it.unina.bugboard26.repository.UserRepository;
+import it.unina.bugboard26.storage.AttachmentStore;
+import it.unina.bugboard26.storage.FileSystemBlobStorage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Due primi upload concorrenti dello stesso contenuto: nessuno dei due trova la riga del blob,
+ * entrambi provano a crearla e il secondo deve ripiegare sull'incremento invece di fallire.
+ * Gli upload fanno commit davvero, quindi il test non gira nella transazione di rollback.
+ */
+@DataJpaTest(properties = "bugboard.attachments.dir=target/test-uploads-concurrent")
+@Import({AttachmentService.class, PermissionService.class, AttachmentStore.class, FileSystemBlobStorage.class,
+        IssueDataVersion.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AttachmentConcurrentUploadTest {
+
+    @MockitoBean private ThumbnailService thumbnailService;
+    @Autowired private AttachmentService attachmentService;
+    @Autowired private AttachmentRepository attachmentRepository;
+    @Autowired private AttachmentBlobRepository attachmentBlobRepository;
+    @Autowired private IssueRepository issueRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private FileSystemBlobStorage blobStorage;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Test
+    @DisplayName("Due primi upload concorrenti dello stesso contenuto creano un solo blob con due riferimenti")
+    void concurrentFirstUploadsShareOneBlob() throws Exception {
+        User admin = userRepository.save(new User("concurrent@test.com", "hash", "Admin", GlobalRole.ADMIN));
+        Issue first = issueRepository.save(buildIssue(admin, "Prima issue"));
+        Issue second = issueRepository.save(buildIssue(admin, "Seconda issue"));
+        byte[] content = ("log condiviso " + System.nanoTime()).getBytes();
+
+        // Il primo upload crea la riga e tiene aperta la transazione finche' il secondo non e' partito
+        CountDownLatch firstInserted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        CompletableFuture<AttachmentResponse> a = CompletableFuture.supplyAsync(() -> transaction.execute(status -> {
+            AttachmentResponse response = upload(first, content, admin);
+            firstInserted.countDown();
+            await(releaseFirst);
+            return response;
+        }));
+        assertTrue(firstInserted.await(10, TimeUnit.SECONDS));
+        CompletableFuture<AttachmentResponse> b = CompletableFuture.supplyAsync(() -> upload(second, content, admin));
+        // Il secondo upload resta in attesa sulla riga non ancora confermata
+        Thread.sleep(300);
+        releaseFirst.countDown();
+
+        String sha256 = attachmentRepository.findById(a.get(10, TimeUnit.SECONDS).id()).orElseThrow().getSha256();
+        assertEquals(sha256, attachmentRepository.findById(b.get(10, TimeUnit.SECONDS).id()).orElseThrow().getSha256());
+        assertEquals(2, attachmentBlobRepository.findById(sha256).orElseThrow().getRefCount());
+        assertArrayEquals(content, Files.readAllBytes(blobStorage.path(sha256)));
+    }
+
+    // --- Helpers ---
+
+    private AttachmentResponse upload(Issue issue, byte[] content, User user) {
+        try {
+            return attachmentService.upload(issue.getId(),
+                    new MockMultipartFile("file", "log.pdf", "application/pdf", content), user.getEmail());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Issue buildIssue(User author, String title) {
+        Issue issue = new Issue();
+        issue.setTitle(title);
+        issue.setType(IssueType.BUG);
+        issue.setDescription("Descrizione di test sufficientemente lunga");
+        issue.setStatus(IssueStatus.TODO);
+        issue.setCreatedBy(author);
+        return issue;
+    }
+}
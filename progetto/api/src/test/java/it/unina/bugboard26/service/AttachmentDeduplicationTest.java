@@ -0,0 +1,121 @@
+package it.unina.bugboard26.service;
+
+import it.unina.bugboard26.dto.response.AttachmentResponse;
+import it.unina.bugboard26.enums.GlobalRole;
+import it.unina.bugboard26.enums.IssueStatus;
+import it.unina.bugboard26.enums.IssueType;
+import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.repository.AttachmentBlobRepository;
+import it.unina.bugboard26.repository.AttachmentRepository;
+import it.unina.bugboard26.storage.AttachmentStore;
+import it.unina.bugboard26.storage.FileSystemBlobStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Lo stesso contenuto allegato a piu' issue occupa un solo file, che resta su disco finche'
+ * esiste almeno un allegato che lo usa.
+ */
+@DataJpaTest(properties = "bugboard.attachments.dir=target/test-uploads-dedup")
+@Import({AttachmentService.class, PermissionService.class, AttachmentStore.class, FileSystemBlobStorage.class,
+        IssueDataVersion.class})
+class AttachmentDeduplicationTest {
+
+    // L'anteprima non interessa qui e la pipeline vuole un MeterRegistry che @DataJpaTest non crea
+    @MockitoBean private ThumbnailService thumbnailService;
+    @Autowired private AttachmentService attachmentService;
+    @Autowired private AttachmentRepository attachmentRepository;
+    @Autowired private AttachmentBlobRepository attachmentBlobRepository;
+    @Autowired private FileSystemBlobStorage blobStorage;
+    @Autowired private TestEntityManager entityManager;
+
+    private User admin;
+    private Issue first;
+    private Issue second;
+
+    @BeforeEach
+    void setUp() {
+        admin = entityManager.persist(new User("admin@test.com", "hash", "Admin", GlobalRole.ADMIN));
+        first = persistIssue("Prima issue");
+        second = persistIssue("Seconda issue");
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private Issue persistIssue(String title) {
+        Issue issue = new Issue();
+        issue.setTitle(title);
+        issue.setType(IssueType.BUG);
+        issue.setDescription("Descrizione di test sufficientemente lunga");
+        issue.setStatus(IssueStatus.TODO);
+        issue.setCreatedBy(admin);
+        return entityManager.persist(issue);
+    }
+
+    private AttachmentResponse upload(Issue issue, String name, String content) throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", name, "application/pdf", content.getBytes());
+        AttachmentResponse response = attachmentService.upload(issue.getId(), file, admin.getEmail());
+        entityManager.flush();
+        entityManager.clear();
+        return response;
+    }
+
+    private long refCount(String sha256) {
+        return attachmentBlobRepository.findById(sha256).orElseThrow().getRefCount();
+    }
+
+    @Test
+    @DisplayName("Lo stesso contenuto caricato su due issue occupa un solo file con due riferimenti")
+    void sameContentIsStoredOnce() throws Exception {
+        String content = "log condiviso " + System.nanoTime();
+        AttachmentResponse a = upload(first, "log.pdf", content);
+        AttachmentResponse b = upload(second, "copia.pdf", content);
+
+        String sha256 = attachmentRepository.findById(a.id()).orElseThrow().getSha256();
+        assertEquals(sha256, attachmentRepository.findById(b.id()).orElseThrow().getSha256());
+        assertNotEquals(a.storedFilename(), b.storedFilename());
+        assertEquals(2, refCount(sha256));
+        assertEquals(content, Files.readString(blobStorage.path(sha256)));
+        try (Stream<Path> files = Files.list(Path.of("target/test-uploads-dedup"))) {
+            assertEquals(0, files.filter(p -> p.getFileName().toString().endsWith(".tmp")).count());
+        }
+    }
+
+    @Test
+    @DisplayName("Delete rimuove il file solo con l'ultimo riferimento")
+    void deleteRemovesFileWithLastReference() throws Exception {
+        String content = "screenshot " + System.nanoTime();
+        AttachmentResponse a = upload(first, "shot.pdf", content);
+        AttachmentResponse b = upload(second, "shot.pdf", content);
+        String sha256 = attachmentRepository.findById(a.id()).orElseThrow().getSha256();
+        Path file = blobStorage.path(sha256);
+
+        attachmentService.delete(first.getId(), a.storedFilename(), admin.getEmail());
+        entityManager.flush();
+        entityManager.clear();
+
+        assertTrue(Files.exists(file));
+        assertEquals(1, refCount(sha256));
+
+        attachmentService.delete(second.getId(), b.storedFilename(), admin.getEmail());
+        entityManager.flush();
+        entityManager.clear();
+
+        assertFalse(Files.exists(file));
+        assertTrue(attachmentBlobRepository.findById(sha256).isEmpty());
+    }
+}
@@ -0,0 +1,123 @@
+package it.unina.bugboard26.service;
+
+import it.unina.bugboard26.storage.FileSystemBlobStorage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Merge join tra i file su disco e {@code attachment_blobs}, con blocchi di due righe per passare
+ * piu' volte dalla paginazione.
+ */
+@DataJpaTest
+class AttachmentReconcilerTest {
+
+    private static final String KEPT = "1a".repeat(32);
+    private static final String MISSING = "2b".repeat(32);
+    private static final String THUMB_ONLY = "3c".repeat(32);
+    private static final String ORPHAN = "4d".repeat(32);
+    private static final String RECENT = "5e".repeat(32);
+    private static final String LAST = "6f".repeat(32);
+
+    @TempDir Path tempDir;
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private FileSystemBlobStorage blobStorage;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        blobStorage = new FileSystemBlobStorage(tempDir.toString());
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private AttachmentReconciler reconciler(boolean deleteOrphans) {
+        return new AttachmentReconciler(jdbcTemplate, blobStorage, meterRegistry, Duration.ofHours(1), 2,
+                deleteOrphans, true);
+    }
+
+    private void row(String sha256) {
+        jdbcTemplate.update("INSERT INTO attachment_blobs (sha256, size, ref_count, created_at) VALUES (?, ?, ?, ?)",
+                sha256, 9L, 1, Timestamp.from(Instant.now()));
+    }
+
+    private Path file(String name, String content, Instant lastModified) throws Exception {
+        Path path = blobStorage.path(name);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content);
+        Files.setLastModifiedTime(path, FileTime.from(lastModified));
+        return path;
+    }
+
+    @Test
+    @DisplayName("Elimina i file vecchi senza riga e segnala le righe senza file")
+    void reconcilesBothDirections() throws Exception {
+        Instant old = Instant.now().minus(Duration.ofDays(2));
+        row(KEPT);
+        row(MISSING);
+        row(THUMB_ONLY);
+        row(LAST);
+        Path kept = file(KEPT, "contenuto", old);
+        Path keptThumb = file(KEPT + ".thumb.jpg", "anteprima", old);
+        file(THUMB_ONLY + ".thumb.jpg", "anteprima", old);
+        Path orphan = file(ORPHAN, "orfano", old);
+        Path orphanThumb = file(ORPHAN + ".thumb.jpg", "mini", old);
+        Path recent = file(RECENT, "in corso", Instant.now());
+        Path last = file(LAST, "ultimo", old);
+        Path foreign = Files.writeString(kept.resolveSibling("note.txt"), "non mio");
+
+        AttachmentReconciler.Report report = reconciler(true).reconcile();
+
+        assertEquals(new AttachmentReconciler.Report(7, 4, 2, 1, 2, 10, 2), report);
+        assertFalse(Files.exists(orphan));
+        assertFalse(Files.exists(orphanThumb));
+        assertTrue(Files.exists(kept));
+        assertTrue(Files.exists(keptThumb));
+        assertTrue(Files.exists(recent));
+        assertTrue(Files.exists(last));
+        assertTrue(Files.exists(foreign));
+        assertEquals(2.0, meterRegistry.get("bugboard.attachments.orphans.deleted").counter().count());
+        assertEquals(10.0, meterRegistry.get("bugboard.attachments.orphans.reclaimed").counter().count());
+        assertEquals(2.0, meterRegistry.get("bugboard.attachments.orphans").gauge().value());
+        assertEquals(2.0, meterRegistry.get("bugboard.attachments.missing").gauge().value());
+        assertEquals(1, meterRegistry.get("bugboard.attachments.reconcile").timer().count());
+    }
+
+    @Test
+    @DisplayName("Con delete-orphans disattivato gli orfani sono solo contati")
+    void dryRunKeepsOrphans() throws Exception {
+        Instant old = Instant.now().minus(Duration.ofDays(2));
+        row(KEPT);
+        file(KEPT, "contenuto", old);
+        Path orphan = file(ORPHAN, "orfano", old);
+
+        AttachmentReconciler.Report report = reconciler(false).reconcile();
+
+        assertEquals(1, report.orphans());
+        assertEquals(0, report.deleted());
+        assertTrue(Files.exists(orphan));
+        assertEquals(0.0, meterRegistry.get("bugboard.attachments.orphans.deleted").counter().count());
+    }
+
+    @Test
+    @DisplayName("Con storage e tabella vuoti non c'e' nulla da fare")
+    void emptyStorage() throws Exception {
+        assertEquals(new AttachmentReconciler.Report(0, 0, 0, 0, 0, 0, 0), reconciler(true).reconcile());
+    }
+}
@@ -1,45 +1,77 @@
 package it.unina.bugboard26.service;
 
 import it.unina.bugboard26.enums.GlobalRole;
+import it.unina.bugboard26.event.AttachmentStoredEvent;
 import it.unina.bugboard26.enums.IssueStatus;
 import it.unina.bugboard26.enums.IssueType;
 import it.unina.bugboard26.model.Attachment;
 import it.unina.bugboard26.model.Issue;
 import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.repository.AttachmentBlobRepository;
+import it.unina.bugboard26.repository.AttachmentRepository;
+import it.unina.bugboard26.repository.HistoryEntryRepository;
 import it.unina.bugboard26.repository.IssueRepository;
 import it.unina.bugboard26.repository.UserRepository;
+import it.unina.bugboard26.storage.AttachmentStore;
+import it.unina.bugboard26.storage.FileSystemBlobStorage;
+import it.unina.bugboard26.storage.StoredFile;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class AttachmentServiceTest {
 
     @Mock private IssueRepository issueRepository;
+    @Mock private AttachmentRepository attachmentRepository;
+    @Mock private AttachmentBlobRepository attachmentBlobRepository;
+    @Mock private HistoryEntryRepository historyEntryRepository;
     @Mock private UserRepository userRepository;
     @Mock private PermissionService permissionService;
+    @Mock private ThumbnailService thumbnailService;
+    @Mock private ApplicationEventPublisher eventPublisher;
+    @Mock private IssueDataVersion issueDataVersion;
 
     @TempDir Path tempDir;
 
+    private FileSystemBlobStorage blobStorage() {
+        return new FileSystemBlobStorage(tempDir.toString());
+    }
+
+    private AttachmentStore store() {
+        return new AttachmentStore(tempDir.toString(), blobStorage());
+    }
+
+    // Crea un file vuoto dove lo store lo cercherebbe
+    private Path touch(Path path) throws Exception {
+        java.nio.file.Files.createDirectories(path.getParent());
+        return java.nio.file.Files.createFile(path);
+    }
+
     private AttachmentService createService() {
-        return new AttachmentService(issueRepository, userRepository, permissionService,
-                tempDir.toString(), 5242880L,
+        return new AttachmentService(issueRepository, attachmentRepository, attachmentBlobRepository, historyEntryRepository,
+                userRepository, permissionService, store(), thumbnailService, eventPublisher, issueDataVersion, 5242880L,
                 List.of("image/jpeg", "image/png", "image/gif", "image/webp", "application/pdf"));
     }
 
@@ -52,17 +84,33 @@ class AttachmentServiceTest {
         when(userRepository.findByEmail(admin.getEmail())).thenReturn(Optional.of(admin));
         when(issueRepository.findById("issue-1")).thenReturn(Optional.of(issue));
         when(permissionService.canModifyIssue(admin, issue)).thenReturn(true);
-        when(issueRepository.save(any(Issue.class))).thenReturn(issue);
+        when(attachmentRepository.countByIssueId("issue-1")).thenReturn(0L);
+        when(attachmentBlobRepository.insertIfAbsent(any(), anyLong())).thenReturn(true);
+        when(attachmentRepository.save(any(Attachment.class))).thenAnswer(inv -> inv.getArgument(0));
 
         MockMultipartFile file = new MockMultipartFile("file", "report.pdf", "application/pdf", "PDF content".getBytes());
 
         AttachmentService service = createService();
         service.upload("issue-1", file, admin.getEmail());
 
-        assertEquals(1, issue.getAttachments().size());
-        assertEquals("report.pdf", issue.getAttachments().get(0).getOriginalFilename());
-        assertEquals("application/pdf", issue.getAttachments().get(0).getContentType());
-        verify(issueRepository).save(issue);
+        // Una sola riga inserita, senza caricare o riscrivere gli altri allegati della issue
+        ArgumentCaptor<Attachment> saved = ArgumentCaptor.forClass(Attachment.class);
+        verify(attachmentRepository).save(saved.capture());
+        assertSame(issue, saved.getValue().getIssue());
+        assertEquals("report.pdf", saved.getValue().getOriginalFilename());
+        assertEquals("application/pdf", saved.getValue().getContentType());
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest("PDF content".getBytes()));
+        assertEquals(sha256, saved.getValue().getSha256());
+        // Contenuto nuovo: nessun blob da incrementare, se ne crea uno e il file finisce sotto il suo hash
+        verify(attachmentBlobRepository).insertIfAbsent(sha256, "PDF content".length());
+        assertEquals("PDF content", java.nio.file.Files.readString(blobStorage().path(sha256)));
+        verify(eventPublisher).publishEvent(new AttachmentStoredEvent(sha256, "application/pdf"));
+        assertTrue(issue.getAttachments().isEmpty());
+        verify(issueRepository, never()).save(any());
+        verify(historyEntryRepository).save(argThat(h -> h.getAction().equals("Allegato aggiunto: report.pdf")));
+        assertTrue(issue.getHistory().isEmpty());
+        // Gli export in cache con allegati e cronologia della issue non valgono piu'
+        verify(issueDataVersion).bump();
     }
 
     @Test
@@ -98,7 +146,7 @@ class AttachmentServiceTest {
         AttachmentService service = createService();
         assertThrows(AccessDeniedException.class,
                 () -> service.upload("issue-1", file, ext.getEmail()));
-        verify(issueRepository, never()).save(any());
+        verify(attachmentRepository, never()).save(any());
     }
 
     @Test
@@ -107,21 +155,72 @@ class AttachmentServiceTest {
         User admin = buildUser("admin", GlobalRole.ADMIN);
         Issue issue = buildIssue("issue-1", admin);
 
-        Attachment att = new Attachment("uuid-stored.pdf", "report.pdf", "application/pdf", 1024);
-        issue.getAttachments().add(att);
+        Attachment att = new Attachment(issue, "uuid-stored.pdf", "report.pdf", "application/pdf", 1024);
 
         java.nio.file.Files.createFile(tempDir.resolve("uuid-stored.pdf"));
 
         when(userRepository.findByEmail(admin.getEmail())).thenReturn(Optional.of(admin));
         when(issueRepository.findById("issue-1")).thenReturn(Optional.of(issue));
         when(permissionService.canModifyIssue(admin, issue)).thenReturn(true);
-        when(issueRepository.save(any(Issue.class))).thenReturn(issue);
+        when(attachmentRepository.findByIssueIdAndStoredFilename("issue-1", "uuid-stored.pdf")).thenReturn(Optional.of(att));
 
         AttachmentService service = createService();
         service.delete("issue-1", "uuid-stored.pdf", admin.getEmail());
 
-        assertTrue(issue.getAttachments().isEmpty());
-        verify(issueRepository).save(issue);
+        verify(attachmentRepository).delete(att);
+        assertFalse(java.nio.file.Files.exists(tempDir.resolve("uuid-stored.pdf")));
+        verify(issueRepository, never()).save(any());
+        verify(historyEntryRepository).save(argThat(h -> h.getAction().startsWith("Allegato rimosso: ")));
+    }
+
+    @Test
+    @DisplayName("Upload di contenuto gia' presente incrementa il conteggio senza creare un nuovo blob")
+    void whenDuplicateContentUploaded_thenRefCountIncremented() throws Exception {
+        User admin = buildUser("admin", GlobalRole.ADMIN);
+        Issue issue = buildIssue("issue-1", admin);
+
+        when(userRepository.findByEmail(admin.getEmail())).thenReturn(Optional.of(admin));
+        when(issueRepository.findById("issue-1")).thenReturn(Optional.of(issue));
+        when(permissionService.canModifyIssue(admin, issue)).thenReturn(true);
+        when(attachmentBlobRepository.incrementRefCount(any())).thenReturn(1);
+        when(attachmentRepository.save(any(Attachment.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        MockMultipartFile file = new MockMultipartFile("file", "log.pdf", "application/pdf", "stesso log".getBytes());
+
+        AttachmentService service = createService();
+        service.upload("issue-1", file, admin.getEmail());
+
+        verify(attachmentBlobRepository, never()).insertIfAbsent(any(), anyLong());
+        // Il blob esisteva gia': nessuna nuova scrittura nello storage e il file temporaneo viene scartato
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest("stesso log".getBytes()));
+        assertFalse(java.nio.file.Files.exists(blobStorage().path(sha256)));
+        try (java.util.stream.Stream<Path> files = java.nio.file.Files.walk(tempDir)) {
+            assertTrue(files.noneMatch(java.nio.file.Files::isRegularFile));
+        }
+    }
+
+    @Test
+    @DisplayName("Delete con altri riferimenti allo stesso contenuto lascia il file su disco")
+    void whenDeleteSharedAttachment_thenFileKept() throws Exception {
+        User admin = buildUser("admin", GlobalRole.ADMIN);
+        Issue issue = buildIssue("issue-1", admin);
+        String sha256 = "cd".repeat(32);
+
+        Attachment att = new Attachment(issue, "uuid-shared.pdf", "log.pdf", "application/pdf", 1024);
+        att.setSha256(sha256);
+        touch(blobStorage().path(sha256));
+
+        when(userRepository.findByEmail(admin.getEmail())).thenReturn(Optional.of(admin));
+        when(issueRepository.findById("issue-1")).thenReturn(Optional.of(issue));
+        when(permissionService.canModifyIssue(admin, issue)).thenReturn(true);
+        when(attachmentRepository.findByIssueIdAndStoredFilename("issue-1", "uuid-shared.pdf")).thenReturn(Optional.of(att));
+        when(attachmentBlobRepository.deleteIfUnreferenced(sha256)).thenReturn(0);
+
+        AttachmentService service = createService();
+        service.delete("issue-1", "uuid-shared.pdf", admin.getEmail());
+
+        verify(attachmentBlobRepository).decrementRefCount(sha256);
+        assertTrue(java.nio.file.Files.exists(blobStorage().path(sha256)));
     }
 
     @Test
@@ -141,7 +240,7 @@ class AttachmentServiceTest {
         ResponseStatusException ex = assertThrows(ResponseStatusException.class,
                 () -> service.upload("issue-1", file, admin.getEmail()));
         assertEquals(400, ex.getStatusCode().value());
-        verify(issueRepository, never()).save(any());
+        verify(attachmentRepository, never()).save(any());
     }
 
     @Test
@@ -149,13 +248,11 @@ class AttachmentServiceTest {
     void whenMaxAttachmentsReached_thenBadRequest() {
         User admin = buildUser("admin", GlobalRole.ADMIN);
         Issue issue = buildIssue("issue-1", admin);
-        for (int i = 0; i < 10; i++) {
-            issue.getAttachments().add(new Attachment("file-" + i + ".png", "file.png", "image/png", 100));
-        }
 
         when(userRepository.findByEmail(admin.getEmail())).thenReturn(Optional.of(admin));
         when(issueRepository.findById("issue-1")).thenReturn(Optional.of(issue));
         when(permissionService.canModifyIssue(admin, issue)).thenReturn(true);
+        when(attachmentRepository.countByIssueId("issue-1")).thenReturn(10L);
 
         MockMultipartFile file = new MockMultipartFile("file", "extra.png", "image/png", "img".getBytes());
 
@@ -163,6 +260,7 @@ class AttachmentServiceTest {
         ResponseStatusException ex = assertThrows(ResponseStatusException.class,
                 () -> service.upload("issue-1", file, admin.getEmail()));
         assertEquals(400, ex.getStatusCode().value());
+        verify(attachmentRepository, never()).save(any());
     }
 
     @Test
@@ -199,21 +297,60 @@ class AttachmentServiceTest {
     }
 
     @Test
-    @DisplayName("Download di allegato esistente restituisce la risorsa")
+    @DisplayName("Download di allegato esistente restituisce file, nome originale ed ETag")
     void whenDownloadExistingAttachment_thenReturnsResource() throws Exception {
         User admin = buildUser("admin", GlobalRole.ADMIN);
         Issue issue = buildIssue("issue-1", admin);
-        Attachment att = new Attachment("uuid-file.pdf", "report.pdf", "application/pdf", 1024);
-        issue.getAttachments().add(att);
+        Attachment att = new Attachment(issue, "uuid-file.pdf", "report.pdf", "application/pdf", 1024);
+        att.setSha256("ab".repeat(32));
 
-        java.nio.file.Files.createFile(tempDir.resolve("uuid-file.pdf"));
+        Path stored = touch(blobStorage().path("ab".repeat(32)));
 
         when(issueRepository.findById("issue-1")).thenReturn(Optional.of(issue));
+        when(attachmentRepository.findByIssueIdAndStoredFilename("issue-1", "uuid-file.pdf")).thenReturn(Optional.of(att));
 
         AttachmentService service = createService();
-        org.springframework.core.io.Resource resource = service.download("issue-1", "uuid-file.pdf");
+        StoredFile file = (StoredFile) service.download("issue-1", "uuid-file.pdf");
+
+        assertEquals(stored, file.path());
+        assertEquals("report.pdf", file.filename());
+        assertEquals("ab".repeat(32), file.etag());
+    }
+
+    @Test
+    @DisplayName("Anteprima gia' generata viene restituita come JPEG")
+    void whenThumbnailReady_thenReturned() throws Exception {
+        User admin = buildUser("admin", GlobalRole.ADMIN);
+        Issue issue = buildIssue("issue-1", admin);
+        Attachment att = new Attachment(issue, "uuid-shot.png", "shot.png", "image/png", 1024);
+        att.setSha256("ef".repeat(32));
+        Path thumbnailPath = touch(blobStorage().path("ef".repeat(32) + ".thumb.jpg"));
+
+        when(issueRepository.findById("issue-1")).thenReturn(Optional.of(issue));
+        when(attachmentRepository.findByIssueIdAndStoredFilename("issue-1", "uuid-shot.png")).thenReturn(Optional.of(att));
+
+        StoredFile thumbnail = (StoredFile) createService().thumbnail("issue-1", "uuid-shot.png");
 
-        assertTrue(resource.exists());
+        assertEquals("image/jpeg", thumbnail.contentType());
+        assertEquals(thumbnailPath, thumbnail.path());
+        verifyNoInteractions(thumbnailService);
+    }
+
+    @Test
+    @DisplayName("Anteprima mancante lancia 404 e ne richiede la generazione")
+    void whenThumbnailMissing_thenNotFoundAndRequested() {
+        User admin = buildUser("admin", GlobalRole.ADMIN);
+        Issue issue = buildIssue("issue-1", admin);
+        Attachment att = new Attachment(issue, "uuid-log.pdf", "log.pdf", "application/pdf", 1024);
+        att.setSha256("12".repeat(32));
+
+        when(issueRepository.findById("issue-1")).thenReturn(Optional.of(issue));
+        when(attachmentRepository.findByIssueIdAndStoredFilename("issue-1", "uuid-log.pdf")).thenReturn(Optional.of(att));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> createService().thumbnail("issue-1", "uuid-log.pdf"));
+        assertEquals(404, ex.getStatusCode().value());
+        verify(thumbnailService).request("12".repeat(32), "application/pdf");
     }
 
     @Test
@@ -235,7 +372,6 @@ class AttachmentServiceTest {
     void whenDeleteWithoutPermission_thenAccessDenied() {
         User ext = buildUser("external", GlobalRole.EXTERNAL);
         Issue issue = buildIssue("issue-1", buildUser("owner", GlobalRole.USER));
-        issue.getAttachments().add(new Attachment("file.pdf", "report.pdf", "application/pdf", 1024));
 
         when(userRepository.findByEmail(ext.getEmail())).thenReturn(Optional.of(ext));
         when(issueRepository.findById("issue-1")).thenReturn(Optional.of(issue));
@@ -244,7 +380,7 @@ class AttachmentServiceTest {
         AttachmentService service = createService();
         assertThrows(AccessDeniedException.class,
                 () -> service.delete("issue-1", "file.pdf", ext.getEmail()));
-        verify(issueRepository, never()).save(any());
+        verify(attachmentRepository, never()).delete(any());
     }
 
     @Test
@@ -0,0 +1,91 @@
+package it.unina.bugboard26.service;
+
+import it.unina.bugboard26.dto.response.AttachmentResponse;
+import it.unina.bugboard26.enums.GlobalRole;
+import it.unina.bugboard26.enums.IssueStatus;
+import it.unina.bugboard26.enums.IssueType;
+import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.repository.IssueFilter;
+import it.unina.bugboard26.repository.IssueRepository;
+import it.unina.bugboard26.storage.AttachmentStore;
+import it.unina.bugboard26.storage.FileSystemBlobStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Aggiungere o rimuovere un allegato aggiorna {@code updatedAt} della issue, cosi' chi sincronizza
+ * con {@code updatedSince} vede il cambio anche se nessuna colonna della issue e' cambiata.
+ */
+@DataJpaTest(properties = "bugboard.attachments.dir=target/test-uploads-updated-since")
+@Import({AttachmentService.class, PermissionService.class, AttachmentStore.class, FileSystemBlobStorage.class,
+        IssueDataVersion.class})
+class AttachmentUpdatedSinceTest {
+
+    @MockitoBean private ThumbnailService thumbnailService;
+    @Autowired private AttachmentService attachmentService;
+    @Autowired private IssueRepository issueRepository;
+    @Autowired private TestEntityManager entityManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private User admin;
+    private Issue issue;
+    private Instant since;
+
+    @BeforeEach
+    void setUp() {
+        admin = entityManager.persist(new User("admin@test.com", "hash", "Admin", GlobalRole.ADMIN));
+        issue = new Issue();
+        issue.setTitle("Issue con allegati");
+        issue.setType(IssueType.BUG);
+        issue.setDescription("Descrizione di test sufficientemente lunga");
+        issue.setStatus(IssueStatus.TODO);
+        issue.setCreatedBy(admin);
+        issue = entityManager.persist(issue);
+        entityManager.flush();
+        since = Instant.now().minus(Duration.ofMinutes(1));
+        markNotUpdatedSince();
+    }
+
+    // Porta la issue a prima di "since", come se l'ultima sincronizzazione l'avesse gia' vista
+    private void markNotUpdatedSince() {
+        entityManager.clear();
+        jdbcTemplate.update("UPDATE issues SET updated_at = ? WHERE id = ?",
+                Timestamp.from(since.minus(Duration.ofHours(1))), issue.getId());
+        assertTrue(updatedSince().isEmpty());
+    }
+
+    private List<String> updatedSince() {
+        return issueRepository.findIds(IssueFilter.none().withUpdatedSince(since));
+    }
+
+    @Test
+    @DisplayName("Aggiungere o rimuovere un allegato fa comparire la issue tra quelle aggiornate da updatedSince")
+    void attachmentChangesBumpUpdatedAt() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "log.pdf", "application/pdf",
+                ("log " + System.nanoTime()).getBytes());
+        AttachmentResponse attachment = attachmentService.upload(issue.getId(), file, admin.getEmail());
+        entityManager.flush();
+        assertEquals(List.of(issue.getId()), updatedSince());
+
+        markNotUpdatedSince();
+        attachmentService.delete(issue.getId(), attachment.storedFilename(), admin.getEmail());
+        entityManager.flush();
+        assertEquals(List.of(issue.getId()), updatedSince());
+    }
+}
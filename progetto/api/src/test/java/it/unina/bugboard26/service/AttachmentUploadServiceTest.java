@@ -0,0 +1,232 @@
+package it.unina.bugboard26.service;
+
+import it.unina.bugboard26.dto.request.CreateUploadRequest;
+import it.unina.bugboard26.dto.response.UploadSessionResponse;
+import it.unina.bugboard26.enums.GlobalRole;
+import it.unina.bugboard26.enums.IssueStatus;
+import it.unina.bugboard26.enums.IssueType;
+import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.model.UploadSession;
+import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.repository.IssueRepository;
+import it.unina.bugboard26.repository.UploadSessionRepository;
+import it.unina.bugboard26.repository.UserRepository;
+import it.unina.bugboard26.storage.AttachmentStore;
+import it.unina.bugboard26.storage.FileSystemBlobStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AttachmentUploadServiceTest {
+
+    private static final String EMAIL = "admin@test.com";
+
+    @Mock private UploadSessionRepository uploadSessionRepository;
+    @Mock private IssueRepository issueRepository;
+    @Mock private UserRepository userRepository;
+    @Mock private PermissionService permissionService;
+    @Mock private AttachmentService attachmentService;
+
+    @TempDir Path tempDir;
+
+    private AttachmentStore store;
+    private User admin;
+    private Issue issue;
+
+    @BeforeEach
+    void setUp() {
+        store = new AttachmentStore(tempDir.toString(), new FileSystemBlobStorage(tempDir.toString()));
+        admin = new User(EMAIL, "hash", "Admin", GlobalRole.ADMIN);
+        admin.setId("admin-id");
+        issue = new Issue();
+        issue.setId("issue-1");
+        issue.setTitle("Issue");
+        issue.setType(IssueType.BUG);
+        issue.setStatus(IssueStatus.TODO);
+        issue.setCreatedBy(admin);
+    }
+
+    private AttachmentUploadService createService() {
+        return new AttachmentUploadService(uploadSessionRepository, issueRepository, userRepository, permissionService,
+                attachmentService, store, 1024, Duration.ofHours(24));
+    }
+
+    // Sessione gia' aperta per un file di `size` byte, con il file parziale vuoto
+    private UploadSession openSession(long size) throws Exception {
+        UploadSession session = new UploadSession(issue, admin, "dump.pdf", "application/pdf", size);
+        session.setId("upload-1");
+        store.createPart("upload-1");
+        lenient().when(uploadSessionRepository.findByIdAndIssueIdAndUserEmail("upload-1", "issue-1", EMAIL))
+                .thenReturn(Optional.of(session));
+        return session;
+    }
+
+    private UploadSessionResponse put(AttachmentUploadService service, long offset, String chunk) throws Exception {
+        return service.writeChunk("issue-1", "upload-1", offset, new ByteArrayInputStream(chunk.getBytes()), EMAIL);
+    }
+
+    private static String sha256(String content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content.getBytes()));
+    }
+
+    @Test
+    @DisplayName("Apertura di una sessione crea il file parziale vuoto")
+    void whenCreate_thenEmptyPartCreated() throws Exception {
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(admin));
+        when(issueRepository.findById("issue-1")).thenReturn(Optional.of(issue));
+        when(permissionService.canModifyIssue(admin, issue)).thenReturn(true);
+        when(uploadSessionRepository.saveAndFlush(any(UploadSession.class))).thenAnswer(inv -> {
+            UploadSession s = inv.getArgument(0);
+            s.setId("upload-1");
+            return s;
+        });
+
+        UploadSessionResponse response = createService().create("issue-1",
+                new CreateUploadRequest("dump.pdf", "application/pdf", 600), EMAIL);
+
+        assertEquals("upload-1", response.id());
+        assertEquals(0, response.offset());
+        assertEquals(0, store.partSize("upload-1"));
+        verify(attachmentService).checkNewAttachment("issue-1", "application/pdf");
+    }
+
+    @Test
+    @DisplayName("Apertura oltre la dimensione massima lancia 400")
+    void whenCreateTooLarge_thenBadRequest() {
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(admin));
+        when(issueRepository.findById("issue-1")).thenReturn(Optional.of(issue));
+        when(permissionService.canModifyIssue(admin, issue)).thenReturn(true);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> createService().create("issue-1",
+                new CreateUploadRequest("dump.pdf", "application/pdf", 2048), EMAIL));
+        assertEquals(400, ex.getStatusCode().value());
+        verify(uploadSessionRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    @DisplayName("I blocchi si accodano all'offset corrente e un offset sbagliato lancia 409")
+    void whenChunksWritten_thenOffsetAdvancesAndResumes() throws Exception {
+        openSession(10);
+        AttachmentUploadService service = createService();
+
+        assertEquals(4, put(service, 0, "0123").offset());
+        // Ripetizione del primo blocco dopo una risposta persa: il client deve riprendere da 4
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> put(service, 0, "0123"));
+        assertEquals(409, ex.getStatusCode().value());
+        assertEquals(4, service.status("issue-1", "upload-1", EMAIL).offset());
+
+        assertEquals(10, put(service, 4, "456789").offset());
+        verify(uploadSessionRepository, times(2)).touch(eq("upload-1"), any(Instant.class));
+    }
+
+    @Test
+    @DisplayName("Un blocco oltre la dimensione dichiarata lancia 400 e viene scartato")
+    void whenChunkExceedsDeclaredSize_thenRejectedAndDiscarded() throws Exception {
+        openSession(6);
+        AttachmentUploadService service = createService();
+        put(service, 0, "012");
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> put(service, 3, "3456789"));
+        assertEquals(400, ex.getStatusCode().value());
+        assertEquals(3, store.partSize("upload-1"));
+    }
+
+    @Test
+    @DisplayName("Completamento con checksum corretto registra l'allegato dal file parziale")
+    void whenCompleteWithMatchingChecksum_thenAttached() throws Exception {
+        UploadSession session = openSession(10);
+        when(issueRepository.findById("issue-1")).thenReturn(Optional.of(issue));
+        when(permissionService.canModifyIssue(admin, issue)).thenReturn(true);
+        AttachmentUploadService service = createService();
+        put(service, 0, "0123456789");
+
+        service.complete("issue-1", "upload-1", sha256("0123456789").toUpperCase(), EMAIL);
+
+        ArgumentCaptor<AttachmentStore.StagedBlob> blob = ArgumentCaptor.forClass(AttachmentStore.StagedBlob.class);
+        verify(attachmentService).attach(eq(issue), eq(admin), eq("dump.pdf"), eq("application/pdf"), blob.capture());
+        assertEquals(sha256("0123456789"), blob.getValue().sha256());
+        assertEquals(10, blob.getValue().size());
+        verify(uploadSessionRepository).delete(session);
+    }
+
+    @Test
+    @DisplayName("Completamento con checksum diverso lancia 400 ed elimina il file parziale")
+    void whenCompleteWithWrongChecksum_thenBadRequest() throws Exception {
+        openSession(4);
+        when(issueRepository.findById("issue-1")).thenReturn(Optional.of(issue));
+        when(permissionService.canModifyIssue(admin, issue)).thenReturn(true);
+        AttachmentUploadService service = createService();
+        put(service, 0, "0123");
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> service.complete("issue-1", "upload-1", sha256("altro"), EMAIL));
+        assertEquals(400, ex.getStatusCode().value());
+        verify(attachmentService, never()).attach(any(), any(), any(), any(), any());
+        assertThrows(IllegalArgumentException.class, () -> store.partSize("upload-1"));
+    }
+
+    @Test
+    @DisplayName("Completamento prima dell'ultimo blocco lancia 409")
+    void whenCompleteIncomplete_thenConflict() throws Exception {
+        openSession(10);
+        when(issueRepository.findById("issue-1")).thenReturn(Optional.of(issue));
+        when(permissionService.canModifyIssue(admin, issue)).thenReturn(true);
+        AttachmentUploadService service = createService();
+        put(service, 0, "0123");
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> service.complete("issue-1", "upload-1", sha256("0123"), EMAIL));
+        assertEquals(409, ex.getStatusCode().value());
+    }
+
+    @Test
+    @DisplayName("Sessione di un altro utente risulta inesistente")
+    void whenSessionOfAnotherUser_thenNotFound() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> createService().status("issue-1", "upload-1", "altro@test.com"));
+        assertEquals(404, ex.getStatusCode().value());
+    }
+
+    @Test
+    @DisplayName("La pulizia elimina sessioni scadute e file parziali inattivi")
+    void whenPurgeExpired_thenSessionsAndStalePartsRemoved() throws Exception {
+        store.createPart("scaduto");
+        store.createPart("orfano");
+        store.createPart("attivo");
+        FileTime old = FileTime.from(Instant.now().minus(Duration.ofDays(2)));
+        Path partial = tempDir.resolve("partial");
+        Files.setLastModifiedTime(partial.resolve("scaduto.part"), old);
+        Files.setLastModifiedTime(partial.resolve("orfano.part"), old);
+        when(uploadSessionRepository.findIdsInactiveSince(any(Instant.class))).thenReturn(List.of("scaduto"));
+
+        createService().purgeExpired();
+
+        verify(uploadSessionRepository).deleteAllByIdInBatch(List.of("scaduto"));
+        assertFalse(Files.exists(partial.resolve("scaduto.part")));
+        assertFalse(Files.exists(partial.resolve("orfano.part")));
+        assertTrue(Files.exists(partial.resolve("attivo.part")));
+    }
+}
@@ -0,0 +1,106 @@
+package it.unina.bugboard26.service;
+
+import it.unina.bugboard26.dto.response.AttachmentResponse;
+import it.unina.bugboard26.enums.GlobalRole;
+import it.unina.bugboard26.enums.IssueStatus;
+import it.unina.bugboard26.enums.IssueType;
+import it.unina.bugboard26.model.Attachment;
+import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.repository.AttachmentBlobRepository;
+import it.unina.bugboard26.repository.AttachmentRepository;
+import it.unina.bugboard26.storage.AttachmentStore;
+import it.unina.bugboard26.storage.FileSystemBlobStorage;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Aggiungere o rimuovere un allegato deve toccare una sola riga di {@code attachments},
+ * senza caricare gli altri allegati della issue.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "bugboard.attachments.dir=target/test-uploads"
+})
+@Import({AttachmentService.class, PermissionService.class, AttachmentStore.class, FileSystemBlobStorage.class,
+        IssueDataVersion.class})
+class AttachmentWriteQueryCountTest {
+
+    // L'anteprima non interessa qui e la pipeline vuole un MeterRegistry che @DataJpaTest non crea
+    @MockitoBean private ThumbnailService thumbnailService;
+    @Autowired private AttachmentService attachmentService;
+    @Autowired private AttachmentRepository attachmentRepository;
+    @Autowired private AttachmentBlobRepository attachmentBlobRepository;
+    @Autowired private TestEntityManager entityManager;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private User admin;
+    private Issue issue;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        admin = entityManager.persist(new User("admin@test.com", "hash", "Admin", GlobalRole.ADMIN));
+        issue = new Issue();
+        issue.setTitle("Issue con allegati");
+        issue.setType(IssueType.BUG);
+        issue.setDescription("Descrizione di test sufficientemente lunga");
+        issue.setStatus(IssueStatus.TODO);
+        issue.setCreatedBy(admin);
+        entityManager.persist(issue);
+        for (int i = 0; i < 9; i++) {
+            entityManager.persist(new Attachment(issue, "file-" + i + ".png", "file.png", "image/png", 100));
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    @DisplayName("Upload inserisce una sola riga di allegato e non carica la collezione")
+    void uploadInsertsOneRow() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "report.pdf", "application/pdf", "PDF".getBytes());
+
+        AttachmentResponse response = attachmentService.upload(issue.getId(), file, admin.getEmail());
+        entityManager.flush();
+
+        // allegato + voce di history; il blob del contenuto si crea con un INSERT diretto
+        assertEquals(2, statistics.getEntityInsertCount());
+        String sha256 = attachmentRepository.findByIssueIdAndStoredFilename(issue.getId(), response.storedFilename())
+                .orElseThrow().getSha256();
+        assertEquals(1, attachmentBlobRepository.findById(sha256).orElseThrow().getRefCount());
+        assertEquals(0, statistics.getEntityDeleteCount());
+        assertEquals(0, attachmentLoads());
+        assertEquals(10, attachmentRepository.countByIssueId(issue.getId()));
+    }
+
+    @Test
+    @DisplayName("Delete elimina una sola riga di allegato e non carica la collezione")
+    void deleteRemovesOneRow() throws Exception {
+        attachmentService.delete(issue.getId(), "file-3.png", admin.getEmail());
+        entityManager.flush();
+
+        assertEquals(1, statistics.getEntityDeleteCount());
+        assertEquals(1, statistics.getEntityInsertCount());
+        assertEquals(0, attachmentLoads());
+        assertEquals(8, attachmentRepository.countByIssueId(issue.getId()));
+        assertTrue(attachmentRepository.findByIssueIdAndStoredFilename(issue.getId(), "file-3.png").isEmpty());
+    }
+
+    private long attachmentLoads() {
+        return statistics.getCollectionStatistics(Issue.class.getName() + ".attachments").getLoadCount();
+    }
+}
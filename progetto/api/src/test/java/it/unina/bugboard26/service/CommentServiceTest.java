@@ -12,6 +12,7 @@ import it.unina.bugboard26.model.User;
 import it.unina.bugboard26.repository.CommentRepository;
 import it.unina.bugboard26.repository.IssueRepository;
 import it.unina.bugboard26.repository.UserRepository;
+import it.unina.bugboard26.storage.ImageStore;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -40,6 +41,7 @@ class CommentServiceTest {
     @Mock private IssueRepository issueRepository;
     @Mock private UserRepository userRepository;
     @Mock private PermissionService permissionService;
+    @Mock private ImageStore imageStore;
 
     @InjectMocks private CommentService commentService;
 
@@ -93,6 +95,30 @@ class CommentServiceTest {
         verify(commentRepository).save(any(Comment.class));
     }
 
+    /**
+     * Il data URL passa dall'ImageStore: nel commento resta solo la chiave,
+     * nella risposta l'URL da cui scaricare l'immagine.
+     */
+    @Test
+    @DisplayName("Commento con immagine salva la chiave e restituisce l'URL")
+    void whenCommentHasImage_thenOnlyKeyIsStored() {
+        User user = buildUser("user", GlobalRole.USER);
+        Issue issue = buildIssue("issue-1", user);
+        String key = "a".repeat(64) + ".png";
+
+        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+        when(permissionService.canComment(user)).thenReturn(true);
+        when(issueRepository.findById("issue-1")).thenReturn(Optional.of(issue));
+        when(imageStore.storeDataUrl("data:image/png;base64,iVBORw0KGgo=")).thenReturn(key);
+        when(commentRepository.save(any(Comment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        CreateCommentRequest req = new CreateCommentRequest("Commento con screenshot", "data:image/png;base64,iVBORw0KGgo=");
+        CommentResponse response = commentService.create("issue-1", req, user.getEmail());
+
+        verify(commentRepository).save(argThat(c -> key.equals(c.getImageKey())));
+        assertEquals("/api/images/" + key, response.imageUrl());
+    }
+
     /**
      * RF06 — Creazione commento su issue inesistente: il service deve lanciare
      * ResponseStatusException 404 dopo aver verificato il permesso di commento.
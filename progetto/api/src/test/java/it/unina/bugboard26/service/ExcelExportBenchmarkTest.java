@@ -0,0 +1,110 @@
+package it.unina.bugboard26.service;
+
+import it.unina.bugboard26.enums.GlobalRole;
+import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.repository.IssueFilter;
+import it.unina.bugboard26.search.IssueSearchIndex;
+import it.unina.bugboard26.storage.AttachmentStore;
+import it.unina.bugboard26.storage.ImageStore;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.OutputStream;
+import java.util.List;
+
+import static it.unina.bugboard26.service.ExportBenchmarkSupport.insertIssues;
+import static it.unina.bugboard26.service.ExportBenchmarkSupport.measure;
+
+/**
+ * Tempo e picco di heap occupato dell'export Excel a finestra rispetto al vecchio {@link XSSFWorkbook} con
+ * {@code autoSizeColumn}, copiato qui sotto. Il vecchio si misura solo fino a 100k righe: oltre
+ * esaurisce l'heap. Si esegue solo su richiesta:
+ * {@code mvn test -Dbugboard.benchmarks=true -Dtest=ExcelExportBenchmarkTest}.
+ */
+// Senza LAZY_QUERY_EXECUTION H2 costruisce in memoria tutto il risultato, PostgreSQL invece lo legge dal cursore
+@DataJpaTest(properties = "spring.datasource.url=jdbc:h2:mem:excel-benchmark;DB_CLOSE_DELAY=-1;LAZY_QUERY_EXECUTION=1")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ExportService.class, IssueService.class, PermissionService.class, NotificationService.class, ImageStore.class})
+@EnabledIfSystemProperty(named = "bugboard.benchmarks", matches = "true")
+class ExcelExportBenchmarkTest {
+
+    private static final int[] SIZES = {10_000, 100_000, 500_000};
+    private static final int LEGACY_MAX_ROWS = 100_000;
+    private static final IssueFilter ACTIVE = IssueFilter.of(null, null, null, null, false, null, null);
+
+    @MockitoBean private IssueSearchIndex searchIndex;
+    @MockitoBean private AttachmentStore attachmentStore;
+
+    @Autowired private ExportService exportService;
+    @Autowired private IssueService issueService;
+    @Autowired private TestEntityManager entityManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Export Excel 10k/100k/500k righe: tempo e picco di heap")
+    void compare() throws Exception {
+        User author = entityManager.persistAndFlush(new User("autore@test.com", "hash", "Autore", GlobalRole.USER));
+        int inserted = 0;
+        for (int size : SIZES) {
+            insertIssues(jdbcTemplate, author.getId(), inserted, size);
+            inserted = size;
+            entityManager.clear();
+
+            // Un giro a vuoto per il JIT
+            measure(this::windowedExport);
+            entityManager.clear();
+            String windowed = measure(this::windowedExport);
+            entityManager.clear();
+            String legacy = size <= LEGACY_MAX_ROWS ? measure(this::legacyExport) : "non misurato";
+            entityManager.clear();
+            System.out.printf("Excel %,d righe: finestra %s, XSSF con autoSize %s%n", size, windowed, legacy);
+        }
+    }
+
+    private void windowedExport() throws Exception {
+        exportService.writeExcel(ACTIVE, OutputStream.nullOutputStream());
+    }
+
+    // Il vecchio ExportService.exportExcel
+    private void legacyExport() throws Exception {
+        List<Issue> issues = issueService.getFilteredForExport(ACTIVE);
+        try (Workbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet("Issue");
+            String[] headers = {"ID", "Titolo", "Tipo", "Priorita", "Stato",
+                    "Creato da", "Data creazione", "Archiviata"};
+            Row headerRow = sheet.createRow(0);
+            for (int i = 0; i < headers.length; i++) {
+                headerRow.createCell(i).setCellValue(headers[i]);
+            }
+            int rowIndex = 1;
+            for (Issue issue : issues) {
+                Row row = sheet.createRow(rowIndex++);
+                row.createCell(0).setCellValue(issue.getId());
+                row.createCell(1).setCellValue(issue.getTitle());
+                row.createCell(2).setCellValue(issue.getType().name());
+                row.createCell(3).setCellValue(issue.getPriority() != null ? issue.getPriority().name() : "");
+                row.createCell(4).setCellValue(issue.getStatus().name());
+                row.createCell(5).setCellValue(issue.getCreatedBy() != null ? issue.getCreatedBy().getName() : "");
+                row.createCell(6).setCellValue(issue.getCreatedAt() != null ? issue.getCreatedAt().toString() : "");
+                row.createCell(7).setCellValue(issue.isArchived());
+            }
+            for (int i = 0; i < headers.length; i++) {
+                sheet.autoSizeColumn(i);
+            }
+            workbook.write(OutputStream.nullOutputStream());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package it.unina.bugboard26.service;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Dati generati e misure comuni ai benchmark degli export.
+ */
+final class ExportBenchmarkSupport {
+
+    @FunctionalInterface
+    interface Export {
+        void run() throws Exception;
+    }
+
+    private ExportBenchmarkSupport() {
+    }
+
+    /**
+     * Inserisce le issue da {@code from} (incluso) a {@code to} (escluso), a blocchi di 1000 righe.
+     */
+    static void insertIssues(JdbcTemplate jdbcTemplate, String authorId, int from, int to) {
+        Instant base = Instant.parse("2026-01-01T00:00:00Z");
+        List<Object[]> rows = new ArrayList<>(1_000);
+        for (int i = from; i < to; i++) {
+            Timestamp createdAt = Timestamp.from(base.plusSeconds(i));
+            rows.add(new Object[]{UUID.randomUUID().toString(), "Issue generata per il benchmark numero " + i,
+                    "Descrizione generata " + i, createdAt, createdAt, authorId});
+            if (rows.size() == 1_000 || i == to - 1) {
+                jdbcTemplate.batchUpdate("""
+                        INSERT INTO issues (id, title, type, description, priority, status, archived, created_at, updated_at, created_by_id)
+                        VALUES (?, ?, 'BUG', ?, 'ALTA', 'TODO', FALSE, ?, ?, ?)
+                        """, rows);
+                rows.clear();
+            }
+        }
+    }
+
+    /**
+     * Durata e heap occupato durante {@code export}. Il picco di {@link MemoryPoolMXBean} conta anche
+     * la spazzatura non ancora raccolta: qui si prende il massimo dell'heap rimasto occupato dopo
+     * ogni GC, meno quello di partenza.
+     */
+    static String measure(Export export) throws Exception {
+        Set<String> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .map(MemoryPoolMXBean::getName)
+                .collect(Collectors.toSet());
+        AtomicLong peakLive = new AtomicLong();
+        NotificationListener listener = (notification, handback) -> {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GcInfo gc = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()).getGcInfo();
+            long live = gc.getMemoryUsageAfterGc().entrySet().stream()
+                    .filter(pool -> heapPools.contains(pool.getKey()))
+                    .mapToLong(pool -> pool.getValue().getUsed())
+                    .sum();
+            peakLive.accumulateAndGet(live, Math::max);
+        };
+
+        System.gc();
+        long baseline = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        List<NotificationEmitter> collectors = ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .map(NotificationEmitter.class::cast)
+                .toList();
+        collectors.forEach(collector -> collector.addNotificationListener(listener, null, null));
+        long start = System.nanoTime();
+        try {
+            export.run();
+        } finally {
+            for (NotificationEmitter collector : collectors) {
+                collector.removeNotificationListener(listener);
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        return String.format("%,d ms, heap dopo GC +%,d MB", millis,
+                Math.max(0, peakLive.get() - baseline) / (1024 * 1024));
+    }
+}
@@ -0,0 +1,188 @@
+package it.unina.bugboard26.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.unina.bugboard26.enums.ExportFormat;
+import it.unina.bugboard26.enums.IssuePriority;
+import it.unina.bugboard26.enums.IssueStatus;
+import it.unina.bugboard26.enums.IssueType;
+import it.unina.bugboard26.repository.IssueFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ExportCacheTest {
+
+    @TempDir Path tempDir;
+
+    private ExportService exportService;
+    private IssueDataVersion dataVersion;
+    private SimpleMeterRegistry registry;
+    private int renders;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        exportService = mock(ExportService.class);
+        dataVersion = mock(IssueDataVersion.class);
+        registry = new SimpleMeterRegistry();
+        // Ogni generazione produce un contenuto diverso, per distinguere i file serviti dalla cache
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(2);
+            LongConsumer progress = invocation.getArgument(3);
+            out.write(("export " + ++renders + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            progress.accept(42);
+            return null;
+        }).when(exportService).write(any(), any(), any(), any());
+    }
+
+    private ExportCache cache(long maxSize) {
+        ExportCache cache = new ExportCache(exportService, dataVersion, registry, tempDir.toString(), maxSize, true);
+        cache.init();
+        return cache;
+    }
+
+    private String export(ExportCache cache, ExportFormat format, List<IssueType> types, List<IssueStatus> statuses,
+                          String search) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.write(format, IssueFilter.of(types, statuses, null, null, false, search, null), out, rows -> { });
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private long cached() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.count();
+        }
+    }
+
+    private double requests(String result) {
+        return registry.get("bugboard.export.cache.requests").tag("result", result).counter().count();
+    }
+
+    @Test
+    @DisplayName("La stessa richiesta con gli stessi dati viene servita dal file, con le righe dell'originale")
+    void whenRepeated_thenServedFromCache() throws Exception {
+        ExportCache cache = cache(1_000_000);
+        when(dataVersion.current()).thenReturn(7L);
+
+        assertEquals("export 1\n", export(cache, ExportFormat.PDF, List.of(IssueType.BUG), null, null));
+        List<Long> progress = new ArrayList<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.write(ExportFormat.PDF, IssueFilter.of(List.of(IssueType.BUG), null, null, null, false, null, null),
+                out, progress::add);
+
+        assertEquals("export 1\n", out.toString(StandardCharsets.UTF_8));
+        assertEquals(List.of(42L), progress);
+        verify(exportService, times(1)).write(any(), any(), any(), any());
+        assertEquals(1.0, requests("hit"));
+        assertEquals(1.0, requests("miss"));
+        assertEquals(9.0, registry.get("bugboard.export.cache.size").gauge().value());
+        assertEquals(1, cached(), "nessun file temporaneo rimasto");
+    }
+
+    @Test
+    @DisplayName("Ordine e duplicati dei filtri non cambiano la chiave, formato e filtri diversi si")
+    void keyIsNormalized() throws Exception {
+        ExportCache cache = cache(1_000_000);
+
+        export(cache, ExportFormat.CSV, List.of(IssueType.BUG, IssueType.FEATURE), List.of(), null);
+        assertEquals("export 1\n", export(cache, ExportFormat.CSV,
+                List.of(IssueType.FEATURE, IssueType.BUG, IssueType.BUG), null, null));
+        assertEquals("export 2\n", export(cache, ExportFormat.EXCEL,
+                List.of(IssueType.BUG, IssueType.FEATURE), null, null));
+        assertEquals("export 3\n", export(cache, ExportFormat.CSV,
+                List.of(IssueType.BUG), null, null));
+        assertEquals(ExportCache.key(ExportFormat.CSV,
+                        IssueFilter.of(null, List.of(IssueStatus.TODO), List.of(IssuePriority.ALTA), "u1", null, null, null), 3),
+                ExportCache.key(ExportFormat.CSV,
+                        IssueFilter.of(List.of(), List.of(IssueStatus.TODO), List.of(IssuePriority.ALTA), "u1", null, null, null), 3));
+        assertNotEquals(ExportCache.key(ExportFormat.CSV, IssueFilter.none(), 3),
+                ExportCache.key(ExportFormat.CSV, IssueFilter.of(null, null, null, null, false, null, null), 3));
+        Instant since = Instant.parse("2026-03-01T00:00:00Z");
+        assertNotEquals(ExportCache.key(ExportFormat.NDJSON, IssueFilter.none().withUpdatedSince(since), 3),
+                ExportCache.key(ExportFormat.NDJSON, IssueFilter.none().withUpdatedSince(since.plusSeconds(1)), 3));
+    }
+
+    @Test
+    @DisplayName("Una modifica alle issue cambia la versione e l'export viene rigenerato")
+    void whenDataChanges_thenRegenerated() throws Exception {
+        ExportCache cache = cache(1_000_000);
+        when(dataVersion.current()).thenReturn(1L);
+        export(cache, ExportFormat.CSV, null, null, null);
+
+        when(dataVersion.current()).thenReturn(2L);
+
+        assertEquals("export 2\n", export(cache, ExportFormat.CSV, null, null, null));
+    }
+
+    @Test
+    @DisplayName("Gli export con ricerca testuale non passano dalla cache")
+    void whenSearch_thenBypassed() throws Exception {
+        ExportCache cache = cache(1_000_000);
+
+        export(cache, ExportFormat.CSV, null, null, "login");
+        assertEquals("export 2\n", export(cache, ExportFormat.CSV, null, null, "login"));
+
+        assertEquals(2.0, requests("bypass"));
+        assertEquals(0, cached());
+        verify(dataVersion, never()).current();
+    }
+
+    @Test
+    @DisplayName("Oltre la dimensione massima si elimina l'export usato meno di recente")
+    void whenFull_thenLeastRecentlyUsedEvicted() throws Exception {
+        // Ogni file occupa 9 byte: ne stanno due
+        ExportCache cache = cache(20);
+        export(cache, ExportFormat.CSV, List.of(IssueType.BUG), null, null);
+        export(cache, ExportFormat.CSV, List.of(IssueType.FEATURE), null, null);
+        // Il BUG torna il piu' recente, quindi esce il FEATURE
+        export(cache, ExportFormat.CSV, List.of(IssueType.BUG), null, null);
+
+        export(cache, ExportFormat.CSV, List.of(IssueType.QUESTION), null, null);
+
+        assertEquals(2, cached());
+        assertEquals("export 1\n", export(cache, ExportFormat.CSV, List.of(IssueType.BUG), null, null));
+        assertEquals("export 4\n", export(cache, ExportFormat.CSV, List.of(IssueType.FEATURE), null, null));
+        assertEquals(18.0, registry.get("bugboard.export.cache.size").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Un export fallito arriva al chiamante e non entra in cache")
+    void whenExportFails_thenNothingCached() throws Exception {
+        ExportCache cache = cache(1_000_000);
+        doThrow(new IOException("client disconnesso"))
+                .when(exportService).write(any(), any(), any(), any());
+
+        assertThrows(IOException.class, () -> export(cache, ExportFormat.PDF, null, null, null));
+
+        assertEquals(0, cached());
+    }
+
+    @Test
+    @DisplayName("All'avvio la cache elimina i propri file e lascia gli altri")
+    void startupPurgesOnlyCacheFiles() throws Exception {
+        Path stale = Files.writeString(tempDir.resolve("ab".repeat(32) + ".pdf"), "vecchio");
+        Path foreign = Files.writeString(tempDir.resolve("note.txt"), "non mio");
+
+        cache(1_000_000);
+
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(foreign));
+    }
+}
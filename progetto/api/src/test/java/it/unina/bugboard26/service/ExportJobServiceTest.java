@@ -0,0 +1,199 @@
+package it.unina.bugboard26.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.unina.bugboard26.dto.request.ExportRequest;
+import it.unina.bugboard26.dto.response.ExportJobResponse;
+import it.unina.bugboard26.enums.ExportFormat;
+import it.unina.bugboard26.enums.ExportJobStatus;
+import it.unina.bugboard26.enums.IssueStatus;
+import it.unina.bugboard26.repository.IssueFilter;
+import it.unina.bugboard26.storage.StoredFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ExportJobServiceTest {
+
+    private static final String OWNER = "owner@test.com";
+    private static final ExportRequest CSV = new ExportRequest("csv", null, null, null, null, null, false, null);
+
+    @TempDir Path tempDir;
+
+    private ExportCache exportCache;
+    private IssueService issueService;
+    private SimpleMeterRegistry registry;
+    private ExportJobService service;
+
+    @BeforeEach
+    void setUp() {
+        exportCache = mock(ExportCache.class);
+        issueService = mock(IssueService.class);
+        registry = new SimpleMeterRegistry();
+        when(issueService.countByStatusForExport(any()))
+                .thenReturn(Map.of(IssueStatus.TODO, 2L, IssueStatus.CHIUSA, 1L));
+        service = jobs(2, 10, 2, Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private ExportJobService jobs(int threads, int queueCapacity, int maxPerUser, Duration ttl) {
+        return new ExportJobService(exportCache, issueService, registry, tempDir.toString(),
+                threads, queueCapacity, maxPerUser, ttl);
+    }
+
+    // Simula un export di tre righe, segnalando l'avanzamento come ExportService
+    private void exportWrites(String content) throws Exception {
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(2);
+            LongConsumer progress = invocation.getArgument(3);
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+            progress.accept(3);
+            return null;
+        }).when(exportCache).write(any(), any(), any(), any());
+    }
+
+    private ExportJobResponse awaitFinished(String jobId, String owner) throws InterruptedException {
+        ExportJobResponse job = service.status(jobId, owner);
+        for (int i = 0; i < 200 && job.finishedAt() == null; i++) {
+            Thread.sleep(25);
+            job = service.status(jobId, owner);
+        }
+        assertNotNull(job.finishedAt(), "export non terminato");
+        return job;
+    }
+
+    @Test
+    @DisplayName("Il job genera il file in background con righe scritte e totali, poi lo rende scaricabile")
+    void whenCreated_thenRenderedAndDownloadable() throws Exception {
+        exportWrites("ID,Titolo\n1,a\n2,b\n3,c\n");
+
+        ExportJobResponse created = service.create(CSV, OWNER);
+        assertEquals(ExportFormat.CSV, created.format());
+
+        ExportJobResponse done = awaitFinished(created.id(), OWNER);
+        assertEquals(ExportJobStatus.COMPLETED, done.status());
+        assertEquals(3, done.rowsWritten());
+        assertEquals(3L, done.totalRows());
+        assertEquals(22L, done.size());
+        assertEquals(done.finishedAt().plus(Duration.ofHours(1)), done.expiresAt());
+
+        StoredFile file = service.file(created.id(), OWNER);
+        assertEquals("issues.csv", file.filename());
+        assertEquals("text/csv", file.contentType());
+        assertEquals("ID,Titolo\n1,a\n2,b\n3,c\n", Files.readString(file.path()));
+        try (var files = Files.list(tempDir)) {
+            assertEquals(1, files.count(), "il file parziale deve sparire");
+        }
+        // Archiviate escluse come nell'export sincrono
+        verify(exportCache).write(eq(ExportFormat.CSV), eq(IssueFilter.of(null, null, null, null, false, null, null)),
+                any(), any());
+        assertEquals(1, registry.get("bugboard.export.jobs.render").tags("format", "csv", "outcome", "success")
+                .timer().count());
+    }
+
+    @Test
+    @DisplayName("Un job e' visibile solo a chi l'ha creato")
+    void whenOtherUser_thenNotFound() throws Exception {
+        exportWrites("x");
+        ExportJobResponse created = service.create(CSV, OWNER);
+        awaitFinished(created.id(), OWNER);
+
+        ResponseStatusException status = assertThrows(ResponseStatusException.class,
+                () -> service.status(created.id(), "altro@test.com"));
+        assertEquals(404, status.getStatusCode().value());
+        assertThrows(ResponseStatusException.class, () -> service.file(created.id(), "altro@test.com"));
+    }
+
+    @Test
+    @DisplayName("Un export fallito resta consultabile ma non scaricabile e non lascia file")
+    void whenExportFails_thenFailedWithoutFile() throws Exception {
+        doThrow(new IllegalStateException("connessione persa"))
+                .when(exportCache).write(any(), any(), any(), any());
+
+        ExportJobResponse created = service.create(CSV, OWNER);
+
+        assertEquals(ExportJobStatus.FAILED, awaitFinished(created.id(), OWNER).status());
+        ResponseStatusException download = assertThrows(ResponseStatusException.class,
+                () -> service.file(created.id(), OWNER));
+        assertEquals(409, download.getStatusCode().value());
+        try (var files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    @DisplayName("Oltre il limite per utente si risponde 429, a coda piena 503")
+    void whenLimitsReached_thenRejected() throws Exception {
+        service.shutdown();
+        service = jobs(1, 1, 1, Duration.ofHours(1));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(exportCache).write(any(), any(), any(), any());
+
+        String running = service.create(CSV, OWNER).id();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        ResponseStatusException perUser = assertThrows(ResponseStatusException.class,
+                () -> service.create(CSV, OWNER));
+        assertEquals(429, perUser.getStatusCode().value());
+        // Un altro utente occupa l'unico posto in coda
+        String queued = service.create(CSV, "secondo@test.com").id();
+        assertEquals(ExportJobStatus.QUEUED, service.status(queued, "secondo@test.com").status());
+        ResponseStatusException full = assertThrows(ResponseStatusException.class,
+                () -> service.create(CSV, "terzo@test.com"));
+        assertEquals(503, full.getStatusCode().value());
+        assertEquals(1.0, registry.get("bugboard.export.jobs.rejected").counter().count());
+
+        release.countDown();
+        assertEquals(ExportJobStatus.COMPLETED, awaitFinished(running, OWNER).status());
+        assertEquals(ExportJobStatus.COMPLETED, awaitFinished(queued, "secondo@test.com").status());
+        // Terminato il primo job l'utente puo' crearne un altro
+        assertNotNull(service.create(CSV, OWNER).id());
+    }
+
+    @Test
+    @DisplayName("La pulizia elimina i job scaduti con i loro file e i file rimasti senza job")
+    void purgeRemovesExpiredJobsAndLeftovers() throws Exception {
+        service.shutdown();
+        service = jobs(1, 10, 2, Duration.ZERO);
+        exportWrites("x");
+        ExportJobResponse created = service.create(CSV, OWNER);
+        awaitFinished(created.id(), OWNER);
+        Path file = service.file(created.id(), OWNER).path();
+        Path leftover = Files.writeString(tempDir.resolve("prima-del-riavvio.pdf"), "vecchio");
+        Files.setLastModifiedTime(leftover, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+
+        service.purgeExpired();
+
+        assertFalse(Files.exists(file));
+        assertFalse(Files.exists(leftover));
+        assertThrows(ResponseStatusException.class, () -> service.status(created.id(), OWNER));
+    }
+}
@@ -1,35 +1,68 @@
 package it.unina.bugboard26.service;
 
+import it.unina.bugboard26.enums.ExportFormat;
 import it.unina.bugboard26.enums.GlobalRole;
 import it.unina.bugboard26.enums.IssuePriority;
 import it.unina.bugboard26.enums.IssueStatus;
 import it.unina.bugboard26.enums.IssueType;
+import it.unina.bugboard26.model.Attachment;
 import it.unina.bugboard26.model.Issue;
 import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.repository.AttachmentRepository;
+import it.unina.bugboard26.repository.IssueFilter;
+import it.unina.bugboard26.repository.projection.IssueHistoryView;
+import it.unina.bugboard26.storage.AttachmentStore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+import jakarta.persistence.EntityManager;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
- * RF08 — Test per ExportService.exportCsv(...).
+ * RF08 — Test per ExportService.writeCsv(...), writeExcel(...), writePdf(...), writeNdjson(...) e writeZip(...).
  * Verifica intestazione, contenuto righe e gestione di campi opzionali null.
  */
 @ExtendWith(MockitoExtension.class)
 class ExportServiceTest {
 
     @Mock private IssueService issueService;
+    @Mock private AttachmentRepository attachmentRepository;
+    @Mock private AttachmentStore attachmentStore;
+    @Mock private EntityManager entityManager;
+    @TempDir Path tempDir;
     @InjectMocks private ExportService exportService;
 
     /**
@@ -38,7 +71,7 @@ class ExportServiceTest {
      */
     @Test
     @DisplayName("Export CSV di due issue contiene i dati di entrambe le righe")
-    void exportCsvWithMultipleIssues_containsAllIssueTitles() {
+    void exportCsvWithMultipleIssues_containsAllIssueTitles() throws Exception {
         User creator = buildUser("creator");
         List<Issue> issues = List.of(
                 buildIssue("id-1", "Bug nel login", IssueType.BUG, IssuePriority.ALTA,
@@ -46,11 +79,10 @@ class ExportServiceTest {
                 buildIssue("id-2", "Feature export", IssueType.FEATURE, IssuePriority.MEDIA,
                         IssueStatus.IN_PROGRESS, creator, Instant.now(), false)
         );
-        when(issueService.getFilteredForExport(any(), any(), any(), any(), any(), any()))
-                .thenReturn(issues);
+        when(issueService.streamFilteredForExport(any(), anyInt()))
+                .thenReturn(issues.stream());
 
-        byte[] csvBytes = exportService.exportCsv(null, null, null, null, null, null);
-        String csv = new String(csvBytes, StandardCharsets.UTF_8);
+        String csv = writeCsv(null);
 
         assertTrue(csv.contains("Bug nel login"), "Il titolo della prima issue deve essere presente");
         assertTrue(csv.contains("Feature export"), "Il titolo della seconda issue deve essere presente");
@@ -64,17 +96,14 @@ class ExportServiceTest {
      */
     @Test
     @DisplayName("Export CSV con priorità null produce campo vuoto nella colonna Priorita")
-    void exportCsvWithNullPriority_rendersEmptyStringInPriorityColumn() {
+    void exportCsvWithNullPriority_rendersEmptyStringInPriorityColumn() throws Exception {
         User creator = buildUser("creator");
         Issue issue = buildIssue("id-3", "Issue senza priorità", IssueType.QUESTION,
                 null, IssueStatus.TODO, creator, Instant.now(), false);
-        when(issueService.getFilteredForExport(any(), any(), any(), any(), any(), any()))
-                .thenReturn(List.of(issue));
+        when(issueService.streamFilteredForExport(any(), anyInt()))
+                .thenReturn(Stream.of(issue));
 
-        byte[] csvBytes = exportService.exportCsv(
-                List.of(IssueType.QUESTION), null, null, null, null, null
-        );
-        String csv = new String(csvBytes, StandardCharsets.UTF_8);
+        String csv = writeCsv(List.of(IssueType.QUESTION));
 
         assertTrue(csv.contains("Issue senza priorità"));
         // CSVWriter scrive "" per stringa vuota: il campo priorità deve essere tra due virgole/quote vuote
@@ -87,12 +116,11 @@ class ExportServiceTest {
      */
     @Test
     @DisplayName("Export CSV senza issue produce solo la riga di intestazione")
-    void exportCsvWithEmptyList_producesOnlyHeaderRow() {
-        when(issueService.getFilteredForExport(any(), any(), any(), any(), any(), any()))
-                .thenReturn(new ArrayList<>());
+    void exportCsvWithEmptyList_producesOnlyHeaderRow() throws Exception {
+        when(issueService.streamFilteredForExport(any(), anyInt()))
+                .thenReturn(Stream.empty());
 
-        byte[] csvBytes = exportService.exportCsv(null, null, null, null, null, null);
-        String csv = new String(csvBytes, StandardCharsets.UTF_8);
+        String csv = writeCsv(null);
 
         assertTrue(csv.contains("ID") && csv.contains("Titolo") && csv.contains("Stato"),
                 "L'intestazione deve essere presente");
@@ -101,8 +129,230 @@ class ExportServiceTest {
                 "Il CSV deve contenere solo la riga header quando non ci sono issue");
     }
 
+    /**
+     * L'avanzamento dei job di export arriva a ogni blocco del cursore e alla fine.
+     */
+    @Test
+    @DisplayName("Export nel formato richiesto segnala le righe scritte a ogni blocco")
+    void exportWithProgress_reportsRowsPerBlock() throws Exception {
+        User creator = buildUser("creator");
+        List<Issue> issues = new ArrayList<>();
+        for (int i = 0; i < 1_200; i++) {
+            issues.add(buildIssue("id-" + i, "Issue " + i, IssueType.BUG, IssuePriority.BASSA,
+                    IssueStatus.TODO, creator, Instant.now(), false));
+        }
+        when(issueService.streamFilteredForExport(any(), anyInt()))
+                .thenReturn(issues.stream());
+
+        List<Long> progress = new ArrayList<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.write(ExportFormat.CSV, IssueFilter.none(), out, progress::add);
+
+        assertEquals(List.of(500L, 1_000L, 1_200L), progress);
+        assertEquals(1_201, out.toString(StandardCharsets.UTF_8).strip().split("\n").length);
+    }
+
+    /**
+     * Il foglio Excel contiene intestazione e righe, con larghezze stimate dal contenuto
+     * e limitate per i titoli molto lunghi.
+     */
+    @Test
+    @DisplayName("Export Excel scrive righe e larghezze delle colonne dai dati")
+    void exportExcel_writesRowsAndSampledColumnWidths() throws Exception {
+        User creator = buildUser("creator");
+        List<Issue> issues = List.of(
+                buildIssue("id-1", "Bug nel login", IssueType.BUG, IssuePriority.ALTA,
+                        IssueStatus.TODO, creator, Instant.now(), false),
+                buildIssue("id-2", "x".repeat(300), IssueType.FEATURE, null,
+                        IssueStatus.CHIUSA, creator, Instant.now(), true)
+        );
+        when(issueService.streamFilteredForExport(any(), anyInt()))
+                .thenReturn(issues.stream());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.writeExcel(IssueFilter.none(), out);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            Sheet sheet = workbook.getSheet("Issue");
+            assertEquals(2, sheet.getLastRowNum());
+            assertEquals("Titolo", sheet.getRow(0).getCell(1).getStringCellValue());
+            assertEquals("Bug nel login", sheet.getRow(1).getCell(1).getStringCellValue());
+            assertEquals("", sheet.getRow(2).getCell(3).getStringCellValue());
+            assertTrue(sheet.getRow(2).getCell(7).getBooleanCellValue());
+            assertEquals(("id-1".length() + 2) * 256, sheet.getColumnWidth(0));
+            assertEquals(60 * 256, sheet.getColumnWidth(1));
+        }
+    }
+
+    /**
+     * Il report PDF a blocchi: totali in testa dalla GROUP BY e tutte le righe nella tabella,
+     * distribuite su piu' pagine.
+     */
+    @Test
+    @DisplayName("Export PDF scrive totali e righe su piu' pagine")
+    void exportPdf_writesTotalsAndAllRows() throws Exception {
+        User creator = buildUser("creator");
+        List<Issue> issues = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            issues.add(buildIssue("id-" + i, "Issue numero " + i, IssueType.BUG, IssuePriority.MEDIA,
+                    IssueStatus.TODO, creator, Instant.now(), false));
+        }
+        when(issueService.countByStatusForExport(any()))
+                .thenReturn(Map.of(IssueStatus.TODO, 120L));
+        when(issueService.streamFilteredForExport(any(), anyInt()))
+                .thenReturn(issues.stream());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.writePdf(IssueFilter.none(), out);
+
+        try (PdfDocument pdf = new PdfDocument(new PdfReader(new ByteArrayInputStream(out.toByteArray())))) {
+            assertTrue(pdf.getNumberOfPages() > 1, "120 righe non stanno in una pagina");
+            String first = PdfTextExtractor.getTextFromPage(pdf.getFirstPage());
+            assertTrue(first.contains("120 issue totali"));
+            assertTrue(first.contains("Issue numero 0"));
+            assertTrue(PdfTextExtractor.getTextFromPage(pdf.getLastPage()).contains("Issue numero 119"));
+        }
+    }
+
+    /**
+     * NDJSON: un oggetto per riga con label e cronologia del proprio blocco, e null per i campi assenti.
+     */
+    @Test
+    @DisplayName("Export NDJSON scrive un oggetto per riga con label e cronologia")
+    void exportNdjson_writesOneObjectPerLine() throws Exception {
+        User creator = buildUser("creator");
+        Issue assigned = buildIssue("id-1", "Bug nel login", IssueType.BUG, IssuePriority.ALTA,
+                IssueStatus.TODO, creator, Instant.parse("2026-02-01T10:00:00Z"), false);
+        assigned.setAssignedTo(buildUser("dev"));
+        Issue plain = buildIssue("id-2", "Domanda \"con\" virgolette\ne a capo", IssueType.QUESTION, null,
+                IssueStatus.CHIUSA, creator, Instant.parse("2026-02-02T10:00:00Z"), true);
+        when(issueService.streamFilteredForExport(any(), anyInt())).thenReturn(Stream.of(assigned, plain));
+        when(issueService.labelNamesForExport(any())).thenReturn(Map.of("id-1", List.of("backend", "urgente")));
+        when(issueService.historyForExport(any())).thenReturn(Map.of("id-1", List.of(
+                new IssueHistoryView("id-1", "Issue creata", Instant.parse("2026-02-01T10:00:00Z"), "creator"),
+                new IssueHistoryView("id-1", "Stato cambiato", Instant.parse("2026-02-01T11:00:00Z"), null))));
+
+        List<Long> progress = new ArrayList<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.writeNdjson(IssueFilter.none(), out, progress::add);
+
+        String ndjson = out.toString(StandardCharsets.UTF_8);
+        assertTrue(ndjson.endsWith("\n"));
+        String[] lines = ndjson.split("\n");
+        assertEquals(2, lines.length);
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode first = mapper.readTree(lines[0]);
+        assertEquals("id-1", first.get("id").asText());
+        assertEquals("ALTA", first.get("priority").asText());
+        assertEquals("dev", first.get("assignedTo").get("name").asText());
+        assertEquals("creator", first.get("createdBy").get("name").asText());
+        assertEquals("2026-02-01T10:00:00Z", first.get("updatedAt").asText());
+        assertEquals(List.of("backend", "urgente"), mapper.convertValue(first.get("labels"), List.class));
+        assertEquals("Stato cambiato", first.get("history").get(1).get("action").asText());
+        assertTrue(first.get("history").get(1).get("user").isNull());
+        JsonNode second = mapper.readTree(lines[1]);
+        assertEquals("Domanda \"con\" virgolette\ne a capo", second.get("title").asText());
+        assertTrue(second.get("priority").isNull());
+        assertTrue(second.get("assignedTo").isNull());
+        assertTrue(second.get("archived").asBoolean());
+        assertEquals(0, second.get("labels").size());
+        assertEquals(List.of(2L), progress);
+    }
+
+    /**
+     * Label e cronologia arrivano con una query per blocco del cursore, non per issue.
+     */
+    @Test
+    @DisplayName("Export NDJSON carica label e cronologia una volta per blocco")
+    void exportNdjson_loadsDetailsPerBlock() throws Exception {
+        User creator = buildUser("creator");
+        List<Issue> issues = new ArrayList<>();
+        for (int i = 0; i < 1_200; i++) {
+            issues.add(buildIssue("id-" + i, "Issue " + i, IssueType.BUG, IssuePriority.BASSA,
+                    IssueStatus.TODO, creator, Instant.now(), false));
+        }
+        when(issueService.streamFilteredForExport(any(), anyInt())).thenReturn(issues.stream());
+        when(issueService.labelNamesForExport(any())).thenReturn(Map.of());
+        when(issueService.historyForExport(any())).thenReturn(Map.of());
+
+        List<Long> progress = new ArrayList<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.write(ExportFormat.NDJSON, IssueFilter.none(), out, progress::add);
+
+        assertEquals(List.of(500L, 1_000L, 1_200L), progress);
+        assertEquals(1_200, out.toString(StandardCharsets.UTF_8).split("\n").length);
+        verify(issueService, times(3)).labelNamesForExport(any());
+        verify(issueService, times(3)).historyForExport(any());
+        verify(entityManager, times(3)).clear();
+    }
+
+    /**
+     * Bundle ZIP: gli allegati presenti copiati nell'archivio, STORED se gia' compressi, e i manifest
+     * in fondo, con gli allegati mancanti segnalati invece di far fallire l'export.
+     */
+    @Test
+    @DisplayName("Export ZIP contiene allegati e manifest, con i media compressi STORED")
+    void exportZip_writesAttachmentsAndManifests() throws Exception {
+        User creator = buildUser("creator");
+        Issue first = buildIssue("id-1", "Bug con screenshot", IssueType.BUG, IssuePriority.ALTA,
+                IssueStatus.TODO, creator, Instant.now(), false);
+        Issue second = buildIssue("id-2", "Bug senza file", IssueType.BUG, IssuePriority.BASSA,
+                IssueStatus.TODO, creator, Instant.now(), false);
+        Attachment image = attachment(first, "att-1", "schermata/login.png", "image/png", "a".repeat(64));
+        Attachment legacy = attachment(first, "att-2", "log.txt", "text/plain", null);
+        Attachment missing = attachment(second, "att-3", "perso.pdf", "application/pdf", "b".repeat(64));
+        byte[] png = "contenuto png".getBytes(StandardCharsets.UTF_8);
+        Path imageFile = Files.write(tempDir.resolve("image"), png);
+        Path legacyFile = Files.writeString(tempDir.resolve("legacy"), "riga di log\n".repeat(100));
+        when(issueService.streamFilteredForExport(any(), anyInt())).thenReturn(Stream.of(first, second));
+        when(attachmentRepository.findByIssueIds(any())).thenReturn(List.of(image, legacy, missing));
+        when(attachmentStore.createTemp()).thenReturn(Files.createFile(tempDir.resolve("scratch")));
+        when(attachmentStore.fetch(eq("a".repeat(64)), any())).thenReturn(imageFile);
+        when(attachmentStore.fetch(eq("b".repeat(64)), any())).thenThrow(new NoSuchFileException("b"));
+        when(attachmentStore.legacyPath("att-2.bin")).thenReturn(legacyFile);
+
+        List<Long> progress = new ArrayList<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.writeZip(IssueFilter.none(), out, progress::add);
+
+        Map<String, ZipEntry> entries = new LinkedHashMap<>();
+        Map<String, String> contents = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+                entries.put(entry.getName(), entry);
+                contents.put(entry.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        String imageEntry = "attachments/id-1/att-1-schermata_login.png";
+        String legacyEntry = "attachments/id-1/att-2-log.txt";
+        assertEquals(List.of(imageEntry, legacyEntry, "issues.csv", "attachments.csv"), List.copyOf(entries.keySet()));
+        assertEquals(ZipEntry.STORED, entries.get(imageEntry).getMethod());
+        assertEquals(ZipEntry.DEFLATED, entries.get(legacyEntry).getMethod());
+        assertEquals("contenuto png", contents.get(imageEntry));
+        assertTrue(contents.get("issues.csv").contains("Bug senza file"));
+        String[] rows = contents.get("attachments.csv").strip().split("\n");
+        assertEquals(4, rows.length);
+        assertTrue(rows[1].contains(imageEntry) && rows[1].endsWith("\"true\""), rows[1]);
+        assertTrue(rows[3].contains("perso.pdf") && rows[3].endsWith("\"false\""), rows[3]);
+        assertEquals(List.of(2L), progress);
+        assertFalse(Files.exists(tempDir.resolve("scratch")), "il file di appoggio va eliminato");
+    }
+
     // --- Helpers ---
 
+    private Attachment attachment(Issue issue, String id, String filename, String contentType, String sha256) {
+        Attachment attachment = new Attachment(issue, id + ".bin", filename, contentType, 10);
+        attachment.setId(id);
+        attachment.setSha256(sha256);
+        return attachment;
+    }
+
+    private String writeCsv(List<IssueType> types) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.writeCsv(IssueFilter.of(types, null, null, null, null, null, null), out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
     private User buildUser(String name) {
         User user = new User();
         user.setId(name + "-id");
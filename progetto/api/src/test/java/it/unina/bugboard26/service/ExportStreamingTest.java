@@ -0,0 +1,202 @@
+package it.unina.bugboard26.service;
+
+import it.unina.bugboard26.enums.GlobalRole;
+import it.unina.bugboard26.enums.IssuePriority;
+import it.unina.bugboard26.enums.IssueType;
+import it.unina.bugboard26.model.Attachment;
+import it.unina.bugboard26.model.HistoryEntry;
+import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.model.Label;
+import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.repository.IssueFilter;
+import it.unina.bugboard26.search.IssueSearchIndex;
+import it.unina.bugboard26.storage.AttachmentStore;
+import it.unina.bugboard26.storage.FileSystemBlobStorage;
+import it.unina.bugboard26.storage.ImageStore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.Session;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * L'export CSV di molte issue deve arrivare all'output a blocchi, con un contesto di persistenza
+ * che non cresce con il numero di righe. L'NDJSON legge label e cronologia dal database a blocchi,
+ * lo ZIP gli allegati dallo storage.
+ */
+@DataJpaTest(properties = "bugboard.attachments.dir=target/test-uploads-export")
+@Import({ExportService.class, IssueService.class, PermissionService.class, NotificationService.class, ImageStore.class,
+        AttachmentStore.class, FileSystemBlobStorage.class})
+class ExportStreamingTest {
+
+    private static final int ISSUES = 50_000;
+    // Un blocco del cursore, l'autore e un margine
+    private static final int MAX_MANAGED_ENTITIES = 600;
+
+    @MockitoBean private IssueSearchIndex searchIndex;
+
+    @Autowired private ExportService exportService;
+    @Autowired private TestEntityManager entityManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private FileSystemBlobStorage blobStorage;
+
+    /**
+     * Conta righe e byte senza tenerli, e a ogni flush registra quante entita' ha la sessione.
+     */
+    private final class ObservingOutput extends OutputStream {
+        long lines;
+        long bytes;
+        int flushes;
+        int maxManagedEntities;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+            if (b == '\n') lines++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                write(buffer[i]);
+            }
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+            int managed = entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount();
+            maxManagedEntities = Math.max(maxManagedEntities, managed);
+        }
+    }
+
+    @Test
+    @DisplayName("Export CSV di 50k issue: scritto a blocchi con la sessione svuotata a ogni blocco")
+    void largeExportStreamsWithBoundedSession() throws Exception {
+        User author = entityManager.persistAndFlush(new User("autore@test.com", "hash", "Autore", GlobalRole.USER));
+        insertIssues(author.getId());
+        entityManager.clear();
+
+        ObservingOutput out = new ObservingOutput();
+        exportService.writeCsv(IssueFilter.of(null, null, null, null, false, null, null), out);
+
+        assertEquals(ISSUES + 1, out.lines);
+        assertTrue(out.flushes >= ISSUES / 500, "flush solo a fine export: " + out.flushes);
+        assertTrue(out.maxManagedEntities <= MAX_MANAGED_ENTITIES,
+                "entita' nella sessione durante l'export: " + out.maxManagedEntities);
+    }
+
+    @Test
+    @DisplayName("Export NDJSON da updatedSince: solo le issue modificate dopo, con label e cronologia")
+    void ndjsonSinceWritesChangedIssuesWithDetails() throws Exception {
+        User author = entityManager.persist(new User("autore@test.com", "hash", "Autore", GlobalRole.USER));
+        Label label = entityManager.persist(new Label("backend"));
+        Issue unchanged = entityManager.persist(issue("Non modificata", author, List.of()));
+        Issue changed = entityManager.persist(issue("Modificata", author, List.of(label)));
+        entityManager.persist(new HistoryEntry(changed, author, "Issue creata"));
+        entityManager.flush();
+        Instant since = Instant.now().minus(Duration.ofDays(1));
+        jdbcTemplate.update("UPDATE issues SET updated_at = ? WHERE id = ?",
+                Timestamp.from(since.minus(Duration.ofDays(9))), unchanged.getId());
+        entityManager.clear();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.writeNdjson(IssueFilter.none().withUpdatedSince(since), out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(1, lines.length);
+        JsonNode json = new ObjectMapper().readTree(lines[0]);
+        assertEquals(changed.getId(), json.get("id").asText());
+        assertEquals("backend", json.get("labels").get(0).asText());
+        assertEquals("Issue creata", json.get("history").get(0).get("action").asText());
+        assertEquals("Autore", json.get("history").get(0).get("user").asText());
+    }
+
+    @Test
+    @DisplayName("Export ZIP copia dallo storage gli allegati delle sole issue filtrate")
+    void zipBundlesAttachmentsOfFilteredIssues() throws Exception {
+        User author = entityManager.persist(new User("autore@test.com", "hash", "Autore", GlobalRole.USER));
+        Issue active = entityManager.persist(issue("Attiva", author, List.of()));
+        Issue archived = issue("Archiviata", author, List.of());
+        archived.setArchived(true);
+        entityManager.persist(archived);
+        String sha256 = "c".repeat(64);
+        Attachment screenshot = new Attachment(active, "screenshot.png", "schermata.png", "image/png", 3);
+        screenshot.setSha256(sha256);
+        entityManager.persist(screenshot);
+        entityManager.persist(new Attachment(archived, "vecchio.png", "vecchio.png", "image/png", 3));
+        Path content = blobStorage.path(sha256);
+        Files.createDirectories(content.getParent());
+        Files.writeString(content, "png");
+        entityManager.flush();
+        entityManager.clear();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.writeZip(IssueFilter.of(null, null, null, null, false, null, null), out);
+
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+                names.add(entry.getName());
+            }
+        }
+        assertEquals(List.of("attachments/" + active.getId() + "/" + screenshot.getId() + "-schermata.png",
+                "issues.csv", "attachments.csv"), names);
+    }
+
+    private static Issue issue(String title, User author, List<Label> labels) {
+        Issue issue = new Issue();
+        issue.setTitle(title);
+        issue.setType(IssueType.BUG);
+        issue.setDescription("Descrizione");
+        issue.setPriority(IssuePriority.MEDIA);
+        issue.setCreatedBy(author);
+        issue.setLabels(new ArrayList<>(labels));
+        return issue;
+    }
+
+    private void insertIssues(String authorId) {
+        Instant base = Instant.parse("2026-01-01T00:00:00Z");
+        List<Object[]> rows = new ArrayList<>(1_000);
+        for (int i = 0; i < ISSUES; i++) {
+            Timestamp createdAt = Timestamp.from(base.plusSeconds(i));
+            rows.add(new Object[]{UUID.randomUUID().toString(), "Issue generata " + i,
+                    "Descrizione generata per l'export numero " + i, createdAt, createdAt, authorId});
+            if (rows.size() == 1_000) {
+                flush(rows);
+            }
+        }
+        flush(rows);
+    }
+
+    private void flush(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO issues (id, title, type, description, priority, status, archived, created_at, updated_at, created_by_id)
+                VALUES (?, ?, 'BUG', ?, 'ALTA', 'TODO', FALSE, ?, ?, ?)
+                """, rows);
+        rows.clear();
+    }
+}
@@ -0,0 +1,144 @@
+package it.unina.bugboard26.service;
+
+import it.unina.bugboard26.dto.request.UpdateIssueRequest;
+import it.unina.bugboard26.enums.GlobalRole;
+import it.unina.bugboard26.enums.IssueStatus;
+import it.unina.bugboard26.enums.IssueType;
+import it.unina.bugboard26.model.HistoryEntry;
+import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.repository.HistoryEntryRepository;
+import it.unina.bugboard26.search.IssueSearchIndex;
+import it.unina.bugboard26.storage.ImageStore;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Aggiungere una voce di history deve costare lo stesso numero di query con 20 o 500 voci
+ * gia' presenti, e non deve mai caricare la collezione Issue.history.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({IssueService.class, PermissionService.class, NotificationService.class, ImageStore.class, ScheduledArchiveService.class,
+        IssueDataVersion.class})
+class HistoryAppendQueryCountTest {
+
+    private static final int SHORT_HISTORY = 20;
+    private static final int LONG_HISTORY = 500;
+
+    @MockitoBean private IssueSearchIndex searchIndex;
+
+    @Autowired private IssueService issueService;
+    @Autowired private ScheduledArchiveService scheduledArchiveService;
+    @Autowired private HistoryEntryRepository historyEntryRepository;
+    @Autowired private TestEntityManager entityManager;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private User admin;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        admin = entityManager.persist(new User("admin@test.com", "hash", "Admin", GlobalRole.ADMIN));
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    @DisplayName("Cambio stato: stesse query con history corta e lunga")
+    void statusChangeCostDoesNotGrowWithHistory() {
+        UpdateIssueRequest request = new UpdateIssueRequest(null, null, null, null, IssueStatus.IN_PROGRESS, null, null, null, null);
+        assertConstantCost(id -> issueService.update(id, request, admin.getEmail()));
+    }
+
+    @Test
+    @DisplayName("Eliminazione e ripristino: stesse query con history corta e lunga")
+    void deleteAndRestoreCostDoesNotGrowWithHistory() {
+        assertConstantCost(id -> issueService.delete(id, admin.getEmail()));
+        assertConstantCost(id -> {
+            issueService.delete(id, admin.getEmail());
+            issueService.restore(id, admin.getEmail());
+        });
+    }
+
+    @Test
+    @DisplayName("Archiviazione automatica: la collezione history non viene caricata")
+    void autoArchiveDoesNotLoadHistory() {
+        String shortId = createIssue(SHORT_HISTORY, IssueStatus.RISOLTA);
+        String longId = createIssue(LONG_HISTORY, IssueStatus.RISOLTA);
+        backdateUpdatedAt(shortId);
+        backdateUpdatedAt(longId);
+        statistics.clear();
+
+        scheduledArchiveService.archiveResolvedIssues();
+        entityManager.flush();
+
+        assertEquals(0, historyLoads());
+        assertEquals(SHORT_HISTORY + 1, historyEntryRepository.countByIssueId(shortId));
+        assertEquals(LONG_HISTORY + 1, historyEntryRepository.countByIssueId(longId));
+    }
+
+    private void assertConstantCost(Consumer<String> operation) {
+        long shortCost = measure(createIssue(SHORT_HISTORY, IssueStatus.TODO), operation);
+        long longCost = measure(createIssue(LONG_HISTORY, IssueStatus.TODO), operation);
+        assertEquals(shortCost, longCost, "Query con " + SHORT_HISTORY + " e " + LONG_HISTORY + " voci");
+    }
+
+    private long measure(String issueId, Consumer<String> operation) {
+        long before = historyEntryRepository.countByIssueId(issueId);
+        entityManager.clear();
+        statistics.clear();
+
+        operation.accept(issueId);
+        entityManager.flush();
+
+        long statements = statistics.getPrepareStatementCount();
+        assertEquals(0, historyLoads(), "La collezione history e' stata caricata");
+        assertTrue(historyEntryRepository.countByIssueId(issueId) > before);
+        return statements;
+    }
+
+    private long historyLoads() {
+        return statistics.getCollectionStatistics(Issue.class.getName() + ".history").getLoadCount();
+    }
+
+    private String createIssue(int historySize, IssueStatus status) {
+        Issue issue = new Issue();
+        issue.setTitle("Issue con history");
+        issue.setType(IssueType.BUG);
+        issue.setDescription("Descrizione di test sufficientemente lunga");
+        issue.setStatus(status);
+        issue.setCreatedBy(admin);
+        entityManager.persist(issue);
+        Instant start = Instant.parse("2026-01-01T00:00:00Z");
+        for (int i = 0; i < historySize; i++) {
+            HistoryEntry entry = new HistoryEntry(issue, admin, "Modifica " + i);
+            entry.setTimestamp(start.plusSeconds(i));
+            entityManager.persist(entry);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return issue.getId();
+    }
+
+    private void backdateUpdatedAt(String issueId) {
+        entityManager.getEntityManager()
+                .createQuery("UPDATE Issue i SET i.updatedAt = :old WHERE i.id = :id")
+                .setParameter("old", Instant.now().minus(60, ChronoUnit.DAYS))
+                .setParameter("id", issueId)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,51 @@
+package it.unina.bugboard26.service;
+
+import it.unina.bugboard26.event.IssueChangedEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * La versione cresce con il commit di una scrittura e resta ferma se la transazione viene annullata.
+ */
+@DataJpaTest
+@Import(IssueDataVersion.class)
+class IssueDataVersionTest {
+
+    @Autowired private IssueDataVersion dataVersion;
+    @Autowired private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    @DisplayName("Una modifica committata incrementa la versione, una annullata no")
+    void bumpsOnlyOnCommit() {
+        long initial = dataVersion.current();
+
+        eventPublisher.publishEvent(new IssueChangedEvent("issue-1"));
+        TestTransaction.flagForRollback();
+        TestTransaction.end();
+        assertEquals(initial, dataVersion.current());
+
+        TestTransaction.start();
+        eventPublisher.publishEvent(new IssueChangedEvent("issue-1"));
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        assertEquals(initial + 1, dataVersion.current());
+    }
+
+    @Test
+    @DisplayName("Senza transazione l'evento incrementa subito")
+    void bumpsWithoutTransaction() {
+        TestTransaction.end();
+        long initial = dataVersion.current();
+
+        eventPublisher.publishEvent(new IssueChangedEvent("issue-1"));
+
+        assertEquals(initial + 1, dataVersion.current());
+    }
+}
@@ -0,0 +1,141 @@
+package it.unina.bugboard26.service;
+
+import it.unina.bugboard26.dto.response.HistoryEntryResponse;
+import it.unina.bugboard26.dto.response.IssueResponse;
+import it.unina.bugboard26.dto.response.PagedResponse;
+import it.unina.bugboard26.enums.GlobalRole;
+import it.unina.bugboard26.enums.IssueStatus;
+import it.unina.bugboard26.enums.IssueType;
+import it.unina.bugboard26.model.Attachment;
+import it.unina.bugboard26.model.HistoryEntry;
+import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.model.Label;
+import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.search.IssueSearchIndex;
+import it.unina.bugboard26.storage.ImageStore;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Il dettaglio issue deve costare un numero fisso di query, indipendente dalla lunghezza
+ * della history e dal numero di utenti che vi compaiono.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({IssueService.class, PermissionService.class, NotificationService.class, ImageStore.class})
+class IssueDetailQueryCountTest {
+
+    // utente corrente, issue con utenti e label, ultime voci di history con autori, totale history, allegati
+    private static final long MAX_QUERIES = 5;
+
+    @MockitoBean private IssueSearchIndex searchIndex;
+
+    @Autowired private IssueService issueService;
+    @Autowired private TestEntityManager entityManager;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 200})
+    @DisplayName("getById esegue un numero limitato di query qualunque sia la history")
+    void detailQueryCountDoesNotGrowWithHistory(int historySize) {
+        User admin = entityManager.persist(new User("admin@test.com", "hash", "Admin", GlobalRole.ADMIN));
+        List<User> authors = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            authors.add(entityManager.persist(new User("user" + i + "@test.com", "hash", "User " + i, GlobalRole.USER)));
+        }
+
+        Issue issue = new Issue();
+        issue.setTitle("Issue con molta history");
+        issue.setType(IssueType.BUG);
+        issue.setDescription("Descrizione di test sufficientemente lunga");
+        issue.setStatus(IssueStatus.IN_PROGRESS);
+        issue.setCreatedBy(authors.get(0));
+        issue.setAssignedTo(authors.get(1));
+        issue.setArchivedBy(admin);
+        issue.getLabels().add(entityManager.persist(new Label("backend")));
+        issue.getLabels().add(entityManager.persist(new Label("ui")));
+        issue.getAttachments().add(new Attachment(issue, "a.png", "a.png", "image/png", 10));
+        issue.getAttachments().add(new Attachment(issue, "b.pdf", "b.pdf", "application/pdf", 20));
+        Instant start = Instant.parse("2026-01-01T00:00:00Z");
+        for (int i = 0; i < historySize; i++) {
+            HistoryEntry entry = new HistoryEntry(issue, authors.get(i % authors.size()), "Modifica " + i);
+            entry.setTimestamp(start.plusSeconds(i));
+            issue.getHistory().add(entry);
+        }
+        entityManager.persist(issue);
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        IssueResponse response = issueService.getById(issue.getId(), admin.getEmail());
+
+        assertEquals(Math.min(historySize, IssueService.HISTORY_PREVIEW_SIZE), response.history().size());
+        assertEquals(historySize, response.historyTotal());
+        assertEquals(List.of("backend", "ui"), response.labels().stream().sorted().toList());
+        assertEquals(2, response.attachments().size());
+        assertNotNull(response.history().getLast().performedBy());
+        assertEquals("Modifica " + (historySize - 1), response.history().getFirst().action());
+        assertTrue(statistics.getPrepareStatementCount() <= MAX_QUERIES,
+                "Query eseguite: " + statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("getHistory scorre tutta la history a cursore senza ripetere voci")
+    void historyCursorWalksEveryEntryOnce() {
+        User admin = entityManager.persist(new User("admin@test.com", "hash", "Admin", GlobalRole.ADMIN));
+        Issue issue = new Issue();
+        issue.setTitle("Issue con timestamp ripetuti");
+        issue.setType(IssueType.BUG);
+        issue.setDescription("Descrizione di test sufficientemente lunga");
+        issue.setStatus(IssueStatus.TODO);
+        issue.setCreatedBy(admin);
+        // Stesso timestamp a gruppi di tre: il cursore deve usare l'id per separarli
+        Instant start = Instant.parse("2026-01-01T00:00:00Z");
+        for (int i = 0; i < 25; i++) {
+            HistoryEntry entry = new HistoryEntry(issue, admin, "Modifica " + i);
+            entry.setTimestamp(start.plusSeconds(i / 3));
+            issue.getHistory().add(entry);
+        }
+        entityManager.persist(issue);
+        entityManager.flush();
+        entityManager.clear();
+
+        Set<String> seen = new HashSet<>();
+        Instant previous = Instant.MAX;
+        String cursor = null;
+        int pages = 0;
+        do {
+            PagedResponse<HistoryEntryResponse> page = issueService.getHistory(issue.getId(), cursor, 7, admin.getEmail());
+            assertEquals(25L, page.total());
+            for (HistoryEntryResponse entry : page.data()) {
+                assertTrue(seen.add(entry.id()), "Voce ripetuta: " + entry.id());
+                assertFalse(entry.timestamp().isAfter(previous));
+                previous = entry.timestamp();
+            }
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(25, seen.size());
+        assertEquals(4, pages);
+    }
+}
@@ -0,0 +1,163 @@
+package it.unina.bugboard26.service;
+
+import it.unina.bugboard26.dto.response.IssueFacetsResponse;
+import it.unina.bugboard26.dto.response.IssueSummaryResponse;
+import it.unina.bugboard26.dto.response.PagedResponse;
+import it.unina.bugboard26.enums.GlobalRole;
+import it.unina.bugboard26.enums.IssueStatus;
+import it.unina.bugboard26.enums.IssueType;
+import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.repository.IssueFilter;
+import it.unina.bugboard26.search.IssueSearchIndex;
+import it.unina.bugboard26.storage.ImageStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ricerca full-text combinata con i filtri strutturati, con indice Lucene e database reali:
+ * totali, faccette ed export devono contare ogni corrispondenza che passa i filtri, anche
+ * quando le issue trovate sono molte piu' di quelle che entrano in una classifica.
+ */
+@DataJpaTest(properties = "bugboard.search.index-dir=target/test-search-index")
+@Import({IssueService.class, IssueSearchIndex.class, PermissionService.class, NotificationService.class, ImageStore.class})
+class IssueSearchFilterTest {
+
+    // Oltre il vecchio limite di 1000 risultati dell'indice
+    private static final int OPEN_MATCHES = 1_200;
+    // Oltre il limite di 65535 parametri per query del driver PostgreSQL
+    private static final int MANY_MATCHES = 75_000;
+
+    @Autowired private IssueService issueService;
+    @Autowired private IssueSearchIndex searchIndex;
+    @Autowired private TestEntityManager entityManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Con molte corrispondenze e un filtro di stato restrittivo lista, faccette ed export le trovano tutte")
+    void restrictiveFilterFindsLowRankedMatchesBeyondTopHits() throws Exception {
+        User author = entityManager.persist(new User("author@test.com", "hash", "Author", GlobalRole.ADMIN));
+        List<Issue> issues = new ArrayList<>();
+        // Le aperte hanno "login" nel titolo e pesano di piu': le risolte restano in fondo alla classifica
+        for (int i = 0; i < OPEN_MATCHES; i++) {
+            issues.add(entityManager.persist(buildIssue(author, "Errore login " + i, "Dettagli", IssueStatus.TODO)));
+        }
+        for (int i = 0; i < 3; i++) {
+            issues.add(entityManager.persist(buildIssue(author, "Problema " + i,
+                    "Dopo molti tentativi e diverse verifiche anche il login fallisce", IssueStatus.RISOLTA)));
+        }
+        issues.add(entityManager.persist(buildIssue(author, "Export lento", "Nessuna relazione", IssueStatus.RISOLTA)));
+        entityManager.flush();
+        entityManager.clear();
+        searchIndex.rebuild(issues.stream());
+
+        Set<String> resolvedMatches = issues.stream()
+                .filter(issue -> issue.getStatus() == IssueStatus.RISOLTA && issue.getTitle().startsWith("Problema"))
+                .map(Issue::getId)
+                .collect(Collectors.toSet());
+        IssueFilter resolved = IssueFilter.of(null, List.of(IssueStatus.RISOLTA), null, null, null, "login", null);
+
+        PagedResponse<IssueSummaryResponse> byDate = issueService.getAll(resolved, author.getEmail(),
+                PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "createdAt")), true);
+        assertEquals(3, byDate.total());
+        assertEquals(resolvedMatches, ids(byDate));
+        assertTrue(byDate.data().stream().allMatch(row -> row.score() != null));
+
+        PagedResponse<IssueSummaryResponse> byRelevance = issueService.getAll(resolved, author.getEmail(),
+                PageRequest.of(0, 20, Sort.by(IssueService.SORT_RELEVANCE).descending()), true);
+        assertEquals(3, byRelevance.total());
+        assertEquals(resolvedMatches, ids(byRelevance));
+
+        IssueFacetsResponse facets = issueService.getFacets(resolved, author.getEmail());
+        assertEquals(3, facets.total());
+        assertEquals(OPEN_MATCHES, facets.status().get(IssueStatus.TODO));
+
+        assertEquals(3, issueService.countByStatusForExport(resolved).get(IssueStatus.RISOLTA));
+        assertEquals(resolvedMatches, issueService.getFilteredForExport(resolved).stream()
+                .map(Issue::getId).collect(Collectors.toSet()));
+    }
+
+    @Test
+    @DisplayName("Un termine presente in oltre 70000 issue non supera i limiti di parametri della query")
+    void termMatchingTensOfThousandsOfIssuesKeepsQueriesBounded() throws Exception {
+        User author = entityManager.persist(new User("author@test.com", "hash", "Author", GlobalRole.ADMIN));
+        entityManager.flush();
+        List<Issue> issues = new ArrayList<>();
+        for (int i = 0; i < MANY_MATCHES; i++) {
+            issues.add(buildIssue("open-" + i, author, "Errore login " + i, "Dettagli", IssueStatus.TODO));
+        }
+        for (int i = 0; i < 3; i++) {
+            issues.add(buildIssue("resolved-" + i, author, "Problema " + i,
+                    "Dopo molti tentativi anche il login fallisce", IssueStatus.RISOLTA));
+        }
+        // Inserimento JDBC a blocchi: passare dal persistence context per 75000 entita' rallenta il test
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate("INSERT INTO issues (id, title, type, description, status, archived, created_by_id, "
+                        + "created_at, updated_at) VALUES (?, ?, 'BUG', ?, ?, false, ?, ?, ?)",
+                issues, 5_000, (ps, issue) -> {
+                    ps.setString(1, issue.getId());
+                    ps.setString(2, issue.getTitle());
+                    ps.setString(3, issue.getDescription());
+                    ps.setString(4, issue.getStatus().name());
+                    ps.setString(5, author.getId());
+                    ps.setTimestamp(6, now);
+                    ps.setTimestamp(7, now);
+                });
+        searchIndex.rebuild(issues.stream());
+
+        assertTrue(searchIndex.matchingIds("login", false).size() > MANY_MATCHES);
+
+        // Lista per data e per rilevanza, totale ed export ricevono tutte le 75003 corrispondenze come id
+        IssueFilter resolved = IssueFilter.of(null, List.of(IssueStatus.RISOLTA), null, null, null, "login", null);
+        Set<String> resolvedMatches = Set.of("resolved-0", "resolved-1", "resolved-2");
+        PagedResponse<IssueSummaryResponse> byDate = issueService.getAll(resolved, author.getEmail(),
+                PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "createdAt")), true);
+        assertEquals(3, byDate.total());
+        assertEquals(resolvedMatches, ids(byDate));
+
+        PagedResponse<IssueSummaryResponse> byRelevance = issueService.getAll(resolved, author.getEmail(),
+                PageRequest.of(0, 20, Sort.by(IssueService.SORT_RELEVANCE).descending()), true);
+        assertEquals(3, byRelevance.total());
+        assertEquals(resolvedMatches, ids(byRelevance));
+
+        assertEquals(3, issueService.countByStatusForExport(resolved).get(IssueStatus.RISOLTA));
+    }
+
+    // --- Helpers ---
+
+    private Set<String> ids(PagedResponse<IssueSummaryResponse> response) {
+        return response.data().stream().map(IssueSummaryResponse::id).collect(Collectors.toSet());
+    }
+
+    private Issue buildIssue(String id, User author, String title, String description, IssueStatus status) {
+        Issue issue = buildIssue(author, title, description, status);
+        issue.setId(id);
+        return issue;
+    }
+
+    private Issue buildIssue(User author, String title, String description, IssueStatus status) {
+        Issue issue = new Issue();
+        issue.setTitle(title);
+        issue.setType(IssueType.BUG);
+        issue.setDescription(description);
+        issue.setStatus(status);
+        issue.setCreatedBy(author);
+        return issue;
+    }
+}
@@ -1,26 +1,57 @@
 package it.unina.bugboard26.service;
 
 import it.unina.bugboard26.dto.request.UpdateIssueRequest;
+import it.unina.bugboard26.dto.response.HistoryEntryResponse;
+import it.unina.bugboard26.dto.response.IssueFacetsResponse;
+import it.unina.bugboard26.dto.response.IssueSummaryResponse;
+import it.unina.bugboard26.dto.response.PagedResponse;
 import it.unina.bugboard26.enums.GlobalRole;
+import it.unina.bugboard26.enums.IssuePriority;
 import it.unina.bugboard26.enums.IssueStatus;
 import it.unina.bugboard26.enums.IssueType;
+import it.unina.bugboard26.model.HistoryEntry;
 import it.unina.bugboard26.model.Issue;
 import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.repository.HistoryCursor;
+import it.unina.bugboard26.repository.HistoryEntryRepository;
+import it.unina.bugboard26.repository.IssueCursor;
+import it.unina.bugboard26.repository.IssueFilter;
 import it.unina.bugboard26.repository.IssueRepository;
 import it.unina.bugboard26.repository.LabelRepository;
 import it.unina.bugboard26.repository.UserRepository;
+import it.unina.bugboard26.repository.projection.IssueFacetRow;
+import it.unina.bugboard26.repository.projection.IssueLabelView;
+import it.unina.bugboard26.repository.projection.IssueSummaryView;
+import it.unina.bugboard26.search.IssueSearchIndex;
+import it.unina.bugboard26.search.SearchHit;
+import it.unina.bugboard26.storage.ImageStore;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -34,10 +65,14 @@ import static org.mockito.Mockito.*;
 class IssueServiceTest {
 
     @Mock private IssueRepository issueRepository;
+    @Mock private HistoryEntryRepository historyEntryRepository;
     @Mock private UserRepository userRepository;
     @Mock private LabelRepository labelRepository;
     @Mock private PermissionService permissionService;
     @Mock private NotificationService notificationService;
+    @Mock private IssueSearchIndex searchIndex;
+    @Mock private ApplicationEventPublisher eventPublisher;
+    @Mock private ImageStore imageStore;
 
     @InjectMocks private IssueService issueService;
 
@@ -120,8 +155,225 @@ class IssueServiceTest {
         verify(issueRepository, never()).save(any());
     }
 
+    /**
+     * La lista issue usa la proiezione leggera: le label dell'intera pagina
+     * vengono caricate con una sola query e associate alla riga corretta.
+     */
+    @Test
+    @DisplayName("getAll restituisce i riepiloghi con le label caricate in batch")
+    void whenGetAll_thenSummariesCarryBatchLoadedLabels() {
+        Pageable pageable = PageRequest.of(0, 20);
+        IssueSummaryView first = buildSummaryView("issue-1");
+        IssueSummaryView second = buildSummaryView("issue-2");
+
+        when(issueRepository.findSummaries(any(IssueFilter.class), eq(pageable)))
+                .thenReturn(new PageImpl<>(List.of(first, second), pageable, 2));
+        when(issueRepository.findLabelNamesByIssueIds(List.of("issue-1", "issue-2")))
+                .thenReturn(List.of(new IssueLabelView("issue-1", "backend"),
+                        new IssueLabelView("issue-1", "ui")));
+
+        PagedResponse<IssueSummaryResponse> response = issueService.getAll(
+                IssueFilter.none(), "user@test.com", pageable, true);
+
+        assertEquals(2, response.total());
+        assertEquals(List.of("backend", "ui"), response.data().get(0).labels());
+        assertTrue(response.data().get(1).labels().isEmpty());
+        assertEquals("creator", response.data().get(0).createdBy().name());
+        assertNull(response.data().get(0).assignedTo());
+        verify(issueRepository, times(1)).findLabelNamesByIssueIds(any());
+        verify(issueRepository, never()).findById(any());
+    }
+
+    /**
+     * Paginazione keyset: si chiede una riga in piu' del pageSize per sapere se
+     * esiste una pagina successiva; il cursore codifica chiave e id dell'ultima riga.
+     */
+    @Test
+    @DisplayName("getAllByCursor restituisce nextCursor quando esistono altre righe e salta la COUNT")
+    void whenMoreRowsThanPageSize_thenNextCursorPointsToLastReturnedRow() {
+        IssueSummaryView first = buildSummaryView("issue-1");
+        IssueSummaryView second = buildSummaryView("issue-2");
+        IssueSummaryView third = buildSummaryView("issue-3");
+
+        when(issueRepository.findSummariesAfter(any(IssueFilter.class),
+                eq(IssueCursor.SortKey.CREATED_AT), eq(false), isNull(), eq(3)))
+                .thenReturn(List.of(first, second, third));
+
+        PagedResponse<IssueSummaryResponse> response = issueService.getAllByCursor(
+                IssueFilter.none(), "user@test.com", "", IssueCursor.SortKey.CREATED_AT, false, 2, false);
+
+        assertEquals(2, response.data().size());
+        assertNull(response.total());
+        IssueCursor next = IssueCursor.decode(response.nextCursor());
+        assertEquals("issue-2", next.id());
+        assertEquals(second.createdAt(), next.instantValue());
+        assertFalse(next.ascending());
+        verify(issueRepository, never()).count(any(Specification.class));
+    }
+
+    /**
+     * Ricerca full-text ordinata per rilevanza: l'indice scorre la classifica a blocchi e il database
+     * dice quali issue di ogni blocco passano i filtri; si carica solo la proiezione della pagina.
+     */
+    @Test
+    @DisplayName("getAll per rilevanza classifica solo le issue filtrate e conta tutte le corrispondenze")
+    @SuppressWarnings("unchecked")
+    void whenSortedByRelevance_thenIndexRanksFilteredIssuesAndTotalCountsAllMatches() throws Exception {
+        Pageable pageable = PageRequest.of(0, 2, Sort.by(IssueService.SORT_RELEVANCE).descending());
+        when(searchIndex.matchingIds("login", false)).thenReturn(Set.of("issue-1", "issue-2", "issue-3", "issue-4"));
+        when(issueRepository.count(any(Specification.class))).thenReturn(3L);
+        // issue-1 non passa gli altri filtri
+        when(issueRepository.findIds(argThat(f -> f != null && f.search() == null
+                && List.of("issue-1", "issue-3", "issue-2").equals(f.ids()))))
+                .thenReturn(List.of("issue-3", "issue-2"));
+        when(searchIndex.searchPage(eq("login"), eq(false), eq(0), eq(2), any())).thenAnswer(invocation -> {
+            Function<List<String>, Collection<String>> accepted = invocation.getArgument(4);
+            Collection<String> passing = accepted.apply(List.of("issue-1", "issue-3", "issue-2"));
+            return Stream.of(new SearchHit("issue-1", 5f), new SearchHit("issue-3", 3f), new SearchHit("issue-2", 1f))
+                    .filter(hit -> passing.contains(hit.issueId()))
+                    .toList();
+        });
+        when(searchIndex.highlight("login", false, List.of("issue-3", "issue-2")))
+                .thenReturn(Map.of("issue-3", "<mark>login</mark> lento"));
+        when(issueRepository.findSummaries(
+                argThat(f -> f != null && f.ids() != null && f.ids().equals(List.of("issue-3", "issue-2"))),
+                any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(buildSummaryView("issue-2"), buildSummaryView("issue-3"))));
+
+        PagedResponse<IssueSummaryResponse> response = issueService.getAll(
+                IssueFilter.of(null, null, null, null, false, "login", null), "user@test.com", pageable, true);
+
+        assertEquals(List.of("issue-3", "issue-2"), response.data().stream().map(IssueSummaryResponse::id).toList());
+        assertEquals(3, response.total());
+        assertEquals(3f, response.data().get(0).score());
+        assertEquals("<mark>login</mark> lento", response.data().get(0).highlight());
+        assertNull(response.data().get(1).highlight());
+    }
+
+    @Test
+    @DisplayName("Con fuzzy=true la ricerca usa i trigrammi e riporta la similarita'")
+    void whenFuzzySearch_thenTrigramIndexIsQueriedAndSimilarityIsReturned() throws Exception {
+        Pageable pageable = PageRequest.of(0, 20);
+        when(searchIndex.matchingIds("autenticazone", true)).thenReturn(Set.of("issue-1"));
+        when(searchIndex.search("autenticazone", true, List.of("issue-1"), 1))
+                .thenReturn(List.of(new SearchHit("issue-1", 0.82f)));
+        when(issueRepository.findSummaries(argThat(f -> f != null && f.search() == null
+                && List.of("issue-1").equals(List.copyOf(f.ids()))), eq(pageable)))
+                .thenReturn(new PageImpl<>(List.of(buildSummaryView("issue-1")), pageable, 1));
+
+        PagedResponse<IssueSummaryResponse> response = issueService.getAll(
+                IssueFilter.of(null, null, null, null, false, "autenticazone", null).withFuzzy(true),
+                "user@test.com", pageable, true);
+
+        assertEquals(0.82f, response.data().get(0).score());
+        verify(searchIndex, never()).matchingIds(anyString(), eq(false));
+        verify(searchIndex).highlight("autenticazone", true, List.of("issue-1"));
+    }
+
+    /**
+     * Faccette: ogni conteggio applica tutti i filtri tranne il proprio, partendo
+     * dalle righe di un unico GROUP BY; richieste uguali ravvicinate usano la cache.
+     */
+    @Test
+    @DisplayName("getFacets calcola le faccette da una query raggruppata e le mette in cache")
+    void whenGetFacets_thenEachFacetIgnoresItsOwnFilterAndResultIsCached() {
+        when(issueRepository.countFacets(any(IssueFilter.class))).thenReturn(List.of(
+                new IssueFacetRow(IssueStatus.TODO, IssuePriority.ALTA, IssueType.BUG, false, 3),
+                new IssueFacetRow(IssueStatus.TODO, null, IssueType.FEATURE, false, 2),
+                new IssueFacetRow(IssueStatus.RISOLTA, IssuePriority.ALTA, IssueType.BUG, false, 4),
+                new IssueFacetRow(IssueStatus.TODO, IssuePriority.BASSA, IssueType.BUG, true, 5)));
+        IssueFilter filter = IssueFilter.of(List.of(IssueType.BUG), List.of(IssueStatus.TODO), null,
+                null, false, null, null);
+
+        IssueFacetsResponse facets = issueService.getFacets(filter, "user@test.com");
+
+        assertEquals(3, facets.total());
+        // stato: tipo BUG e non archiviate, qualunque stato
+        assertEquals(3, facets.status().get(IssueStatus.TODO));
+        assertEquals(4, facets.status().get(IssueStatus.RISOLTA));
+        assertEquals(0, facets.status().get(IssueStatus.IN_PROGRESS));
+        // tipo: stato TODO e non archiviate, qualunque tipo
+        assertEquals(3, facets.type().get(IssueType.BUG));
+        assertEquals(2, facets.type().get(IssueType.FEATURE));
+        assertEquals(0, facets.noPriority());
+        assertEquals(3, facets.priority().get(IssuePriority.ALTA));
+        // archiviazione: BUG in TODO, archiviate o no
+        assertEquals(3, facets.archived().get(false));
+        assertEquals(5, facets.archived().get(true));
+
+        verify(issueRepository).countFacets(argThat(f -> f.types() == null && f.statuses() == null
+                && f.archived() == null));
+
+        issueService.getFacets(filter, "user@test.com");
+        verify(issueRepository, times(1)).countFacets(any());
+    }
+
+    @Test
+    @DisplayName("getAllByCursor con cursore malformato lancia 400")
+    void whenCursorIsMalformed_thenBadRequest() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> issueService.getAllByCursor(IssueFilter.none(), "user@test.com",
+                        "bm90LWEtY3Vyc29y", IssueCursor.SortKey.CREATED_AT, false, 20, false));
+        assertEquals(400, ex.getStatusCode().value());
+    }
+
+    @Test
+    @DisplayName("getAllByCursor con timestamp non valido nel cursore lancia 400")
+    void whenCursorHasInvalidInstant_thenBadRequest() {
+        String token = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("UPDATED_AT|DESC|garbage|issue-1".getBytes(StandardCharsets.UTF_8));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> issueService.getAllByCursor(IssueFilter.none(), "user@test.com",
+                        token, IssueCursor.SortKey.CREATED_AT, false, 20, false));
+        assertEquals(400, ex.getStatusCode().value());
+    }
+
+    /**
+     * History paginata: il cursore riparte dalla coppia (timestamp, id) dell'ultima voce,
+     * senza toccare la collezione history dell'entita'.
+     */
+    @Test
+    @DisplayName("getHistory continua dal cursore e restituisce il totale delle voci")
+    void whenHistoryCursorGiven_thenNextPageStartsAfterIt() {
+        User user = buildUser("user", GlobalRole.USER);
+        Issue issue = buildIssue("issue-1", user, IssueStatus.TODO);
+        HistoryEntry older = buildHistoryEntry("h-2", issue, Instant.parse("2026-01-02T10:00:00Z"));
+        HistoryEntry oldest = buildHistoryEntry("h-1", issue, Instant.parse("2026-01-01T10:00:00Z"));
+        HistoryCursor cursor = new HistoryCursor(Instant.parse("2026-01-03T10:00:00Z"), "h-3");
+
+        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(user));
+        when(issueRepository.findById("issue-1")).thenReturn(Optional.of(issue));
+        when(historyEntryRepository.findBefore("issue-1", cursor.timestamp(), "h-3", Limit.of(2)))
+                .thenReturn(List.of(older, oldest));
+        when(historyEntryRepository.countByIssueId("issue-1")).thenReturn(3L);
+
+        PagedResponse<HistoryEntryResponse> response =
+                issueService.getHistory("issue-1", cursor.encode(), 1, "user@test.com");
+
+        assertEquals(List.of("h-2"), response.data().stream().map(HistoryEntryResponse::id).toList());
+        assertEquals(3L, response.total());
+        assertEquals(HistoryCursor.after(older), HistoryCursor.decode(response.nextCursor()));
+        verify(historyEntryRepository, never()).findLatest(any(), any());
+    }
+
     // --- Helpers ---
 
+    private HistoryEntry buildHistoryEntry(String id, Issue issue, Instant timestamp) {
+        HistoryEntry entry = new HistoryEntry(issue, null, "Modifica");
+        entry.setId(id);
+        entry.setTimestamp(timestamp);
+        return entry;
+    }
+
+    private IssueSummaryView buildSummaryView(String id) {
+        Instant now = Instant.now();
+        return new IssueSummaryView(id, "Test Issue", IssueType.BUG, "Descrizione", null,
+                IssueStatus.TODO, now, now, false, null, false,
+                "creator-id", "creator@test.com", "creator", GlobalRole.USER, now,
+                null, null, null, null, null);
+    }
+
     private User buildUser(String name, GlobalRole role) {
         User user = new User();
         user.setId(name + "-id");
@@ -0,0 +1,140 @@
+package it.unina.bugboard26.service;
+
+import com.itextpdf.kernel.colors.DeviceRgb;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.borders.Border;
+import com.itextpdf.layout.borders.SolidBorder;
+import com.itextpdf.layout.element.Cell;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.element.Table;
+import com.itextpdf.layout.properties.UnitValue;
+import it.unina.bugboard26.enums.GlobalRole;
+import it.unina.bugboard26.model.Issue;
+import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.repository.IssueFilter;
+import it.unina.bugboard26.search.IssueSearchIndex;
+import it.unina.bugboard26.storage.AttachmentStore;
+import it.unina.bugboard26.storage.ImageStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static it.unina.bugboard26.service.ExportBenchmarkSupport.insertIssues;
+import static it.unina.bugboard26.service.ExportBenchmarkSupport.measure;
+
+/**
+ * Tempo e heap occupato del report PDF con la tabella scritta a blocchi rispetto al vecchio, che
+ * costruiva tutta la tabella in memoria prima di aggiungerla al documento (la sua parte di tabella
+ * e' copiata qui sotto). Si esegue solo su richiesta:
+ * {@code mvn test -Dbugboard.benchmarks=true -Dtest=PdfExportBenchmarkTest}.
+ */
+@DataJpaTest(properties = "spring.datasource.url=jdbc:h2:mem:pdf-benchmark;DB_CLOSE_DELAY=-1;LAZY_QUERY_EXECUTION=1")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ExportService.class, IssueService.class, PermissionService.class, NotificationService.class, ImageStore.class})
+@EnabledIfSystemProperty(named = "bugboard.benchmarks", matches = "true")
+class PdfExportBenchmarkTest {
+
+    private static final int[] SIZES = {1_000, 10_000, 50_000};
+    private static final IssueFilter ACTIVE = IssueFilter.of(null, null, null, null, false, null, null);
+
+    @MockitoBean private IssueSearchIndex searchIndex;
+    @MockitoBean private AttachmentStore attachmentStore;
+
+    @Autowired private ExportService exportService;
+    @Autowired private IssueService issueService;
+    @Autowired private TestEntityManager entityManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Report PDF 1k/10k/50k righe: tempo e picco di heap")
+    void compare() throws Exception {
+        User author = entityManager.persistAndFlush(new User("autore@test.com", "hash", "Autore", GlobalRole.USER));
+        int inserted = 0;
+        for (int size : SIZES) {
+            insertIssues(jdbcTemplate, author.getId(), inserted, size);
+            inserted = size;
+            entityManager.clear();
+
+            // Un giro a vuoto per il JIT
+            measure(this::largeTableExport);
+            entityManager.clear();
+            String largeTable = measure(this::largeTableExport);
+            entityManager.clear();
+            String legacy = measure(this::legacyExport);
+            entityManager.clear();
+            System.out.printf("PDF %,d righe: a blocchi %s, tabella in memoria %s%n", size, largeTable, legacy);
+        }
+    }
+
+    private void largeTableExport() throws Exception {
+        exportService.writePdf(ACTIVE, OutputStream.nullOutputStream());
+    }
+
+    // La tabella del vecchio ExportService.exportPdf: lista completa, tabella in memoria, colori nuovi per ogni cella
+    private void legacyExport() throws Exception {
+        List<Issue> issues = issueService.getFilteredForExport(ACTIVE);
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            PdfDocument pdfDoc = new PdfDocument(new PdfWriter(baos));
+            Document document = new Document(pdfDoc, PageSize.A4.rotate());
+            PdfFont regular = PdfFontFactory.createFont(com.itextpdf.io.font.constants.StandardFonts.HELVETICA);
+            PdfFont bold = PdfFontFactory.createFont(com.itextpdf.io.font.constants.StandardFonts.HELVETICA_BOLD);
+            DeviceRgb primary = new DeviceRgb(30, 58, 138);
+            DeviceRgb lightGray = new DeviceRgb(243, 244, 246);
+            DeviceRgb mediumGray = new DeviceRgb(107, 114, 128);
+            DeviceRgb borderColor = new DeviceRgb(209, 213, 219);
+
+            Table table = new Table(UnitValue.createPercentArray(new float[]{35, 12, 12, 12, 14, 15}));
+            table.setWidth(UnitValue.createPercentValue(100));
+            for (String h : new String[]{"Titolo", "Tipo", "Priorita", "Stato", "Creato da", "Data creazione"}) {
+                table.addHeaderCell(new Cell()
+                        .add(new Paragraph(h).setFont(bold).setFontSize(9).setFontColor(new DeviceRgb(255, 255, 255)))
+                        .setBackgroundColor(primary).setPadding(7).setBorder(Border.NO_BORDER));
+            }
+            DateTimeFormatter dateFmt = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm").withZone(ZoneId.systemDefault());
+            for (int i = 0; i < issues.size(); i++) {
+                Issue issue = issues.get(i);
+                DeviceRgb rowBg = (i % 2 == 0) ? new DeviceRgb(255, 255, 255) : lightGray;
+                addDataCell(table, issue.getTitle(), regular, 9, rowBg, null, borderColor);
+                addDataCell(table, issue.getType().name(), regular, 9, rowBg, new DeviceRgb(220, 38, 38), borderColor);
+                addDataCell(table, issue.getPriority().name(), regular, 9, rowBg, new DeviceRgb(234, 88, 12), borderColor);
+                addDataCell(table, issue.getStatus().name(), bold, 9, rowBg, new DeviceRgb(107, 114, 128), borderColor);
+                addDataCell(table, issue.getCreatedBy().getName(), regular, 9, rowBg, null, borderColor);
+                addDataCell(table, dateFmt.format(issue.getCreatedAt()), regular, 8, rowBg, mediumGray, borderColor);
+            }
+            document.add(table);
+            document.close();
+            OutputStream.nullOutputStream().write(baos.toByteArray());
+        }
+    }
+
+    private void addDataCell(Table table, String text, PdfFont font, float fontSize,
+                             DeviceRgb bg, DeviceRgb fontColor, DeviceRgb borderColor) {
+        Paragraph p = new Paragraph(text != null ? text : "-").setFont(font).setFontSize(fontSize);
+        if (fontColor != null) p.setFontColor(fontColor);
+        table.addCell(new Cell().add(p)
+                .setBackgroundColor(bg)
+                .setPadding(6)
+                .setBorderLeft(Border.NO_BORDER)
+                .setBorderRight(Border.NO_BORDER)
+                .setBorderTop(Border.NO_BORDER)
+                .setBorderBottom(new SolidBorder(borderColor, 0.5f)));
+    }
+}
@@ -3,12 +3,15 @@ package it.unina.bugboard26.service;
 import it.unina.bugboard26.enums.GlobalRole;
 import it.unina.bugboard26.enums.IssueStatus;
 import it.unina.bugboard26.enums.IssueType;
+import it.unina.bugboard26.model.HistoryEntry;
 import it.unina.bugboard26.model.Issue;
 import it.unina.bugboard26.model.User;
+import it.unina.bugboard26.repository.HistoryEntryRepository;
 import it.unina.bugboard26.repository.IssueRepository;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -24,9 +27,11 @@ import static org.mockito.Mockito.*;
 class ScheduledArchiveServiceTest {
 
     @Mock private IssueRepository issueRepository;
+    @Mock private HistoryEntryRepository historyEntryRepository;
+    @Mock private IssueDataVersion issueDataVersion;
 
     private ScheduledArchiveService createService(boolean enabled, int days) {
-        return new ScheduledArchiveService(issueRepository, enabled, days);
+        return new ScheduledArchiveService(issueRepository, historyEntryRepository, issueDataVersion, enabled, days);
     }
 
     @Test
@@ -43,9 +48,17 @@ class ScheduledArchiveServiceTest {
         assertTrue(issue.isArchived());
         assertNotNull(issue.getArchivedAt());
         assertNull(issue.getArchivedBy());
-        assertFalse(issue.getHistory().isEmpty());
-        assertEquals("Archiviata automaticamente dopo 30 giorni", issue.getHistory().get(0).getAction());
         verify(issueRepository).saveAll(anyList());
+
+        // La voce di history si salva dal proprio repository, senza passare dalla collezione
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<HistoryEntry>> entries = ArgumentCaptor.forClass(List.class);
+        verify(historyEntryRepository).saveAll(entries.capture());
+        assertEquals(1, entries.getValue().size());
+        assertSame(issue, entries.getValue().get(0).getIssue());
+        assertEquals("Archiviata automaticamente dopo 30 giorni", entries.getValue().get(0).getAction());
+        assertTrue(issue.getHistory().isEmpty());
+        verify(issueDataVersion).bump();
     }
 
     @Test
@@ -68,6 +81,7 @@ class ScheduledArchiveServiceTest {
         service.archiveResolvedIssues();
 
         verify(issueRepository, never()).saveAll(anyList());
+        verify(issueDataVersion, never()).bump();
     }
 
     private Issue buildIssue(String id, IssueStatus status) {
@@ -0,0 +1,99 @@
+package it.unina.bugboard26.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.unina.bugboard26.storage.AttachmentStore;
+import it.unina.bugboard26.storage.FileSystemBlobStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThumbnailServiceTest {
+
+    private static final String PNG_SHA = "aa".repeat(32);
+    private static final String BROKEN_SHA = "bb".repeat(32);
+
+    @TempDir Path tempDir;
+
+    private FileSystemBlobStorage blobStorage;
+    private AttachmentStore store;
+    private SimpleMeterRegistry registry;
+    private ThumbnailService service;
+
+    @BeforeEach
+    void setUp() {
+        blobStorage = new FileSystemBlobStorage(tempDir.toString());
+        store = new AttachmentStore(tempDir.toString(), blobStorage);
+        registry = new SimpleMeterRegistry();
+        service = new ThumbnailService(store, registry, 1, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    // Attende la fine del lavoro in coda osservando il timer di generazione
+    private void awaitRendered(long count) throws InterruptedException {
+        for (int i = 0; i < 200 && renderCount() < count; i++) {
+            Thread.sleep(25);
+        }
+        assertEquals(count, renderCount());
+    }
+
+    private long renderCount() {
+        return registry.find("bugboard.thumbnails.render").timers().stream().mapToLong(t -> t.count()).sum();
+    }
+
+    @Test
+    @DisplayName("L'anteprima viene generata in background accanto all'originale e misurata")
+    void whenRequested_thenRenderedInBackground() throws Exception {
+        Files.createDirectories(blobStorage.path(PNG_SHA).getParent());
+        ImageIO.write(new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB), "png", blobStorage.path(PNG_SHA).toFile());
+
+        assertTrue(service.request(PNG_SHA, "image/png"));
+        awaitRendered(1);
+
+        assertTrue(store.hasThumbnail(PNG_SHA));
+        assertEquals(1, registry.get("bugboard.thumbnails.render").tags("type", "image", "outcome", "success").timer().count());
+        assertEquals(1, registry.get("bugboard.thumbnails.wait").timer().count());
+        assertEquals(0.0, registry.get("bugboard.thumbnails.queue.depth").gauge().value());
+
+        // Anteprima gia' presente: nessun nuovo lavoro
+        assertTrue(service.request(PNG_SHA, "image/png"));
+        assertEquals(1, registry.get("bugboard.thumbnails.wait").timer().count());
+    }
+
+    @Test
+    @DisplayName("Un contenuto illeggibile viene registrato come errore e non ritentato subito")
+    void whenSourceBroken_thenErrorAndNoRetry() throws Exception {
+        Files.createDirectories(blobStorage.path(BROKEN_SHA).getParent());
+        Files.writeString(blobStorage.path(BROKEN_SHA), "non un'immagine");
+
+        assertTrue(service.request(BROKEN_SHA, "image/png"));
+        awaitRendered(1);
+
+        assertFalse(store.hasThumbnail(BROKEN_SHA));
+        assertEquals(1, registry.get("bugboard.thumbnails.render").tags("outcome", "error").timer().count());
+        assertFalse(service.request(BROKEN_SHA, "image/png"));
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.filter(p -> p.getFileName().toString().endsWith(".tmp")).count());
+        }
+    }
+
+    @Test
+    @DisplayName("I tipi senza anteprima non vengono messi in coda")
+    void whenUnsupportedType_thenIgnored() {
+        assertFalse(service.request(PNG_SHA, "image/webp"));
+        assertEquals(0, registry.get("bugboard.thumbnails.wait").timer().count());
+    }
+}
@@ -33,6 +33,7 @@ class UserServiceTest {
 
     @Mock private UserRepository userRepository;
     @Mock private PasswordEncoder passwordEncoder;
+    @Mock private IssueDataVersion issueDataVersion;
 
     @InjectMocks private UserService userService;
 
@@ -125,6 +126,8 @@ class UserServiceTest {
         assertEquals(originalEmail, existing.getEmail());
         assertEquals(originalRole, existing.getRole());
         verify(passwordEncoder, never()).encode(any());
+        // Il nome cambiato compare negli export: quelli in cache non valgono piu'
+        verify(issueDataVersion).bump();
     }
 
     /**
@@ -227,6 +230,7 @@ class UserServiceTest {
         userService.delete("mario-id");
 
         verify(userRepository).deleteById("mario-id");
+        verify(issueDataVersion).bump();
     }
 
     @Test
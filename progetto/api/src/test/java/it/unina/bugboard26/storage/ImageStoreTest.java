@@ -0,0 +1,70 @@
+package it.unina.bugboard26.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageStoreTest {
+
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 1, 2, 3};
+
+    @TempDir Path tempDir;
+
+    private ImageStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new ImageStore(tempDir.toString(), 1024);
+    }
+
+    @Test
+    @DisplayName("La chiave e' lo SHA-256 del contenuto e lo stesso contenuto occupa un solo file")
+    void sameContentSameKey() throws Exception {
+        String first = store.storeDataUrl(dataUrl("image/png", PNG));
+        String second = store.storeDataUrl(dataUrl("image/png", PNG));
+
+        assertEquals(first, second);
+        assertTrue(first.matches("[0-9a-f]{64}\\.png"));
+        assertArrayEquals(PNG, Files.readAllBytes(store.resolve(first)));
+        try (var files = Files.walk(tempDir)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+        assertEquals(tempDir.resolve(first.substring(0, 2)).resolve(first.substring(2, 4)).resolve(first), store.resolve(first));
+        assertEquals("image/png", ImageStore.contentType(first));
+        assertEquals("/api/images/" + first, ImageStore.url(first));
+    }
+
+    @Test
+    @DisplayName("Data URL non validi, tipi non ammessi e immagini troppo grandi danno 400")
+    void invalidImagesAreRejected() {
+        assertBadRequest("non-un-data-url");
+        assertBadRequest(dataUrl("image/svg+xml", PNG));
+        assertBadRequest("data:image/png;base64,%%%");
+        assertBadRequest(dataUrl("image/png", new byte[2048]));
+    }
+
+    @Test
+    @DisplayName("resolve accetta solo chiavi hash.estensione")
+    void resolveRejectsPathTraversal() {
+        assertThrows(IllegalArgumentException.class, () -> store.resolve("../application.yml"));
+        assertThrows(IllegalArgumentException.class, () -> store.resolve("abc.png"));
+        assertDoesNotThrow(() -> store.resolve("0".repeat(64) + ".webp"));
+    }
+
+    private void assertBadRequest(String dataUrl) {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> store.storeDataUrl(dataUrl));
+        assertEquals(400, ex.getStatusCode().value());
+    }
+
+    private static String dataUrl(String contentType, byte[] bytes) {
+        return "data:" + contentType + ";base64," + Base64.getEncoder().encodeToString(bytes);
+    }
+}
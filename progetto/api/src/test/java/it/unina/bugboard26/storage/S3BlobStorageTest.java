@@ -0,0 +1,223 @@
+package it.unina.bugboard26.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Il client S3 e' un mock: i metodi con il builder sono default dell'interfaccia e chiamano quelli
+ * con la richiesta completa, che sono gli unici stubbati. Gli URL firmati si calcolano in locale.
+ */
+class S3BlobStorageTest {
+
+    private static final String SHA = "3f9a".repeat(16);
+    private static final String KEY = "3f/9a/" + SHA;
+
+    @TempDir Path tempDir;
+
+    private S3Client client;
+    private S3BlobStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        client = mock(S3Client.class, CALLS_REAL_METHODS);
+        S3Presigner presigner = S3Presigner.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("access", "secret")))
+                .endpointOverride(URI.create("http://localhost:9000"))
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                .build();
+        storage = new S3BlobStorage(client, presigner, "bugboard", S3BlobStorage.MIN_PART_SIZE, Duration.ofMinutes(5));
+    }
+
+    private Path randomFile(int size) throws Exception {
+        byte[] content = new byte[size];
+        new Random(7).nextBytes(content);
+        return Files.write(tempDir.resolve("blob.tmp"), content);
+    }
+
+    @Test
+    @DisplayName("Un file piccolo viene caricato con una sola PUT sotto la chiave divisa per hash")
+    void whenSmallFile_thenSinglePut() throws Exception {
+        Path file = randomFile(1024);
+        doReturn(PutObjectResponse.builder().build()).when(client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+
+        storage.put(SHA, file);
+
+        ArgumentCaptor<PutObjectRequest> request = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(client).putObject(request.capture(), any(RequestBody.class));
+        assertEquals("bugboard", request.getValue().bucket());
+        assertEquals(KEY, request.getValue().key());
+        verify(client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    @DisplayName("Un file grande viene caricato in multipart, una parte alla volta letta dal file")
+    void whenLargeFile_thenMultipart() throws Exception {
+        int size = (int) (2 * S3BlobStorage.MIN_PART_SIZE + 1234);
+        Path file = randomFile(size);
+        List<Long> partSizes = new ArrayList<>();
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        doReturn(CreateMultipartUploadResponse.builder().uploadId("up-1").build())
+                .when(client).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+        doAnswer(invocation -> {
+            UploadPartRequest part = invocation.getArgument(0);
+            RequestBody body = invocation.getArgument(1);
+            partSizes.add(body.optionalContentLength().orElseThrow());
+            try (InputStream in = body.contentStreamProvider().newStream()) {
+                in.transferTo(received);
+            }
+            return UploadPartResponse.builder().eTag("etag-" + part.partNumber()).build();
+        }).when(client).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        doReturn(CompleteMultipartUploadResponse.builder().build())
+                .when(client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+
+        storage.put(SHA, file);
+
+        assertEquals(List.of(S3BlobStorage.MIN_PART_SIZE, S3BlobStorage.MIN_PART_SIZE, 1234L), partSizes);
+        assertArrayEquals(Files.readAllBytes(file), received.toByteArray());
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(client).completeMultipartUpload(complete.capture());
+        assertEquals("up-1", complete.getValue().uploadId());
+        assertEquals(List.of("etag-1", "etag-2", "etag-3"),
+                complete.getValue().multipartUpload().parts().stream().map(CompletedPart::eTag).toList());
+        verify(client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    @DisplayName("Se una parte fallisce l'upload multipart viene annullato")
+    void whenPartFails_thenMultipartAborted() throws Exception {
+        Path file = randomFile((int) S3BlobStorage.MIN_PART_SIZE + 1);
+        doReturn(CreateMultipartUploadResponse.builder().uploadId("up-2").build())
+                .when(client).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+        doThrow(SdkClientException.create("connessione persa"))
+                .when(client).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        doReturn(null).when(client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+
+        assertThrows(SdkClientException.class, () -> storage.put(SHA, file));
+
+        ArgumentCaptor<AbortMultipartUploadRequest> abort = ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+        verify(client).abortMultipartUpload(abort.capture());
+        assertEquals("up-2", abort.getValue().uploadId());
+        verify(client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    @DisplayName("Un oggetto mancante risulta inesistente e non scaricabile")
+    void whenObjectMissing_thenNotFound() {
+        doThrow(NoSuchKeyException.builder().statusCode(404).build())
+                .when(client).headObject(any(HeadObjectRequest.class));
+        doThrow(NoSuchKeyException.builder().statusCode(404).build())
+                .when(client).getObject(any(GetObjectRequest.class));
+
+        assertFalse(storage.exists(SHA));
+        assertNull(storage.stat(SHA));
+        assertThrows(NoSuchFileException.class, () -> storage.fetch(SHA, tempDir.resolve("scratch")));
+    }
+
+    @Test
+    @DisplayName("L'elenco segue tutte le pagine e ignora le chiavi fuori dalla disposizione per hash")
+    void listFollowsPagesAndSkipsForeignKeys() {
+        Instant modified = Instant.parse("2026-01-10T08:00:00Z");
+        doReturn(ListObjectsV2Response.builder()
+                        .contents(S3Object.builder().key(KEY).size(10L).lastModified(modified).build(),
+                                S3Object.builder().key("backup/dump.sql").size(99L).lastModified(modified).build())
+                        .isTruncated(true).nextContinuationToken("page-2").build(),
+                ListObjectsV2Response.builder()
+                        .contents(S3Object.builder().key(KEY + ".thumb.jpg").size(3L).lastModified(modified).build())
+                        .isTruncated(false).build())
+                .when(client).listObjectsV2(any(ListObjectsV2Request.class));
+
+        try (var entries = storage.list()) {
+            assertEquals(List.of(new BlobStorage.Entry(SHA, 10L, modified),
+                    new BlobStorage.Entry(SHA + ".thumb.jpg", 3L, modified)), entries.toList());
+        }
+
+        ArgumentCaptor<ListObjectsV2Request> requests = ArgumentCaptor.forClass(ListObjectsV2Request.class);
+        verify(client, times(2)).listObjectsV2(requests.capture());
+        assertEquals("page-2", requests.getAllValues().get(1).continuationToken());
+    }
+
+    @Test
+    @DisplayName("Gli altri errori dello storage non vengono scambiati per un oggetto mancante")
+    void whenAccessDenied_thenRethrown() {
+        doThrow(S3Exception.builder().statusCode(403).message("Access Denied").build())
+                .when(client).headObject(any(HeadObjectRequest.class));
+
+        assertThrows(S3Exception.class, () -> storage.exists(SHA));
+    }
+
+    @Test
+    @DisplayName("Il download e' un URL firmato con scadenza, tipo e nome del file")
+    void locateReturnsPresignedUrl() {
+        BlobLocation location = storage.locate(SHA, "report finale.pdf", "application/pdf", SHA, Instant.now());
+
+        String url = assertInstanceOf(PresignedUrl.class, location).url().toString();
+        assertTrue(url.startsWith("http://localhost:9000/bugboard/" + KEY + "?"), url);
+        assertTrue(url.contains("X-Amz-Expires=300"), url);
+        assertTrue(url.contains("X-Amz-Signature="), url);
+        assertTrue(url.contains("response-content-type=application%2Fpdf"), url);
+        assertTrue(url.contains("response-content-disposition=attachment"), url);
+        verifyNoInteractions(client);
+    }
+
+    @Test
+    @DisplayName("Le anteprime inline non forzano il download")
+    void locateInlineHasNoDisposition() {
+        BlobLocation location = storage.locate(SHA + ".thumb.jpg", null, "image/jpeg", SHA, Instant.now());
+
+        String url = ((PresignedUrl) location).url().toString();
+        assertTrue(url.contains("/bugboard/3f/9a/" + SHA + ".thumb.jpg?"), url);
+        assertFalse(url.contains("response-content-disposition"), url);
+    }
+
+    @Test
+    @DisplayName("Parti piu' piccole del minimo di S3 sono rifiutate")
+    void partSizeBelowMinimumRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new S3BlobStorage(client, mock(S3Presigner.class),
+                "bugboard", 1024, Duration.ofMinutes(5)));
+    }
+}
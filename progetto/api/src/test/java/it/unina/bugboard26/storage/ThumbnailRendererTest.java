@@ -0,0 +1,102 @@
+package it.unina.bugboard26.storage;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThumbnailRendererTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Un'immagine grande diventa un JPEG con il lato lungo di 320px")
+    void whenLargeImage_thenScaledJpeg() throws Exception {
+        BufferedImage source = new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = source.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 2000, 1000);
+        g.dispose();
+        Path png = tempDir.resolve("source.png");
+        ImageIO.write(source, "png", png.toFile());
+        Path target = tempDir.resolve("thumb.jpg");
+
+        ThumbnailRenderer.render(png, "image/png", target);
+
+        BufferedImage thumbnail = ImageIO.read(target.toFile());
+        assertEquals(320, thumbnail.getWidth());
+        assertEquals(160, thumbnail.getHeight());
+        assertTrue(Files.readAllBytes(target)[0] == (byte) 0xFF, "non e' un JPEG");
+    }
+
+    @Test
+    @DisplayName("Un'immagine piccola non viene ingrandita")
+    void whenSmallImage_thenKeptSize() throws Exception {
+        Path png = tempDir.resolve("small.png");
+        ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB), "png", png.toFile());
+        Path target = tempDir.resolve("thumb.jpg");
+
+        ThumbnailRenderer.render(png, "image/png", target);
+
+        BufferedImage thumbnail = ImageIO.read(target.toFile());
+        assertEquals(40, thumbnail.getWidth());
+        assertEquals(30, thumbnail.getHeight());
+    }
+
+    @Test
+    @DisplayName("Di un PDF si rasterizza la prima pagina")
+    void whenPdf_thenFirstPageRendered() throws Exception {
+        Path pdf = tempDir.resolve("doc.pdf");
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage(PDRectangle.A4);
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.setNonStrokingColor(Color.BLUE);
+                content.addRect(50, 50, 200, 200);
+                content.fill();
+            }
+            document.addPage(new PDPage(PDRectangle.A4));
+            document.save(pdf.toFile());
+        }
+        Path target = tempDir.resolve("thumb.jpg");
+
+        ThumbnailRenderer.render(pdf, "application/pdf", target);
+
+        BufferedImage thumbnail = ImageIO.read(target.toFile());
+        assertEquals(320, thumbnail.getHeight());
+        assertEquals(226, thumbnail.getWidth(), 1);
+    }
+
+    @Test
+    @DisplayName("Un file non leggibile lancia IOException")
+    void whenCorruptFile_thenIOException() throws Exception {
+        Path broken = tempDir.resolve("broken.png");
+        Files.writeString(broken, "non un'immagine");
+
+        assertThrows(IOException.class, () -> ThumbnailRenderer.render(broken, "image/png", tempDir.resolve("t.jpg")));
+        assertThrows(IOException.class, () -> ThumbnailRenderer.render(broken, "application/pdf", tempDir.resolve("t.jpg")));
+    }
+
+    @Test
+    @DisplayName("Solo JPEG, PNG, GIF e PDF hanno anteprima")
+    void supportedTypes() {
+        assertTrue(ThumbnailRenderer.supports("image/png"));
+        assertTrue(ThumbnailRenderer.supports("application/pdf"));
+        assertFalse(ThumbnailRenderer.supports("image/webp"));
+        assertFalse(ThumbnailRenderer.supports("text/plain"));
+    }
+}
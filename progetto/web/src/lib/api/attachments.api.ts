@@ -1,5 +1,13 @@
 import { api } from './client';
-import type { Attachment } from '$lib/types';
+import type { Attachment, UploadSession } from '$lib/types';
+
+const CHUNK_SIZE = 4 * 1024 * 1024;
+const CHUNK_RETRIES = 3;
+
+async function sha256Hex(file: Blob): Promise<string> {
+	const digest = await crypto.subtle.digest('SHA-256', await file.arrayBuffer());
+	return Array.from(new Uint8Array(digest), (b) => b.toString(16).padStart(2, '0')).join('');
+}
 
 const BASE_URL = import.meta.env.VITE_API_URL ?? 'http://localhost:8080';
 
@@ -10,6 +18,35 @@ export const attachmentsApi = {
 		return api.postForm<Attachment>(`/api/issues/${issueId}/attachments`, formData);
 	},
 
+	// Upload a blocchi per i file grandi: dopo un errore di rete riprende dall'offset confermato dal server
+	uploadChunked: async (issueId: string, file: File, onProgress?: (fraction: number) => void) => {
+		const base = `/api/issues/${issueId}/attachments/uploads`;
+		const session = await api.post<UploadSession>(base, {
+			filename: file.name,
+			contentType: file.type,
+			size: file.size
+		});
+		try {
+			let offset = 0;
+			let failures = 0;
+			while (offset < file.size) {
+				try {
+					const chunk = file.slice(offset, offset + CHUNK_SIZE);
+					offset = (await api.putBinary<UploadSession>(`${base}/${session.id}?offset=${offset}`, chunk)).offset;
+					failures = 0;
+				} catch (e) {
+					if (++failures > CHUNK_RETRIES) throw e;
+					offset = (await api.get<UploadSession>(`${base}/${session.id}`)).offset;
+				}
+				onProgress?.(offset / file.size);
+			}
+			return await api.post<Attachment>(`${base}/${session.id}/complete`, { sha256: await sha256Hex(file) });
+		} catch (e) {
+			await api.delete<void>(`${base}/${session.id}`).catch(() => {});
+			throw e;
+		}
+	},
+
 	download: async (issueId: string, storedFilename: string): Promise<Blob> => {
 		const res = await api.getRaw(`/api/issues/${issueId}/attachments/${storedFilename}`);
 		if (!res.ok) throw new Error(`HTTP ${res.status}`);
@@ -38,6 +38,12 @@ export const api = {
 			}
 		});
 	},
+	putBinary: <T>(path: string, body: Blob) =>
+		request<T>(path, {
+			method: 'PUT',
+			body,
+			headers: { 'Content-Type': 'application/octet-stream' }
+		}),
 	postForm: <T>(path: string, formData: FormData) => {
 		const token = localStorage.getItem('bugboard_token');
 		return fetch(`${BASE_URL}${path}`, {
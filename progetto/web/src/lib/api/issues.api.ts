@@ -1,17 +1,20 @@
 import { api } from './client';
-import type { Issue, PagedResponse } from '$lib/types';
+import type { HistoryEntry, Issue, IssueFacets, IssueSummary, PagedResponse } from '$lib/types';
 
 export interface IssueFilters {
 	type?: string[];
 	status?: string[];
 	priority?: string[];
 	search?: string;
+	fuzzy?: boolean;
 	archived?: boolean;
 	deleted?: boolean;
 	page?: number;
 	pageSize?: number;
 	sortBy?: string;
 	order?: 'asc' | 'desc';
+	cursor?: string;
+	withTotal?: boolean;
 }
 
 function buildQuery(filters: IssueFilters): string {
@@ -20,22 +23,36 @@ function buildQuery(filters: IssueFilters): string {
 	if (filters.status?.length) filters.status.forEach((v) => params.append('status', v));
 	if (filters.priority?.length) filters.priority.forEach((v) => params.append('priority', v));
 	if (filters.search) params.set('search', filters.search);
+	if (filters.fuzzy) params.set('fuzzy', 'true');
 	if (filters.archived) params.set('archived', 'true');
 	if (filters.deleted) params.set('deleted', 'true');
 	if (filters.page !== undefined) params.set('page', String(filters.page));
 	if (filters.pageSize !== undefined) params.set('pageSize', String(filters.pageSize));
 	if (filters.sortBy) params.set('sortBy', filters.sortBy);
 	if (filters.order) params.set('order', filters.order);
+	if (filters.cursor !== undefined) params.set('cursor', filters.cursor);
+	if (filters.withTotal === false) params.set('withTotal', 'false');
 	const qs = params.toString();
 	return qs ? `?${qs}` : '';
 }
 
 export const issuesApi = {
 	getAll: (filters: IssueFilters = {}) =>
-		api.get<PagedResponse<Issue>>(`/api/issues${buildQuery(filters)}`),
+		api.get<PagedResponse<IssueSummary>>(`/api/issues${buildQuery(filters)}`),
+
+	getFacets: (filters: IssueFilters = {}) =>
+		api.get<IssueFacets>(`/api/issues/facets${buildQuery(filters)}`),
 
 	getById: (id: string) => api.get<Issue>(`/api/issues/${id}`),
 
+	getHistory: (id: string, cursor?: string, pageSize?: number) => {
+		const params = new URLSearchParams();
+		if (cursor) params.set('cursor', cursor);
+		if (pageSize !== undefined) params.set('pageSize', String(pageSize));
+		const qs = params.toString();
+		return api.get<PagedResponse<HistoryEntry>>(`/api/issues/${id}/history${qs ? `?${qs}` : ''}`);
+	},
+
 	create: (data: {
 		title: string;
 		type: string;
@@ -22,23 +22,45 @@ export interface Issue {
 	createdBy: User;
 	createdAt: string;
 	updatedAt: string | null;
-	image: string | null;
+	imageUrl: string | null;
 	archived: boolean;
 	archivedAt: string | null;
 	archivedBy: User | null;
 	deletedAt: string | null;
 	deletedBy: User | null;
 	labels: string[];
+	// Solo le voci più recenti: le altre con issuesApi.getHistory
 	history: HistoryEntry[];
+	historyTotal: number;
 	attachments: Attachment[];
 }
 
+// Riepilogo restituito da GET /api/issues (descrizione troncata, senza history/allegati/immagine)
+export interface IssueSummary {
+	id: string;
+	title: string;
+	type: IssueType;
+	description: string;
+	priority: IssuePriority;
+	status: IssueStatus;
+	assignedTo: User | null;
+	createdBy: User;
+	createdAt: string;
+	updatedAt: string | null;
+	archived: boolean;
+	deletedAt: string | null;
+	hasImage: boolean;
+	labels: string[];
+	score: number | null;
+	highlight: string | null;
+}
+
 export interface Comment {
 	id: string;
 	issueId: string;
 	author: User;
 	content: string;
-	image: string | null;
+	imageUrl: string | null;
 	createdAt: string;
 	updatedAt: string | null;
 }
@@ -51,6 +73,7 @@ export interface HistoryEntry {
 }
 
 export interface Attachment {
+	id: string;
 	storedFilename: string;
 	originalFilename: string;
 	contentType: string;
@@ -58,6 +81,16 @@ export interface Attachment {
 	uploadedAt: string;
 }
 
+// Sessione di upload a blocchi: offset = byte gia' ricevuti dal server
+export interface UploadSession {
+	id: string;
+	filename: string;
+	contentType: string;
+	size: number;
+	offset: number;
+	expiresAt: string;
+}
+
 export interface Notification {
 	id: string;
 	message: string;
@@ -69,9 +102,20 @@ export interface Notification {
 
 export interface PagedResponse<T> {
 	data: T[];
-	total: number;
+	total: number | null; // null con withTotal=false
 	page: number;
 	pageSize: number;
+	nextCursor: string | null; // solo in modalita' cursore
+}
+
+// Ogni faccetta conta le issue con tutti i filtri tranne il proprio
+export interface IssueFacets {
+	total: number;
+	status: Record<IssueStatus, number>;
+	priority: Record<IssuePriority, number>;
+	noPriority: number;
+	type: Record<IssueType, number>;
+	archived: Record<'true' | 'false', number>;
 }
 
 export interface AuthResponse {